@@ -0,0 +1,12 @@
+package com.cloud.chunking;
+
+/**
+ * One content-defined chunk of a file.
+ *
+ * @param offset   position of the first byte in the file
+ * @param length   chunk length in bytes
+ * @param checksum lowercase hex SHA-256 of the chunk bytes
+ * @param data     the chunk bytes
+ */
+public record Chunk(long offset, int length, String checksum, byte[] data) {
+}
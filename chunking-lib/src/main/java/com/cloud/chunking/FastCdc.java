@@ -0,0 +1,163 @@
+package com.cloud.chunking;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+/**
+ * FastCDC content-defined chunker (Xia et al., 2016/2020).
+ * <p>
+ * A gear rolling hash is updated one byte at a time and a cut point is declared
+ * where the hash matches a mask. Because boundaries depend only on nearby content,
+ * an insert or delete shifts at most the chunks around the edit; every other chunk
+ * keeps its bytes and therefore its hash. Normalized chunking uses a stricter mask
+ * before the average size and a looser one after it, which narrows the size spread.
+ * <p>
+ * The gear table is derived from a fixed seed, so every client and server produces
+ * identical boundaries for identical input.
+ */
+public final class FastCdc {
+
+    public static final String SCHEME = "fastcdc";
+
+    /** 1MB minimum, 4MB average, 16MB maximum */
+    public static final FastCdc DEFAULT = new FastCdc(1 << 20, 4 << 20, 16 << 20);
+
+    private static final long GEAR_SEED = 0x5DEECE66DL;
+    private static final int NORMALIZATION_LEVEL = 2;
+    private static final long[] GEAR = gearTable();
+
+    private final int minSize;
+    private final int avgSize;
+    private final int maxSize;
+    private final long maskSmall; // Applied before avgSize: harder to match
+    private final long maskLarge; // Applied after avgSize: easier to match
+
+    public FastCdc(int minSize, int avgSize, int maxSize) {
+        if (minSize <= 0 || minSize > avgSize || avgSize > maxSize) {
+            throw new IllegalArgumentException("Require 0 < min <= avg <= max");
+        }
+        if (Integer.bitCount(avgSize) != 1) {
+            throw new IllegalArgumentException("Average size must be a power of two");
+        }
+        int bits = Integer.numberOfTrailingZeros(avgSize);
+        this.minSize = minSize;
+        this.avgSize = avgSize;
+        this.maxSize = maxSize;
+        this.maskSmall = highBits(bits + NORMALIZATION_LEVEL);
+        this.maskLarge = highBits(Math.max(1, bits - NORMALIZATION_LEVEL));
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getAvgSize() {
+        return avgSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Length of the next chunk starting at {@code offset}
+     *
+     * @param length bytes available from offset; a final chunk may be shorter than the minimum
+     */
+    public int nextBoundary(byte[] data, int offset, int length) {
+        int n = Math.min(length, maxSize);
+        if (n <= minSize) {
+            return n;
+        }
+
+        int barrier = Math.min(avgSize, n);
+        long fingerprint = 0;
+        int i = minSize;
+        for (; i < barrier; i++) {
+            fingerprint = (fingerprint << 1) + GEAR[data[offset + i] & 0xFF];
+            if ((fingerprint & maskSmall) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < n; i++) {
+            fingerprint = (fingerprint << 1) + GEAR[data[offset + i] & 0xFF];
+            if ((fingerprint & maskLarge) == 0) {
+                return i + 1;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Split an in-memory buffer into chunks
+     */
+    public List<Chunk> split(byte[] data) {
+        List<Chunk> chunks = new ArrayList<>();
+        int offset = 0;
+        while (offset < data.length) {
+            int length = nextBoundary(data, offset, data.length - offset);
+            chunks.add(new Chunk(offset, length, ChunkHasher.sha256Hex(data, offset, length),
+                    Arrays.copyOfRange(data, offset, offset + length)));
+            offset += length;
+        }
+        return chunks;
+    }
+
+    /**
+     * Split a stream into chunks, holding at most two maximum-size chunks in memory
+     */
+    public void split(InputStream in, Consumer<Chunk> consumer) throws IOException {
+        byte[] buffer = new byte[maxSize * 2];
+        int filled = 0;
+        long position = 0;
+        boolean eof = false;
+
+        while (true) {
+            while (!eof && filled < buffer.length) {
+                int read = in.read(buffer, filled, buffer.length - filled);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    filled += read;
+                }
+            }
+            if (filled == 0) {
+                return;
+            }
+
+            int start = 0;
+            // Only cut while a full window is available, unless the stream has ended
+            while (start < filled && (eof || filled - start >= maxSize)) {
+                int length = nextBoundary(buffer, start, filled - start);
+                consumer.accept(new Chunk(position, length, ChunkHasher.sha256Hex(buffer, start, length),
+                        Arrays.copyOfRange(buffer, start, start + length)));
+                start += length;
+                position += length;
+            }
+
+            System.arraycopy(buffer, start, buffer, 0, filled - start);
+            filled -= start;
+            if (eof && filled == 0) {
+                return;
+            }
+        }
+    }
+
+    private static long highBits(int count) {
+        return count >= 64 ? -1L : -1L << (64 - count);
+    }
+
+    private static long[] gearTable() {
+        SplittableRandom random = new SplittableRandom(GEAR_SEED);
+        long[] table = new long[256];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = random.nextLong();
+        }
+        return table;
+    }
+}
@@ -0,0 +1,91 @@
+package com.cloud.chunking;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.*;
+
+class FastCdcTest {
+
+    private final FastCdc chunker = new FastCdc(2048, 8192, 32768);
+
+    @Test
+    @DisplayName("Chunks should cover the input exactly and respect the size bounds")
+    void shouldCoverInputWithinBounds() {
+        // Given
+        byte[] data = randomBytes(1_000_000, 1);
+
+        // When
+        List<Chunk> chunks = chunker.split(data);
+
+        // Then
+        long covered = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            assertThat(chunk.offset()).isEqualTo(covered);
+            assertThat(chunk.length()).isLessThanOrEqualTo(32768);
+            if (i < chunks.size() - 1) {
+                assertThat(chunk.length()).isGreaterThanOrEqualTo(2048);
+            }
+            covered += chunk.length();
+        }
+        assertThat(covered).isEqualTo(data.length);
+    }
+
+    @Test
+    @DisplayName("An insert near the start should only change the chunks around it")
+    void shouldKeepChunksStableAfterInsert() {
+        // Given
+        byte[] original = randomBytes(1_000_000, 2);
+        byte[] edited = new byte[original.length + 1];
+        System.arraycopy(original, 0, edited, 0, 1000);
+        edited[1000] = 42;
+        System.arraycopy(original, 1000, edited, 1001, original.length - 1000);
+
+        // When
+        Set<String> before = checksums(chunker.split(original));
+        List<Chunk> after = chunker.split(edited);
+
+        // Then
+        long changedBytes = after.stream()
+                .filter(chunk -> !before.contains(chunk.checksum()))
+                .mapToLong(Chunk::length)
+                .sum();
+        assertThat(changedBytes).isLessThan(4 * 32768);
+    }
+
+    @Test
+    @DisplayName("Streaming split should match the in-memory split")
+    void shouldStreamSameChunksAsBuffer() throws IOException {
+        // Given
+        byte[] data = randomBytes(300_000, 3);
+        List<Chunk> streamed = new ArrayList<>();
+
+        // When
+        chunker.split(new ByteArrayInputStream(data), streamed::add);
+
+        // Then
+        assertThat(streamed).extracting(Chunk::checksum)
+                .containsExactlyElementsOf(chunker.split(data).stream().map(Chunk::checksum).toList());
+    }
+
+    private static Set<String> checksums(List<Chunk> chunks) {
+        Set<String> result = new HashSet<>();
+        chunks.forEach(chunk -> result.add(chunk.checksum()));
+        return result;
+    }
+
+    private static byte[] randomBytes(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
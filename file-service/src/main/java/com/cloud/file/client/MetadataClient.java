@@ -1,9 +1,21 @@
 package com.cloud.file.client;
 
 import com.cloud.file.client.dto.FileMetadataResponse;
+import com.cloud.file.client.dto.MetadataAbortSessionsRequest;
 import com.cloud.file.client.dto.MetadataAddChunkRequest;
 import com.cloud.file.client.dto.MetadataChunkResponse;
+import com.cloud.file.client.dto.MetadataIdleSessionClaimRequest;
 import com.cloud.file.client.dto.MetadataInitiateRequest;
+import com.cloud.file.client.dto.MetadataInlineFileRequest;
+import com.cloud.file.client.dto.MetadataKnownChunksRequest;
+import com.cloud.file.client.dto.MetadataPartsResponse;
+import com.cloud.file.client.dto.MetadataPromoteInlineRequest;
+import com.cloud.file.client.dto.MetadataReleasedChunkClaimRequest;
+import com.cloud.file.client.dto.MetadataReleasedStorage;
+import com.cloud.file.client.dto.MetadataStaleSession;
+import com.cloud.file.client.dto.MetadataStaleSessionClaimRequest;
+import com.cloud.file.client.dto.MetadataUploadProgress;
+import com.cloud.file.dto.FileMetadataRequest;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.*;
 
@@ -16,21 +28,76 @@ public interface MetadataClient {
     @PostMapping("/metadata")
     void saveMetadata(@RequestBody Object metadata);
 
+    @PostMapping("/metadata")
+    FileMetadataResponse createFile(@RequestBody FileMetadataRequest request);
+
     @PostMapping("/metadata/initiate")
     Long initiateSession(@RequestBody MetadataInitiateRequest request);
 
     @PostMapping("/metadata/{fileId}/chunk")
     void addChunk(@PathVariable("fileId") Long fileId, @RequestBody MetadataAddChunkRequest request);
 
+    @PostMapping("/metadata/chunks/known")
+    List<String> findKnownChunks(@RequestBody MetadataKnownChunksRequest request);
+
     @GetMapping("/metadata/{fileId}")
     FileMetadataResponse getFile(@PathVariable("fileId") Long fileId);
 
     @GetMapping("/metadata/{fileId}/chunks")
     List<MetadataChunkResponse> getUploadedChunks(@PathVariable("fileId") Long fileId);
 
+    @GetMapping("/metadata/{fileId}/parts")
+    MetadataPartsResponse getCompletedParts(@PathVariable("fileId") Long fileId);
+
+    @GetMapping("/metadata/{fileId}/progress")
+    MetadataUploadProgress getProgress(@PathVariable("fileId") Long fileId);
+
     @PostMapping("/metadata/{fileId}/complete")
     void completeSession(@PathVariable("fileId") Long fileId);
 
     @PostMapping("/metadata/{fileId}/abort")
     void abortSession(@PathVariable("fileId") Long fileId);
+
+    @PostMapping("/metadata/sessions/stale/claim")
+    List<MetadataStaleSession> claimStaleSessions(@RequestBody MetadataStaleSessionClaimRequest request);
+
+    @PostMapping("/metadata/sessions/abort")
+    List<Long> abortSessions(@RequestBody MetadataAbortSessionsRequest request);
+
+    @PostMapping("/metadata/inline")
+    FileMetadataResponse createInlineFile(@RequestBody MetadataInlineFileRequest request);
+
+    @GetMapping("/metadata/{fileId}/content")
+    byte[] getInlineContent(@PathVariable("fileId") Long fileId);
+
+    @GetMapping("/metadata/inline/oversized")
+    List<FileMetadataResponse> getOversizedInlineFiles(@RequestParam("maxSize") long maxSize,
+            @RequestParam("afterId") Long afterId,
+            @RequestParam("limit") int limit);
+
+    @PostMapping("/metadata/{fileId}/promote")
+    FileMetadataResponse promoteInlineFile(@PathVariable("fileId") Long fileId,
+            @RequestBody MetadataPromoteInlineRequest request);
+
+    @GetMapping("/metadata/{fileId}/versions")
+    List<FileMetadataResponse> getVersions(@PathVariable("fileId") Long fileId);
+
+    @PostMapping("/metadata/{fileId}/versions/{versionNumber}/restore")
+    FileMetadataResponse restoreVersion(@PathVariable("fileId") Long fileId,
+            @PathVariable("versionNumber") int versionNumber);
+
+    @DeleteMapping("/metadata/{fileId}")
+    List<MetadataReleasedStorage> deleteFile(@PathVariable("fileId") Long fileId);
+
+    @PostMapping("/metadata/{fileId}/versions/prune")
+    List<MetadataReleasedStorage> pruneVersions(@PathVariable("fileId") Long fileId, @RequestParam("keep") int keep);
+
+    @PostMapping("/metadata/sessions/idle/claim")
+    List<MetadataStaleSession> claimIdleSessions(@RequestBody MetadataIdleSessionClaimRequest request);
+
+    @PostMapping("/metadata/chunks/released/claim")
+    List<String> claimReleasedChunks(@RequestBody MetadataReleasedChunkClaimRequest request);
+
+    @PostMapping("/metadata/chunks/released/swept")
+    int confirmSweptChunks(@RequestBody List<String> checksums);
 }
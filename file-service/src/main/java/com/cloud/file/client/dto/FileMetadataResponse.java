@@ -20,5 +20,10 @@ public class FileMetadataResponse {
     private String uploadId;
     private String status;
     private Integer totalChunks;
+    private String contentEncoding;
+    private String chunkingScheme;
+    private boolean storedInline;
+    private Long logicalFileId;
+    private Integer versionNumber;
     private LocalDateTime uploadedAt;
 }
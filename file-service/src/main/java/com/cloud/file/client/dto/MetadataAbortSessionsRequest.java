@@ -0,0 +1,14 @@
+package com.cloud.file.client.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MetadataAbortSessionsRequest {
+    private List<Long> fileIds;
+}
@@ -13,4 +13,5 @@ public class MetadataAddChunkRequest {
     private Integer chunkNumber;
     private String etag;
     private Long size;
+    private String checksum;
 }
@@ -0,0 +1,19 @@
+package com.cloud.file.client.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MetadataIdleSessionClaimRequest {
+    private String status;
+    private Integer idleMinutes;
+    private Integer maxIdleMinutes;
+    private Long afterId;
+    private Integer limit;
+    private Integer leaseSeconds;
+}
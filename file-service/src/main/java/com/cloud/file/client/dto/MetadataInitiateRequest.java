@@ -17,4 +17,7 @@ public class MetadataInitiateRequest {
     private Integer totalChunks;
     private Long size;
     private String contentType;
+    private String contentEncoding;
+    private String chunkingScheme;
+    private Long previousVersionId;
 }
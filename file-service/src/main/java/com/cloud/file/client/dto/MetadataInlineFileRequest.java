@@ -0,0 +1,17 @@
+package com.cloud.file.client.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MetadataInlineFileRequest {
+    private String fileName;
+    private String fileType;
+    private String owner;
+    private byte[] data;
+}
@@ -0,0 +1,15 @@
+package com.cloud.file.client.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MetadataKnownChunksRequest {
+    private String owner;
+    private List<String> checksums;
+}
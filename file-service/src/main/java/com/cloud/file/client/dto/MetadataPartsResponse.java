@@ -0,0 +1,16 @@
+package com.cloud.file.client.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Compact part list from metadata-service: parallel arrays sorted by part number
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MetadataPartsResponse {
+    private int[] partNumbers;
+    private String[] etags;
+}
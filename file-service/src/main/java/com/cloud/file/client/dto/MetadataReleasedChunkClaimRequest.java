@@ -0,0 +1,16 @@
+package com.cloud.file.client.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MetadataReleasedChunkClaimRequest {
+    private Integer minAgeSeconds;
+    private Integer limit;
+    private Integer leaseSeconds;
+}
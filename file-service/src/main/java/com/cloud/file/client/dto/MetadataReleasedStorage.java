@@ -0,0 +1,22 @@
+package com.cloud.file.client.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Storage of a pruned version that metadata-service no longer references. Content-addressed
+ * chunks are not listed; {@code ChunkReclaimer} deletes them after a grace period.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MetadataReleasedStorage {
+    private Long fileId;
+    private Integer versionNumber;
+    private String s3Key; // null when the object is still shared with another file
+    private String contentEncoding;
+    private Integer totalChunks;
+}
@@ -0,0 +1,18 @@
+package com.cloud.file.client.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MetadataStaleSession {
+    private Long id;
+    private String uploadId;
+    private String s3Key;
+    private String contentEncoding;
+    private Integer totalChunks;
+}
@@ -0,0 +1,19 @@
+package com.cloud.file.client.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MetadataUploadProgress {
+    private Long fileId;
+    private String status;
+    private Integer totalChunks;
+    private int receivedChunks;
+    private long size;
+    private long receivedBytes;
+}
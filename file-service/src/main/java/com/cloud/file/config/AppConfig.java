@@ -1,10 +1,41 @@
 package com.cloud.file.config;
 
+import jakarta.servlet.MultipartConfigElement;
+import org.springframework.boot.web.servlet.MultipartConfigFactory;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.util.unit.DataSize;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Configuration
 @EnableScheduling
 public class AppConfig {
     // Enable scheduling for potential cleanup jobs
+
+    /** Room for the multipart boundaries, part headers and form fields around the file */
+    private static final long MULTIPART_OVERHEAD = 1024 * 1024;
+
+    /**
+     * Bounded pool for fanning out S3 requests (part copies, batch operations)
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService s3TransferExecutor(FileUploadProperties fileUploadProperties) {
+        return Executors.newFixedThreadPool(fileUploadProperties.getTransferParallelism());
+    }
+
+    /**
+     * Servlet multipart limits derived from the single-request upload threshold, so the two cannot
+     * drift apart; chunks are JSON bodies and not affected
+     */
+    @Bean
+    public MultipartConfigElement multipartConfigElement(FileUploadProperties fileUploadProperties) {
+        long threshold = fileUploadProperties.getSingleUploadThreshold();
+        MultipartConfigFactory factory = new MultipartConfigFactory();
+        factory.setMaxFileSize(DataSize.ofBytes(threshold));
+        factory.setMaxRequestSize(DataSize.ofBytes(threshold + MULTIPART_OVERHEAD));
+        return factory.createMultipartConfig();
+    }
 }
@@ -0,0 +1,31 @@
+package com.cloud.file.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "file.download.cache")
+@Data
+public class DownloadCacheProperties {
+
+    /**
+     * Keep hot objects served by the proxy download path on local disk (opt-in)
+     */
+    private boolean enabled = false;
+
+    /**
+     * Cache directory; wiped on startup since the index lives in memory
+     */
+    private String directory = System.getProperty("java.io.tmpdir") + "/file-service-cache";
+
+    /**
+     * Total disk budget in bytes (10GB)
+     */
+    private long maxSizeBytes = 10737418240L;
+
+    /**
+     * Larger objects are not cached and are downloaded straight from S3 with a presigned URL (32MB)
+     */
+    private long maxObjectSize = 33554432L;
+}
@@ -0,0 +1,30 @@
+package com.cloud.file.config;
+
+import feign.RequestInterceptor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+@Configuration
+public class FeignConfig {
+
+    private static final String USER_ID_HEADER = "X-User-Id";
+
+    /**
+     * Forward the caller's user id to the metadata service, which keeps a user's reads on its
+     * primary database for a short while after their writes (read-your-writes across replicas)
+     */
+    @Bean
+    public RequestInterceptor userIdForwardingInterceptor() {
+        return template -> {
+            if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+                    && !template.headers().containsKey(USER_ID_HEADER)) {
+                String userId = attributes.getRequest().getHeader(USER_ID_HEADER);
+                if (userId != null) {
+                    template.header(USER_ID_HEADER, userId);
+                }
+            }
+        };
+    }
+}
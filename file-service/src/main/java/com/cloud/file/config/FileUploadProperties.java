@@ -4,6 +4,8 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+
 @Configuration
 @ConfigurationProperties(prefix = "file.upload")
 @Data
@@ -24,8 +26,165 @@ public class FileUploadProperties {
      */
     private long maxChunkSize = 104857600;
 
+    /**
+     * Files up to this size (5MB) can be uploaded with a single PUT instead of a chunked session
+     */
+    private long singleUploadThreshold = 5242880;
+
+    /**
+     * Files up to this size (16KB) are stored inline in metadata-service instead of S3
+     */
+    private long inlineThreshold = 16384;
+
     /**
      * Upload session timeout in hours
      */
     private int sessionTimeoutHours = 24;
+
+    /**
+     * Maximum concurrent S3 requests used to parallelise copies and batch operations
+     */
+    private int transferParallelism = 8;
+
+    /**
+     * Part size for server-side UploadPartCopy of objects above 5GB (512MB)
+     */
+    private long copyPartSize = 536870912L;
+
+    /**
+     * Abandoned upload sweeper settings
+     */
+    private Sweeper sweeper = new Sweeper();
+
+    /**
+     * Completion journal and reconciliation settings
+     */
+    private Recovery recovery = new Recovery();
+
+    /**
+     * Transparent chunk compression settings
+     */
+    private Compression compression = new Compression();
+
+    /**
+     * File version retention settings
+     */
+    private Versioning versioning = new Versioning();
+
+    /**
+     * Sweep of content-addressed chunks no file references any more
+     */
+    private ChunkReclaim chunkReclaim = new ChunkReclaim();
+
+    @Data
+    public static class Versioning {
+
+        /**
+         * Completed versions kept per file; older ones are pruned after each new version
+         */
+        private int retainedVersions = 10;
+    }
+
+    @Data
+    public static class Compression {
+
+        /**
+         * Compress eligible uploads chunk by chunk (opt-in)
+         */
+        private boolean enabled = false;
+
+        /**
+         * Content type prefixes that are already compressed and never re-compressed
+         */
+        private List<String> skipContentTypes = List.of(
+                "image/", "video/", "audio/",
+                "application/zip", "application/gzip", "application/x-gzip",
+                "application/x-7z-compressed", "application/x-rar-compressed",
+                "application/x-bzip2", "application/x-xz", "application/zstd",
+                "application/pdf");
+
+        /**
+         * Number of leading bytes of a chunk used to estimate compressibility
+         */
+        private int sampleSize = 65536;
+
+        /**
+         * Minimum raw/compressed ratio of the sample for a chunk to be stored compressed
+         */
+        private double minRatio = 1.25;
+    }
+
+    @Data
+    public static class Sweeper {
+
+        /**
+         * Run the scheduled abandoned-upload sweeper
+         */
+        private boolean enabled = true;
+
+        /**
+         * Sessions claimed per metadata round trip
+         */
+        private int batchSize = 100;
+
+        /**
+         * How long a claimed batch stays hidden from other sweeper nodes
+         */
+        private int leaseSeconds = 900;
+    }
+
+    @Data
+    public static class Recovery {
+
+        /**
+         * Directory of the local completion journal; mount a volume here so entries survive restarts
+         */
+        private String journalDirectory = System.getProperty("java.io.tmpdir") + "/file-service-journal";
+
+        /**
+         * Journal entries younger than this may belong to a completion still in flight and are
+         * left alone
+         */
+        private int completionAgeSeconds = 300;
+
+        /**
+         * ACTIVE sessions idle at least this long are checked against S3, up to the session timeout
+         * less the lease; older ones are left to the abandoned-upload sweeper
+         */
+        private int reconcileIdleMinutes = 10;
+
+        /**
+         * Sessions claimed per reconciliation page
+         */
+        private int reconcileBatchSize = 200;
+
+        /**
+         * How long a checked session stays hidden from the reconciliation of every node
+         */
+        private int reconcileLeaseSeconds = 3600;
+    }
+
+    @Data
+    public static class ChunkReclaim {
+
+        /**
+         * Run the scheduled sweep
+         */
+        private boolean enabled = true;
+
+        /**
+         * Released chunks younger than this (24h) are kept, since an upload may still reference them
+         */
+        private int graceSeconds = 86400;
+
+        /**
+         * Chunks claimed per metadata round trip
+         */
+        private int batchSize = 500;
+
+        /**
+         * How long a claimed batch stays hidden from other sweepers and blocks new references
+         */
+        private int leaseSeconds = 900;
+    }
 }
@@ -4,9 +4,10 @@ import com.cloud.file.dto.*;
 import com.cloud.file.service.ChunkUploadService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile; // Not used unless we accept multipart request for chunk data
+import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 
@@ -22,11 +23,35 @@ public class ChunkUploadController {
         return ResponseEntity.ok(chunkUploadService.initiateUpload(request));
     }
 
+    @PostMapping(value = "/single", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<CompleteUploadResponse> uploadSmallFile(
+            @RequestParam("file") MultipartFile file,
+            @RequestHeader("X-User-Id") String userId) throws IOException {
+        return ResponseEntity.ok(chunkUploadService.uploadSmallFile(file.getOriginalFilename(),
+                file.getContentType(), file.getBytes(), userId));
+    }
+
     @PostMapping("/chunk")
     public ResponseEntity<ChunkUploadResponse> uploadChunk(@Valid @RequestBody ChunkUploadRequest request) {
         return ResponseEntity.ok(chunkUploadService.uploadChunk(request));
     }
 
+    @PostMapping("/chunks/lookup")
+    public ResponseEntity<ChunkLookupResponse> lookupChunks(@Valid @RequestBody ChunkLookupRequest request) {
+        return ResponseEntity.ok(chunkUploadService.lookupChunks(request));
+    }
+
+    @PostMapping("/chunk/ref")
+    public ResponseEntity<ChunkUploadResponse> registerChunkReference(
+            @Valid @RequestBody ChunkReferenceRequest request) {
+        return ResponseEntity.ok(chunkUploadService.registerChunkReference(request));
+    }
+
+    @GetMapping("/{fileId}/progress")
+    public ResponseEntity<UploadProgressResponse> getProgress(@PathVariable String fileId) {
+        return ResponseEntity.ok(chunkUploadService.getProgress(fileId));
+    }
+
     @PostMapping("/complete")
     public ResponseEntity<CompleteUploadResponse> completeUpload(@Valid @RequestBody CompleteUploadRequest request) {
         return ResponseEntity.ok(chunkUploadService.completeUpload(request));
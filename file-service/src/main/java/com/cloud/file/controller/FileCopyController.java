@@ -0,0 +1,24 @@
+package com.cloud.file.controller;
+
+import com.cloud.file.dto.CompleteUploadResponse;
+import com.cloud.file.dto.CopyFileRequest;
+import com.cloud.file.service.FileCopyService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/files")
+@RequiredArgsConstructor
+public class FileCopyController {
+
+    private final FileCopyService fileCopyService;
+
+    @PostMapping("/{fileId}/copy")
+    public ResponseEntity<CompleteUploadResponse> copyFile(
+            @PathVariable String fileId,
+            @RequestHeader("X-User-Id") String userId,
+            @RequestBody(required = false) CopyFileRequest request) {
+        return ResponseEntity.ok(fileCopyService.copyFile(fileId, userId, request));
+    }
+}
@@ -1,11 +1,21 @@
 package com.cloud.file.controller;
 
 import com.cloud.file.service.FileDownloadService;
+import com.cloud.file.storage.DiskObjectCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
 import java.util.Collections;
 import java.util.Map;
 
@@ -26,4 +36,48 @@ public class FileDownloadController {
 
         return ResponseEntity.ok(Collections.singletonMap("downloadUrl", url));
     }
+
+    /**
+     * Proxy download: streams the file through file-service, decoding compressed chunks
+     */
+    @GetMapping("/{fileId}/content")
+    public ResponseEntity<?> getContent(
+            @PathVariable String fileId,
+            @RequestHeader("X-User-Id") String userId) {
+
+        FileDownloadService.FileContent content = fileDownloadService.openContent(fileId, userId);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(content.getFileName())
+                        .build()
+                        .toString())
+                .contentType(content.getContentType() != null
+                        ? MediaType.parseMediaType(content.getContentType())
+                        : MediaType.APPLICATION_OCTET_STREAM);
+
+        if (content.getCached() != null) {
+            return serveFile(content.getCached(), response);
+        }
+
+        if (content.getContentLength() != null) {
+            response.contentLength(content.getContentLength());
+        }
+        return response.body((StreamingResponseBody) out -> {
+            try (InputStream in = content.getStream()) {
+                in.transferTo(out);
+            }
+        });
+    }
+
+    /**
+     * Serve a locally cached file as a file resource, which the container writes straight from
+     * disk and cuts to any requested byte range. The lease keeps the file on disk until the
+     * request completes, even if the cache evicts it meanwhile.
+     */
+    private ResponseEntity<Resource> serveFile(DiskObjectCache.Lease cached, ResponseEntity.BodyBuilder response) {
+        RequestContextHolder.currentRequestAttributes().registerDestructionCallback(
+                DiskObjectCache.Lease.class.getName(), cached::close, RequestAttributes.SCOPE_REQUEST);
+        return response.body(new FileSystemResource(cached.getFile()));
+    }
 }
@@ -0,0 +1,43 @@
+package com.cloud.file.controller;
+
+import com.cloud.file.dto.FileVersionResponse;
+import com.cloud.file.service.FileVersionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/files")
+@RequiredArgsConstructor
+public class FileVersionController {
+
+    private final FileVersionService fileVersionService;
+
+    @GetMapping("/{fileId}/versions")
+    public ResponseEntity<List<FileVersionResponse>> listVersions(
+            @PathVariable String fileId,
+            @RequestHeader("X-User-Id") String userId) {
+        return ResponseEntity.ok(fileVersionService.listVersions(fileId, userId));
+    }
+
+    @PostMapping("/{fileId}/versions/{versionNumber}/restore")
+    public ResponseEntity<FileVersionResponse> restoreVersion(
+            @PathVariable String fileId,
+            @PathVariable int versionNumber,
+            @RequestHeader("X-User-Id") String userId) {
+        return ResponseEntity.ok(fileVersionService.restoreVersion(fileId, versionNumber, userId));
+    }
+
+    /**
+     * Delete a file with every version of it
+     */
+    @DeleteMapping("/{fileId}")
+    public ResponseEntity<Void> deleteFile(
+            @PathVariable String fileId,
+            @RequestHeader("X-User-Id") String userId) {
+        fileVersionService.deleteFile(fileId, userId);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,21 @@
+package com.cloud.file.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChunkLookupRequest {
+
+    @NotBlank(message = "File ID is required")
+    private String fileId;
+
+    @NotNull(message = "Checksums are required")
+    private List<String> checksums; // SHA-256 hex of each content-defined chunk
+}
@@ -0,0 +1,17 @@
+package com.cloud.file.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ChunkLookupResponse {
+    private List<String> missing; // Checksums whose data must be uploaded, in request order
+    private List<String> known; // Checksums that can be registered by reference
+}
@@ -0,0 +1,30 @@
+package com.cloud.file.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChunkReferenceRequest {
+
+    @NotBlank(message = "File ID is required")
+    private String fileId;
+
+    @NotNull(message = "Chunk number is required")
+    @Positive(message = "Chunk number must be positive")
+    private Integer chunkNumber;
+
+    @NotBlank(message = "Checksum is required")
+    private String checksum;
+
+    /**
+     * Optional; the size is read from the stored chunk and a differing value is rejected
+     */
+    @Positive(message = "Chunk size must be positive")
+    private Long size;
+}
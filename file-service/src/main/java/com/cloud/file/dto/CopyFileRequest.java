@@ -0,0 +1,13 @@
+package com.cloud.file.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CopyFileRequest {
+
+    private String fileName; // Optional: defaults to the source file name
+}
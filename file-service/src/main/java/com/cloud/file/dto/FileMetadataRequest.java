@@ -1,16 +1,20 @@
 package com.cloud.file.dto;
 
 import lombok.AllArgsConstructor;
+import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+@Builder
 public class FileMetadataRequest {
     private String fileName;
     private String fileType;
     private long size;
     private String s3Key;
     private String owner;
+    private Integer totalChunks;
+    private String contentEncoding;
 }
@@ -0,0 +1,21 @@
+package com.cloud.file.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class FileVersionResponse {
+
+    private String fileId;
+    private Integer versionNumber;
+    private String fileName;
+    private Long fileSize;
+    private LocalDateTime uploadedAt;
+}
@@ -23,4 +23,14 @@ public class InitiateUploadRequest {
     private String contentType;
 
     private String owner; // Will be extracted from JWT in production
+
+    private String chunkingScheme; // "fastcdc" for content-defined chunks; null for fixed-size chunks
+
+    private Integer totalChunks; // Required with content-defined chunking, where the client picks boundaries
+
+    private Long previousVersionId; // Upload a new version of this file instead of an unrelated file
+
+    public InitiateUploadRequest(String fileName, Long fileSize, String contentType, String owner) {
+        this(fileName, fileSize, contentType, owner, null, null, null);
+    }
 }
@@ -0,0 +1,20 @@
+package com.cloud.file.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class UploadProgressResponse {
+
+    private String fileId;
+    private String status;
+    private Integer totalChunks;
+    private Integer receivedChunks;
+    private Long fileSize;
+    private Long receivedBytes;
+}
@@ -0,0 +1,7 @@
+package com.cloud.file.exception;
+
+public class ChunkIntegrityException extends FileStorageException {
+    public ChunkIntegrityException(String message) {
+        super(message, "CHUNK_INTEGRITY");
+    }
+}
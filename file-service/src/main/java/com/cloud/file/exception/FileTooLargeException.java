@@ -0,0 +1,7 @@
+package com.cloud.file.exception;
+
+public class FileTooLargeException extends FileStorageException {
+    public FileTooLargeException(String message) {
+        super(message, "FILE_TOO_LARGE");
+    }
+}
@@ -1,20 +1,26 @@
 package com.cloud.file.exception;
 
+import com.cloud.file.config.FileUploadProperties;
 import com.cloud.file.dto.ErrorResponse;
 import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
 import java.time.LocalDateTime;
 
 @RestControllerAdvice
+@RequiredArgsConstructor
 @Slf4j
 public class GlobalExceptionHandler {
 
+    private final FileUploadProperties fileUploadProperties;
+
     @ExceptionHandler(UploadSessionNotFoundException.class)
     public ResponseEntity<ErrorResponse> handleNotFound(UploadSessionNotFoundException ex, HttpServletRequest request) {
         return buildResponse(HttpStatus.NOT_FOUND, ex, request);
@@ -26,6 +32,29 @@ public class GlobalExceptionHandler {
         return buildResponse(HttpStatus.CONFLICT, ex, request);
     }
 
+    @ExceptionHandler(FileTooLargeException.class)
+    public ResponseEntity<ErrorResponse> handleTooLarge(FileTooLargeException ex, HttpServletRequest request) {
+        return buildResponse(HttpStatus.PAYLOAD_TOO_LARGE, ex, request);
+    }
+
+    /**
+     * Single-request uploads over the limit are rejected while the servlet parses the request,
+     * before the upload service can throw {@link FileTooLargeException}
+     */
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<ErrorResponse> handleUploadTooLarge(MaxUploadSizeExceededException ex,
+            HttpServletRequest request) {
+        return buildResponse(HttpStatus.PAYLOAD_TOO_LARGE, new FileTooLargeException(
+                "Single-request upload is limited to " + fileUploadProperties.getSingleUploadThreshold()
+                        + " bytes. Use the chunked upload API instead."), request);
+    }
+
+    @ExceptionHandler(ChunkIntegrityException.class)
+    public ResponseEntity<ErrorResponse> handleChunkIntegrity(ChunkIntegrityException ex,
+            HttpServletRequest request) {
+        return buildResponse(HttpStatus.BAD_REQUEST, ex, request);
+    }
+
     @ExceptionHandler(S3UploadFailedException.class)
     public ResponseEntity<ErrorResponse> handleS3Error(S3UploadFailedException ex, HttpServletRequest request) {
         log.error("S3 Operation Failed: {}", ex.getMessage(), ex);
@@ -1,6 +1,10 @@
 package com.cloud.file.exception;
 
 public class S3UploadFailedException extends FileStorageException {
+    public S3UploadFailedException(String message) {
+        super(message, "S3_UPLOAD_FAILED");
+    }
+
     public S3UploadFailedException(String message, Throwable cause) {
         super(message, "S3_UPLOAD_FAILED", cause);
     }
@@ -0,0 +1,115 @@
+package com.cloud.file.service;
+
+import com.cloud.file.client.MetadataClient;
+import com.cloud.file.client.dto.MetadataAbortSessionsRequest;
+import com.cloud.file.client.dto.MetadataStaleSession;
+import com.cloud.file.client.dto.MetadataStaleSessionClaimRequest;
+import com.cloud.file.config.FileUploadProperties;
+import com.cloud.file.storage.S3MultipartService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Scheduled cleanup of upload sessions that were never completed (Known Issue #2).
+ * Safe to run on several nodes: metadata-service leases each claimed page to one sweeper.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(prefix = "file.upload.sweeper", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class AbandonedUploadSweeper {
+
+    private final MetadataClient metadataClient;
+    private final S3MultipartService s3MultipartService;
+    private final FileUploadProperties fileUploadProperties;
+    private final ExecutorService s3TransferExecutor;
+
+    @Scheduled(fixedDelayString = "${file.upload.sweeper.interval-ms:900000}",
+            initialDelayString = "${file.upload.sweeper.interval-ms:900000}")
+    public void scheduledSweep() {
+        try {
+            sweep();
+        } catch (Exception e) {
+            log.error("Abandoned upload sweep failed", e);
+        }
+    }
+
+    /**
+     * Sweep all stale sessions page by page. Sessions are aborted in metadata first, so one that
+     * completes meanwhile keeps its data; storage is released only for the sessions that were
+     * actually aborted.
+     *
+     * @return number of sessions transitioned to ABORTED
+     */
+    public int sweep() {
+        FileUploadProperties.Sweeper settings = fileUploadProperties.getSweeper();
+        long afterId = 0L;
+        int swept = 0;
+        long unreleased = 0;
+
+        while (true) {
+            List<MetadataStaleSession> batch = metadataClient.claimStaleSessions(
+                    MetadataStaleSessionClaimRequest.builder()
+                            .idleHours(fileUploadProperties.getSessionTimeoutHours())
+                            .afterId(afterId)
+                            .limit(settings.getBatchSize())
+                            .leaseSeconds(settings.getLeaseSeconds())
+                            .build());
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            Set<Long> aborted = new HashSet<>(metadataClient.abortSessions(new MetadataAbortSessionsRequest(
+                    batch.stream().map(MetadataStaleSession::getId).toList())));
+            swept += aborted.size();
+
+            // Release the S3 side with bounded parallelism
+            unreleased += batch.stream()
+                    .filter(session -> aborted.contains(session.getId()))
+                    .map(session -> CompletableFuture.supplyAsync(() -> releaseStorage(session), s3TransferExecutor))
+                    .toList()
+                    .stream()
+                    .map(CompletableFuture::join)
+                    .filter(released -> !released)
+                    .count();
+            afterId = batch.get(batch.size() - 1).getId();
+
+            if (batch.size() < settings.getBatchSize()) {
+                break;
+            }
+        }
+
+        if (unreleased > 0) {
+            log.error("Swept {} abandoned upload sessions; storage of {} could not be released", swept, unreleased);
+        } else {
+            log.info("Swept {} abandoned upload sessions", swept);
+        }
+        return swept;
+    }
+
+    /**
+     * @return whether the session's storage was released
+     */
+    private boolean releaseStorage(MetadataStaleSession session) {
+        try {
+            if (session.getContentEncoding() != null) {
+                s3MultipartService.deleteSegments(session.getS3Key(), session.getTotalChunks());
+            } else if (session.getUploadId() != null) {
+                s3MultipartService.abortMultipartUpload(session.getUploadId(), session.getS3Key());
+            }
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to release storage of aborted session {} ({})", session.getId(), session.getS3Key(), e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.cloud.file.service;
+
+import com.cloud.file.client.MetadataClient;
+import com.cloud.file.client.dto.MetadataReleasedChunkClaimRequest;
+import com.cloud.file.config.FileUploadProperties;
+import com.cloud.file.storage.S3MultipartService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Sweep of content-addressed chunk objects that deleted and pruned versions left unreferenced.
+ * metadata-service marks them when they are released; they are deleted only after the grace
+ * period, so an upload that stored or looked up a chunk just before it was released can still
+ * reference it. Safe to run on several nodes: each claimed page is leased to one sweeper.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(prefix = "file.upload.chunk-reclaim", name = "enabled", havingValue = "true",
+        matchIfMissing = true)
+public class ChunkReclaimer {
+
+    private final MetadataClient metadataClient;
+    private final S3MultipartService s3MultipartService;
+    private final FileUploadProperties fileUploadProperties;
+
+    @Scheduled(fixedDelayString = "${file.upload.chunk-reclaim.interval-ms:3600000}",
+            initialDelayString = "${file.upload.chunk-reclaim.interval-ms:3600000}")
+    public void scheduledReclaim() {
+        try {
+            reclaim();
+        } catch (Exception e) {
+            log.error("Released chunk sweep failed", e);
+        }
+    }
+
+    /**
+     * @return number of chunk objects deleted
+     */
+    public int reclaim() {
+        FileUploadProperties.ChunkReclaim settings = fileUploadProperties.getChunkReclaim();
+        int reclaimed = 0;
+
+        while (true) {
+            List<String> checksums = metadataClient.claimReleasedChunks(MetadataReleasedChunkClaimRequest.builder()
+                    .minAgeSeconds(settings.getGraceSeconds())
+                    .limit(settings.getBatchSize())
+                    .leaseSeconds(settings.getLeaseSeconds())
+                    .build());
+            if (checksums.isEmpty()) {
+                break;
+            }
+
+            // Confirmed only after the delete; an unconfirmed claim is taken again once its lease expires
+            s3MultipartService.deleteObjects(checksums.stream()
+                    .map(s3MultipartService::contentAddressedKey)
+                    .toList());
+            metadataClient.confirmSweptChunks(checksums);
+            reclaimed += checksums.size();
+
+            if (checksums.size() < settings.getBatchSize()) {
+                break;
+            }
+        }
+
+        if (reclaimed > 0) {
+            log.info("Deleted {} released chunk objects", reclaimed);
+        }
+        return reclaimed;
+    }
+}
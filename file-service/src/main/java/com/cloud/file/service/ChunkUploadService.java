@@ -1,22 +1,33 @@
 package com.cloud.file.service;
 
+import com.cloud.chunking.ChunkHasher;
+import com.cloud.chunking.FastCdc;
 import com.cloud.file.client.MetadataClient;
 import com.cloud.file.client.dto.FileMetadataResponse;
 import com.cloud.file.client.dto.MetadataAddChunkRequest;
-import com.cloud.file.client.dto.MetadataChunkResponse;
 import com.cloud.file.client.dto.MetadataInitiateRequest;
+import com.cloud.file.client.dto.MetadataInlineFileRequest;
+import com.cloud.file.client.dto.MetadataKnownChunksRequest;
+import com.cloud.file.client.dto.MetadataPartsResponse;
+import com.cloud.file.client.dto.MetadataUploadProgress;
+import com.cloud.file.config.FileUploadProperties;
+import com.cloud.file.config.S3Properties;
 import com.cloud.file.dto.*;
 import com.cloud.file.exception.*;
+import com.cloud.file.storage.ChunkCompressor;
+import com.cloud.file.storage.CompletionJournal;
 import com.cloud.file.storage.S3MultipartService;
 import feign.FeignException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -25,6 +36,11 @@ public class ChunkUploadService {
 
         private final S3MultipartService s3MultipartService;
         private final MetadataClient metadataClient;
+        private final ChunkCompressor chunkCompressor;
+        private final CompletionJournal completionJournal;
+        private final FileUploadProperties fileUploadProperties;
+        private final S3Properties s3Properties;
+        private final FileVersionService fileVersionService;
 
         @Value("${app.chunk.size:5242880}") // Default 5MB
         private long defaultChunkSize;
@@ -35,15 +51,45 @@ public class ChunkUploadService {
         public InitiateUploadResponse initiateUpload(InitiateUploadRequest request) {
                 log.info("Initiating upload for file: {}", request.getFileName());
 
+                boolean contentDefined = FastCdc.SCHEME.equals(request.getChunkingScheme());
+                if (request.getChunkingScheme() != null && !contentDefined) {
+                        throw new InvalidUploadStateException("Unsupported chunking scheme: "
+                                        + request.getChunkingScheme());
+                }
+                if (contentDefined && (request.getTotalChunks() == null || request.getTotalChunks() <= 0)) {
+                        throw new InvalidUploadStateException(
+                                        "Total chunks is required for content-defined chunking");
+                }
+
+                if (request.getPreviousVersionId() != null) {
+                        FileMetadataResponse previous = getMetadataSafely(request.getPreviousVersionId());
+                        if (!previous.getOwner().equals(request.getOwner())) {
+                                log.warn("Access Denied: User {} attempted to version file {} owned by {}",
+                                                request.getOwner(), previous.getId(), previous.getOwner());
+                                throw new UnauthorizedAccessException("You are not authorized to access this file.");
+                        }
+                }
+
                 try {
-                        // 1. Initiate Multipart Upload in S3
-                        S3MultipartService.MultipartInitResult initResult = s3MultipartService
-                                        .initiateMultipartUpload(request.getFileName(), request.getContentType());
-                        String s3UploadId = initResult.getUploadId();
-                        String s3Key = initResult.getS3Key();
+                        // 1. Initiate Multipart Upload in S3, unless the upload is stored as
+                        // independently compressed segments or content-addressed chunks
+                        String contentEncoding = contentDefined ? null
+                                        : chunkCompressor.selectEncoding(request.getContentType());
+                        String s3UploadId = null;
+                        String s3Key;
+                        if (contentEncoding != null || contentDefined) {
+                                s3Key = s3MultipartService.generateS3Key(request.getFileName());
+                        } else {
+                                S3MultipartService.MultipartInitResult initResult = s3MultipartService
+                                                .initiateMultipartUpload(request.getFileName(),
+                                                                request.getContentType());
+                                s3UploadId = initResult.getUploadId();
+                                s3Key = initResult.getS3Key();
+                        }
 
-                        // 2. Calculate chunks
-                        int totalChunks = (int) Math.ceil((double) request.getFileSize() / defaultChunkSize);
+                        // 2. Calculate chunks (content-defined boundaries are chosen by the client)
+                        int totalChunks = contentDefined ? request.getTotalChunks()
+                                        : (int) Math.ceil((double) request.getFileSize() / defaultChunkSize);
 
                         // 3. Create Session in Metadata Service
                         MetadataInitiateRequest metadataRequest = MetadataInitiateRequest.builder()
@@ -54,6 +100,9 @@ public class ChunkUploadService {
                                         .totalChunks(totalChunks)
                                         .size(request.getFileSize())
                                         .contentType(request.getContentType())
+                                        .contentEncoding(contentEncoding)
+                                        .chunkingScheme(request.getChunkingScheme())
+                                        .previousVersionId(request.getPreviousVersionId())
                                         .build();
 
                         Long fileId = metadataClient.initiateSession(metadataRequest);
@@ -80,6 +129,163 @@ public class ChunkUploadService {
                 }
         }
 
+        /**
+         * Single-request upload for small files: one PutObject and one metadata insert
+         * (already COMPLETED), with no multipart upload or session in between.
+         */
+        public CompleteUploadResponse uploadSmallFile(String fileName, String contentType, byte[] data,
+                        String owner) {
+                long threshold = fileUploadProperties.getSingleUploadThreshold();
+                if (data.length > threshold) {
+                        throw new FileTooLargeException("Single-request upload is limited to " + threshold
+                                        + " bytes. Use the chunked upload API instead.");
+                }
+
+                if (data.length <= fileUploadProperties.getInlineThreshold()) {
+                        return storeInline(fileName, contentType, data, owner);
+                }
+
+                String s3Key = s3MultipartService.generateS3Key(fileName);
+                String contentEncoding = chunkCompressor.selectEncoding(contentType);
+                if (contentEncoding != null) {
+                        // Keep the segmented layout so downloads decode it like a chunked upload
+                        ChunkCompressor.EncodedChunk encoded = chunkCompressor.encode(data, contentEncoding);
+                        s3MultipartService.putSegment(s3Key, 1, encoded.getData(), encoded.getContentEncoding());
+                } else {
+                        s3MultipartService.putObject(s3Key, data, contentType);
+                }
+
+                FileMetadataResponse saved;
+                try {
+                        saved = metadataClient.createFile(FileMetadataRequest.builder()
+                                        .fileName(fileName)
+                                        .fileType(contentType)
+                                        .size(data.length)
+                                        .s3Key(s3Key)
+                                        .owner(owner)
+                                        .totalChunks(1)
+                                        .contentEncoding(contentEncoding)
+                                        .build());
+                } catch (FeignException e) {
+                        log.error("File stored at {} but metadata registration failed", s3Key, e);
+                        throw new MetadataClientException("Failed to register uploaded file", e);
+                }
+
+                log.info("Single-request upload completed. FileId: {}, size: {}", saved.getId(), data.length);
+
+                return CompleteUploadResponse.builder()
+                                .fileId(String.valueOf(saved.getId()))
+                                .fileName(saved.getFileName())
+                                .fileSize(saved.getSize())
+                                .totalChunks(1)
+                                .status(saved.getStatus())
+                                .message("File uploaded successfully")
+                                .build();
+        }
+
+        /**
+         * Tiny files skip S3 entirely; their bytes are kept next to the metadata row
+         */
+        private CompleteUploadResponse storeInline(String fileName, String contentType, byte[] data, String owner) {
+                FileMetadataResponse saved;
+                try {
+                        saved = metadataClient.createInlineFile(MetadataInlineFileRequest.builder()
+                                        .fileName(fileName)
+                                        .fileType(contentType)
+                                        .owner(owner)
+                                        .data(data)
+                                        .build());
+                } catch (FeignException e) {
+                        throw new MetadataClientException("Failed to store inline file", e);
+                }
+
+                log.info("Stored file inline. FileId: {}, size: {}", saved.getId(), data.length);
+
+                return CompleteUploadResponse.builder()
+                                .fileId(String.valueOf(saved.getId()))
+                                .fileName(saved.getFileName())
+                                .fileSize(saved.getSize())
+                                .totalChunks(1)
+                                .status(saved.getStatus())
+                                .message("File uploaded successfully")
+                                .build();
+        }
+
+        /**
+         * Content-defined chunking: report which chunk hashes still need their bytes uploaded.
+         * Chunks this owner already stored can be registered by reference instead.
+         */
+        public ChunkLookupResponse lookupChunks(ChunkLookupRequest request) {
+                Long fileId = parseFileId(request.getFileId());
+                FileMetadataResponse fileMetadata = getMetadataSafely(fileId);
+                requireContentDefined(fileMetadata);
+
+                Set<String> known = new HashSet<>(findKnownChecksums(fileMetadata.getOwner(),
+                                request.getChecksums()));
+                List<String> missing = request.getChecksums().stream()
+                                .filter(checksum -> !known.contains(checksum))
+                                .distinct()
+                                .toList();
+
+                return ChunkLookupResponse.builder()
+                                .missing(missing)
+                                .known(List.copyOf(known))
+                                .build();
+        }
+
+        /**
+         * Content-defined chunking: add a chunk whose bytes are already stored, without transferring it
+         */
+        public ChunkUploadResponse registerChunkReference(ChunkReferenceRequest request) {
+                Long fileId = parseFileId(request.getFileId());
+                FileMetadataResponse fileMetadata = getMetadataSafely(fileId);
+                requireContentDefined(fileMetadata);
+
+                // Only hashes the owner stored themselves: knowing a hash must not grant its content
+                if (!findKnownChecksums(fileMetadata.getOwner(), List.of(request.getChecksum()))
+                                .contains(request.getChecksum())) {
+                        throw new InvalidUploadStateException(
+                                        "Chunk " + request.getChecksum() + " is not stored yet. Upload its data.");
+                }
+
+                // The recorded size feeds Content-Length and quota, so it comes from the stored object
+                HeadObjectResponse stored = s3MultipartService.headObject(
+                                s3MultipartService.contentAddressedKey(request.getChecksum()));
+                if (stored == null) {
+                        throw new InvalidUploadStateException(
+                                        "Chunk " + request.getChecksum() + " is not stored yet. Upload its data.");
+                }
+                long size = stored.contentLength();
+                if (request.getSize() != null && request.getSize() != size) {
+                        throw new InvalidUploadStateException("Chunk " + request.getChecksum() + " is " + size
+                                        + " bytes, not " + request.getSize());
+                }
+
+                try {
+                        metadataClient.addChunk(fileId, MetadataAddChunkRequest.builder()
+                                        .chunkNumber(request.getChunkNumber())
+                                        .etag(request.getChecksum())
+                                        .size(size)
+                                        .checksum(request.getChecksum())
+                                        .build());
+                } catch (FeignException e) {
+                        if (e.status() == 409) {
+                                throw new InvalidUploadStateException(
+                                                "Metadata rejected chunk reference: " + e.getMessage());
+                        }
+                        throw new MetadataClientException(
+                                        "Failed to update metadata for chunk " + request.getChunkNumber(), e);
+                }
+
+                return ChunkUploadResponse.builder()
+                                .chunkNumber(request.getChunkNumber())
+                                .etag(request.getChecksum())
+                                .chunkSize(size)
+                                .status("REFERENCED")
+                                .message("Chunk already stored; registered by reference")
+                                .build();
+        }
+
         /**
          * Upload Chunk
          */
@@ -98,16 +304,37 @@ public class ChunkUploadService {
                                         "Upload is in " + fileMetadata.getStatus() + " state. Cannot add chunks.");
                 }
 
+                String checksum = null;
+                if (FastCdc.SCHEME.equals(fileMetadata.getChunkingScheme())) {
+                        checksum = verifyContentDefinedChunk(request);
+                }
+
                 try {
                         // 2. Upload to S3
-                        String etag = s3MultipartService.uploadPart(fileMetadata.getUploadId(), fileMetadata.getS3Key(),
-                                        request.getChunkNumber(), request.getChunkData());
+                        String etag;
+                        if (checksum != null) {
+                                // Content-addressed: identical chunks of any version share one object
+                                s3MultipartService.putObject(s3MultipartService.contentAddressedKey(checksum),
+                                                request.getChunkData(), null);
+                                etag = checksum;
+                        } else if (fileMetadata.getContentEncoding() != null) {
+                                ChunkCompressor.EncodedChunk encoded = chunkCompressor.encode(request.getChunkData(),
+                                                fileMetadata.getContentEncoding());
+                                etag = s3MultipartService.putSegment(fileMetadata.getS3Key(),
+                                                request.getChunkNumber(), encoded.getData(),
+                                                encoded.getContentEncoding());
+                        } else {
+                                etag = s3MultipartService.uploadPart(fileMetadata.getUploadId(),
+                                                fileMetadata.getS3Key(), request.getChunkNumber(),
+                                                request.getChunkData());
+                        }
 
                         // 3. Update Metadata Service
                         MetadataAddChunkRequest chunkRequest = MetadataAddChunkRequest.builder()
                                         .chunkNumber(request.getChunkNumber())
                                         .etag(etag)
                                         .size((long) request.getChunkData().length)
+                                        .checksum(checksum)
                                         .build();
 
                         metadataClient.addChunk(fileId, chunkRequest);
@@ -143,6 +370,30 @@ public class ChunkUploadService {
                 }
         }
 
+        /**
+         * Upload progress from the counters metadata-service keeps per session
+         */
+        public UploadProgressResponse getProgress(String fileIdStr) {
+                Long fileId = parseFileId(fileIdStr);
+                MetadataUploadProgress progress;
+                try {
+                        progress = metadataClient.getProgress(fileId);
+                } catch (FeignException.NotFound e) {
+                        throw new UploadSessionNotFoundException(String.valueOf(fileId));
+                } catch (FeignException e) {
+                        throw new MetadataClientException("Failed to retrieve upload progress", e);
+                }
+
+                return UploadProgressResponse.builder()
+                                .fileId(String.valueOf(fileId))
+                                .status(progress.getStatus())
+                                .totalChunks(progress.getTotalChunks())
+                                .receivedChunks(progress.getReceivedChunks())
+                                .fileSize(progress.getSize())
+                                .receivedBytes(progress.getReceivedBytes())
+                                .build();
+        }
+
         /**
          * Complete Upload
          */
@@ -167,39 +418,61 @@ public class ChunkUploadService {
                 }
 
                 try {
-                        // 2. Get chunks from Metadata
-                        List<MetadataChunkResponse> chunks = metadataClient.getUploadedChunks(fileId);
-
-                        // Validate completeness (Metadata Service also does this, but failing fast here
-                        // saves an S3 call)
-                        // Note: Metadata Service getUploadedChunks returns list. We assume simple count
-                        // check.
-                        // S3 requires all parts.
-
-                        List<S3MultipartService.CompletedPartInfo> s3Parts = chunks.stream()
-                                        .sorted(Comparator.comparingInt(MetadataChunkResponse::getChunkNumber))
-                                        .map(c -> new S3MultipartService.CompletedPartInfo(c.getChunkNumber(),
-                                                        c.getEtag()))
-                                        .collect(Collectors.toList());
-
-                        // 3. Complete in S3
-                        log.info("Completing S3 upload for fileId: {}", fileId);
-                        String fileUrl = s3MultipartService.completeMultipartUpload(fileMetadata.getUploadId(),
-                                        fileMetadata.getS3Key(), s3Parts);
+                        // 2-3. Complete in S3 (segmented and content-defined uploads are already
+                        // stored chunk by chunk)
+                        String fileUrl;
+                        int totalParts;
+                        if (fileMetadata.getContentEncoding() != null || fileMetadata.getChunkingScheme() != null) {
+                                completionJournal.begin(journalEntry(fileId, fileMetadata));
+                                fileUrl = String.format("s3://%s/%s", s3Properties.getBucket(), fileMetadata.getS3Key());
+                                totalParts = fileMetadata.getTotalChunks();
+                        } else {
+                                // Compact (partNumber, etag) list, already sorted by metadata-service
+                                MetadataPartsResponse parts = metadataClient.getCompletedParts(fileId);
+                                totalParts = parts.getPartNumbers().length;
+
+                                // Fail fast: S3 would happily assemble a subset of the parts
+                                Integer expectedParts = fileMetadata.getTotalChunks();
+                                if (expectedParts != null && totalParts != expectedParts) {
+                                        throw new InvalidUploadStateException(
+                                                        "Cannot complete upload. Missing chunks. Expected: "
+                                                                        + expectedParts + ", Found: " + totalParts);
+                                }
+
+                                List<S3MultipartService.CompletedPartInfo> s3Parts = new ArrayList<>(totalParts);
+                                for (int i = 0; i < totalParts; i++) {
+                                        s3Parts.add(new S3MultipartService.CompletedPartInfo(parts.getPartNumbers()[i],
+                                                        parts.getEtags()[i]));
+                                }
+
+                                // Write-ahead: a crash past this point is finished by CompletionRecoveryService
+                                completionJournal.begin(journalEntry(fileId, fileMetadata));
+
+                                log.info("Completing S3 upload for fileId: {}", fileId);
+                                fileUrl = s3MultipartService.completeMultipartUpload(fileMetadata.getUploadId(),
+                                                fileMetadata.getS3Key(), s3Parts);
+                        }
 
                         // 4. Finalize Metadata
                         metadataClient.completeSession(fileId);
+                        completionJournal.clear(fileId);
+
+                        if (fileMetadata.getLogicalFileId() != null) {
+                                fileVersionService.applyRetention(fileId);
+                        }
 
                         return CompleteUploadResponse.builder()
                                         .fileId(String.valueOf(fileId))
                                         .fileName(fileMetadata.getFileName())
                                         .fileUrl(fileUrl)
                                         .fileSize(fileMetadata.getSize())
-                                        .totalChunks(s3Parts.size())
+                                        .totalChunks(totalParts)
                                         .status("COMPLETED")
                                         .message("File uploaded and assembled successfully")
                                         .build();
 
+                } catch (InvalidUploadStateException e) {
+                        throw e;
                 } catch (S3UploadFailedException e) {
                         log.error("S3 Completion Failed for fileId: {}", fileId, e);
                         // We do NOT abort automatically here to allow retries.
@@ -207,6 +480,7 @@ public class ChunkUploadService {
                 } catch (FeignException e) {
                         if (e.status() == 409) {
                                 // Metadata rejected completion (e.g. missing chunks)
+                                completionJournal.clear(fileId);
                                 throw new InvalidUploadStateException(
                                                 "Metadata rejected completion: " + e.getMessage());
                         }
@@ -222,6 +496,42 @@ public class ChunkUploadService {
                 }
         }
 
+        private String verifyContentDefinedChunk(ChunkUploadRequest request) {
+                byte[] data = request.getChunkData();
+                if (data.length > FastCdc.DEFAULT.getMaxSize()) {
+                        throw new ChunkIntegrityException("Content-defined chunk exceeds the maximum of "
+                                        + FastCdc.DEFAULT.getMaxSize() + " bytes");
+                }
+                String checksum = ChunkHasher.sha256Hex(data);
+                if (request.getChecksum() != null && !request.getChecksum().equalsIgnoreCase(checksum)) {
+                        throw new ChunkIntegrityException("Checksum mismatch for chunk " + request.getChunkNumber());
+                }
+                return checksum;
+        }
+
+        private void requireContentDefined(FileMetadataResponse fileMetadata) {
+                if (!FastCdc.SCHEME.equals(fileMetadata.getChunkingScheme())) {
+                        throw new InvalidUploadStateException("Upload does not use content-defined chunking");
+                }
+                if (!"ACTIVE".equals(fileMetadata.getStatus()) && !"PENDING".equals(fileMetadata.getStatus())) {
+                        throw new InvalidUploadStateException(
+                                        "Upload is in " + fileMetadata.getStatus() + " state. Cannot add chunks.");
+                }
+        }
+
+        private List<String> findKnownChecksums(String owner, List<String> checksums) {
+                try {
+                        return metadataClient.findKnownChunks(new MetadataKnownChunksRequest(owner, checksums));
+                } catch (FeignException e) {
+                        throw new MetadataClientException("Failed to look up stored chunks", e);
+                }
+        }
+
+        private CompletionJournal.Entry journalEntry(Long fileId, FileMetadataResponse fileMetadata) {
+                return new CompletionJournal.Entry(fileId, fileMetadata.getUploadId(),
+                                fileMetadata.getS3Key(), fileMetadata.getContentEncoding());
+        }
+
         private Long parseFileId(String fileIdStr) {
                 try {
                         return Long.parseLong(fileIdStr);
@@ -0,0 +1,180 @@
+package com.cloud.file.service;
+
+import com.cloud.file.client.MetadataClient;
+import com.cloud.file.client.dto.FileMetadataResponse;
+import com.cloud.file.client.dto.MetadataIdleSessionClaimRequest;
+import com.cloud.file.client.dto.MetadataStaleSession;
+import com.cloud.file.config.FileUploadProperties;
+import com.cloud.file.storage.CompletionJournal;
+import com.cloud.file.storage.S3MultipartService;
+import feign.FeignException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Finishes completions interrupted between S3 assembly and the metadata update (Known Issue #1).
+ * The local journal is replayed on startup and periodically; a slower reconciliation pass
+ * additionally checks idle ACTIVE sessions against S3 in case the journal was lost.
+ * Both leave recent completions alone, since those may still be in flight: journal entries
+ * younger than the completion age, and sessions touched within the reconcile idle time. The
+ * reconciliation leases the sessions it checks, so each is checked by one node per lease.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CompletionRecoveryService {
+
+    private final CompletionJournal completionJournal;
+    private final MetadataClient metadataClient;
+    private final S3MultipartService s3MultipartService;
+    private final FileUploadProperties fileUploadProperties;
+    private final ExecutorService s3TransferExecutor;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void replayOnStartup() {
+        int recovered = replayJournal();
+        if (recovered > 0) {
+            log.info("Recovered {} interrupted completions on startup", recovered);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${file.upload.recovery.interval-ms:60000}",
+            initialDelayString = "${file.upload.recovery.interval-ms:60000}")
+    public void scheduledRecovery() {
+        try {
+            replayJournal();
+            reconcileActiveSessions();
+        } catch (Exception e) {
+            log.error("Completion recovery failed", e);
+        }
+    }
+
+    /**
+     * Replay every pending journal entry in parallel
+     *
+     * @return number of files moved to COMPLETED
+     */
+    public int replayJournal() {
+        List<CompletionJournal.Entry> entries = completionJournal.pending(
+                Duration.ofSeconds(fileUploadProperties.getRecovery().getCompletionAgeSeconds()));
+        return entries.stream()
+                .map(entry -> CompletableFuture.supplyAsync(() -> replay(entry), s3TransferExecutor))
+                .toList()
+                .stream()
+                .mapToInt(future -> future.join() ? 1 : 0)
+                .sum();
+    }
+
+    /**
+     * Claim idle ACTIVE multipart sessions page by page and check them against S3
+     *
+     * @return number of files moved to COMPLETED
+     */
+    public int reconcileActiveSessions() {
+        FileUploadProperties.Recovery settings = fileUploadProperties.getRecovery();
+        long afterId = 0L;
+        int reconciled = 0;
+
+        while (true) {
+            List<MetadataStaleSession> page = metadataClient.claimIdleSessions(
+                    MetadataIdleSessionClaimRequest.builder()
+                            .status("ACTIVE")
+                            .idleMinutes(settings.getReconcileIdleMinutes())
+                            .maxIdleMinutes(maxReconcileIdleMinutes(settings))
+                            .afterId(afterId)
+                            .limit(settings.getReconcileBatchSize())
+                            .leaseSeconds(settings.getReconcileLeaseSeconds())
+                            .build());
+            if (page.isEmpty()) {
+                break;
+            }
+
+            reconciled += page.stream()
+                    .filter(session -> session.getUploadId() != null)
+                    .map(session -> CompletableFuture.supplyAsync(() -> reconcile(session), s3TransferExecutor))
+                    .toList()
+                    .stream()
+                    .mapToInt(future -> future.join() ? 1 : 0)
+                    .sum();
+            afterId = page.get(page.size() - 1).getId();
+
+            if (page.size() < settings.getReconcileBatchSize()) {
+                break;
+            }
+        }
+
+        if (reconciled > 0) {
+            log.info("Reconciled {} ACTIVE sessions already assembled in S3", reconciled);
+        }
+        return reconciled;
+    }
+
+    /**
+     * Sessions idle this long are left to the abandoned-upload sweeper. The reconciliation lease
+     * shares the sweeper's, so a session claimed here is released before the sweeper's timeout.
+     */
+    private int maxReconcileIdleMinutes(FileUploadProperties.Recovery settings) {
+        return fileUploadProperties.getSessionTimeoutHours() * 60 - settings.getReconcileLeaseSeconds() / 60;
+    }
+
+    private boolean replay(CompletionJournal.Entry entry) {
+        Long fileId = entry.getFileId();
+        try {
+            FileMetadataResponse metadata = metadataClient.getFile(fileId);
+            String status = metadata.getStatus();
+            if (!"ACTIVE".equals(status) && !"PENDING".equals(status)) {
+                // Already COMPLETED, or aborted/failed: nothing left to finish
+                completionJournal.clear(fileId);
+                return false;
+            }
+
+            // Segmented and content-defined uploads have no S3 assembly step; their objects
+            // are already in place
+            boolean assembled = entry.getUploadId() == null
+                    || s3MultipartService.headObject(entry.getS3Key()) != null;
+            if (assembled) {
+                metadataClient.completeSession(fileId);
+                completionJournal.clear(fileId);
+                log.info("Finished interrupted completion for fileId: {}", fileId);
+                return true;
+            }
+
+            if (s3MultipartService.isMultipartUploadOpen(entry.getUploadId(), entry.getS3Key())) {
+                // S3 never assembled the file; the client saw the failure and may retry
+                completionJournal.clear(fileId);
+            }
+            // Otherwise completion may still be in flight in S3; look again on the next pass
+            return false;
+        } catch (FeignException.NotFound e) {
+            completionJournal.clear(fileId);
+            return false;
+        } catch (Exception e) {
+            log.warn("Could not replay completion for fileId: {}. Will retry.", fileId, e);
+            return false;
+        }
+    }
+
+    private boolean reconcile(MetadataStaleSession session) {
+        try {
+            if (s3MultipartService.headObject(session.getS3Key()) == null) {
+                return false;
+            }
+            metadataClient.completeSession(session.getId());
+            completionJournal.clear(session.getId());
+            log.info("Reconciled fileId: {} (assembled in S3, was ACTIVE)", session.getId());
+            return true;
+        } catch (Exception e) {
+            log.warn("Could not reconcile fileId: {}", session.getId(), e);
+            return false;
+        }
+    }
+}
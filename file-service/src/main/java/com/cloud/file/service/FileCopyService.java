@@ -0,0 +1,207 @@
+package com.cloud.file.service;
+
+import com.cloud.file.client.MetadataClient;
+import com.cloud.file.client.dto.FileMetadataResponse;
+import com.cloud.file.client.dto.MetadataInlineFileRequest;
+import com.cloud.file.config.FileUploadProperties;
+import com.cloud.file.dto.CompleteUploadResponse;
+import com.cloud.file.dto.CopyFileRequest;
+import com.cloud.file.dto.FileMetadataRequest;
+import com.cloud.file.exception.InvalidUploadStateException;
+import com.cloud.file.exception.MetadataClientException;
+import com.cloud.file.exception.S3UploadFailedException;
+import com.cloud.file.exception.UnauthorizedAccessException;
+import com.cloud.file.exception.UploadSessionNotFoundException;
+import com.cloud.file.storage.S3MultipartService;
+import feign.FeignException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.IntStream;
+
+/**
+ * Duplicates files with S3 server-side copies; file bytes never pass through file-service.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FileCopyService {
+
+    private final MetadataClient metadataClient;
+    private final S3MultipartService s3MultipartService;
+    private final FileUploadProperties fileUploadProperties;
+    private final ExecutorService s3TransferExecutor;
+
+    public CompleteUploadResponse copyFile(String fileIdStr, String userId, CopyFileRequest request) {
+        FileMetadataResponse source = getAuthorizedMetadata(fileIdStr, userId);
+
+        if (!"COMPLETED".equals(source.getStatus())) {
+            throw new InvalidUploadStateException("Cannot copy file in state: " + source.getStatus());
+        }
+
+        String fileName = request != null && request.getFileName() != null
+                ? request.getFileName()
+                : source.getFileName();
+
+        if (source.isStoredInline()) {
+            return copyInline(source, fileName, userId);
+        }
+
+        if (source.getChunkingScheme() != null) {
+            // Content-addressed chunks are shared and never owned by a single key
+            throw new InvalidUploadStateException("Copying content-defined uploads is not supported");
+        }
+
+        String targetKey = s3MultipartService.generateS3Key(fileName);
+
+        long size;
+        if (source.getContentEncoding() != null) {
+            size = source.getSize();
+        } else {
+            HeadObjectResponse head = s3MultipartService.headObject(source.getS3Key());
+            if (head == null) {
+                throw new UploadSessionNotFoundException(String.valueOf(source.getId()));
+            }
+            size = head.contentLength();
+        }
+
+        FileMetadataResponse copy;
+        try {
+            if (source.getContentEncoding() != null) {
+                copySegments(source, targetKey);
+            } else {
+                s3MultipartService.copyObject(source.getS3Key(), targetKey, size, source.getFileType(),
+                        fileUploadProperties.getCopyPartSize());
+            }
+            copy = metadataClient.createFile(FileMetadataRequest.builder()
+                    .fileName(fileName)
+                    .fileType(source.getFileType())
+                    .size(size)
+                    .s3Key(targetKey)
+                    .owner(userId)
+                    .totalChunks(source.getTotalChunks())
+                    .contentEncoding(source.getContentEncoding())
+                    .build());
+        } catch (FeignException e) {
+            if (e.status() > 0) {
+                // Metadata-service answered with an error (e.g. over quota), so nothing references the copy
+                discardCopy(source, targetKey);
+            } else {
+                // Without an answer the row may have been written; deleting could leave it dangling
+                log.error("Copy of file {} stored at {} but metadata registration did not answer",
+                        source.getId(), targetKey, e);
+            }
+            throw new MetadataClientException("Failed to register copied file", e);
+        } catch (RuntimeException e) {
+            discardCopy(source, targetKey);
+            throw e;
+        }
+
+        log.info("Copied file {} to {} for user {}", source.getId(), copy.getId(), userId);
+
+        return CompleteUploadResponse.builder()
+                .fileId(String.valueOf(copy.getId()))
+                .fileName(copy.getFileName())
+                .fileSize(copy.getSize())
+                .totalChunks(copy.getTotalChunks())
+                .status(copy.getStatus())
+                .message("File copied successfully")
+                .build();
+    }
+
+    /**
+     * Inline files are tiny; copying them is a single metadata-service insert
+     */
+    private CompleteUploadResponse copyInline(FileMetadataResponse source, String fileName, String userId) {
+        FileMetadataResponse copy;
+        try {
+            copy = metadataClient.createInlineFile(MetadataInlineFileRequest.builder()
+                    .fileName(fileName)
+                    .fileType(source.getFileType())
+                    .owner(userId)
+                    .data(metadataClient.getInlineContent(source.getId()))
+                    .build());
+        } catch (FeignException e) {
+            throw new MetadataClientException("Failed to copy inline file", e);
+        }
+
+        log.info("Copied inline file {} to {} for user {}", source.getId(), copy.getId(), userId);
+
+        return CompleteUploadResponse.builder()
+                .fileId(String.valueOf(copy.getId()))
+                .fileName(copy.getFileName())
+                .fileSize(copy.getSize())
+                .totalChunks(copy.getTotalChunks())
+                .status(copy.getStatus())
+                .message("File copied successfully")
+                .build();
+    }
+
+    /**
+     * Segmented (compressed) files are copied segment by segment, in parallel. A failure is
+     * reported only once every copy has finished, so none lands after the caller cleans up.
+     */
+    private void copySegments(FileMetadataResponse source, String targetKey) {
+        CompletableFuture<?>[] copies = IntStream.rangeClosed(1, source.getTotalChunks())
+                .mapToObj(part -> CompletableFuture.runAsync(() -> s3MultipartService.copyObject(
+                        s3MultipartService.segmentKey(source.getS3Key(), part),
+                        s3MultipartService.segmentKey(targetKey, part)), s3TransferExecutor))
+                .toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(copies).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof S3UploadFailedException s3Error) {
+                throw s3Error;
+            }
+            throw new S3UploadFailedException("Failed to copy file", e.getCause());
+        }
+    }
+
+    /**
+     * Delete what a failed copy stored under its new key; missing objects are ignored by S3.
+     * A failed cleanup is logged, the copy's own failure is what the caller sees.
+     */
+    private void discardCopy(FileMetadataResponse source, String targetKey) {
+        try {
+            if (source.getContentEncoding() != null) {
+                s3MultipartService.deleteSegments(targetKey, source.getTotalChunks());
+            } else {
+                s3MultipartService.deleteObjects(List.of(targetKey));
+            }
+        } catch (Exception e) {
+            log.warn("Could not clean up failed copy of file {} at {}", source.getId(), targetKey, e);
+        }
+    }
+
+    private FileMetadataResponse getAuthorizedMetadata(String fileIdStr, String userId) {
+        Long fileId;
+        try {
+            fileId = Long.parseLong(fileIdStr);
+        } catch (NumberFormatException e) {
+            throw new UploadSessionNotFoundException("Invalid ID format: " + fileIdStr);
+        }
+
+        FileMetadataResponse metadata;
+        try {
+            metadata = metadataClient.getFile(fileId);
+        } catch (FeignException.NotFound e) {
+            throw new UploadSessionNotFoundException(String.valueOf(fileId));
+        } catch (FeignException e) {
+            throw new MetadataClientException("Failed to retrieve file", e);
+        }
+
+        if (!metadata.getOwner().equals(userId)) {
+            log.warn("Access Denied: User {} attempted to copy file {} owned by {}", userId, fileId,
+                    metadata.getOwner());
+            throw new UnauthorizedAccessException("You are not authorized to access this file.");
+        }
+
+        return metadata;
+    }
+}
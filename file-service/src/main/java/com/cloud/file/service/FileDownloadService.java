@@ -4,10 +4,24 @@ import com.cloud.file.client.MetadataClient;
 import com.cloud.file.client.dto.FileMetadataResponse;
 import com.cloud.file.exception.UnauthorizedAccessException;
 import com.cloud.file.exception.UploadSessionNotFoundException;
+import com.cloud.file.storage.ChunkCompressor;
+import com.cloud.file.storage.DiskObjectCache;
 import com.cloud.file.storage.S3MultipartService;
+import lombok.AllArgsConstructor;
+import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.stream.IntStream;
 
 @Service
 @RequiredArgsConstructor
@@ -16,8 +30,119 @@ public class FileDownloadService {
 
     private final MetadataClient metadataClient;
     private final S3MultipartService s3MultipartService;
+    private final ChunkCompressor chunkCompressor;
+    private final DiskObjectCache diskObjectCache;
+
+    /**
+     * Streamed file content served through the proxy endpoint
+     */
+    @Data
+    @AllArgsConstructor
+    public static class FileContent {
+        private String fileName;
+        private String contentType;
+        private Long contentLength; // null when only known after decoding
+        private InputStream stream;
+        private DiskObjectCache.Lease cached; // Local cached copy; when set it is served instead of the stream
+    }
 
     public String generateDownloadUrl(String fileIdStr, String userId) {
+        FileMetadataResponse metadata = getAuthorizedMetadata(fileIdStr, userId);
+
+        // Inline, segmented (compressed) and content-defined files have no single S3 object
+        // to presign, and cacheable files are proxied so repeat downloads are served from local disk
+        if (metadata.isStoredInline() || metadata.getContentEncoding() != null
+                || metadata.getChunkingScheme() != null
+                || diskObjectCache.admits(metadata.getSize())) {
+            return "/files/" + metadata.getId() + "/content";
+        }
+
+        // Generate Presigned URL
+        return s3MultipartService.generatePresignedUrl(metadata.getS3Key());
+    }
+
+    /**
+     * Open the file content, decompressing segmented uploads on the fly
+     */
+    public FileContent openContent(String fileIdStr, String userId) {
+        FileMetadataResponse metadata = getAuthorizedMetadata(fileIdStr, userId);
+
+        if (metadata.isStoredInline()) {
+            byte[] data = metadataClient.getInlineContent(metadata.getId());
+            return new FileContent(metadata.getFileName(), metadata.getFileType(), (long) data.length,
+                    new ByteArrayInputStream(data), null);
+        }
+
+        if (diskObjectCache.admits(metadata.getSize())) {
+            DiskObjectCache.Lease cached = diskObjectCache.lease(metadata.getS3Key());
+            if (cached != null) {
+                return new FileContent(metadata.getFileName(), metadata.getFileType(), cached.getSize(), null,
+                        cached);
+            }
+            // Cold miss: serve from S3 and fill the cache from the same stream
+            FileContent stored = openStored(metadata);
+            stored.setStream(diskObjectCache.readThrough(metadata.getS3Key(), stored.getStream()));
+            return stored;
+        }
+
+        return openStored(metadata);
+    }
+
+    private FileContent openStored(FileMetadataResponse metadata) {
+        if (metadata.getChunkingScheme() != null) {
+            return openContentDefined(metadata);
+        }
+        if (metadata.getContentEncoding() == null) {
+            ResponseInputStream<GetObjectResponse> object = s3MultipartService.getObject(metadata.getS3Key());
+            return new FileContent(metadata.getFileName(), metadata.getFileType(),
+                    object.response().contentLength(), object, null);
+        }
+
+        // Segment keys are derived from the part number, so no chunk lookup is needed
+        Iterator<Integer> parts = IntStream.rangeClosed(1, metadata.getTotalChunks()).iterator();
+
+        Enumeration<InputStream> segments = new Enumeration<>() {
+            @Override
+            public boolean hasMoreElements() {
+                return parts.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                String key = s3MultipartService.segmentKey(metadata.getS3Key(), parts.next());
+                ResponseInputStream<GetObjectResponse> segment = s3MultipartService.getObject(key);
+                return chunkCompressor.decode(segment, segment.response().contentEncoding());
+            }
+        };
+
+        return new FileContent(metadata.getFileName(), metadata.getFileType(), null,
+                new SequenceInputStream(segments), null);
+    }
+
+    /**
+     * Content-defined chunks are shared objects keyed by checksum, recorded as each part's etag
+     */
+    private FileContent openContentDefined(FileMetadataResponse metadata) {
+        Iterator<String> checksums = Arrays.asList(
+                metadataClient.getCompletedParts(metadata.getId()).getEtags()).iterator();
+
+        Enumeration<InputStream> chunks = new Enumeration<>() {
+            @Override
+            public boolean hasMoreElements() {
+                return checksums.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                return s3MultipartService.getObject(s3MultipartService.contentAddressedKey(checksums.next()));
+            }
+        };
+
+        return new FileContent(metadata.getFileName(), metadata.getFileType(), metadata.getSize(),
+                new SequenceInputStream(chunks), null);
+    }
+
+    private FileMetadataResponse getAuthorizedMetadata(String fileIdStr, String userId) {
         Long fileId;
         try {
             fileId = Long.parseLong(fileIdStr);
@@ -34,7 +159,6 @@ public class FileDownloadService {
             throw new UnauthorizedAccessException("You are not authorized to access this file.");
         }
 
-        // Generate Presigned URL
-        return s3MultipartService.generatePresignedUrl(metadata.getS3Key());
+        return metadata;
     }
 }
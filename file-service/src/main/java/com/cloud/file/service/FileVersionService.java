@@ -0,0 +1,165 @@
+package com.cloud.file.service;
+
+import com.cloud.file.client.MetadataClient;
+import com.cloud.file.client.dto.FileMetadataResponse;
+import com.cloud.file.client.dto.MetadataReleasedStorage;
+import com.cloud.file.config.FileUploadProperties;
+import com.cloud.file.dto.FileVersionResponse;
+import com.cloud.file.exception.InvalidUploadStateException;
+import com.cloud.file.exception.MetadataClientException;
+import com.cloud.file.exception.UnauthorizedAccessException;
+import com.cloud.file.exception.UploadSessionNotFoundException;
+import com.cloud.file.storage.S3MultipartService;
+import feign.FeignException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Version history of a logical file. Each version is a metadata row whose chunk manifest
+ * points at stored chunks; with content-defined chunking, unchanged chunks are shared
+ * between versions, so a new version only stores its delta.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FileVersionService {
+
+    private final MetadataClient metadataClient;
+    private final S3MultipartService s3MultipartService;
+    private final FileUploadProperties fileUploadProperties;
+
+    /**
+     * Completed versions, newest first
+     */
+    public List<FileVersionResponse> listVersions(String fileIdStr, String userId) {
+        FileMetadataResponse metadata = getAuthorizedMetadata(fileIdStr, userId);
+        try {
+            return metadataClient.getVersions(metadata.getId()).stream()
+                    .map(this::toResponse)
+                    .toList();
+        } catch (FeignException e) {
+            throw new MetadataClientException("Failed to list versions", e);
+        }
+    }
+
+    /**
+     * Make an old version current again. Only metadata is copied; the stored data is shared.
+     */
+    public FileVersionResponse restoreVersion(String fileIdStr, int versionNumber, String userId) {
+        FileMetadataResponse metadata = getAuthorizedMetadata(fileIdStr, userId);
+
+        FileMetadataResponse restored;
+        try {
+            restored = metadataClient.restoreVersion(metadata.getId(), versionNumber);
+        } catch (FeignException.NotFound e) {
+            throw new UploadSessionNotFoundException(fileIdStr + " version " + versionNumber);
+        } catch (FeignException e) {
+            throw new MetadataClientException("Failed to restore version " + versionNumber, e);
+        }
+
+        applyRetention(restored.getId());
+        return toResponse(restored);
+    }
+
+    /**
+     * Delete a file with all of its versions, then the storage only they referenced. Metadata goes
+     * first, so a failure after it leaves orphaned objects, never a file without its data.
+     */
+    public void deleteFile(String fileIdStr, String userId) {
+        FileMetadataResponse metadata = getAuthorizedMetadata(fileIdStr, userId);
+
+        List<MetadataReleasedStorage> released;
+        try {
+            released = metadataClient.deleteFile(metadata.getId());
+        } catch (FeignException.NotFound e) {
+            throw new UploadSessionNotFoundException(fileIdStr);
+        } catch (FeignException.Conflict e) {
+            throw new InvalidUploadStateException("Cannot delete file " + fileIdStr + ": " + e.getMessage());
+        } catch (FeignException e) {
+            throw new MetadataClientException("Failed to delete file " + fileIdStr, e);
+        }
+
+        releaseAll(released);
+    }
+
+    /**
+     * Prune versions beyond the retention limit and delete the storage only they referenced.
+     * Best effort: a failure leaves extra versions or orphaned objects, never a broken file.
+     */
+    public void applyRetention(Long fileId) {
+        List<MetadataReleasedStorage> released;
+        try {
+            released = metadataClient.pruneVersions(fileId,
+                    fileUploadProperties.getVersioning().getRetainedVersions());
+        } catch (FeignException e) {
+            log.warn("Failed to prune versions of file {}: {}", fileId, e.getMessage());
+            return;
+        }
+
+        releaseAll(released);
+    }
+
+    private void releaseAll(List<MetadataReleasedStorage> released) {
+        for (MetadataReleasedStorage storage : released) {
+            try {
+                release(storage);
+            } catch (Exception e) {
+                log.warn("Failed to delete storage of version {} (file {})", storage.getVersionNumber(),
+                        storage.getFileId(), e);
+            }
+        }
+    }
+
+    /**
+     * Shared content-addressed chunks are not deleted here; {@link ChunkReclaimer} sweeps them
+     */
+    private void release(MetadataReleasedStorage storage) {
+        if (storage.getS3Key() != null) {
+            if (storage.getContentEncoding() != null) {
+                s3MultipartService.deleteSegments(storage.getS3Key(), storage.getTotalChunks());
+            } else {
+                s3MultipartService.deleteObjects(List.of(storage.getS3Key()));
+            }
+        }
+        log.info("Released storage of version {} (file {})", storage.getVersionNumber(), storage.getFileId());
+    }
+
+    private FileVersionResponse toResponse(FileMetadataResponse metadata) {
+        return FileVersionResponse.builder()
+                .fileId(String.valueOf(metadata.getId()))
+                .versionNumber(metadata.getVersionNumber())
+                .fileName(metadata.getFileName())
+                .fileSize(metadata.getSize())
+                .uploadedAt(metadata.getUploadedAt())
+                .build();
+    }
+
+    private FileMetadataResponse getAuthorizedMetadata(String fileIdStr, String userId) {
+        Long fileId;
+        try {
+            fileId = Long.parseLong(fileIdStr);
+        } catch (NumberFormatException e) {
+            throw new UploadSessionNotFoundException("Invalid ID format: " + fileIdStr);
+        }
+
+        FileMetadataResponse metadata;
+        try {
+            metadata = metadataClient.getFile(fileId);
+        } catch (FeignException.NotFound e) {
+            throw new UploadSessionNotFoundException(String.valueOf(fileId));
+        } catch (FeignException e) {
+            throw new MetadataClientException("Failed to retrieve file", e);
+        }
+
+        if (!metadata.getOwner().equals(userId)) {
+            log.warn("Access Denied: User {} attempted to access versions of file {} owned by {}", userId, fileId,
+                    metadata.getOwner());
+            throw new UnauthorizedAccessException("You are not authorized to access this file.");
+        }
+
+        return metadata;
+    }
+}
@@ -0,0 +1,107 @@
+package com.cloud.file.service;
+
+import com.cloud.file.client.MetadataClient;
+import com.cloud.file.client.dto.FileMetadataResponse;
+import com.cloud.file.client.dto.MetadataPromoteInlineRequest;
+import com.cloud.file.config.FileUploadProperties;
+import com.cloud.file.storage.S3MultipartService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Moves inline files that no longer fit the inline tier (they grew, or the threshold
+ * was lowered) out of metadata-service and into S3.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class InlineContentPromoter {
+
+    private static final int PAGE_SIZE = 100;
+
+    private final MetadataClient metadataClient;
+    private final S3MultipartService s3MultipartService;
+    private final FileUploadProperties fileUploadProperties;
+    private final ExecutorService s3TransferExecutor;
+
+    @Scheduled(fixedDelayString = "${file.upload.inline-promotion-interval-ms:3600000}",
+            initialDelayString = "${file.upload.inline-promotion-interval-ms:3600000}")
+    public void scheduledPromotion() {
+        try {
+            promoteOversized();
+        } catch (Exception e) {
+            log.error("Inline content promotion failed", e);
+        }
+    }
+
+    /**
+     * @return number of files moved to S3
+     */
+    public int promoteOversized() {
+        long afterId = 0L;
+        int promoted = 0;
+
+        while (true) {
+            List<FileMetadataResponse> page = metadataClient.getOversizedInlineFiles(
+                    fileUploadProperties.getInlineThreshold(), afterId, PAGE_SIZE);
+            if (page.isEmpty()) {
+                break;
+            }
+
+            promoted += page.stream()
+                    .map(file -> CompletableFuture.supplyAsync(() -> promote(file), s3TransferExecutor))
+                    .toList()
+                    .stream()
+                    .mapToInt(future -> future.join() ? 1 : 0)
+                    .sum();
+            afterId = page.get(page.size() - 1).getId();
+
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+        }
+
+        if (promoted > 0) {
+            log.info("Promoted {} inline files to S3", promoted);
+        }
+        return promoted;
+    }
+
+    private boolean promote(FileMetadataResponse file) {
+        String s3Key = null;
+        try {
+            byte[] data = metadataClient.getInlineContent(file.getId());
+            s3Key = s3MultipartService.generateS3Key(file.getFileName());
+            s3MultipartService.putObject(s3Key, data, file.getFileType());
+            metadataClient.promoteInlineFile(file.getId(), new MetadataPromoteInlineRequest(s3Key));
+            return true;
+        } catch (Exception e) {
+            log.warn("Could not promote inline file {}. Will retry.", file.getId(), e);
+            if (s3Key != null) {
+                discardUnreferenced(file.getId(), s3Key);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The next attempt writes under a fresh key, so an object left behind by a failed promote
+     * would never be referenced. The promote may still have committed if only its response was
+     * lost, so the object is deleted only once metadata confirms it does not point at it.
+     */
+    private void discardUnreferenced(Long fileId, String s3Key) {
+        try {
+            if (!s3Key.equals(metadataClient.getFile(fileId).getS3Key())) {
+                s3MultipartService.deleteObjects(List.of(s3Key));
+            }
+        } catch (Exception e) {
+            log.warn("Could not clean up {} after failed promotion of file {}", s3Key, fileId, e);
+        }
+    }
+}
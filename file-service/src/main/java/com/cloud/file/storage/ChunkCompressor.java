@@ -0,0 +1,105 @@
+package com.cloud.file.storage;
+
+import com.cloud.file.config.FileUploadProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+
+/**
+ * Optional LZ4 compression stage of the chunk upload pipeline.
+ * Each chunk is compressed independently into an LZ4 frame so it can be
+ * stored and decoded on its own.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ChunkCompressor {
+
+    public static final String LZ4 = "lz4";
+
+    private static final LZ4Factory LZ4_FACTORY = LZ4Factory.fastestInstance();
+
+    private final FileUploadProperties fileUploadProperties;
+
+    /**
+     * Result of encoding a chunk
+     */
+    @lombok.Data
+    @lombok.AllArgsConstructor
+    public static class EncodedChunk {
+        private byte[] data;
+        private String contentEncoding; // null when stored raw
+    }
+
+    /**
+     * Decide at initiation whether an upload should use the compressed layout
+     */
+    public String selectEncoding(String contentType) {
+        FileUploadProperties.Compression compression = fileUploadProperties.getCompression();
+        if (!compression.isEnabled()) {
+            return null;
+        }
+        String type = contentType == null ? "" : contentType.toLowerCase(Locale.ROOT);
+        boolean alreadyCompressed = compression.getSkipContentTypes().stream().anyMatch(type::startsWith);
+        return alreadyCompressed ? null : LZ4;
+    }
+
+    /**
+     * Compress a chunk if a quick sample of its head shows it is worth it
+     */
+    public EncodedChunk encode(byte[] data, String contentEncoding) {
+        if (!LZ4.equals(contentEncoding) || !isCompressible(data)) {
+            return new EncodedChunk(data, null);
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length / 2);
+        try (LZ4FrameOutputStream out = new LZ4FrameOutputStream(buffer,
+                LZ4FrameOutputStream.BLOCKSIZE.SIZE_4MB)) {
+            out.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compress chunk", e);
+        }
+
+        byte[] compressed = buffer.toByteArray();
+        if (compressed.length >= data.length) {
+            return new EncodedChunk(data, null);
+        }
+        log.debug("Compressed chunk {} -> {} bytes", data.length, compressed.length);
+        return new EncodedChunk(compressed, LZ4);
+    }
+
+    /**
+     * Wrap a stored chunk stream so it yields the original bytes
+     */
+    public InputStream decode(InputStream stored, String contentEncoding) {
+        if (!LZ4.equals(contentEncoding)) {
+            return stored;
+        }
+        try {
+            return new LZ4FrameInputStream(stored);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open compressed chunk", e);
+        }
+    }
+
+    private boolean isCompressible(byte[] data) {
+        int sampleLength = Math.min(data.length, fileUploadProperties.getCompression().getSampleSize());
+        if (sampleLength == 0) {
+            return false;
+        }
+        LZ4Compressor compressor = LZ4_FACTORY.fastCompressor();
+        byte[] sample = new byte[compressor.maxCompressedLength(sampleLength)];
+        int compressedLength = compressor.compress(data, 0, sampleLength, sample, 0, sample.length);
+        return (double) sampleLength / compressedLength >= fileUploadProperties.getCompression().getMinRatio();
+    }
+}
@@ -0,0 +1,124 @@
+package com.cloud.file.storage;
+
+import com.cloud.file.config.FileUploadProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Local write-ahead journal for upload completion.
+ * An entry is written (and fsynced) before S3 is asked to assemble the file and
+ * removed once metadata-service confirms COMPLETED, so a crash in between leaves
+ * a record that {@code CompletionRecoveryService} can finish on the next start.
+ */
+@Component
+@Slf4j
+public class CompletionJournal {
+
+    private static final String SUFFIX = ".json";
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Entry {
+        private Long fileId;
+        private String uploadId;
+        private String s3Key;
+        private String contentEncoding;
+    }
+
+    public CompletionJournal(FileUploadProperties fileUploadProperties, ObjectMapper objectMapper) {
+        this.directory = Paths.get(fileUploadProperties.getRecovery().getJournalDirectory());
+        this.objectMapper = objectMapper;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create completion journal directory: " + directory, e);
+        }
+    }
+
+    /**
+     * Durably record that completion of a file is about to start
+     */
+    public void begin(Entry entry) {
+        Path target = entryPath(entry.getFileId());
+        Path temp = directory.resolve(entry.getFileId() + SUFFIX + ".tmp");
+        try {
+            byte[] bytes = objectMapper.writeValueAsBytes(entry);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(bytes));
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to journal completion of file " + entry.getFileId(), e);
+        }
+    }
+
+    /**
+     * Forget a file once its completion is settled either way
+     */
+    public void clear(Long fileId) {
+        try {
+            Files.deleteIfExists(entryPath(fileId));
+        } catch (IOException e) {
+            log.warn("Failed to clear completion journal entry for fileId: {}", fileId, e);
+        }
+    }
+
+    /**
+     * All entries still pending; unreadable entries are skipped and logged
+     */
+    public List<Entry> pending() {
+        return pending(Duration.ZERO);
+    }
+
+    /**
+     * Entries journaled at least {@code minAge} ago
+     */
+    public List<Entry> pending(Duration minAge) {
+        Instant cutoff = Instant.now().minus(minAge);
+        List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    if (Files.getLastModifiedTime(file).toInstant().isAfter(cutoff)) {
+                        continue;
+                    }
+                    entries.add(objectMapper.readValue(file.toFile(), Entry.class));
+                } catch (IOException e) {
+                    log.warn("Skipping unreadable completion journal entry: {}", file, e);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to read completion journal directory: {}", directory, e);
+        }
+        return entries;
+    }
+
+    private Path entryPath(Long fileId) {
+        return directory.resolve(fileId + SUFFIX);
+    }
+}
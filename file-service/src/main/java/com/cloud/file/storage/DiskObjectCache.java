@@ -0,0 +1,293 @@
+package com.cloud.file.storage;
+
+import com.cloud.file.config.DownloadCacheProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read-through local disk cache for objects served by the proxy download path.
+ * Eviction is Caffeine's size-weighted W-TinyLFU, so a burst of one-off downloads
+ * cannot push out files that are requested all day.
+ * <p>
+ * Every fill writes its own file, and a file is deleted only when the cache and every
+ * download serving it have let go of it, so eviction never pulls a file from under a reader.
+ */
+@Component
+@Slf4j
+public class DiskObjectCache {
+
+    private static final String METRIC_PREFIX = "file.download.cache";
+
+    private final DownloadCacheProperties properties;
+    private final Path directory;
+    private final Cache<String, CachedObject> cache;
+    private final Set<String> filling = ConcurrentHashMap.newKeySet();
+    private final Counter bytesSaved;
+
+    /**
+     * A fully written cache file. Object keys are immutable (UUID per upload),
+     * so the ETag recorded at fill time identifies the cached version.
+     * The cache entry holds one reference and each open {@link Lease} another.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    static class CachedObject {
+        private final Path file;
+        private final long size;
+        private final String etag;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        boolean retain() {
+            int current;
+            do {
+                current = references.get();
+                if (current == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                deleteQuietly(file);
+            }
+        }
+    }
+
+    /**
+     * A cached file pinned for one download; close it once the response has been written
+     */
+    public static class Lease implements Closeable {
+        private final CachedObject object;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        Lease(CachedObject object) {
+            this.object = object;
+        }
+
+        public Path getFile() {
+            return object.getFile();
+        }
+
+        public long getSize() {
+            return object.getSize();
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                object.release();
+            }
+        }
+    }
+
+    public DiskObjectCache(DownloadCacheProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.directory = Paths.get(properties.getDirectory());
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaxSizeBytes())
+                .weigher((String key, CachedObject value) -> (int) Math.min(value.getSize(), Integer.MAX_VALUE))
+                .removalListener((String key, CachedObject value, RemovalCause cause) -> {
+                    if (value != null) {
+                        value.release();
+                    }
+                })
+                .executor(Runnable::run) // Drop the cache's reference as soon as the entry is gone
+                .recordStats()
+                .build();
+        this.bytesSaved = Counter.builder(METRIC_PREFIX + ".bytes.saved")
+                .description("Bytes served from local disk instead of S3")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, METRIC_PREFIX);
+        Gauge.builder(METRIC_PREFIX + ".hit.ratio", cache, c -> c.stats().hitRate())
+                .register(meterRegistry);
+
+        if (properties.isEnabled()) {
+            try {
+                FileSystemUtils.deleteRecursively(directory);
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot prepare download cache directory: " + directory, e);
+            }
+        }
+    }
+
+    /**
+     * Whether an object of this size should go through the cache at all
+     */
+    public boolean admits(Long size) {
+        return properties.isEnabled() && size != null && size <= properties.getMaxObjectSize();
+    }
+
+    /**
+     * Pin the cached copy of an object for one download
+     *
+     * @return the lease, or null on a miss
+     */
+    public Lease lease(String s3Key) {
+        while (true) {
+            CachedObject cached = cache.getIfPresent(s3Key);
+            if (cached == null) {
+                return null;
+            }
+            // A failed retain means the entry was removed after the lookup; look again
+            if (cached.retain()) {
+                bytesSaved.increment(cached.getSize());
+                return new Lease(cached);
+            }
+        }
+    }
+
+    /**
+     * Wrap an object stream opened on a miss so the bytes are written to the cache as the
+     * download reads them. The entry is added once the stream has been read to the end;
+     * a download that stops early leaves nothing behind. Concurrent misses for the same key
+     * stream from S3 without filling.
+     *
+     * @param object the object stream; a raw S3 stream also supplies the ETag
+     */
+    public InputStream readThrough(String s3Key, InputStream object) {
+        if (!filling.add(s3Key)) {
+            return object;
+        }
+
+        String etag = object instanceof ResponseInputStream<?> response
+                && response.response() instanceof GetObjectResponse getResponse ? getResponse.eTag() : null;
+        Path file = directory.resolve(UUID.randomUUID().toString());
+        try {
+            return new FillingInputStream(object, s3Key, etag, file,
+                    Files.newOutputStream(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+        } catch (IOException e) {
+            filling.remove(s3Key);
+            log.warn("Cannot create cache file for {}", s3Key, e);
+            return object;
+        }
+    }
+
+    /**
+     * Copies every byte read into the cache file. A failed write only stops the fill,
+     * never the download.
+     */
+    private class FillingInputStream extends FilterInputStream {
+        private final String s3Key;
+        private final String etag;
+        private final Path file;
+        private final OutputStream out;
+        private long size;
+        private boolean complete;
+        private boolean failed;
+        private boolean closed;
+
+        FillingInputStream(InputStream in, String s3Key, String etag, Path file, OutputStream out) {
+            super(in);
+            this.s3Key = s3Key;
+            this.etag = etag;
+            this.file = file;
+            this.out = out;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                complete = true;
+            } else {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n == -1) {
+                complete = true;
+            } else {
+                write(buffer, offset, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            failed = true; // Skipped bytes never reach the cache file
+            return super.skip(n);
+        }
+
+        private void write(byte[] buffer, int offset, int length) {
+            if (failed) {
+                return;
+            }
+            try {
+                out.write(buffer, offset, length);
+                size += length;
+            } catch (IOException e) {
+                failed = true;
+                log.warn("Stopped caching {}", s3Key, e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+            } finally {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    failed = true;
+                }
+                if (complete && !failed) {
+                    cache.put(s3Key, new CachedObject(file, size, etag));
+                    log.debug("Cached {} ({} bytes) at {}", s3Key, size, file);
+                } else {
+                    deleteQuietly(file);
+                }
+                filling.remove(s3Key);
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete evicted cache file: {}", file, e);
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.cloud.file.exception.S3UploadFailedException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
@@ -13,8 +14,11 @@ import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignReques
 import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
 /**
@@ -29,6 +33,11 @@ public class S3MultipartService {
     private final S3Client s3Client;
     private final S3Presigner s3Presigner;
     private final S3Properties s3Properties;
+    private final ExecutorService s3TransferExecutor;
+
+    private static final long MAX_SINGLE_COPY_SIZE = 5L * 1024 * 1024 * 1024; // CopyObject limit (5GB)
+    private static final long MAX_PARTS = 10000;
+    private static final int MAX_DELETE_BATCH = 1000; // DeleteObjects limit
 
     /**
      * Data class for initiation response
@@ -130,6 +139,280 @@ public class S3MultipartService {
         }
     }
 
+    /**
+     * Store a small file as a single object in one request
+     *
+     * @return the object's ETag
+     */
+    public String putObject(String s3Key, byte[] data, String contentType) {
+        try {
+            PutObjectRequest request = PutObjectRequest.builder()
+                    .bucket(s3Properties.getBucket())
+                    .key(s3Key)
+                    .contentType(contentType)
+                    .serverSideEncryption(ServerSideEncryption.AES256)
+                    .build();
+
+            PutObjectResponse response = s3Client.putObject(request, RequestBody.fromBytes(data));
+
+            log.info("Stored object for key: {}, ETag: {}", s3Key, response.eTag());
+
+            return response.eTag();
+
+        } catch (Exception e) {
+            log.error("Failed to store object for key: {}", s3Key, e);
+            throw new S3UploadFailedException("Failed to upload file", e);
+        }
+    }
+
+    /**
+     * Store one chunk of a segmented (compressed) upload as its own object.
+     * Segments are not subject to the 5MB minimum part size of multipart uploads.
+     */
+    public String putSegment(String s3Key, int partNumber, byte[] data, String contentEncoding) {
+        String segmentKey = segmentKey(s3Key, partNumber);
+        try {
+            PutObjectRequest request = PutObjectRequest.builder()
+                    .bucket(s3Properties.getBucket())
+                    .key(segmentKey)
+                    .contentEncoding(contentEncoding)
+                    .serverSideEncryption(ServerSideEncryption.AES256)
+                    .build();
+
+            PutObjectResponse response = s3Client.putObject(request, RequestBody.fromBytes(data));
+
+            log.info("Stored segment {} for key: {}, ETag: {}", partNumber, s3Key, response.eTag());
+
+            return response.eTag();
+
+        } catch (Exception e) {
+            log.error("Failed to store segment {} for key: {}", partNumber, s3Key, e);
+            throw new S3UploadFailedException("Failed to upload part " + partNumber, e);
+        }
+    }
+
+    /**
+     * Server-side copy of an object. Objects above the 5GB CopyObject limit are copied
+     * as parallel UploadPartCopy ranges; no bytes pass through this service.
+     */
+    public void copyObject(String sourceKey, String targetKey, long size, String contentType, long partSize) {
+        if (size <= MAX_SINGLE_COPY_SIZE) {
+            copyObject(sourceKey, targetKey);
+        } else {
+            copyObjectInParts(sourceKey, targetKey, size, contentType, partSize);
+        }
+    }
+
+    /**
+     * Single-request server-side copy (objects up to 5GB)
+     */
+    public void copyObject(String sourceKey, String targetKey) {
+        try {
+            s3Client.copyObject(CopyObjectRequest.builder()
+                    .sourceBucket(s3Properties.getBucket())
+                    .sourceKey(sourceKey)
+                    .destinationBucket(s3Properties.getBucket())
+                    .destinationKey(targetKey)
+                    .serverSideEncryption(ServerSideEncryption.AES256)
+                    .build());
+            log.info("Copied object {} to {}", sourceKey, targetKey);
+        } catch (Exception e) {
+            log.error("Failed to copy object {} to {}", sourceKey, targetKey, e);
+            throw new S3UploadFailedException("Failed to copy file", e);
+        }
+    }
+
+    private void copyObjectInParts(String sourceKey, String targetKey, long size, String contentType,
+            long partSize) {
+        // S3 allows at most 10,000 parts per upload
+        long effectivePartSize = Math.max(partSize, (size + MAX_PARTS - 1) / MAX_PARTS);
+        String uploadId = null;
+        try {
+            uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                    .bucket(s3Properties.getBucket())
+                    .key(targetKey)
+                    .contentType(contentType)
+                    .serverSideEncryption(ServerSideEncryption.AES256)
+                    .build()).uploadId();
+
+            // The first failed part cancels the copies not started yet and stops submitting more
+            CompletableFuture<Void> failure = new CompletableFuture<>();
+            List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+            int partNumber = 1;
+            for (String range : copyRanges(size, effectivePartSize)) {
+                if (failure.isDone()) {
+                    break;
+                }
+                int currentPart = partNumber++;
+                String currentUploadId = uploadId;
+                CompletableFuture<CompletedPart> part = CompletableFuture.supplyAsync(() -> {
+                    UploadPartCopyResponse response = s3Client.uploadPartCopy(UploadPartCopyRequest.builder()
+                            .sourceBucket(s3Properties.getBucket())
+                            .sourceKey(sourceKey)
+                            .destinationBucket(s3Properties.getBucket())
+                            .destinationKey(targetKey)
+                            .uploadId(currentUploadId)
+                            .partNumber(currentPart)
+                            .copySourceRange(range)
+                            .build());
+                    return CompletedPart.builder()
+                            .partNumber(currentPart)
+                            .eTag(response.copyPartResult().eTag())
+                            .build();
+                }, s3TransferExecutor);
+                part.whenComplete((done, e) -> {
+                    if (e != null) {
+                        failure.completeExceptionally(e);
+                    }
+                });
+                failure.whenComplete((done, e) -> part.cancel(false));
+                parts.add(part);
+            }
+
+            CompletableFuture.anyOf(failure, CompletableFuture.allOf(parts.toArray(new CompletableFuture[0])))
+                    .join();
+            List<CompletedPart> completedParts = parts.stream()
+                    .map(CompletableFuture::join)
+                    .collect(Collectors.toList());
+
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(s3Properties.getBucket())
+                    .key(targetKey)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                    .build());
+
+            log.info("Copied object {} to {} in {} parts", sourceKey, targetKey, completedParts.size());
+
+        } catch (Exception e) {
+            log.error("Failed to copy object {} to {} in parts", sourceKey, targetKey, e);
+            if (uploadId != null) {
+                abortMultipartUpload(uploadId, targetKey);
+            }
+            throw new S3UploadFailedException("Failed to copy file", e);
+        }
+    }
+
+    /**
+     * Inclusive byte ranges of the parts of a copy, in part order; the last part takes the remainder
+     */
+    private static List<String> copyRanges(long size, long partSize) {
+        List<String> ranges = new ArrayList<>();
+        for (long offset = 0; offset < size; offset += partSize) {
+            ranges.add("bytes=" + offset + "-" + (Math.min(offset + partSize, size) - 1));
+        }
+        return ranges;
+    }
+
+    /**
+     * Look up an object's size and ETag without reading it
+     *
+     * @return the HEAD response, or null if the object does not exist
+     */
+    public HeadObjectResponse headObject(String key) {
+        try {
+            return s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(s3Properties.getBucket())
+                    .key(key)
+                    .build());
+        } catch (NoSuchKeyException e) {
+            return null;
+        } catch (Exception e) {
+            log.error("Failed to read object attributes: {}", key, e);
+            throw new S3UploadFailedException("Failed to read stored file", e);
+        }
+    }
+
+    /**
+     * Whether a multipart upload is still open, i.e. neither completed nor aborted
+     */
+    public boolean isMultipartUploadOpen(String uploadId, String s3Key) {
+        try {
+            s3Client.listParts(ListPartsRequest.builder()
+                    .bucket(s3Properties.getBucket())
+                    .key(s3Key)
+                    .uploadId(uploadId)
+                    .maxParts(1)
+                    .build());
+            return true;
+        } catch (NoSuchUploadException e) {
+            return false;
+        } catch (Exception e) {
+            log.error("Failed to list parts for uploadId: {}", uploadId, e);
+            throw new S3UploadFailedException("Failed to read multipart upload", e);
+        }
+    }
+
+    /**
+     * Open a stored object (or segment) for streaming
+     */
+    public ResponseInputStream<GetObjectResponse> getObject(String key) {
+        try {
+            return s3Client.getObject(GetObjectRequest.builder()
+                    .bucket(s3Properties.getBucket())
+                    .key(key)
+                    .build());
+        } catch (Exception e) {
+            log.error("Failed to read object: {}", key, e);
+            throw new S3UploadFailedException("Failed to read stored file", e);
+        }
+    }
+
+    /**
+     * Delete all segments of a segmented upload with batched DeleteObjects calls.
+     * Missing segments are ignored by S3.
+     */
+    public void deleteSegments(String s3Key, int totalSegments) {
+        List<String> keys = new ArrayList<>(totalSegments);
+        for (int part = 1; part <= totalSegments; part++) {
+            keys.add(segmentKey(s3Key, part));
+        }
+        try {
+            deleteObjects(keys);
+            log.info("Deleted {} segments for key: {}", totalSegments, s3Key);
+        } catch (Exception e) {
+            log.error("Failed to delete segments for key: {}", s3Key, e);
+            throw new S3UploadFailedException("Failed to delete segments", e);
+        }
+    }
+
+    /**
+     * Delete objects with batched DeleteObjects calls. Missing keys are ignored by S3; any other
+     * key S3 could not delete fails the call.
+     */
+    public void deleteObjects(List<String> keys) {
+        for (int first = 0; first < keys.size(); first += MAX_DELETE_BATCH) {
+            List<ObjectIdentifier> batch = keys.subList(first, Math.min(first + MAX_DELETE_BATCH, keys.size()))
+                    .stream()
+                    .map(key -> ObjectIdentifier.builder().key(key).build())
+                    .toList();
+            DeleteObjectsResponse response = s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                    .bucket(s3Properties.getBucket())
+                    .delete(Delete.builder().objects(batch).quiet(true).build())
+                    .build());
+            // Quiet mode lists only the keys that could not be deleted
+            if (response.hasErrors() && !response.errors().isEmpty()) {
+                S3Error error = response.errors().get(0);
+                throw new S3UploadFailedException("Failed to delete " + response.errors().size() + " objects, e.g. "
+                        + error.key() + ": " + error.code());
+            }
+        }
+    }
+
+    /**
+     * Key of a single segment below the upload's S3 key
+     */
+    public String segmentKey(String s3Key, int partNumber) {
+        return String.format("%s/parts/%05d", s3Key, partNumber);
+    }
+
+    /**
+     * Content-addressed key of a content-defined chunk, shared by every file that contains it
+     */
+    public String contentAddressedKey(String checksum) {
+        return "cas/" + checksum.substring(0, 2) + "/" + checksum;
+    }
+
     /**
      * Generate Presigned URL for Secure Download
      */
@@ -172,7 +455,7 @@ public class S3MultipartService {
         }
     }
 
-    private String generateS3Key(String fileName) {
+    public String generateS3Key(String fileName) {
         String uuid = UUID.randomUUID().toString();
         // Structure for better organization (optional)
         return String.format("uploads/%s/%s", uuid, fileName);
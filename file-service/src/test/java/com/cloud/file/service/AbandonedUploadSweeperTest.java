@@ -0,0 +1,112 @@
+package com.cloud.file.service;
+
+import com.cloud.file.client.MetadataClient;
+import com.cloud.file.client.dto.MetadataAbortSessionsRequest;
+import com.cloud.file.client.dto.MetadataStaleSession;
+import com.cloud.file.client.dto.MetadataStaleSessionClaimRequest;
+import com.cloud.file.storage.S3MultipartService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(properties = "file.upload.sweeper.batch-size=2")
+@ActiveProfiles("test")
+class AbandonedUploadSweeperTest {
+
+    @Autowired
+    private AbandonedUploadSweeper abandonedUploadSweeper;
+
+    @MockBean
+    private S3MultipartService s3MultipartService;
+
+    @MockBean
+    private MetadataClient metadataClient;
+
+    @BeforeEach
+    void setUp() {
+        reset(s3MultipartService, metadataClient);
+    }
+
+    @Test
+    @DisplayName("Sweeper should page through stale sessions and release their storage")
+    void shouldSweepStaleSessionsInPages() {
+        // Given
+        MetadataStaleSession multipart = new MetadataStaleSession(3L, "upload-3", "uploads/a/big.bin", null, 4);
+        MetadataStaleSession segmented = new MetadataStaleSession(5L, null, "uploads/b/log.txt", "lz4", 3);
+        MetadataStaleSession pending = new MetadataStaleSession(9L, "upload-9", "uploads/c/x.bin", null, 2);
+        when(metadataClient.claimStaleSessions(any(MetadataStaleSessionClaimRequest.class)))
+                .thenReturn(List.of(multipart, segmented))
+                .thenReturn(List.of(pending));
+        when(metadataClient.abortSessions(any(MetadataAbortSessionsRequest.class)))
+                .thenReturn(List.of(3L, 5L), List.of(9L));
+
+        // When
+        int swept = abandonedUploadSweeper.sweep();
+
+        // Then
+        assertThat(swept).isEqualTo(3);
+        verify(s3MultipartService).abortMultipartUpload("upload-3", "uploads/a/big.bin");
+        verify(s3MultipartService).abortMultipartUpload("upload-9", "uploads/c/x.bin");
+        verify(s3MultipartService).deleteSegments("uploads/b/log.txt", 3);
+
+        ArgumentCaptor<MetadataStaleSessionClaimRequest> claims =
+                ArgumentCaptor.forClass(MetadataStaleSessionClaimRequest.class);
+        verify(metadataClient, times(2)).claimStaleSessions(claims.capture());
+        assertThat(claims.getAllValues()).extracting(MetadataStaleSessionClaimRequest::getAfterId)
+                .containsExactly(0L, 5L);
+        assertThat(claims.getValue().getIdleHours()).isEqualTo(24);
+
+        ArgumentCaptor<MetadataAbortSessionsRequest> aborts = ArgumentCaptor.forClass(MetadataAbortSessionsRequest.class);
+        verify(metadataClient, times(2)).abortSessions(aborts.capture());
+        assertThat(aborts.getAllValues().get(0).getFileIds()).containsExactly(3L, 5L);
+        assertThat(aborts.getAllValues().get(1).getFileIds()).containsExactly(9L);
+    }
+
+    @Test
+    @DisplayName("Sweeper should release storage only of the sessions metadata aborted")
+    void shouldReleaseOnlyAbortedSessions() {
+        // Given: session 3 completed after it was claimed
+        MetadataStaleSession completed = new MetadataStaleSession(3L, "upload-3", "uploads/a/big.bin", null, 4);
+        MetadataStaleSession segmented = new MetadataStaleSession(5L, null, "uploads/b/log.txt", "lz4", 3);
+        when(metadataClient.claimStaleSessions(any(MetadataStaleSessionClaimRequest.class)))
+                .thenReturn(List.of(completed, segmented))
+                .thenReturn(List.of());
+        when(metadataClient.abortSessions(any(MetadataAbortSessionsRequest.class))).thenReturn(List.of(5L));
+        doThrow(new RuntimeException("S3 unavailable"))
+                .when(s3MultipartService).deleteSegments("uploads/b/log.txt", 3);
+
+        // When
+        int swept = abandonedUploadSweeper.sweep();
+
+        // Then: the failed release is reported, not thrown, and the completed upload is untouched
+        assertThat(swept).isEqualTo(1);
+        verify(s3MultipartService).deleteSegments("uploads/b/log.txt", 3);
+        verify(s3MultipartService, never()).abortMultipartUpload(anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("Sweeper should do nothing when no sessions are stale")
+    void shouldSkipWhenNothingIsStale() {
+        // Given
+        when(metadataClient.claimStaleSessions(any(MetadataStaleSessionClaimRequest.class))).thenReturn(List.of());
+
+        // When
+        int swept = abandonedUploadSweeper.sweep();
+
+        // Then
+        assertThat(swept).isZero();
+        verify(metadataClient, never()).abortSessions(any());
+        verifyNoInteractions(s3MultipartService);
+    }
+}
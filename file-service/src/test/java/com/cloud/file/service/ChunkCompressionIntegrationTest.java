@@ -0,0 +1,125 @@
+package com.cloud.file.service;
+
+import com.cloud.file.client.MetadataClient;
+import com.cloud.file.client.dto.FileMetadataResponse;
+import com.cloud.file.client.dto.MetadataInitiateRequest;
+import com.cloud.file.dto.ChunkUploadRequest;
+import com.cloud.file.dto.InitiateUploadRequest;
+import com.cloud.file.storage.ChunkCompressor;
+import com.cloud.file.storage.S3MultipartService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(properties = "file.upload.compression.enabled=true")
+@ActiveProfiles("test")
+class ChunkCompressionIntegrationTest {
+
+    @Autowired
+    private ChunkUploadService chunkUploadService;
+
+    @Autowired
+    private ChunkCompressor chunkCompressor;
+
+    @MockBean
+    private S3MultipartService s3MultipartService;
+
+    @MockBean
+    private MetadataClient metadataClient;
+
+    @BeforeEach
+    void setUp() {
+        reset(s3MultipartService, metadataClient);
+    }
+
+    @Test
+    @DisplayName("Compressible content type should skip multipart and record lz4 encoding")
+    void shouldInitiateCompressedUpload() {
+        // Given
+        InitiateUploadRequest request = new InitiateUploadRequest("export.csv", 1024L, "text/csv", "user123");
+        when(s3MultipartService.generateS3Key("export.csv")).thenReturn("uploads/key/export.csv");
+        when(metadataClient.initiateSession(any(MetadataInitiateRequest.class))).thenReturn(7L);
+
+        // When
+        chunkUploadService.initiateUpload(request);
+
+        // Then
+        ArgumentCaptor<MetadataInitiateRequest> captor = ArgumentCaptor.forClass(MetadataInitiateRequest.class);
+        verify(metadataClient).initiateSession(captor.capture());
+        assertThat(captor.getValue().getContentEncoding()).isEqualTo(ChunkCompressor.LZ4);
+        assertThat(captor.getValue().getS3Key()).isEqualTo("uploads/key/export.csv");
+        verify(s3MultipartService, never()).initiateMultipartUpload(anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("Already-compressed media should use the plain multipart path")
+    void shouldSkipCompressedMedia() {
+        // Given
+        InitiateUploadRequest request = new InitiateUploadRequest("photo.jpg", 1024L, "image/jpeg", "user123");
+        when(s3MultipartService.initiateMultipartUpload(anyString(), anyString()))
+                .thenReturn(new S3MultipartService.MultipartInitResult("upload-id", "uploads/key/photo.jpg"));
+        when(metadataClient.initiateSession(any(MetadataInitiateRequest.class))).thenReturn(8L);
+
+        // When
+        chunkUploadService.initiateUpload(request);
+
+        // Then
+        ArgumentCaptor<MetadataInitiateRequest> captor = ArgumentCaptor.forClass(MetadataInitiateRequest.class);
+        verify(metadataClient).initiateSession(captor.capture());
+        assertThat(captor.getValue().getContentEncoding()).isNull();
+    }
+
+    @Test
+    @DisplayName("Compressible chunk should be stored as a smaller lz4 segment")
+    void shouldStoreCompressedSegment() {
+        // Given
+        byte[] chunk = "timestamp,level,message\n".repeat(4096).getBytes(StandardCharsets.UTF_8);
+        FileMetadataResponse metadata = FileMetadataResponse.builder()
+                .id(7L).s3Key("uploads/key/export.csv").status("PENDING").contentEncoding("lz4").build();
+        when(metadataClient.getFile(7L)).thenReturn(metadata);
+        when(s3MultipartService.putSegment(anyString(), anyInt(), any(byte[].class), any())).thenReturn("etag-1");
+
+        // When
+        chunkUploadService.uploadChunk(new ChunkUploadRequest("7", 1, chunk, null));
+
+        // Then
+        ArgumentCaptor<byte[]> stored = ArgumentCaptor.forClass(byte[].class);
+        verify(s3MultipartService).putSegment(eq("uploads/key/export.csv"), eq(1), stored.capture(), eq("lz4"));
+        assertThat(stored.getValue().length).isLessThan(chunk.length / 5);
+        verify(s3MultipartService, never()).uploadPart(anyString(), anyString(), anyInt(), any());
+    }
+
+    @Test
+    @DisplayName("Incompressible chunk should be stored raw and round-trip unchanged")
+    void shouldStoreIncompressibleChunkRaw() throws Exception {
+        // Given
+        byte[] random = new byte[128 * 1024];
+        new Random(42).nextBytes(random);
+        byte[] text = "hello hello hello hello ".repeat(2048).getBytes(StandardCharsets.UTF_8);
+
+        // When
+        ChunkCompressor.EncodedChunk rawChunk = chunkCompressor.encode(random, ChunkCompressor.LZ4);
+        ChunkCompressor.EncodedChunk textChunk = chunkCompressor.encode(text, ChunkCompressor.LZ4);
+
+        // Then
+        assertThat(rawChunk.getContentEncoding()).isNull();
+        assertThat(rawChunk.getData()).isSameAs(random);
+        assertThat(textChunk.getContentEncoding()).isEqualTo(ChunkCompressor.LZ4);
+        byte[] decoded = chunkCompressor.decode(new ByteArrayInputStream(textChunk.getData()),
+                textChunk.getContentEncoding()).readAllBytes();
+        assertThat(decoded).isEqualTo(text);
+    }
+}
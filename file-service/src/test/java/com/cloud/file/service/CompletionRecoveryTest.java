@@ -0,0 +1,148 @@
+package com.cloud.file.service;
+
+import com.cloud.file.client.MetadataClient;
+import com.cloud.file.client.dto.FileMetadataResponse;
+import com.cloud.file.client.dto.MetadataIdleSessionClaimRequest;
+import com.cloud.file.client.dto.MetadataPartsResponse;
+import com.cloud.file.client.dto.MetadataStaleSession;
+import com.cloud.file.config.FileUploadProperties;
+import com.cloud.file.dto.CompleteUploadRequest;
+import com.cloud.file.storage.CompletionJournal;
+import com.cloud.file.storage.S3MultipartService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class CompletionRecoveryTest {
+
+    @Autowired
+    private ChunkUploadService chunkUploadService;
+
+    @Autowired
+    private CompletionRecoveryService completionRecoveryService;
+
+    @Autowired
+    private CompletionJournal completionJournal;
+
+    @Autowired
+    private FileUploadProperties fileUploadProperties;
+
+    @MockBean
+    private S3MultipartService s3MultipartService;
+
+    @MockBean
+    private MetadataClient metadataClient;
+
+    @BeforeEach
+    void setUp() {
+        reset(s3MultipartService, metadataClient);
+        completionJournal.pending().forEach(entry -> completionJournal.clear(entry.getFileId()));
+        fileUploadProperties.getRecovery().setCompletionAgeSeconds(0);
+    }
+
+    @Test
+    @DisplayName("Completion interrupted after S3 assembly should be finished from the journal")
+    void shouldReplayInterruptedCompletion() {
+        // Given: S3 assembles the file, then the metadata update fails
+        FileMetadataResponse active = FileMetadataResponse.builder()
+                .id(1L).s3Key("s3-key-1").uploadId("upload-1").status("ACTIVE").totalChunks(1).build();
+        when(metadataClient.getFile(1L)).thenReturn(active);
+        when(metadataClient.getCompletedParts(1L))
+                .thenReturn(new MetadataPartsResponse(new int[] { 1 }, new String[] { "e1" }));
+        when(s3MultipartService.completeMultipartUpload(anyString(), anyString(), anyList()))
+                .thenReturn("s3://test-bucket/s3-key-1");
+        doThrow(new RuntimeException("connection reset")).doNothing().when(metadataClient).completeSession(1L);
+
+        assertThatThrownBy(() -> chunkUploadService.completeUpload(new CompleteUploadRequest("1")));
+        assertThat(completionJournal.pending()).extracting(CompletionJournal.Entry::getFileId).containsExactly(1L);
+
+        when(s3MultipartService.headObject("s3-key-1")).thenReturn(HeadObjectResponse.builder().build());
+
+        // When
+        int recovered = completionRecoveryService.replayJournal();
+
+        // Then
+        assertThat(recovered).isEqualTo(1);
+        verify(metadataClient, times(2)).completeSession(1L);
+        assertThat(completionJournal.pending()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Journal entry should be dropped when S3 never assembled the file")
+    void shouldDropEntryWhenUploadStillOpen() {
+        // Given
+        completionJournal.begin(new CompletionJournal.Entry(2L, "upload-2", "s3-key-2", null));
+        when(metadataClient.getFile(2L)).thenReturn(FileMetadataResponse.builder()
+                .id(2L).s3Key("s3-key-2").uploadId("upload-2").status("ACTIVE").build());
+        when(s3MultipartService.headObject("s3-key-2")).thenReturn(null);
+        when(s3MultipartService.isMultipartUploadOpen("upload-2", "s3-key-2")).thenReturn(true);
+
+        // When
+        int recovered = completionRecoveryService.replayJournal();
+
+        // Then
+        assertThat(recovered).isZero();
+        verify(metadataClient, never()).completeSession(anyLong());
+        assertThat(completionJournal.pending()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Journal entries of completions that may still be in flight should be left alone")
+    void shouldNotReplayRecentEntries() {
+        // Given: a completion journaled a moment ago, its S3 assembly still running
+        fileUploadProperties.getRecovery().setCompletionAgeSeconds(300);
+        completionJournal.begin(new CompletionJournal.Entry(3L, "upload-3", "s3-key-3", null));
+
+        // When
+        int recovered = completionRecoveryService.replayJournal();
+
+        // Then
+        assertThat(recovered).isZero();
+        verifyNoInteractions(metadataClient, s3MultipartService);
+        assertThat(completionJournal.pending()).extracting(CompletionJournal.Entry::getFileId).containsExactly(3L);
+    }
+
+    @Test
+    @DisplayName("Reconciliation should complete ACTIVE sessions whose object already exists")
+    void shouldReconcileAssembledActiveSessions() {
+        // Given
+        when(metadataClient.claimIdleSessions(any(MetadataIdleSessionClaimRequest.class))).thenReturn(List.of(
+                new MetadataStaleSession(4L, "upload-4", "s3-key-4", null, 2),
+                new MetadataStaleSession(6L, "upload-6", "s3-key-6", null, 2),
+                new MetadataStaleSession(8L, null, "s3-key-8", "lz4", 2)));
+        when(s3MultipartService.headObject("s3-key-4")).thenReturn(HeadObjectResponse.builder().build());
+        when(s3MultipartService.headObject("s3-key-6")).thenReturn(null);
+
+        // When
+        int reconciled = completionRecoveryService.reconcileActiveSessions();
+
+        // Then
+        assertThat(reconciled).isEqualTo(1);
+        verify(metadataClient).completeSession(4L);
+        verify(metadataClient, never()).completeSession(6L);
+        verify(s3MultipartService, never()).headObject("s3-key-8");
+
+        // Then: the sessions were claimed under a lease, so other nodes skip them
+        ArgumentCaptor<MetadataIdleSessionClaimRequest> claim =
+                ArgumentCaptor.forClass(MetadataIdleSessionClaimRequest.class);
+        verify(metadataClient).claimIdleSessions(claim.capture());
+        assertThat(claim.getValue().getStatus()).isEqualTo("ACTIVE");
+        assertThat(claim.getValue().getLeaseSeconds()).isEqualTo(3600);
+        // Then: sessions the sweeper may take within a lease are left to it
+        assertThat(claim.getValue().getMaxIdleMinutes()).isEqualTo(23 * 60);
+    }
+}
@@ -0,0 +1,164 @@
+package com.cloud.file.service;
+
+import com.cloud.chunking.ChunkHasher;
+import com.cloud.chunking.FastCdc;
+import com.cloud.file.client.MetadataClient;
+import com.cloud.file.client.dto.FileMetadataResponse;
+import com.cloud.file.client.dto.MetadataAddChunkRequest;
+import com.cloud.file.client.dto.MetadataInitiateRequest;
+import com.cloud.file.client.dto.MetadataKnownChunksRequest;
+import com.cloud.file.dto.ChunkLookupRequest;
+import com.cloud.file.dto.ChunkLookupResponse;
+import com.cloud.file.dto.ChunkReferenceRequest;
+import com.cloud.file.dto.ChunkUploadRequest;
+import com.cloud.file.dto.InitiateUploadRequest;
+import com.cloud.file.exception.ChunkIntegrityException;
+import com.cloud.file.exception.InvalidUploadStateException;
+import com.cloud.file.storage.S3MultipartService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ContentDefinedChunkingTest {
+
+    @Autowired
+    private ChunkUploadService chunkUploadService;
+
+    @MockBean
+    private S3MultipartService s3MultipartService;
+
+    @MockBean
+    private MetadataClient metadataClient;
+
+    private final FileMetadataResponse session = FileMetadataResponse.builder()
+            .id(21L).owner("user123").s3Key("uploads/key/backup.tar").status("ACTIVE")
+            .chunkingScheme(FastCdc.SCHEME).build();
+
+    @BeforeEach
+    void setUp() {
+        reset(s3MultipartService, metadataClient);
+        when(s3MultipartService.contentAddressedKey(anyString())).thenCallRealMethod();
+    }
+
+    @Test
+    @DisplayName("Content-defined upload should skip multipart and use the client's chunk count")
+    void shouldInitiateContentDefinedUpload() {
+        // Given
+        InitiateUploadRequest request = new InitiateUploadRequest("backup.tar", 10_000_000L,
+                "application/x-tar", "user123", FastCdc.SCHEME, 3, null);
+        when(s3MultipartService.generateS3Key("backup.tar")).thenReturn("uploads/key/backup.tar");
+        when(metadataClient.initiateSession(any(MetadataInitiateRequest.class))).thenReturn(21L);
+
+        // When
+        chunkUploadService.initiateUpload(request);
+
+        // Then
+        ArgumentCaptor<MetadataInitiateRequest> captor = ArgumentCaptor.forClass(MetadataInitiateRequest.class);
+        verify(metadataClient).initiateSession(captor.capture());
+        assertThat(captor.getValue().getChunkingScheme()).isEqualTo(FastCdc.SCHEME);
+        assertThat(captor.getValue().getTotalChunks()).isEqualTo(3);
+        verify(s3MultipartService, never()).initiateMultipartUpload(anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("Lookup should report only the chunks the owner has not stored yet")
+    void shouldReportMissingChunks() {
+        // Given
+        when(metadataClient.getFile(21L)).thenReturn(session);
+        when(metadataClient.findKnownChunks(any(MetadataKnownChunksRequest.class))).thenReturn(List.of("aa11"));
+
+        // When
+        ChunkLookupResponse response = chunkUploadService.lookupChunks(
+                new ChunkLookupRequest("21", List.of("aa11", "bb22", "bb22")));
+
+        // Then
+        assertThat(response.getMissing()).containsExactly("bb22");
+        assertThat(response.getKnown()).containsExactly("aa11");
+    }
+
+    @Test
+    @DisplayName("Known chunk should be registered by reference without touching S3")
+    void shouldRegisterKnownChunkByReference() {
+        // Given
+        when(metadataClient.getFile(21L)).thenReturn(session);
+        when(metadataClient.findKnownChunks(any(MetadataKnownChunksRequest.class))).thenReturn(List.of("aa11"));
+        when(s3MultipartService.headObject("cas/aa/aa11"))
+                .thenReturn(HeadObjectResponse.builder().contentLength(2048L).build());
+
+        // When
+        chunkUploadService.registerChunkReference(new ChunkReferenceRequest("21", 2, "aa11", null));
+
+        // Then
+        ArgumentCaptor<MetadataAddChunkRequest> captor = ArgumentCaptor.forClass(MetadataAddChunkRequest.class);
+        verify(metadataClient).addChunk(eq(21L), captor.capture());
+        assertThat(captor.getValue().getChecksum()).isEqualTo("aa11");
+        assertThat(captor.getValue().getEtag()).isEqualTo("aa11");
+        assertThat(captor.getValue().getSize()).isEqualTo(2048L);
+        verify(s3MultipartService, never()).putObject(anyString(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Reference claiming a size other than the stored chunk's should be rejected")
+    void shouldRejectReferenceWithWrongSize() {
+        // Given
+        when(metadataClient.getFile(21L)).thenReturn(session);
+        when(metadataClient.findKnownChunks(any(MetadataKnownChunksRequest.class))).thenReturn(List.of("aa11"));
+        when(s3MultipartService.headObject("cas/aa/aa11"))
+                .thenReturn(HeadObjectResponse.builder().contentLength(2048L).build());
+
+        // When / Then
+        assertThatThrownBy(() -> chunkUploadService.registerChunkReference(
+                new ChunkReferenceRequest("21", 2, "aa11", 1L)))
+                .isInstanceOf(InvalidUploadStateException.class);
+        verify(metadataClient, never()).addChunk(anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Reference to a chunk the owner never stored should be rejected")
+    void shouldRejectUnknownReference() {
+        // Given
+        when(metadataClient.getFile(21L)).thenReturn(session);
+        when(metadataClient.findKnownChunks(any(MetadataKnownChunksRequest.class))).thenReturn(List.of());
+
+        // When / Then
+        assertThatThrownBy(() -> chunkUploadService.registerChunkReference(
+                new ChunkReferenceRequest("21", 2, "cc33", 2048L)))
+                .isInstanceOf(InvalidUploadStateException.class);
+        verify(metadataClient, never()).addChunk(anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Chunk should be stored under its content address and rejected on checksum mismatch")
+    void shouldStoreChunkByContentAddress() {
+        // Given
+        byte[] chunk = "content-defined chunk".getBytes(StandardCharsets.UTF_8);
+        String checksum = ChunkHasher.sha256Hex(chunk);
+        when(metadataClient.getFile(21L)).thenReturn(session);
+
+        // When
+        chunkUploadService.uploadChunk(new ChunkUploadRequest("21", 1, chunk, checksum));
+
+        // Then
+        verify(s3MultipartService).putObject(eq("cas/" + checksum.substring(0, 2) + "/" + checksum),
+                eq(chunk), isNull());
+        assertThatThrownBy(() -> chunkUploadService.uploadChunk(
+                new ChunkUploadRequest("21", 2, chunk, "0".repeat(64))))
+                .isInstanceOf(ChunkIntegrityException.class);
+        verify(s3MultipartService, times(1)).putObject(anyString(), any(byte[].class), any());
+    }
+}
@@ -0,0 +1,197 @@
+package com.cloud.file.service;
+
+import com.cloud.file.client.MetadataClient;
+import com.cloud.file.client.dto.FileMetadataResponse;
+import com.cloud.file.storage.DiskObjectCache;
+import com.cloud.file.storage.S3MultipartService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = {
+        "file.download.cache.enabled=true",
+        "file.download.cache.directory=target/download-cache",
+        "file.download.cache.max-object-size=1024"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class DownloadCacheIntegrationTest {
+
+    private static final byte[] DATA = "shared handbook contents".getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private FileDownloadService fileDownloadService;
+
+    @Autowired
+    private DiskObjectCache diskObjectCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private S3MultipartService s3MultipartService;
+
+    @MockBean
+    private MetadataClient metadataClient;
+
+    @BeforeEach
+    void setUp() {
+        reset(s3MultipartService, metadataClient);
+    }
+
+    @Test
+    @DisplayName("Repeated downloads of a hot file should be served from local disk")
+    void shouldServeRepeatedDownloadsFromDisk() throws Exception {
+        // Given
+        when(metadataClient.getFile(40L)).thenReturn(metadata(40L, "uploads/hot/handbook.txt", DATA.length));
+        when(s3MultipartService.getObject("uploads/hot/handbook.txt")).thenAnswer(invocation -> s3Object(DATA));
+        double savedBefore = meterRegistry.counter("file.download.cache.bytes.saved").count();
+
+        // When
+        String url = fileDownloadService.generateDownloadUrl("40", "user123");
+        FileDownloadService.FileContent first = fileDownloadService.openContent("40", "user123");
+        byte[] firstBytes = readFully(first.getStream());
+        FileDownloadService.FileContent second = fileDownloadService.openContent("40", "user123");
+        FileDownloadService.FileContent third = fileDownloadService.openContent("40", "user123");
+
+        // Then
+        assertThat(url).isEqualTo("/files/40/content");
+        assertThat(first.getCached()).isNull();
+        assertThat(firstBytes).isEqualTo(DATA);
+        verify(s3MultipartService, times(1)).getObject("uploads/hot/handbook.txt");
+        assertThat(third.getCached().getFile()).isEqualTo(second.getCached().getFile());
+        assertThat(Files.readAllBytes(second.getCached().getFile())).isEqualTo(DATA);
+        assertThat(second.getContentLength()).isEqualTo(DATA.length);
+        assertThat(meterRegistry.counter("file.download.cache.bytes.saved").count() - savedBefore)
+                .isEqualTo(2.0 * DATA.length);
+        second.getCached().close();
+        third.getCached().close();
+    }
+
+    @Test
+    @DisplayName("A download cut short should not leave a partial object in the cache")
+    void shouldNotCachePartialReads() throws Exception {
+        // Given
+        when(metadataClient.getFile(42L)).thenReturn(metadata(42L, "uploads/cut/notes.txt", DATA.length));
+        when(s3MultipartService.getObject("uploads/cut/notes.txt")).thenAnswer(invocation -> s3Object(DATA));
+
+        // When
+        FileDownloadService.FileContent first = fileDownloadService.openContent("42", "user123");
+        try (InputStream in = first.getStream()) {
+            in.read(new byte[4]);
+        }
+        FileDownloadService.FileContent second = fileDownloadService.openContent("42", "user123");
+
+        // Then
+        assertThat(second.getCached()).isNull();
+        verify(s3MultipartService, times(2)).getObject("uploads/cut/notes.txt");
+        second.getStream().close();
+    }
+
+    @Test
+    @DisplayName("A file being served should outlive its eviction and never take a newer fill with it")
+    void shouldKeepLeasedFileUntilReleased() throws Exception {
+        // Given
+        byte[] updated = "refilled contents".getBytes(StandardCharsets.UTF_8);
+        when(metadataClient.getFile(43L)).thenReturn(metadata(43L, "uploads/lease/guide.txt", DATA.length));
+        when(s3MultipartService.getObject("uploads/lease/guide.txt")).thenAnswer(invocation -> s3Object(DATA));
+        readFully(fileDownloadService.openContent("43", "user123").getStream());
+        DiskObjectCache.Lease serving = fileDownloadService.openContent("43", "user123").getCached();
+
+        // When
+        readFully(diskObjectCache.readThrough("uploads/lease/guide.txt", s3Object(updated)));
+        DiskObjectCache.Lease refilled = fileDownloadService.openContent("43", "user123").getCached();
+
+        // Then
+        assertThat(refilled.getFile()).isNotEqualTo(serving.getFile());
+        assertThat(Files.readAllBytes(serving.getFile())).isEqualTo(DATA);
+        serving.close();
+        assertThat(serving.getFile()).doesNotExist();
+        refilled.close();
+        assertThat(Files.readAllBytes(refilled.getFile())).isEqualTo(updated);
+    }
+
+    @Test
+    @DisplayName("A cached file should be served as a resource, ranges included, releasing its lease with the request")
+    void shouldServeCachedFileOverHttp() throws Exception {
+        // Given
+        byte[] updated = "refilled contents".getBytes(StandardCharsets.UTF_8);
+        when(metadataClient.getFile(44L)).thenReturn(metadata(44L, "uploads/http/manual.txt", DATA.length));
+        when(s3MultipartService.getObject("uploads/http/manual.txt")).thenAnswer(invocation -> s3Object(DATA));
+        readFully(fileDownloadService.openContent("44", "user123").getStream());
+        DiskObjectCache.Lease probe = fileDownloadService.openContent("44", "user123").getCached();
+        probe.close();
+
+        // When
+        mockMvc.perform(get("/files/44/content").header("X-User-Id", "user123"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(DATA));
+        mockMvc.perform(get("/files/44/content").header("X-User-Id", "user123")
+                        .header(HttpHeaders.RANGE, "bytes=0-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().bytes(Arrays.copyOf(DATA, 6)));
+        readFully(diskObjectCache.readThrough("uploads/http/manual.txt", s3Object(updated)));
+
+        // Then
+        verify(s3MultipartService, times(1)).getObject("uploads/http/manual.txt");
+        assertThat(probe.getFile()).doesNotExist();
+    }
+
+    @Test
+    @DisplayName("Objects above the per-object limit should bypass the cache")
+    void shouldStreamLargeObjectsFromS3() {
+        // Given
+        when(metadataClient.getFile(41L)).thenReturn(metadata(41L, "uploads/big/video.bin", 4096));
+        when(s3MultipartService.getObject("uploads/big/video.bin")).thenAnswer(invocation -> s3Object(DATA));
+
+        // When
+        FileDownloadService.FileContent content = fileDownloadService.openContent("41", "user123");
+
+        // Then
+        assertThat(content.getCached()).isNull();
+        assertThat(content.getStream()).isNotNull();
+    }
+
+    private FileMetadataResponse metadata(Long id, String s3Key, long size) {
+        return FileMetadataResponse.builder().id(id).fileName("file").fileType("text/plain").owner("user123")
+                .s3Key(s3Key).size(size).status("COMPLETED").build();
+    }
+
+    private ResponseInputStream<GetObjectResponse> s3Object(byte[] data) {
+        return new ResponseInputStream<>(
+                GetObjectResponse.builder().eTag("\"etag-1\"").contentLength((long) data.length).build(),
+                AbortableInputStream.create(new ByteArrayInputStream(data)));
+    }
+
+    private byte[] readFully(InputStream stream) throws Exception {
+        try (InputStream in = stream) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.cloud.file.service;
+
+import com.cloud.file.client.MetadataClient;
+import com.cloud.file.client.dto.FileMetadataResponse;
+import com.cloud.file.config.S3Properties;
+import com.cloud.file.dto.CompleteUploadResponse;
+import com.cloud.file.dto.CopyFileRequest;
+import com.cloud.file.dto.FileMetadataRequest;
+import com.cloud.file.exception.MetadataClientException;
+import com.cloud.file.exception.S3UploadFailedException;
+import com.cloud.file.exception.UnauthorizedAccessException;
+import com.cloud.file.storage.S3MultipartService;
+import feign.FeignException;
+import feign.Request;
+import feign.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CopyPartResult;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class FileCopyIntegrationTest {
+
+    @Autowired
+    private FileCopyService fileCopyService;
+
+    @MockBean
+    private S3MultipartService s3MultipartService;
+
+    @MockBean
+    private MetadataClient metadataClient;
+
+    @BeforeEach
+    void setUp() {
+        reset(s3MultipartService, metadataClient);
+    }
+
+    @Test
+    @DisplayName("Should copy server-side and register new metadata without transferring bytes")
+    void shouldCopyServerSide() {
+        // Given
+        long size = 6L * 1024 * 1024 * 1024; // above the single CopyObject limit
+        when(metadataClient.getFile(1L)).thenReturn(FileMetadataResponse.builder()
+                .id(1L).fileName("video.mp4").fileType("video/mp4").s3Key("uploads/a/video.mp4")
+                .owner("user123").status("COMPLETED").size(size).totalChunks(1200).build());
+        when(s3MultipartService.headObject("uploads/a/video.mp4"))
+                .thenReturn(HeadObjectResponse.builder().contentLength(size).build());
+        when(s3MultipartService.generateS3Key("copy.mp4")).thenReturn("uploads/b/copy.mp4");
+        when(metadataClient.createFile(any(FileMetadataRequest.class))).thenReturn(FileMetadataResponse.builder()
+                .id(2L).fileName("copy.mp4").size(size).status("COMPLETED").build());
+
+        // When
+        CompleteUploadResponse response = fileCopyService.copyFile("1", "user123", new CopyFileRequest("copy.mp4"));
+
+        // Then
+        assertThat(response.getFileId()).isEqualTo("2");
+        verify(s3MultipartService).copyObject(eq("uploads/a/video.mp4"), eq("uploads/b/copy.mp4"), eq(size),
+                eq("video/mp4"), anyLong());
+        verify(s3MultipartService, never()).getObject(anyString());
+
+        ArgumentCaptor<FileMetadataRequest> captor = ArgumentCaptor.forClass(FileMetadataRequest.class);
+        verify(metadataClient).createFile(captor.capture());
+        assertThat(captor.getValue().getS3Key()).isEqualTo("uploads/b/copy.mp4");
+        assertThat(captor.getValue().getOwner()).isEqualTo("user123");
+    }
+
+    @Test
+    @DisplayName("A copy metadata-service rejects should be deleted from S3 again")
+    void shouldDeleteCopyRejectedByMetadata() {
+        // Given: the owner is over quota
+        when(metadataClient.getFile(1L)).thenReturn(FileMetadataResponse.builder()
+                .id(1L).fileName("report.pdf").fileType("application/pdf").s3Key("uploads/a/report.pdf")
+                .owner("user123").status("COMPLETED").size(2048L).totalChunks(1).build());
+        when(s3MultipartService.headObject("uploads/a/report.pdf"))
+                .thenReturn(HeadObjectResponse.builder().contentLength(2048L).build());
+        when(s3MultipartService.generateS3Key("report.pdf")).thenReturn("uploads/b/report.pdf");
+        when(metadataClient.createFile(any(FileMetadataRequest.class))).thenThrow(rejection(507));
+
+        // When/Then
+        assertThatThrownBy(() -> fileCopyService.copyFile("1", "user123", null))
+                .isInstanceOf(MetadataClientException.class);
+        verify(s3MultipartService).copyObject(eq("uploads/a/report.pdf"), eq("uploads/b/report.pdf"), eq(2048L),
+                eq("application/pdf"), anyLong());
+        verify(s3MultipartService).deleteObjects(List.of("uploads/b/report.pdf"));
+    }
+
+    @Test
+    @DisplayName("A segment copy that fails part way should delete the segments already copied")
+    void shouldDeleteSegmentsOfFailedCopy() {
+        // Given: the third of four segments fails
+        when(metadataClient.getFile(1L)).thenReturn(FileMetadataResponse.builder()
+                .id(1L).fileName("log.txt").fileType("text/plain").s3Key("uploads/a/log.txt")
+                .owner("user123").status("COMPLETED").size(4096L).totalChunks(4).contentEncoding("lz4").build());
+        when(s3MultipartService.generateS3Key("log.txt")).thenReturn("uploads/b/log.txt");
+        when(s3MultipartService.segmentKey(anyString(), anyInt()))
+                .thenAnswer(invocation -> invocation.getArgument(0) + ".part" + invocation.getArgument(1));
+        doThrow(new S3UploadFailedException("Failed to copy file", new IllegalStateException("copy failed")))
+                .when(s3MultipartService).copyObject("uploads/a/log.txt.part3", "uploads/b/log.txt.part3");
+
+        // When/Then
+        assertThatThrownBy(() -> fileCopyService.copyFile("1", "user123", null))
+                .isInstanceOf(S3UploadFailedException.class);
+        verify(s3MultipartService, times(4)).copyObject(anyString(), anyString());
+        verify(s3MultipartService).deleteSegments("uploads/b/log.txt", 4);
+        verify(metadataClient, never()).createFile(any());
+    }
+
+    @Test
+    @DisplayName("Should block non-owner from copying a file")
+    void shouldBlockNonOwnerCopy() {
+        // Given
+        when(metadataClient.getFile(1L)).thenReturn(FileMetadataResponse.builder()
+                .id(1L).owner("user123").status("COMPLETED").build());
+
+        // When/Then
+        assertThatThrownBy(() -> fileCopyService.copyFile("1", "attacker456", null))
+                .isInstanceOf(UnauthorizedAccessException.class);
+        verify(s3MultipartService, never()).copyObject(anyString(), anyString());
+        verify(metadataClient, never()).createFile(any());
+    }
+
+    @Test
+    @DisplayName("Part copies should cover every byte once, the last part taking the remainder")
+    void shouldCopyPartRangesToTheLastByte() {
+        // Given: 5GB and one byte in 1GB parts
+        long gigabyte = 1024L * 1024 * 1024;
+        S3Client s3Client = partCopyingS3Client();
+
+        // When
+        copyInParts(s3Client, 5 * gigabyte + 1, gigabyte);
+
+        // Then: five full parts and a one-byte sixth
+        ArgumentCaptor<UploadPartCopyRequest> captor = ArgumentCaptor.forClass(UploadPartCopyRequest.class);
+        verify(s3Client, times(6)).uploadPartCopy(captor.capture());
+        assertThat(captor.getAllValues()).extracting(UploadPartCopyRequest::copySourceRange).containsExactly(
+                "bytes=0-1073741823", "bytes=1073741824-2147483647", "bytes=2147483648-3221225471",
+                "bytes=3221225472-4294967295", "bytes=4294967296-5368709119", "bytes=5368709120-5368709120");
+        assertThat(captor.getAllValues()).extracting(UploadPartCopyRequest::partNumber)
+                .containsExactly(1, 2, 3, 4, 5, 6);
+        verify(s3Client).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    @DisplayName("Part copies should grow to stay within the 10,000 part limit, ending on an exact boundary")
+    void shouldStayWithinPartLimit() {
+        // Given: 10,000 parts of 1MB requested parts would need 20,000
+        long size = 20_000L * 1024 * 1024;
+        S3Client s3Client = partCopyingS3Client();
+
+        // When
+        copyInParts(s3Client, size, 1024 * 1024);
+
+        // Then: 10,000 parts of 2MB, the last one ending on the last byte
+        ArgumentCaptor<UploadPartCopyRequest> captor = ArgumentCaptor.forClass(UploadPartCopyRequest.class);
+        verify(s3Client, times(10_000)).uploadPartCopy(captor.capture());
+        UploadPartCopyRequest last = captor.getAllValues().get(9_999);
+        assertThat(last.partNumber()).isEqualTo(10_000);
+        assertThat(last.copySourceRange()).isEqualTo("bytes=" + (size - 2 * 1024 * 1024) + "-" + (size - 1));
+    }
+
+    @Test
+    @DisplayName("A failed part copy should stop the remaining parts and abort the upload")
+    void shouldStopPartCopiesOnFirstFailure() {
+        // Given: the second of six parts fails
+        long gigabyte = 1024L * 1024 * 1024;
+        S3Client s3Client = partCopyingS3Client();
+        doThrow(new IllegalStateException("copy failed")).when(s3Client)
+                .uploadPartCopy(argThat((UploadPartCopyRequest request) -> request.partNumber() == 2));
+
+        // When/Then
+        assertThatThrownBy(() -> copyInParts(s3Client, 6 * gigabyte, gigabyte))
+                .isInstanceOf(S3UploadFailedException.class);
+        verify(s3Client, times(2)).uploadPartCopy(any(UploadPartCopyRequest.class));
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    private FeignException rejection(int status) {
+        Request request = Request.create(Request.HttpMethod.POST, "/metadata", Map.of(), null,
+                StandardCharsets.UTF_8, null);
+        return FeignException.errorStatus("createFile", Response.builder()
+                .status(status).reason("Rejected").request(request).headers(Map.of()).build());
+    }
+
+    private S3Client partCopyingS3Client() {
+        S3Client s3Client = mock(S3Client.class);
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("copy-upload").build());
+        when(s3Client.uploadPartCopy(any(UploadPartCopyRequest.class))).thenAnswer(invocation -> {
+            UploadPartCopyRequest request = invocation.getArgument(0);
+            return UploadPartCopyResponse.builder()
+                    .copyPartResult(CopyPartResult.builder().eTag("etag-" + request.partNumber()).build())
+                    .build();
+        });
+        return s3Client;
+    }
+
+    /**
+     * Copy through a real S3MultipartService whose executor runs each part in the calling thread,
+     * so parts run one after another in order
+     */
+    private void copyInParts(S3Client s3Client, long size, long partSize) {
+        ExecutorService inline = mock(ExecutorService.class);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(inline).execute(any(Runnable.class));
+        S3Properties properties = new S3Properties();
+        properties.setBucket("bucket");
+        new S3MultipartService(s3Client, null, properties, inline)
+                .copyObject("uploads/a/video.mp4", "uploads/b/copy.mp4", size, "video/mp4", partSize);
+    }
+}
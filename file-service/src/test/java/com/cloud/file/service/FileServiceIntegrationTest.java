@@ -1,18 +1,34 @@
 package com.cloud.file.service;
 
 import com.cloud.file.client.MetadataClient;
+import com.cloud.file.client.dto.FileMetadataResponse;
 import com.cloud.file.client.dto.MetadataInitiateRequest;
+import com.cloud.file.client.dto.MetadataPartsResponse;
+import com.cloud.file.dto.CompleteUploadRequest;
+import com.cloud.file.dto.CompleteUploadResponse;
+import com.cloud.file.dto.FileMetadataRequest;
 import com.cloud.file.dto.InitiateUploadRequest;
 import com.cloud.file.dto.InitiateUploadResponse;
+import com.cloud.file.dto.ErrorResponse;
+import com.cloud.file.exception.FileTooLargeException;
+import com.cloud.file.exception.GlobalExceptionHandler;
+import com.cloud.file.exception.InvalidUploadStateException;
 import com.cloud.file.exception.S3UploadFailedException;
 import com.cloud.file.storage.S3MultipartService;
+import jakarta.servlet.MultipartConfigElement;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -25,6 +41,12 @@ class FileServiceIntegrationTest {
     @Autowired
     private ChunkUploadService chunkUploadService;
 
+    @Autowired
+    private MultipartConfigElement multipartConfigElement;
+
+    @Autowired
+    private GlobalExceptionHandler exceptionHandler;
+
     @MockBean
     private S3MultipartService s3MultipartService;
 
@@ -71,6 +93,101 @@ class FileServiceIntegrationTest {
         verify(metadataClient, times(1)).initiateSession(any(MetadataInitiateRequest.class));
     }
 
+    @Test
+    @DisplayName("Should complete upload from the compact sorted part list")
+    void shouldCompleteUploadFromCompactPartList() {
+        // Given
+        FileMetadataResponse metadata = FileMetadataResponse.builder()
+                .id(1L).fileName("test-file.txt").s3Key("s3-key-123").uploadId("upload-id-123")
+                .status("ACTIVE").totalChunks(3).size(3072L).build();
+        when(metadataClient.getFile(1L)).thenReturn(metadata);
+        when(metadataClient.getCompletedParts(1L)).thenReturn(
+                new MetadataPartsResponse(new int[] { 1, 2, 3 }, new String[] { "e1", "e2", "e3" }));
+        when(s3MultipartService.completeMultipartUpload(anyString(), anyString(), anyList()))
+                .thenReturn("s3://test-bucket/s3-key-123");
+
+        // When
+        CompleteUploadResponse response = chunkUploadService.completeUpload(new CompleteUploadRequest("1"));
+
+        // Then
+        assertThat(response.getTotalChunks()).isEqualTo(3);
+        verify(s3MultipartService).completeMultipartUpload("upload-id-123", "s3-key-123", List.of(
+                new S3MultipartService.CompletedPartInfo(1, "e1"),
+                new S3MultipartService.CompletedPartInfo(2, "e2"),
+                new S3MultipartService.CompletedPartInfo(3, "e3")));
+        verify(metadataClient).completeSession(1L);
+        verify(metadataClient, never()).getUploadedChunks(anyLong());
+    }
+
+    @Test
+    @DisplayName("Should reject completion with missing parts before calling S3")
+    void shouldRejectCompletionWithMissingParts() {
+        // Given
+        FileMetadataResponse metadata = FileMetadataResponse.builder()
+                .id(1L).s3Key("s3-key-123").uploadId("upload-id-123").status("ACTIVE").totalChunks(3).build();
+        when(metadataClient.getFile(1L)).thenReturn(metadata);
+        when(metadataClient.getCompletedParts(1L)).thenReturn(
+                new MetadataPartsResponse(new int[] { 1, 3 }, new String[] { "e1", "e3" }));
+
+        // When/Then
+        assertThatThrownBy(() -> chunkUploadService.completeUpload(new CompleteUploadRequest("1")))
+                .isInstanceOf(InvalidUploadStateException.class)
+                .hasMessageContaining("Missing chunks");
+        verify(s3MultipartService, never()).completeMultipartUpload(anyString(), anyString(), anyList());
+    }
+
+    @Test
+    @DisplayName("Should upload a small file with one PUT and one metadata insert")
+    void shouldUploadSmallFileInSingleRequest() {
+        // Given
+        byte[] data = new byte[40 * 1024];
+        when(s3MultipartService.generateS3Key("icon.png")).thenReturn("uploads/key/icon.png");
+        when(metadataClient.createFile(any(FileMetadataRequest.class))).thenReturn(FileMetadataResponse.builder()
+                .id(11L).fileName("icon.png").size((long) data.length).status("COMPLETED").build());
+
+        // When
+        CompleteUploadResponse response = chunkUploadService.uploadSmallFile("icon.png", "image/png", data, "user123");
+
+        // Then
+        assertThat(response.getFileId()).isEqualTo("11");
+        assertThat(response.getStatus()).isEqualTo("COMPLETED");
+        verify(s3MultipartService).putObject("uploads/key/icon.png", data, "image/png");
+        verify(s3MultipartService, never()).initiateMultipartUpload(anyString(), anyString());
+        verify(metadataClient, never()).initiateSession(any());
+        verify(metadataClient).createFile(argThat(request -> request.getTotalChunks() == 1
+                && "user123".equals(request.getOwner()) && request.getSize() == data.length));
+    }
+
+    @Test
+    @DisplayName("Should reject single-request uploads above the threshold")
+    void shouldRejectSmallUploadAboveThreshold() {
+        // Given
+        byte[] data = new byte[5242880 + 1];
+
+        // When/Then
+        assertThatThrownBy(() -> chunkUploadService.uploadSmallFile("big.bin", "application/octet-stream", data,
+                "user123"))
+                .isInstanceOf(FileTooLargeException.class);
+        verifyNoInteractions(s3MultipartService, metadataClient);
+    }
+
+    @Test
+    @DisplayName("Should map multipart limit rejections to 413 with limits derived from the threshold")
+    void shouldMapMultipartLimitTo413() {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/files/upload/single");
+
+        // When
+        ResponseEntity<ErrorResponse> response = exceptionHandler.handleUploadTooLarge(
+                new MaxUploadSizeExceededException(5242880), request);
+
+        // Then
+        assertThat(multipartConfigElement.getMaxFileSize()).isEqualTo(5242880);
+        assertThat(multipartConfigElement.getMaxRequestSize()).isGreaterThan(5242880);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE);
+        assertThat(response.getBody().getErrorCode()).isEqualTo("FILE_TOO_LARGE");
+    }
+
     @Test
     @DisplayName("Should handle S3 failure during initiate")
     void shouldHandleS3FailureDuringInitiate() {
@@ -0,0 +1,151 @@
+package com.cloud.file.service;
+
+import com.cloud.file.client.MetadataClient;
+import com.cloud.file.client.dto.FileMetadataResponse;
+import com.cloud.file.client.dto.MetadataInitiateRequest;
+import com.cloud.file.client.dto.MetadataPartsResponse;
+import com.cloud.file.client.dto.MetadataReleasedChunkClaimRequest;
+import com.cloud.file.client.dto.MetadataReleasedStorage;
+import com.cloud.file.dto.CompleteUploadRequest;
+import com.cloud.file.dto.FileVersionResponse;
+import com.cloud.file.dto.InitiateUploadRequest;
+import com.cloud.file.exception.UnauthorizedAccessException;
+import com.cloud.file.storage.S3MultipartService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(properties = "file.upload.versioning.retained-versions=2")
+@ActiveProfiles("test")
+class FileVersioningTest {
+
+    @Autowired
+    private ChunkUploadService chunkUploadService;
+
+    @Autowired
+    private FileVersionService fileVersionService;
+
+    @Autowired
+    private ChunkReclaimer chunkReclaimer;
+
+    @MockBean
+    private S3MultipartService s3MultipartService;
+
+    @MockBean
+    private MetadataClient metadataClient;
+
+    @BeforeEach
+    void setUp() {
+        reset(s3MultipartService, metadataClient);
+        when(s3MultipartService.contentAddressedKey(anyString())).thenCallRealMethod();
+    }
+
+    @Test
+    @DisplayName("New version of someone else's file should be rejected")
+    void shouldRejectVersionOfForeignFile() {
+        // Given
+        when(metadataClient.getFile(5L)).thenReturn(FileMetadataResponse.builder()
+                .id(5L).owner("someone-else").status("COMPLETED").build());
+        InitiateUploadRequest request = new InitiateUploadRequest("notes.txt", 1024L, "text/plain", "user123",
+                null, null, 5L);
+
+        // When / Then
+        assertThatThrownBy(() -> chunkUploadService.initiateUpload(request))
+                .isInstanceOf(UnauthorizedAccessException.class);
+        verify(metadataClient, never()).initiateSession(any(MetadataInitiateRequest.class));
+    }
+
+    @Test
+    @DisplayName("Completing a version should prune beyond retention and delete only released storage")
+    void shouldPruneVersionsOnCompletion() {
+        // Given
+        when(metadataClient.getFile(9L)).thenReturn(FileMetadataResponse.builder()
+                .id(9L).owner("user123").s3Key("uploads/key/notes.txt").uploadId("upload-9").status("ACTIVE")
+                .totalChunks(1).logicalFileId(1L).versionNumber(3).build());
+        when(metadataClient.getCompletedParts(9L))
+                .thenReturn(new MetadataPartsResponse(new int[] { 1 }, new String[] { "etag-1" }));
+        when(metadataClient.pruneVersions(9L, 2)).thenReturn(List.of(
+                MetadataReleasedStorage.builder().fileId(1L).versionNumber(1)
+                        .s3Key("uploads/key/v1.txt").build(),
+                MetadataReleasedStorage.builder().fileId(2L).versionNumber(2).build()));
+
+        // When
+        chunkUploadService.completeUpload(new CompleteUploadRequest("9"));
+
+        // Then
+        verify(metadataClient).completeSession(9L);
+        verify(s3MultipartService).deleteObjects(List.of("uploads/key/v1.txt"));
+        verify(s3MultipartService, times(1)).deleteObjects(anyList());
+    }
+
+    @Test
+    @DisplayName("Restore should append the old manifest as the newest version")
+    void shouldRestoreVersion() {
+        // Given
+        when(metadataClient.getFile(9L)).thenReturn(FileMetadataResponse.builder()
+                .id(9L).owner("user123").status("COMPLETED").logicalFileId(1L).versionNumber(3).build());
+        when(metadataClient.restoreVersion(9L, 1)).thenReturn(FileMetadataResponse.builder()
+                .id(10L).owner("user123").fileName("notes.txt").size(2048L).logicalFileId(1L).versionNumber(4)
+                .build());
+        when(metadataClient.pruneVersions(10L, 2)).thenReturn(List.of());
+
+        // When
+        FileVersionResponse response = fileVersionService.restoreVersion("9", 1, "user123");
+
+        // Then
+        assertThat(response.getFileId()).isEqualTo("10");
+        assertThat(response.getVersionNumber()).isEqualTo(4);
+        verify(metadataClient).pruneVersions(10L, 2);
+        verifyNoMoreInteractions(s3MultipartService);
+    }
+
+    @Test
+    @DisplayName("Deleting a file should remove its metadata, then the storage of every released version")
+    void shouldDeleteFileAndReleasedStorage() {
+        // Given
+        when(metadataClient.getFile(9L)).thenReturn(FileMetadataResponse.builder()
+                .id(9L).owner("user123").status("COMPLETED").logicalFileId(1L).versionNumber(2).build());
+        when(metadataClient.deleteFile(9L)).thenReturn(List.of(
+                MetadataReleasedStorage.builder().fileId(1L).versionNumber(1)
+                        .s3Key("uploads/key/v1.txt").build(),
+                MetadataReleasedStorage.builder().fileId(9L).versionNumber(2)
+                        .s3Key("uploads/key/v2.txt").contentEncoding("lz4").totalChunks(3).build()));
+
+        // When
+        fileVersionService.deleteFile("9", "user123");
+
+        // Then
+        verify(s3MultipartService).deleteObjects(List.of("uploads/key/v1.txt"));
+        verify(s3MultipartService).deleteSegments("uploads/key/v2.txt", 3);
+        assertThatThrownBy(() -> fileVersionService.deleteFile("9", "someone-else"))
+                .isInstanceOf(UnauthorizedAccessException.class);
+        verify(metadataClient, times(1)).deleteFile(9L);
+    }
+
+    @Test
+    @DisplayName("Released chunks should be deleted only once claimed past the grace period, then confirmed")
+    void shouldReclaimReleasedChunks() {
+        // Given
+        when(metadataClient.claimReleasedChunks(any(MetadataReleasedChunkClaimRequest.class)))
+                .thenReturn(List.of("abcd", "ef01"));
+
+        // When
+        int reclaimed = chunkReclaimer.reclaim();
+
+        // Then
+        assertThat(reclaimed).isEqualTo(2);
+        verify(metadataClient).claimReleasedChunks(argThat(request -> request.getMinAgeSeconds() == 86400));
+        verify(s3MultipartService).deleteObjects(List.of("cas/ab/abcd", "cas/ef/ef01"));
+        verify(metadataClient).confirmSweptChunks(List.of("abcd", "ef01"));
+    }
+}
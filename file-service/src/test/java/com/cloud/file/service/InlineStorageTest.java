@@ -0,0 +1,148 @@
+package com.cloud.file.service;
+
+import com.cloud.file.client.MetadataClient;
+import com.cloud.file.client.dto.FileMetadataResponse;
+import com.cloud.file.client.dto.MetadataInlineFileRequest;
+import com.cloud.file.client.dto.MetadataPromoteInlineRequest;
+import com.cloud.file.dto.CompleteUploadResponse;
+import com.cloud.file.storage.S3MultipartService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class InlineStorageTest {
+
+    @Autowired
+    private ChunkUploadService chunkUploadService;
+
+    @Autowired
+    private FileDownloadService fileDownloadService;
+
+    @Autowired
+    private InlineContentPromoter inlineContentPromoter;
+
+    @MockBean
+    private S3MultipartService s3MultipartService;
+
+    @MockBean
+    private MetadataClient metadataClient;
+
+    @BeforeEach
+    void setUp() {
+        reset(s3MultipartService, metadataClient);
+    }
+
+    @Test
+    @DisplayName("Tiny file should be stored inline without touching S3")
+    void shouldStoreTinyFileInline() {
+        // Given
+        byte[] data = "theme=dark\n".getBytes(StandardCharsets.UTF_8);
+        when(metadataClient.createInlineFile(any(MetadataInlineFileRequest.class))).thenReturn(
+                FileMetadataResponse.builder().id(21L).fileName("settings.conf").size((long) data.length)
+                        .status("COMPLETED").storedInline(true).build());
+
+        // When
+        CompleteUploadResponse response = chunkUploadService.uploadSmallFile("settings.conf", "text/plain", data,
+                "user123");
+
+        // Then
+        assertThat(response.getFileId()).isEqualTo("21");
+        verify(metadataClient).createInlineFile(argThat(request -> request.getData() == data));
+        verifyNoInteractions(s3MultipartService);
+    }
+
+    @Test
+    @DisplayName("Inline file should be served from metadata-service")
+    void shouldServeInlineFileFromMetadata() throws Exception {
+        // Given
+        byte[] data = "hello".getBytes(StandardCharsets.UTF_8);
+        when(metadataClient.getFile(21L)).thenReturn(FileMetadataResponse.builder().id(21L)
+                .fileName("note.txt").fileType("text/plain").owner("user123").status("COMPLETED")
+                .storedInline(true).build());
+        when(metadataClient.getInlineContent(21L)).thenReturn(data);
+
+        // When
+        String url = fileDownloadService.generateDownloadUrl("21", "user123");
+        FileDownloadService.FileContent content = fileDownloadService.openContent("21", "user123");
+
+        // Then
+        assertThat(url).isEqualTo("/files/21/content");
+        assertThat(content.getContentLength()).isEqualTo(5L);
+        assertThat(content.getStream().readAllBytes()).isEqualTo(data);
+        verifyNoInteractions(s3MultipartService);
+    }
+
+    @Test
+    @DisplayName("Inline files above the threshold should be promoted to S3")
+    void shouldPromoteOversizedInlineFiles() {
+        // Given
+        FileMetadataResponse oversized = FileMetadataResponse.builder().id(30L).fileName("grown.txt")
+                .fileType("text/plain").size(20000L).storedInline(true).build();
+        when(metadataClient.getOversizedInlineFiles(eq(16384L), eq(0L), anyInt())).thenReturn(List.of(oversized));
+        when(metadataClient.getInlineContent(30L)).thenReturn(new byte[20000]);
+        when(s3MultipartService.generateS3Key("grown.txt")).thenReturn("uploads/key/grown.txt");
+
+        // When
+        int promoted = inlineContentPromoter.promoteOversized();
+
+        // Then
+        assertThat(promoted).isEqualTo(1);
+        verify(s3MultipartService).putObject(eq("uploads/key/grown.txt"), any(byte[].class), eq("text/plain"));
+        verify(metadataClient).promoteInlineFile(30L, new MetadataPromoteInlineRequest("uploads/key/grown.txt"));
+    }
+
+    @Test
+    @DisplayName("A failed promote should delete the object it just wrote to S3")
+    void shouldDeleteObjectWhenPromoteFails() {
+        // Given
+        FileMetadataResponse oversized = FileMetadataResponse.builder().id(31L).fileName("grown.txt")
+                .fileType("text/plain").size(20000L).storedInline(true).build();
+        when(metadataClient.getOversizedInlineFiles(eq(16384L), eq(0L), anyInt())).thenReturn(List.of(oversized));
+        when(metadataClient.getInlineContent(31L)).thenReturn(new byte[20000]);
+        when(metadataClient.getFile(31L)).thenReturn(oversized);
+        when(s3MultipartService.generateS3Key("grown.txt")).thenReturn("uploads/key/grown.txt");
+        doThrow(new RuntimeException("metadata unavailable")).when(metadataClient)
+                .promoteInlineFile(eq(31L), any(MetadataPromoteInlineRequest.class));
+
+        // When
+        int promoted = inlineContentPromoter.promoteOversized();
+
+        // Then
+        assertThat(promoted).isZero();
+        verify(s3MultipartService).deleteObjects(List.of("uploads/key/grown.txt"));
+    }
+
+    @Test
+    @DisplayName("A promote whose response was lost should keep the object metadata now points at")
+    void shouldKeepObjectWhenPromoteCommitted() {
+        // Given
+        FileMetadataResponse oversized = FileMetadataResponse.builder().id(32L).fileName("grown.txt")
+                .fileType("text/plain").size(20000L).storedInline(true).build();
+        when(metadataClient.getOversizedInlineFiles(eq(16384L), eq(0L), anyInt())).thenReturn(List.of(oversized));
+        when(metadataClient.getInlineContent(32L)).thenReturn(new byte[20000]);
+        when(metadataClient.getFile(32L)).thenReturn(FileMetadataResponse.builder().id(32L)
+                .s3Key("uploads/key/grown.txt").build());
+        when(s3MultipartService.generateS3Key("grown.txt")).thenReturn("uploads/key/grown.txt");
+        doThrow(new RuntimeException("read timed out")).when(metadataClient)
+                .promoteInlineFile(eq(32L), any(MetadataPromoteInlineRequest.class));
+
+        // When
+        inlineContentPromoter.promoteOversized();
+
+        // Then
+        verify(s3MultipartService, never()).deleteObjects(anyList());
+    }
+}
@@ -0,0 +1,71 @@
+package com.cloud.metadata.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routes read-only transactions round-robin over the replica pools and everything else to the
+ * primary. The route is picked when a transaction first touches the database, so this must sit
+ * behind a LazyConnectionDataSourceProxy: by then the transaction's read-only flag is known.
+ * Each route is its own Hikari pool, so reads never wait for a primary connection.
+ */
+public class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private static final String PRIMARY = "primary";
+
+    private final List<HikariDataSource> replicas;
+    private final ReadYourWritesGuard guard;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReadReplicaRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas,
+            ReadYourWritesGuard guard) {
+        this.replicas = List.copyOf(replicas);
+        this.guard = guard;
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < this.replicas.size(); i++) {
+            targets.put(i, this.replicas.get(i));
+        }
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return PRIMARY; // Schema migrations, startup checks and other work outside transactions
+        }
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (replicas.isEmpty() || guard.mustReadPrimary()) {
+                return PRIMARY;
+            }
+            return Math.floorMod(next.getAndIncrement(), replicas.size());
+        }
+
+        guard.writing();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    guard.committed(); // Replicas lag from the commit, not from the first statement
+                }
+            });
+        }
+        return PRIMARY;
+    }
+
+    /**
+     * Close the replica pools; the primary pool is a bean of its own
+     */
+    @Override
+    public void close() {
+        replicas.forEach(HikariDataSource::close);
+    }
+}
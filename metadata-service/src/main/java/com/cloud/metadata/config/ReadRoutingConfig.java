@@ -0,0 +1,102 @@
+package com.cloud.metadata.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the single auto-configured pool with a primary pool for writes and one pool per
+ * read replica. Read-only transactions (listings, downloads, chunk and version lookups) run on
+ * the replicas, so they no longer compete with the upload write path for primary connections.
+ * Flyway always migrates through the primary pool.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "metadata.datasource.read-routing", name = "enabled", havingValue = "true")
+public class ReadRoutingConfig {
+
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties,
+            ObjectProvider<JdbcConnectionDetails> connectionDetails) {
+        JdbcConnectionDetails details = connectionDetails.getIfAvailable();
+        DataSourceBuilder<HikariDataSource> builder = details == null
+                ? properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+                : DataSourceBuilder.create().type(HikariDataSource.class)
+                        .url(details.getJdbcUrl())
+                        .username(details.getUsername())
+                        .password(details.getPassword())
+                        .driverClassName(details.getDriverClassName());
+        HikariDataSource primary = builder.build();
+        primary.setPoolName("metadata-primary");
+        return primary;
+    }
+
+    @Bean
+    public ReadYourWritesGuard readYourWritesGuard(ReadRoutingProperties properties) {
+        return new ReadYourWritesGuard(properties.getReadYourWritesWindow());
+    }
+
+    @Bean
+    public ReadReplicaRoutingDataSource readReplicaRoutingDataSource(HikariDataSource primaryDataSource,
+            ReadRoutingProperties properties, ReadYourWritesGuard guard, ObjectProvider<MeterRegistry> meterRegistry) {
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (ReadRoutingProperties.Replica replica : properties.getReplicas()) {
+            HikariConfig pool = new HikariConfig();
+            pool.setPoolName("metadata-replica-" + (replicas.size() + 1));
+            pool.setJdbcUrl(orElse(replica.getUrl(), primaryDataSource.getJdbcUrl()));
+            pool.setUsername(orElse(replica.getUsername(), primaryDataSource.getUsername()));
+            pool.setPassword(orElse(replica.getPassword(), primaryDataSource.getPassword()));
+            pool.setDriverClassName(primaryDataSource.getDriverClassName());
+            pool.setMaximumPoolSize(replica.getMaximumPoolSize());
+            pool.setReadOnly(true);
+            // The primary pool is instrumented by auto-configuration; replica pools are not beans
+            meterRegistry.ifAvailable(registry -> pool.setMetricsTrackerFactory(
+                    new MicrometerMetricsTrackerFactory(registry)));
+            replicas.add(new HikariDataSource(pool)); // Starts the pool, failing fast on a bad replica
+        }
+        return new ReadReplicaRoutingDataSource(primaryDataSource, replicas, guard);
+    }
+
+    /**
+     * The data source JPA and JdbcTemplate use: connections are only fetched from a route at the
+     * first statement, once the transaction's read-only flag has been set
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadReplicaRoutingDataSource readReplicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(readReplicaRoutingDataSource);
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(ReadYourWritesGuard guard,
+            ReadRoutingProperties properties) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration = new FilterRegistrationBean<>(
+                new ReadYourWritesFilter(guard, properties.getSessionHeader()));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    private static String orElse(String value, String fallback) {
+        return StringUtils.hasText(value) ? value : fallback;
+    }
+}
@@ -0,0 +1,53 @@
+package com.cloud.metadata.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "metadata.datasource.read-routing")
+@Data
+public class ReadRoutingProperties {
+
+    /**
+     * Send read-only transactions to the replica pools (opt-in)
+     */
+    private boolean enabled = false;
+
+    /**
+     * After a session writes, its reads stay on the primary this long to outrun replication lag
+     */
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+
+    /**
+     * Request header identifying the session a read-your-writes window belongs to
+     */
+    private String sessionHeader = "X-User-Id";
+
+    /**
+     * Read pools, used round-robin
+     */
+    private List<Replica> replicas = new ArrayList<>(List.of(new Replica()));
+
+    @Data
+    public static class Replica {
+
+        /**
+         * JDBC url of the replica; unset means a separate read pool against the primary
+         */
+        private String url;
+
+        /**
+         * Credentials, the primary's when unset
+         */
+        private String username;
+
+        private String password;
+
+        private int maximumPoolSize = 10;
+    }
+}
@@ -0,0 +1,88 @@
+package com.cloud.metadata.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+
+/**
+ * Remembers which sessions wrote recently. A session that committed a write within the window,
+ * or that already wrote during the current request, reads from the primary, so it never sees a
+ * replica that has not caught up with its own changes. Scopes are entered per request by
+ * {@link ReadYourWritesFilter}; a request without a session is only pinned after its own writes.
+ */
+public class ReadYourWritesGuard {
+
+    private static final int MAX_TRACKED_SESSIONS = 100_000;
+
+    private final ThreadLocal<Scope> current = new ThreadLocal<>();
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWritesGuard(Duration window) {
+        this.recentWriters = Caffeine.newBuilder()
+                .maximumSize(MAX_TRACKED_SESSIONS)
+                .expireAfterWrite(window)
+                .build();
+    }
+
+    /**
+     * Enter a session for the current thread until the returned scope is closed
+     */
+    public Scope enter(String session) {
+        Scope scope = new Scope(session, current.get());
+        current.set(scope);
+        return scope;
+    }
+
+    /**
+     * Whether reads must go to the primary to see this session's own writes
+     */
+    public boolean mustReadPrimary() {
+        Scope scope = current.get();
+        if (scope == null) {
+            return false;
+        }
+        return scope.wrote || (scope.session != null && recentWriters.getIfPresent(scope.session) != null);
+    }
+
+    /**
+     * Pin the rest of the current scope to the primary
+     */
+    void writing() {
+        Scope scope = current.get();
+        if (scope != null) {
+            scope.wrote = true;
+        }
+    }
+
+    /**
+     * Start the session's window, once its write has committed
+     */
+    void committed() {
+        Scope scope = current.get();
+        if (scope != null && scope.session != null) {
+            recentWriters.put(scope.session, Boolean.TRUE);
+        }
+    }
+
+    public final class Scope implements AutoCloseable {
+
+        private final String session;
+        private final Scope previous;
+        private boolean wrote;
+
+        private Scope(String session, Scope previous) {
+            this.session = session;
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous != null) {
+                current.set(previous);
+            } else {
+                current.remove();
+            }
+        }
+    }
+}
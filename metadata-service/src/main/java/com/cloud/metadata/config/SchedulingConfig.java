@@ -0,0 +1,10 @@
+package com.cloud.metadata.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+    // Enables background jobs such as the storage ledger reconciliation
+}
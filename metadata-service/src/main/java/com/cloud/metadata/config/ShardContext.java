@@ -0,0 +1,76 @@
+package com.cloud.metadata.config;
+
+/**
+ * The shard the current thread's database work goes to. Held statically because Hibernate's id
+ * generator, which is not a bean, needs it as well as {@link ShardRoutingDataSource}. Work
+ * outside any scope goes to shard 0, which is also the only shard while sharding is disabled.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * Send the current thread's work to a shard until the returned scope is closed. Enter it
+     * before a transaction's first statement: the connection is picked then and kept until the
+     * transaction ends.
+     */
+    public static Scope enter(int shard) {
+        return enter(shard, -1);
+    }
+
+    /**
+     * Like {@link #enter(int)}, for writes to the owners of a bucket: their read-write
+     * transactions check the bucket's write fence on the shard first
+     */
+    public static Scope enterForWrites(int shard, int bucket) {
+        return enter(shard, bucket);
+    }
+
+    public static int current() {
+        Scope scope = CURRENT.get();
+        return scope != null ? scope.shard : 0;
+    }
+
+    /**
+     * The bucket whose write fence the current scope's transactions check, or -1 for none
+     */
+    public static int writeBucket() {
+        Scope scope = CURRENT.get();
+        return scope != null ? scope.writeBucket : -1;
+    }
+
+    private static Scope enter(int shard, int writeBucket) {
+        Scope scope = new Scope(shard, writeBucket, CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    public static final class Scope implements AutoCloseable {
+
+        private final int shard;
+        private final int writeBucket;
+        private final Scope previous;
+
+        private Scope(int shard, int writeBucket, Scope previous) {
+            this.shard = shard;
+            this.writeBucket = writeBucket;
+            this.previous = previous;
+        }
+
+        public int shard() {
+            return shard;
+        }
+
+        @Override
+        public void close() {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.cloud.metadata.config;
+
+import com.cloud.metadata.entity.BucketFence;
+import com.cloud.metadata.exception.ShardMovingException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.LockModeType;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Checks the write fence of the scope's bucket (see {@link ShardContext#enterForWrites}) as the
+ * first statement of each read-write transaction. The check keeps a shared lock on the bucket's
+ * bucket_fence row until the transaction ends, so a move fencing the bucket on this shard waits
+ * for the transaction, and every transaction after it sees the fence. The directory a node
+ * routes by may be a refresh behind; the fence is read on the shard the write actually goes to.
+ */
+public class ShardFencingTransactionManager extends JpaTransactionManager {
+
+    public ShardFencingTransactionManager(EntityManagerFactory entityManagerFactory) {
+        super(entityManagerFactory);
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        super.doBegin(transaction, definition);
+        int bucket = ShardContext.writeBucket();
+        if (bucket < 0 || definition.isReadOnly()) {
+            return;
+        }
+        EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager.getResource(
+                obtainEntityManagerFactory());
+        EntityManager entityManager = holder.getEntityManager();
+        BucketFence fence;
+        try {
+            fence = entityManager.find(BucketFence.class, bucket, LockModeType.PESSIMISTIC_READ);
+        } catch (RuntimeException e) {
+            abandon(transaction, entityManager);
+            throw e;
+        }
+        if (fence != null && fence.isFenced()) {
+            abandon(transaction, entityManager);
+            throw new ShardMovingException("The files of bucket " + bucket
+                    + " are being moved between shards, retry shortly");
+        }
+    }
+
+    /**
+     * Undo the begun transaction: the caller never receives it, so it would not be completed
+     */
+    private void abandon(Object transaction, EntityManager entityManager) {
+        try {
+            entityManager.getTransaction().rollback();
+        } finally {
+            doCleanupAfterCompletion(transaction);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.cloud.metadata.config;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * How owners and file ids map onto shards. An owner hashes into one of a fixed number of
+ * buckets, and the shard directory places each bucket on a shard; rebalancing moves buckets,
+ * never re-hashes owners. A file id carries its owner's bucket above a per-shard sequence
+ * value, so a file is routed from its id alone and keeps its id when its bucket moves:
+ *
+ * <pre>
+ *   id = (bucket + 1) << 42 | sequence     sequence of shard k in [k << 36, (k + 1) << 36)
+ * </pre>
+ *
+ * Ids stay below 2^53, so JavaScript clients read them exactly. Ids without a bucket (below
+ * 2^42) were handed out before ids carried one.
+ */
+public final class ShardKeys {
+
+    public static final int BUCKETS = 1024;
+    public static final int MAX_SHARDS = 64;
+
+    /** Sequence values a node takes at once for file ids; the sequence increments by as much */
+    public static final int SEQUENCE_BLOCK = 50;
+
+    private static final int BUCKET_SHIFT = 42;
+    private static final int SHARD_SEQUENCE_BITS = 36;
+
+    private ShardKeys() {
+    }
+
+    public static int bucketOf(String owner) {
+        CRC32 crc = new CRC32();
+        crc.update(owner.getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() % BUCKETS);
+    }
+
+    public static long fileId(int bucket, long sequence) {
+        return ((long) (bucket + 1) << BUCKET_SHIFT) | sequence;
+    }
+
+    /**
+     * The bucket a file id was created in, or -1 for an id without one
+     */
+    public static int bucketOfFileId(long fileId) {
+        return (int) (fileId >>> BUCKET_SHIFT) - 1;
+    }
+
+    /**
+     * First sequence value of a shard; shard 0 starts at 1 like the identities it replaces
+     */
+    public static long sequenceStart(int shard) {
+        return shard == 0 ? 1L : (long) shard << SHARD_SEQUENCE_BITS;
+    }
+
+    public static long sequenceEnd(int shard) {
+        return (long) (shard + 1) << SHARD_SEQUENCE_BITS;
+    }
+}
@@ -0,0 +1,56 @@
+package com.cloud.metadata.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routes each transaction to the pool of the shard in {@link ShardContext}. Like
+ * {@link ReadReplicaRoutingDataSource} it must sit behind a LazyConnectionDataSourceProxy, so the
+ * shard is picked at the first statement, after the request or job has entered its scope.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private final List<HikariDataSource> shards;
+
+    /**
+     * @param shards pools by shard number; shard 0 is the auto-configured database and a bean of its own
+     */
+    public ShardRoutingDataSource(List<HikariDataSource> shards) {
+        this.shards = List.copyOf(shards);
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < this.shards.size(); i++) {
+            targets.put(i, this.shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(this.shards.get(0));
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current();
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * A shard's own pool, for work that spans shards such as moving buckets
+     */
+    public HikariDataSource getShard(int shard) {
+        return shards.get(shard);
+    }
+
+    /**
+     * Close the pools of shards 1 and up; shard 0's pool is a bean of its own
+     */
+    @Override
+    public void close() {
+        shards.subList(1, shards.size()).forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,72 @@
+package com.cloud.metadata.config;
+
+import com.cloud.metadata.service.ShardRouter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+
+/**
+ * Runs each request on the shard of the owner or file id in its path; an owner wins over a file
+ * id, which then belongs to it. Anything but a GET is a write and refused while the shard's
+ * bucket is being moved. Requests without either (bodies naming the owner, sweeps over every
+ * shard, administration) are routed by their controllers.
+ */
+@RequiredArgsConstructor
+public class ShardRoutingInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String SCOPE_ATTRIBUTE = ShardRoutingInterceptor.class.getName() + ".scope";
+
+    private final ShardRouter router;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        @SuppressWarnings("unchecked")
+        Map<String, String> variables = (Map<String, String>) request.getAttribute(
+                HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (variables == null) {
+            return true;
+        }
+        boolean update = !HttpMethod.GET.matches(request.getMethod());
+        ShardContext.Scope scope = null;
+        String owner = variables.get("owner");
+        String fileId = variables.get("fileId");
+        if (owner != null) {
+            scope = update ? router.forOwnerUpdate(owner) : router.forOwner(owner);
+        } else if (fileId != null) {
+            try {
+                long id = Long.parseLong(fileId);
+                scope = update ? router.forFileUpdate(id) : router.forFile(id);
+            } catch (NumberFormatException e) {
+                // Left to argument binding, which answers 400
+            }
+        }
+        if (scope != null) {
+            request.setAttribute(SCOPE_ATTRIBUTE, scope);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+            Object handler) {
+        close(request); // A parked long-poll is answered on other threads, which enter scopes of their own
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+            Exception ex) {
+        close(request);
+    }
+
+    private static void close(HttpServletRequest request) {
+        if (request.getAttribute(SCOPE_ATTRIBUTE) instanceof ShardContext.Scope scope) {
+            request.removeAttribute(SCOPE_ATTRIBUTE);
+            scope.close();
+        }
+    }
+}
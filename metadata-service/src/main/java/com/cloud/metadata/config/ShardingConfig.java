@@ -0,0 +1,151 @@
+package com.cloud.metadata.config;
+
+import com.cloud.metadata.service.ShardRouter;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.flyway.FlywayProperties;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces the single auto-configured pool with one pool per shard. Shard 0 is spring.datasource
+ * and also holds the bucket placement; the others come from metadata.sharding.shards. Flyway
+ * migrates every shard at startup, each with its own id ranges (see {@link ShardKeys}).
+ * Requests are routed by the owner or file id in their path, background jobs shard by shard.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "metadata.sharding", name = "enabled", havingValue = "true")
+public class ShardingConfig {
+
+    /** Flyway placeholder telling the migrations which shard they run on */
+    public static final String SHARD_PLACEHOLDER = "shard";
+
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource shardZeroDataSource(DataSourceProperties properties,
+            ObjectProvider<JdbcConnectionDetails> connectionDetails,
+            @Value("${metadata.datasource.read-routing.enabled:false}") boolean readRouting) {
+        if (readRouting) {
+            throw new IllegalStateException("metadata.sharding and metadata.datasource.read-routing cannot be "
+                    + "enabled together yet");
+        }
+        JdbcConnectionDetails details = connectionDetails.getIfAvailable();
+        DataSourceBuilder<HikariDataSource> builder = details == null
+                ? properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+                : DataSourceBuilder.create().type(HikariDataSource.class)
+                        .url(details.getJdbcUrl())
+                        .username(details.getUsername())
+                        .password(details.getPassword())
+                        .driverClassName(details.getDriverClassName());
+        HikariDataSource shard = builder.build();
+        shard.setPoolName("metadata-shard-0");
+        return shard;
+    }
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(HikariDataSource shardZeroDataSource,
+            ShardingProperties properties, FlywayProperties flywayProperties,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        if (properties.getShards().size() + 1 > ShardKeys.MAX_SHARDS) {
+            throw new IllegalStateException("At most " + ShardKeys.MAX_SHARDS + " shards are supported");
+        }
+        List<HikariDataSource> shards = new ArrayList<>(List.of(shardZeroDataSource));
+        for (ShardingProperties.Shard shard : properties.getShards()) {
+            if (!StringUtils.hasText(shard.getUrl())) {
+                throw new IllegalStateException("metadata.sharding.shards[" + (shards.size() - 1) + "].url is not set");
+            }
+            HikariConfig pool = new HikariConfig();
+            pool.setPoolName("metadata-shard-" + shards.size());
+            pool.setJdbcUrl(shard.getUrl());
+            pool.setUsername(orElse(shard.getUsername(), shardZeroDataSource.getUsername()));
+            pool.setPassword(orElse(shard.getPassword(), shardZeroDataSource.getPassword()));
+            pool.setDriverClassName(shardZeroDataSource.getDriverClassName());
+            pool.setMaximumPoolSize(shard.getMaximumPoolSize());
+            // Shard 0's pool is instrumented by auto-configuration; the other pools are not beans
+            meterRegistry.ifAvailable(registry -> pool.setMetricsTrackerFactory(
+                    new MicrometerMetricsTrackerFactory(registry)));
+            HikariDataSource dataSource = new HikariDataSource(pool); // Starts the pool, failing fast on a bad shard
+            migrate(dataSource, shards.size(), flywayProperties);
+            shards.add(dataSource);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    /**
+     * The data source JPA and JdbcTemplate use: connections are only fetched from a shard at the
+     * first statement, once the request or job has entered its shard's scope
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    /**
+     * Write transactions check their bucket's fence on the shard they run on
+     */
+    @Bean
+    public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory,
+            ObjectProvider<TransactionManagerCustomizers> customizers) {
+        ShardFencingTransactionManager transactionManager = new ShardFencingTransactionManager(entityManagerFactory);
+        customizers.ifAvailable(customizer -> customizer.customize(transactionManager));
+        return transactionManager;
+    }
+
+    @Bean
+    public WebMvcConfigurer shardRoutingConfigurer(ShardRouter router) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(new ShardRoutingInterceptor(router));
+            }
+        };
+    }
+
+    /**
+     * Shard 0 is migrated by auto-configuration; the others get the same migrations here
+     */
+    private static void migrate(HikariDataSource shard, int index, FlywayProperties properties) {
+        String vendor = DatabaseDriver.fromJdbcUrl(shard.getJdbcUrl()).getId();
+        String[] locations = properties.getLocations().stream()
+                .map(location -> location.replace("{vendor}", vendor))
+                .toArray(String[]::new);
+        Flyway.configure()
+                .dataSource(shard)
+                .locations(locations)
+                .baselineOnMigrate(properties.isBaselineOnMigrate())
+                .placeholders(Map.of(SHARD_PLACEHOLDER, String.valueOf(index)))
+                .load()
+                .migrate();
+    }
+
+    private static String orElse(String value, String fallback) {
+        return StringUtils.hasText(value) ? value : fallback;
+    }
+}
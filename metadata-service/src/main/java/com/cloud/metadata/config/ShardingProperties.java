@@ -0,0 +1,54 @@
+package com.cloud.metadata.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "metadata.sharding")
+@Data
+public class ShardingProperties {
+
+    /**
+     * Spread owners over several databases by a hash of the owner (opt-in)
+     */
+    private boolean enabled = false;
+
+    /**
+     * Databases after shard 0, which is spring.datasource
+     */
+    private List<Shard> shards = new ArrayList<>();
+
+    /**
+     * How often each node re-reads the bucket placement, picking up moves made elsewhere
+     */
+    private long directoryRefreshMs = 5000;
+
+    /**
+     * Longest a node routes by the placement it last read; a bucket move deletes the source rows
+     * this long after placing the buckets elsewhere. Must be longer than the directory refresh.
+     */
+    private Duration fenceWait = Duration.ofSeconds(15);
+
+    @Data
+    public static class Shard {
+
+        /**
+         * JDBC url of the shard's database
+         */
+        private String url;
+
+        /**
+         * Credentials, shard 0's when unset
+         */
+        private String username;
+
+        private String password;
+
+        private int maximumPoolSize = 10;
+    }
+}
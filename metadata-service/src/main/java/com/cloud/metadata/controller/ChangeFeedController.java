@@ -0,0 +1,29 @@
+package com.cloud.metadata.controller;
+
+import com.cloud.metadata.dto.FileChangesResponse;
+import com.cloud.metadata.service.ChangeFeedNotifier;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+
+@RestController
+@RequestMapping("/metadata/user/{owner}")
+@RequiredArgsConstructor
+public class ChangeFeedController {
+
+    private final ChangeFeedNotifier notifier;
+
+    /**
+     * Files created, updated or deleted after the cursor. With waitSeconds, a call that finds
+     * no changes is held open until one arrives or the wait is over.
+     */
+    @GetMapping("/changes")
+    public DeferredResult<FileChangesResponse> getChanges(@PathVariable String owner,
+                                                          @RequestParam(required = false) String cursor,
+                                                          @RequestParam(defaultValue = "100") int limit,
+                                                          @RequestParam(defaultValue = "0") long waitSeconds) {
+        return notifier.await(owner, cursor, limit, Duration.ofSeconds(waitSeconds));
+    }
+}
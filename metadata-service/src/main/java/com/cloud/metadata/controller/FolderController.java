@@ -0,0 +1,52 @@
+package com.cloud.metadata.controller;
+
+import com.cloud.metadata.dto.FileMetadataResponse;
+import com.cloud.metadata.dto.FolderListing;
+import com.cloud.metadata.dto.FolderRequest;
+import com.cloud.metadata.dto.FolderResponse;
+import com.cloud.metadata.dto.FolderStats;
+import com.cloud.metadata.dto.MoveRequest;
+import com.cloud.metadata.service.FolderService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/metadata/user/{owner}")
+@RequiredArgsConstructor
+public class FolderController {
+
+    private final FolderService folderService;
+
+    @PostMapping("/folders")
+    public FolderResponse createFolder(@PathVariable String owner, @RequestBody FolderRequest request) {
+        return folderService.createFolder(owner, request);
+    }
+
+    /**
+     * Contents of a folder; without folderId, the top level
+     */
+    @GetMapping("/folders")
+    public FolderListing listFolder(@PathVariable String owner,
+                                    @RequestParam(required = false) Long folderId,
+                                    @RequestParam(defaultValue = "0") Long afterId,
+                                    @RequestParam(defaultValue = "50") int limit) {
+        return folderService.listFolder(owner, folderId, afterId, limit);
+    }
+
+    @GetMapping("/folders/{folderId}/stats")
+    public FolderStats getFolderStats(@PathVariable String owner, @PathVariable Long folderId) {
+        return folderService.getStats(owner, folderId);
+    }
+
+    @PostMapping("/folders/{folderId}/move")
+    public FolderResponse moveFolder(@PathVariable String owner, @PathVariable Long folderId,
+                                     @RequestBody MoveRequest request) {
+        return folderService.moveFolder(owner, folderId, request.getTargetFolderId());
+    }
+
+    @PostMapping("/files/{fileId}/move")
+    public FileMetadataResponse moveFile(@PathVariable String owner, @PathVariable Long fileId,
+                                         @RequestBody MoveRequest request) {
+        return folderService.moveFile(owner, fileId, request.getTargetFolderId());
+    }
+}
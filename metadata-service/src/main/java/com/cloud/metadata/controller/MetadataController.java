@@ -1,9 +1,31 @@
 package com.cloud.metadata.controller;
 
+import com.cloud.metadata.dto.AbortSessionsRequest;
+import com.cloud.metadata.dto.ChunkBatchRequest;
+import com.cloud.metadata.dto.ChunkBatchResponse;
+import com.cloud.metadata.dto.ChunkMetadataResponse;
+import com.cloud.metadata.dto.ChunkPartsResponse;
 import com.cloud.metadata.dto.FileMetadataRequest;
 import com.cloud.metadata.dto.FileMetadataResponse;
+import com.cloud.metadata.dto.FilePageResponse;
+import com.cloud.metadata.dto.FileSearchResponse;
+import com.cloud.metadata.dto.IdleSessionClaimRequest;
+import com.cloud.metadata.dto.InlineFileRequest;
+import com.cloud.metadata.dto.KnownChunksRequest;
+import com.cloud.metadata.dto.PromoteInlineRequest;
+import com.cloud.metadata.dto.ReleasedChunkClaimRequest;
+import com.cloud.metadata.dto.ReleasedStorage;
+import com.cloud.metadata.dto.StaleSession;
+import com.cloud.metadata.dto.StaleSessionClaimRequest;
+import com.cloud.metadata.dto.UploadProgress;
+import com.cloud.metadata.enums.UploadStatus;
+import com.cloud.metadata.config.ShardContext;
+import com.cloud.metadata.service.CrossShardService;
 import com.cloud.metadata.service.MetadataService;
+import com.cloud.metadata.service.ShardRouter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -14,35 +36,51 @@ import java.util.List;
 public class MetadataController {
 
     private final MetadataService metadataService;
+    private final CrossShardService crossShardService;
+    private final ShardRouter shardRouter; // Paths with an owner or file id are routed before they get here
 
     // --- Legacy/Generic ---
     @PostMapping
     public FileMetadataResponse saveMetadata(@RequestBody FileMetadataRequest request) {
-        return metadataService.saveMetadata(request);
+        try (ShardContext.Scope ignored = shardRouter.forOwnerUpdate(request.getOwner())) {
+            return metadataService.saveMetadata(request);
+        }
     }
 
     // --- Chunked Upload Flow ---
     @PostMapping("/initiate")
     public Long initiateSession(@RequestBody com.cloud.metadata.dto.InitiateSessionRequest request) {
-        return metadataService.initiateSession(
-                request.getFileName(),
-                request.getUserId(),
-                request.getUploadId(),
-                request.getTotalChunks(),
-                request.getSize(),
-                request.getContentType());
+        try (ShardContext.Scope ignored = shardRouter.forOwnerUpdate(request.getUserId())) {
+            return metadataService.initiateSession(request);
+        }
     }
 
     @PostMapping("/{fileId}/chunk")
     public void addChunk(@PathVariable Long fileId, @RequestBody com.cloud.metadata.dto.AddChunkRequest request) {
-        metadataService.addChunk(fileId, request.getChunkNumber(), request.getEtag(), request.getSize());
+        metadataService.addChunk(fileId, request.getChunkNumber(), request.getEtag(), request.getSize(),
+                request.getChecksum());
+    }
+
+    @PostMapping("/{fileId}/chunks:batch")
+    public ChunkBatchResponse addChunks(@PathVariable Long fileId, @RequestBody ChunkBatchRequest request) {
+        return metadataService.addChunks(fileId, request.getChunks());
     }
 
     @GetMapping("/{fileId}/chunks")
-    public java.util.List<com.cloud.metadata.entity.ChunkMetadata> getChunks(@PathVariable Long fileId) {
+    public List<ChunkMetadataResponse> getChunks(@PathVariable Long fileId) {
         return metadataService.getUploadedChunks(fileId);
     }
 
+    @GetMapping("/{fileId}/parts")
+    public ChunkPartsResponse getCompletedParts(@PathVariable Long fileId) {
+        return metadataService.getCompletedParts(fileId);
+    }
+
+    @GetMapping("/{fileId}/progress")
+    public UploadProgress getProgress(@PathVariable Long fileId) {
+        return metadataService.getProgress(fileId);
+    }
+
     @PostMapping("/{fileId}/complete")
     public void completeSession(@PathVariable Long fileId) {
         metadataService.completeSession(fileId);
@@ -53,13 +91,107 @@ public class MetadataController {
         metadataService.abortSession(fileId);
     }
 
+    // --- Content-Defined Chunk Dedup ---
+    @PostMapping("/chunks/known")
+    public List<String> findKnownChunks(@RequestBody KnownChunksRequest request) {
+        try (ShardContext.Scope ignored = shardRouter.forOwner(request.getOwner())) {
+            return metadataService.findKnownChecksums(request.getOwner(), request.getChecksums());
+        }
+    }
+
+    // --- Abandoned Session Sweeping ---
+    @PostMapping("/sessions/stale/claim")
+    public List<StaleSession> claimStaleSessions(@RequestBody StaleSessionClaimRequest request) {
+        return crossShardService.claimStaleSessions(request);
+    }
+
+    @PostMapping("/sessions/abort")
+    public List<Long> abortSessions(@RequestBody AbortSessionsRequest request) {
+        return crossShardService.abortSessions(request.getFileIds());
+    }
+
+    @PostMapping("/sessions/idle/claim")
+    public List<StaleSession> claimIdleSessions(@RequestBody IdleSessionClaimRequest request) {
+        return crossShardService.claimIdleSessions(request);
+    }
+
+    // --- Released Chunk Reclamation ---
+    @PostMapping("/chunks/released/claim")
+    public List<String> claimReleasedChunks(@RequestBody ReleasedChunkClaimRequest request) {
+        return crossShardService.claimReleasedChunks(request);
+    }
+
+    @PostMapping("/chunks/released/swept")
+    public int confirmSweptChunks(@RequestBody List<String> checksums) {
+        return crossShardService.confirmSweptChunks(checksums);
+    }
+
+    // --- Versioning ---
+    @GetMapping("/{fileId}/versions")
+    public List<FileMetadataResponse> getVersions(@PathVariable Long fileId) {
+        return metadataService.getVersions(fileId);
+    }
+
+    @PostMapping("/{fileId}/versions/{versionNumber}/restore")
+    public FileMetadataResponse restoreVersion(@PathVariable Long fileId, @PathVariable int versionNumber) {
+        return metadataService.restoreVersion(fileId, versionNumber);
+    }
+
+    @PostMapping("/{fileId}/versions/prune")
+    public List<ReleasedStorage> pruneVersions(@PathVariable Long fileId, @RequestParam int keep) {
+        return metadataService.pruneVersions(fileId, keep);
+    }
+
+    // --- Inline (tiny file) Tier ---
+    @PostMapping("/inline")
+    public FileMetadataResponse createInlineFile(@RequestBody InlineFileRequest request) {
+        try (ShardContext.Scope ignored = shardRouter.forOwnerUpdate(request.getOwner())) {
+            return metadataService.createInlineFile(request);
+        }
+    }
+
+    @GetMapping(value = "/{fileId}/content", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public byte[] getInlineContent(@PathVariable Long fileId) {
+        return metadataService.getInlineContent(fileId);
+    }
+
+    @GetMapping("/inline/oversized")
+    public List<FileMetadataResponse> getOversizedInlineFiles(@RequestParam long maxSize,
+                                                              @RequestParam(defaultValue = "0") Long afterId,
+                                                              @RequestParam(defaultValue = "100") int limit) {
+        return crossShardService.getInlineFilesLargerThan(maxSize, afterId, limit);
+    }
+
+    @PostMapping("/{fileId}/promote")
+    public FileMetadataResponse promoteInlineFile(@PathVariable Long fileId,
+                                                  @RequestBody PromoteInlineRequest request) {
+        return metadataService.promoteInlineFile(fileId, request.getS3Key());
+    }
+
     @GetMapping("/{fileId}")
     public FileMetadataResponse getFile(@PathVariable Long fileId) {
         return metadataService.getFileById(fileId);
     }
 
+    @DeleteMapping("/{fileId}")
+    public List<ReleasedStorage> deleteFile(@PathVariable Long fileId) {
+        return metadataService.deleteFile(fileId);
+    }
+
     @GetMapping("/user/{owner}")
-    public List<FileMetadataResponse> getUserFiles(@PathVariable String owner) {
-        return metadataService.getFilesByOwner(owner);
+    public FilePageResponse getUserFiles(@PathVariable String owner,
+                                         @RequestParam(required = false) UploadStatus status,
+                                         @RequestParam(defaultValue = "DESC") Sort.Direction order,
+                                         @RequestParam(required = false) String cursor,
+                                         @RequestParam(defaultValue = "50") int limit) {
+        return metadataService.getFilesByOwner(owner, status, order, cursor, limit);
+    }
+
+    @GetMapping("/user/{owner}/search")
+    public FileSearchResponse searchUserFiles(@PathVariable String owner,
+                                              @RequestParam String q,
+                                              @RequestParam(required = false) String cursor,
+                                              @RequestParam(defaultValue = "50") int limit) {
+        return metadataService.searchFiles(owner, q, cursor, limit);
     }
 }
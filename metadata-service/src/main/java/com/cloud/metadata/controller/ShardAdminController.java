@@ -0,0 +1,38 @@
+package com.cloud.metadata.controller;
+
+import com.cloud.metadata.dto.ShardMove;
+import com.cloud.metadata.dto.ShardPlacement;
+import com.cloud.metadata.service.ShardRebalancer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Operator endpoints for the owner shards. Moves run synchronously and take at least twice the
+ * fence wait; writes to the moved owners are refused meanwhile.
+ */
+@RestController
+@RequestMapping("/metadata/admin/shards")
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "metadata.sharding", name = "enabled", havingValue = "true")
+public class ShardAdminController {
+
+    private final ShardRebalancer rebalancer;
+
+    @GetMapping
+    public List<ShardPlacement> getPlacement() {
+        return rebalancer.getPlacement();
+    }
+
+    @PostMapping("/buckets/{bucket}/move")
+    public ShardMove moveBucket(@PathVariable int bucket, @RequestParam int targetShard) {
+        return rebalancer.moveBucket(bucket, targetShard);
+    }
+
+    @PostMapping("/rebalance")
+    public List<ShardMove> rebalance() {
+        return rebalancer.rebalance();
+    }
+}
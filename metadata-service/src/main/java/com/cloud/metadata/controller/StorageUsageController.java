@@ -0,0 +1,25 @@
+package com.cloud.metadata.controller;
+
+import com.cloud.metadata.dto.QuotaRequest;
+import com.cloud.metadata.dto.StorageUsageResponse;
+import com.cloud.metadata.service.StorageQuotaService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/metadata/user/{owner}")
+@RequiredArgsConstructor
+public class StorageUsageController {
+
+    private final StorageQuotaService quotaService;
+
+    @GetMapping("/usage")
+    public StorageUsageResponse getUsage(@PathVariable String owner) {
+        return quotaService.getUsage(owner);
+    }
+
+    @PutMapping("/quota")
+    public StorageUsageResponse setQuota(@PathVariable String owner, @RequestBody QuotaRequest request) {
+        return quotaService.setQuota(owner, request.getQuotaBytes());
+    }
+}
@@ -0,0 +1,14 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AbortSessionsRequest {
+    private List<Long> fileIds;
+}
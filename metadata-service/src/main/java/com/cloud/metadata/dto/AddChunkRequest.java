@@ -13,4 +13,5 @@ public class AddChunkRequest {
     private Integer chunkNumber;
     private String etag;
     private Long size;
+    private String checksum;
 }
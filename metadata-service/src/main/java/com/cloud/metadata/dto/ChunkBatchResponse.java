@@ -0,0 +1,18 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk chunk insert; duplicates were already recorded and are left untouched
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChunkBatchResponse {
+    private int inserted;
+    private List<Integer> duplicates; // Chunk numbers that already existed
+}
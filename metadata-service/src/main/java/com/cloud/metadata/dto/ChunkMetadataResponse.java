@@ -0,0 +1,22 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection of a chunk row; the owning file is never loaded
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChunkMetadataResponse {
+    private Long id;
+    private Integer chunkNumber;
+    private String etag;
+    private Long size;
+    private String checksum;
+    private LocalDateTime createdAt;
+}
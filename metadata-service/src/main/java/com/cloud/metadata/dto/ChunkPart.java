@@ -0,0 +1,14 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Projection of a chunk row onto the columns S3 needs for completion
+ */
+@Data
+@AllArgsConstructor
+public class ChunkPart {
+    private Integer chunkNumber;
+    private String etag;
+}
@@ -0,0 +1,17 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Compact (partNumber, etag) list used to complete a multipart upload.
+ * Parallel arrays, already sorted by part number.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChunkPartsResponse {
+    private int[] partNumbers;
+    private String[] etags;
+}
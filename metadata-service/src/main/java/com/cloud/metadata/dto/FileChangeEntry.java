@@ -0,0 +1,18 @@
+package com.cloud.metadata.dto;
+
+import com.cloud.metadata.enums.FileChangeType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One change in an owner's feed, with the file as it is now; file is null once the file is gone
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FileChangeEntry {
+    private FileChangeType type;
+    private Long fileId;
+    private FileMetadataResponse file;
+}
@@ -0,0 +1,20 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Changes after a cursor, oldest first. Pass cursor back for the next call, also when changes
+ * is empty; hasMore means the next call returns more without waiting.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FileChangesResponse {
+    private List<FileChangeEntry> changes;
+    private String cursor;
+    private boolean hasMore;
+}
@@ -0,0 +1,25 @@
+package com.cloud.metadata.dto;
+
+import com.cloud.metadata.enums.FileEventType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A file lifecycle event as handed to the event broker. Delivery is at least once;
+ * {@code id} is unique per event, so consumers can drop redeliveries.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FileEvent {
+    private Long id;
+    private FileEventType type;
+    private Long fileId;
+    private String owner;
+    private String fileName;
+    private Long size;
+    private LocalDateTime occurredAt;
+}
@@ -13,4 +13,6 @@ public class FileMetadataRequest {
     private long size;
     private String s3Key;
     private String owner;
+    private Integer totalChunks;
+    private String contentEncoding;
 }
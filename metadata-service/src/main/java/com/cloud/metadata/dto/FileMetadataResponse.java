@@ -1,5 +1,6 @@
 package com.cloud.metadata.dto;
 
+import com.cloud.metadata.enums.UploadStatus;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -20,4 +21,24 @@ public class FileMetadataResponse {
     private LocalDateTime uploadedAt;
     private String status;
     private String uploadId;
+    private Integer totalChunks;
+    private String contentEncoding;
+    private String chunkingScheme;
+    private boolean storedInline;
+    private Long logicalFileId;
+    private Integer versionNumber;
+    private Long folderId;
+
+    /**
+     * Constructor for JPQL projections ({@code FileMetadataRepository.RESPONSE}), which select
+     * the columns straight from file_metadata without hydrating the entity
+     */
+    public FileMetadataResponse(Long id, String fileName, long size, String fileType, String s3Key, String owner,
+            LocalDateTime uploadedAt, UploadStatus status, String uploadId, Integer totalChunks,
+            String contentEncoding, String chunkingScheme, Boolean storedInline, Long logicalFileId,
+            Integer versionNumber, Long folderId) {
+        this(id, fileName, size, fileType, s3Key, owner, uploadedAt, status != null ? status.name() : null,
+                uploadId, totalChunks, contentEncoding, chunkingScheme, Boolean.TRUE.equals(storedInline),
+                logicalFileId, versionNumber, folderId);
+    }
 }
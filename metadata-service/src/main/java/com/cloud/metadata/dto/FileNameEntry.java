@@ -0,0 +1,16 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Projection of a file row onto what the in-memory name index needs
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FileNameEntry {
+    private Long id;
+    private String fileName;
+}
@@ -0,0 +1,18 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One keyset page of files; pass nextCursor back to continue, null on the last page
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FilePageResponse {
+    private List<FileMetadataResponse> files;
+    private String nextCursor;
+}
@@ -0,0 +1,29 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A file whose name matched a search, with the matched ranges of its name
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FileSearchHit {
+    private FileMetadataResponse file;
+    private List<Highlight> highlights;
+
+    /**
+     * Matched characters of the file name, as [start, end) offsets
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Highlight {
+        private int start;
+        private int end;
+    }
+}
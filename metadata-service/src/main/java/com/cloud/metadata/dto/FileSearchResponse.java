@@ -0,0 +1,18 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One keyset page of search hits in file name order; pass nextCursor back to continue, null on the last page
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FileSearchResponse {
+    private List<FileSearchHit> hits;
+    private String nextCursor;
+}
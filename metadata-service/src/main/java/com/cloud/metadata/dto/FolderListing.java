@@ -0,0 +1,21 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Direct contents of a folder: all subfolders and a keyset page of files by id.
+ * Pass nextAfterId back as afterId to continue, null on the last page.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FolderListing {
+    private FolderResponse folder; // null for the top level
+    private List<FolderResponse> folders;
+    private List<FileMetadataResponse> files;
+    private Long nextAfterId;
+}
@@ -0,0 +1,13 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FolderRequest {
+    private String name;
+    private Long parentId; // null creates a top-level folder
+}
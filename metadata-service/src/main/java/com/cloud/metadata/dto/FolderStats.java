@@ -0,0 +1,18 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Totals over a folder and everything below it; only completed files are counted
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FolderStats {
+    private Long folderId;
+    private long folderCount; // Descendant folders, excluding the folder itself
+    private long fileCount;
+    private long totalBytes;
+}
@@ -0,0 +1,20 @@
+package com.cloud.metadata.dto;
+
+import com.cloud.metadata.enums.UploadStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class IdleSessionClaimRequest {
+    private UploadStatus status;
+    private Integer idleMinutes; // Sessions untouched for longer than this are claimed
+    private Integer maxIdleMinutes; // Sessions untouched for longer are left to the abandoned-upload sweeper
+    private Long afterId; // Keyset cursor: last id of the previous page
+    private Integer limit;
+    private Integer leaseSeconds; // How long the claim hides the sessions from other nodes
+}
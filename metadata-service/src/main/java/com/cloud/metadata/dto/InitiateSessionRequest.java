@@ -13,7 +13,11 @@ public class InitiateSessionRequest {
     private String fileName;
     private String userId;
     private String uploadId;
+    private String s3Key;
     private Integer totalChunks;
     private Long size;
     private String contentType;
+    private String contentEncoding;
+    private String chunkingScheme;
+    private Long previousVersionId; // Set to upload a new version of an existing file
 }
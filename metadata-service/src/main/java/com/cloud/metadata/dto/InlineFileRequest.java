@@ -0,0 +1,17 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class InlineFileRequest {
+    private String fileName;
+    private String fileType;
+    private String owner;
+    private byte[] data; // Base64 in JSON
+}
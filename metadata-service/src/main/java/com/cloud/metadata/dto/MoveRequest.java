@@ -0,0 +1,15 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Target of a file or folder move
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MoveRequest {
+    private Long targetFolderId; // null moves to the top level
+}
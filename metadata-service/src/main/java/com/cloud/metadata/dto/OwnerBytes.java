@@ -0,0 +1,16 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Bytes summed per owner, for adjusting several storage ledgers at once
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OwnerBytes {
+    private String owner;
+    private long bytes;
+}
@@ -0,0 +1,16 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ReleasedChunkClaimRequest {
+    private Integer minAgeSeconds; // Grace period: younger releases may still be referenced again
+    private Integer limit;
+    private Integer leaseSeconds; // How long the claim blocks new references and other sweepers
+}
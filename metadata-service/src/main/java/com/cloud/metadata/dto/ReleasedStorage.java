@@ -0,0 +1,22 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Storage of a pruned version that no remaining file references, for file-service to delete.
+ * Content-addressed chunks are not listed: they are reclaimed later, see ChunkRelease.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ReleasedStorage {
+    private Long fileId;
+    private Integer versionNumber;
+    private String s3Key; // null when another file still points at the same object
+    private String contentEncoding;
+    private Integer totalChunks;
+}
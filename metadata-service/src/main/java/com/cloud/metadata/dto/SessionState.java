@@ -0,0 +1,23 @@
+package com.cloud.metadata.dto;
+
+import com.cloud.metadata.enums.UploadStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Columns a state transition needs, read without loading the file
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SessionState {
+    private Long id;
+    private String owner;
+    private UploadStatus status;
+    private long size;
+    private long reservedBytes;
+    private int receivedChunks;
+    private long receivedBytes;
+    private Integer totalChunks;
+}
@@ -0,0 +1,21 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Buckets moved from one shard to another, with the owners and files that went along
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ShardMove {
+    private List<Integer> buckets;
+    private int fromShard;
+    private int toShard;
+    private int owners;
+    private long files;
+}
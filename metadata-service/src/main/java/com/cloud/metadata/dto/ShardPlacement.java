@@ -0,0 +1,17 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * How many owner buckets a shard holds, and whether some of them are being moved
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ShardPlacement {
+    private int shard;
+    private int buckets;
+    private int movingBuckets;
+}
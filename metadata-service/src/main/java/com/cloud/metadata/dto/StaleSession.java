@@ -0,0 +1,19 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * What a sweeper needs to release the S3 side of an abandoned session
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StaleSession {
+    private Long id;
+    private String uploadId;
+    private String s3Key;
+    private String contentEncoding;
+    private Integer totalChunks;
+}
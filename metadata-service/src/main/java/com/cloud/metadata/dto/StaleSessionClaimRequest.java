@@ -0,0 +1,17 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class StaleSessionClaimRequest {
+    private Integer idleHours; // Sessions untouched for longer than this are stale
+    private Long afterId; // Keyset cursor: last id of the previous page
+    private Integer limit;
+    private Integer leaseSeconds; // How long the claim hides the sessions from other sweepers
+}
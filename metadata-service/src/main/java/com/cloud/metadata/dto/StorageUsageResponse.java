@@ -0,0 +1,18 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class StorageUsageResponse {
+    private String owner;
+    private long usedBytes;
+    private long reservedBytes; // Uploads in progress
+    private long quotaBytes;
+    private long availableBytes;
+}
@@ -0,0 +1,16 @@
+package com.cloud.metadata.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Completed files under a path prefix and their total size
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SubtreeUsage {
+    private long fileCount;
+    private long totalBytes;
+}
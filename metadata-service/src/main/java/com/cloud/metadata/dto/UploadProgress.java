@@ -0,0 +1,21 @@
+package com.cloud.metadata.dto;
+
+import com.cloud.metadata.enums.UploadStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Upload progress from the received counters on the file row
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UploadProgress {
+    private Long fileId;
+    private UploadStatus status;
+    private Integer totalChunks;
+    private int receivedChunks;
+    private long size;
+    private long receivedBytes;
+}
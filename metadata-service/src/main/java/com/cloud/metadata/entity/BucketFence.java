@@ -0,0 +1,27 @@
+package com.cloud.metadata.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Write fence of an owner bucket on one shard. A fenced bucket takes no writes on that shard:
+ * it is being copied away, or has been moved to another shard.
+ */
+@Entity
+@Table(name = "bucket_fence")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BucketFence {
+
+    @Id
+    @Column(name = "bucket")
+    private Integer bucket;
+
+    @Column(name = "fenced", nullable = false)
+    private boolean fenced;
+}
@@ -0,0 +1,36 @@
+package com.cloud.metadata.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Every chunk of a completed upload encoded into one value, replacing its chunk_metadata rows.
+ * Like {@link FileContent} it lives in its own table and is only read by file id; the row goes
+ * away with its file (ON DELETE CASCADE).
+ */
+@Entity
+@Table(name = "chunk_manifest")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ChunkManifest {
+
+    @Id
+    @Column(name = "file_id")
+    private Long fileId;
+
+    @Column(name = "part_count", nullable = false)
+    private int partCount;
+
+    @Column(nullable = false, length = 1048576)
+    private byte[] data;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
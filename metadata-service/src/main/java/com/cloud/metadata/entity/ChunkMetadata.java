@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import java.time.LocalDateTime;
 
 /**
@@ -27,6 +29,8 @@ public class ChunkMetadata {
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "file_id", nullable = false)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude // Breaks the file <-> chunk cycle and keeps the lazy proxy unloaded
     private FileMetadata fileMetadata;
 
     @Column(name = "chunk_number", nullable = false)
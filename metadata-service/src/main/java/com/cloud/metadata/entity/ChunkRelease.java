@@ -0,0 +1,34 @@
+package com.cloud.metadata.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tombstone of a content-addressed chunk that no file referenced when it was released. Its object
+ * is deleted only once the tombstone is older than the grace period and still unreferenced; a
+ * chunk recorded again meanwhile loses its tombstone. Chunks are shared across owners, so with
+ * sharding the tombstones live on shard 0 only, see {@code ChunkReferences}.
+ */
+@Entity
+@Table(name = "chunk_release")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ChunkRelease {
+
+    @Id
+    @Column(name = "checksum")
+    private String checksum;
+
+    @Column(name = "released_at", nullable = false)
+    private LocalDateTime releasedAt;
+
+    @Column(name = "sweep_lease_until")
+    private LocalDateTime sweepLeaseUntil; // Set while a sweeper deletes the object
+}
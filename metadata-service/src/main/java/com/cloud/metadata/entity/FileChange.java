@@ -0,0 +1,40 @@
+package com.cloud.metadata.entity;
+
+import com.cloud.metadata.enums.FileChangeType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One entry of an owner's change feed. Rows are appended by set-based inserts in the
+ * transaction of the change and pruned once older than the feed's retention.
+ */
+@Entity
+@Table(name = "file_change")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class FileChange {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String owner;
+
+    @Column(name = "file_id", nullable = false)
+    private Long fileId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "change_type", nullable = false, length = 16)
+    private FileChangeType changeType;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,28 @@
+package com.cloud.metadata.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Bytes of a tiny file stored inline instead of in S3.
+ * Kept in its own table and deliberately not mapped as an association of
+ * {@link FileMetadata}, so listings never load blobs; it is only read by id.
+ */
+@Entity
+@Table(name = "file_content")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class FileContent {
+
+    @Id
+    @Column(name = "file_id")
+    private Long fileId;
+
+    @Column(nullable = false, length = 1048576)
+    private byte[] data;
+}
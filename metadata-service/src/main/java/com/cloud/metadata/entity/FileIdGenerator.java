@@ -0,0 +1,71 @@
+package com.cloud.metadata.entity;
+
+import com.cloud.metadata.config.ShardContext;
+import com.cloud.metadata.config.ShardKeys;
+import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ids for new files: the owner's bucket over a value of the current shard's file_id_seq (see
+ * {@link ShardKeys}). The sequence increments by {@link ShardKeys#SEQUENCE_BLOCK} and the values
+ * in between are handed out from memory, so a node reads the sequence once per block per shard.
+ */
+public class FileIdGenerator implements IdentifierGenerator {
+
+    private static final String SEQUENCE = "file_id_seq";
+
+    private final Map<Integer, Block> blocks = new ConcurrentHashMap<>();
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        FileMetadata file = (FileMetadata) object;
+        int shard = ShardContext.current();
+        long sequence = blocks.computeIfAbsent(shard, Block::new).next(session);
+        return ShardKeys.fileId(ShardKeys.bucketOf(file.getOwner()), sequence);
+    }
+
+    private static final class Block {
+
+        private final int shard;
+        private long next;
+        private long end;
+
+        private Block(int shard) {
+            this.shard = shard;
+        }
+
+        synchronized long next(SharedSessionContractImplementor session) {
+            if (next == end) {
+                next = readSequence(session);
+                end = next + ShardKeys.SEQUENCE_BLOCK;
+                if (end > ShardKeys.sequenceEnd(shard)) {
+                    throw new IllegalStateException("Shard " + shard + " has used up its range of file ids");
+                }
+            }
+            return next++;
+        }
+    }
+
+    private static long readSequence(SharedSessionContractImplementor session) {
+        String sql = session.getJdbcServices().getDialect().getSequenceSupport().getSequenceNextValString(SEQUENCE);
+        JdbcCoordinator coordinator = session.getJdbcCoordinator();
+        PreparedStatement statement = coordinator.getStatementPreparer().prepareStatement(sql);
+        try {
+            ResultSet result = coordinator.getResultSetReturn().extract(statement, sql);
+            result.next();
+            return result.getLong(1);
+        } catch (SQLException e) {
+            throw session.getJdbcServices().getSqlExceptionHelper().convert(e, "Could not read " + SEQUENCE, sql);
+        } finally {
+            coordinator.getLogicalConnection().getResourceRegistry().release(statement);
+            coordinator.afterStatementExecution();
+        }
+    }
+}
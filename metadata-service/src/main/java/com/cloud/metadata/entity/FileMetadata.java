@@ -5,13 +5,18 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.ColumnDefault;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "file_metadata")
+@Table(name = "file_metadata", uniqueConstraints = {
+        @UniqueConstraint(columnNames = { "logical_file_id", "version_number" })
+})
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -19,7 +24,7 @@ import java.util.List;
 public class FileMetadata {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @ShardedFileId // Carries the owner's bucket, so the file can be routed to its shard by id alone
     private Long id;
 
     @Column(nullable = false)
@@ -40,6 +45,44 @@ public class FileMetadata {
     @Column(name = "total_chunks")
     private Integer totalChunks;
 
+    @Column(name = "received_chunks", nullable = false)
+    @ColumnDefault("0")
+    @Builder.Default
+    private int receivedChunks = 0; // Maintained by the chunk insert path; never counted from chunk_metadata
+
+    @Column(name = "received_bytes", nullable = false)
+    @ColumnDefault("0")
+    @Builder.Default
+    private long receivedBytes = 0;
+
+    @Column(name = "reserved_bytes", nullable = false)
+    @ColumnDefault("0")
+    @Builder.Default
+    private long reservedBytes = 0; // Held in the owner's storage reservation until completion or abort
+
+    @Column(name = "content_encoding")
+    private String contentEncoding; // Chunk codec (e.g. lz4); null when stored as a single raw object
+
+    @Column(name = "chunking_scheme")
+    private String chunkingScheme; // e.g. fastcdc: chunks are content-addressed by checksum; null = fixed size
+
+    @Column(name = "stored_inline")
+    private Boolean storedInline; // Bytes live in file_content instead of S3
+
+    @Column(name = "logical_file_id")
+    private Long logicalFileId; // Id of the first version; null while the file has a single version
+
+    @Column(name = "version_number")
+    private Integer versionNumber;
+
+    @Column(name = "folder_id")
+    private Long folderId; // null at the top level
+
+    @Column(name = "folder_path", nullable = false, length = 2048)
+    @ColumnDefault("'/'")
+    @Builder.Default
+    private String folderPath = Folder.ROOT_PATH; // Path of the containing folder, for subtree queries
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     @Builder.Default
@@ -47,6 +90,8 @@ public class FileMetadata {
 
     @OneToMany(mappedBy = "fileMetadata", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     @Builder.Default
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude // Logging or comparing a file must never initialise its chunks
     private List<ChunkMetadata> chunks = new ArrayList<>();
 
     @Column(name = "created_at")
@@ -55,6 +100,15 @@ public class FileMetadata {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    @Column(name = "sweep_lease_until")
+    private LocalDateTime sweepLeaseUntil; // Set while a sweeper node owns this stale session
+
+    @Version
+    @Column(name = "row_version", nullable = false)
+    @ColumnDefault("0")
+    @Builder.Default
+    private long rowVersion = 0; // Optimistic lock; not the file version (versionNumber)
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
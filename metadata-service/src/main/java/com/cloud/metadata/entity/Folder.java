@@ -0,0 +1,58 @@
+package com.cloud.metadata.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A folder in an owner's tree. The tree is stored as materialized paths (V4__folders):
+ * {@code path} lists the folder ids from the top level down to this folder, e.g. "/12/40/".
+ */
+@Entity
+@Table(name = "folder")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class Folder {
+
+    /** Path of the top level, which holds the folders and files without a parent */
+    public static final String ROOT_PATH = "/";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String owner;
+
+    @Column(nullable = false)
+    private String name;
+
+    @Column(name = "parent_id")
+    private Long parentId; // null at the top level
+
+    @Column(nullable = false, length = 2048)
+    private String path;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,45 @@
+package com.cloud.metadata.entity;
+
+import com.cloud.metadata.enums.FileEventType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A lifecycle event waiting to be relayed. Rows are written by set-based inserts in the
+ * transaction of the file change and deleted once the broker accepted them.
+ */
+@Entity
+@Table(name = "outbox_event")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 32)
+    private FileEventType eventType;
+
+    @Column(name = "file_id", nullable = false)
+    private Long fileId;
+
+    @Column(nullable = false)
+    private String owner;
+
+    @Column(name = "file_name")
+    private String fileName;
+
+    private Long size;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
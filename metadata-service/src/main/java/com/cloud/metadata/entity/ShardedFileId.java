@@ -0,0 +1,19 @@
+package com.cloud.metadata.entity;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * File ids carrying the owner's bucket, generated by {@link FileIdGenerator}
+ */
+@IdGeneratorType(FileIdGenerator.class)
+@Retention(RUNTIME)
+@Target({ FIELD, METHOD })
+public @interface ShardedFileId {
+}
@@ -0,0 +1,37 @@
+package com.cloud.metadata.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Storage ledger row of one owner (V6__storage_usage). Only ever changed by conditional
+ * updates in {@code StorageUsageRepository}, never through a loaded entity.
+ */
+@Entity
+@Table(name = "storage_usage")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class StorageUsage {
+
+    @Id
+    private String owner;
+
+    @Column(name = "used_bytes", nullable = false)
+    private long usedBytes; // Completed files
+
+    @Column(name = "reserved_bytes", nullable = false)
+    private long reservedBytes; // Uploads in progress
+
+    @Column(name = "quota_bytes")
+    private Long quotaBytes; // null = metadata.quota.default-bytes
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,7 @@
+package com.cloud.metadata.enums;
+
+public enum FileChangeType {
+    CREATED, // File completed, stored in one request or restored as a new version
+    UPDATED, // File moved or its content relocated
+    DELETED // File or version removed
+}
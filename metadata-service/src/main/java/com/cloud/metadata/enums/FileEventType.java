@@ -0,0 +1,9 @@
+package com.cloud.metadata.enums;
+
+public enum FileEventType {
+    INITIATED, // Upload session created
+    COMPLETED, // File stored, by a finished upload or a single request
+    FAILED, // Upload ended by an error
+    ABORTED, // Upload cancelled by user or sweeper
+    DELETED // File or version removed
+}
@@ -0,0 +1,15 @@
+package com.cloud.metadata.event;
+
+import com.cloud.metadata.dto.FileEvent;
+
+import java.util.List;
+
+/**
+ * Destination of relayed file lifecycle events. Implementations publish a batch in order and
+ * return only once the broker has accepted all of it; throwing leaves the batch in the outbox
+ * to be relayed again, so consumers must tolerate redelivery.
+ */
+public interface EventBroker {
+
+    void publish(List<FileEvent> events);
+}
@@ -0,0 +1,32 @@
+package com.cloud.metadata.event;
+
+import com.cloud.metadata.dto.FileEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Embedded broker for local runs and tests: each event is delivered synchronously to the
+ * {@code @EventListener}s of this application. Nothing outside the process sees the events, so
+ * it is only used when {@code metadata.events.broker} asks for it.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(prefix = "metadata.events", name = "broker", havingValue = "in-process")
+public class InProcessEventBroker implements EventBroker {
+
+    private final ApplicationEventPublisher publisher;
+
+    @Override
+    public void publish(List<FileEvent> events) {
+        for (FileEvent event : events) {
+            log.debug("Publishing {} event {} for file {}", event.getType(), event.getId(), event.getFileId());
+            publisher.publishEvent(event);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.cloud.metadata.exception;
+
+public class ChangeCursorExpiredException extends MetadataException {
+    public ChangeCursorExpiredException(String message) {
+        super(message, "CURSOR_EXPIRED");
+    }
+}
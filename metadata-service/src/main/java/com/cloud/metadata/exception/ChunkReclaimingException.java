@@ -0,0 +1,7 @@
+package com.cloud.metadata.exception;
+
+public class ChunkReclaimingException extends MetadataException {
+    public ChunkReclaimingException(String message) {
+        super(message, "CHUNK_RECLAIMING");
+    }
+}
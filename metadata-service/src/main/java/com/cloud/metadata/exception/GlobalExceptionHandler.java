@@ -3,6 +3,7 @@ package com.cloud.metadata.exception;
 import com.cloud.metadata.dto.ErrorResponse;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -33,6 +34,85 @@ public class GlobalExceptionHandler {
         return buildResponse(HttpStatus.CONFLICT, ex, request);
     }
 
+    @ExceptionHandler(ChunkReclaimingException.class)
+    public ResponseEntity<ErrorResponse> handleChunkReclaiming(ChunkReclaimingException ex,
+            HttpServletRequest request) {
+        return buildResponse(HttpStatus.CONFLICT, ex, request);
+    }
+
+    @ExceptionHandler(InlineContentTooLargeException.class)
+    public ResponseEntity<ErrorResponse> handleInlineTooLarge(InlineContentTooLargeException ex,
+            HttpServletRequest request) {
+        return buildResponse(HttpStatus.PAYLOAD_TOO_LARGE, ex, request);
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidCursor(InvalidCursorException ex, HttpServletRequest request) {
+        return buildResponse(HttpStatus.BAD_REQUEST, ex, request);
+    }
+
+    @ExceptionHandler(ChangeCursorExpiredException.class)
+    public ResponseEntity<ErrorResponse> handleCursorExpired(ChangeCursorExpiredException ex,
+            HttpServletRequest request) {
+        // The changes after the cursor may be pruned: the client must list its files again
+        return buildResponse(HttpStatus.GONE, ex, request);
+    }
+
+    @ExceptionHandler(ShardMovingException.class)
+    public ResponseEntity<ErrorResponse> handleShardMoving(ShardMovingException ex, HttpServletRequest request) {
+        // The owner's files are being copied to another shard: writes succeed again once it is done
+        return buildResponse(HttpStatus.SERVICE_UNAVAILABLE, ex, request);
+    }
+
+    @ExceptionHandler(ShardDirectoryStaleException.class)
+    public ResponseEntity<ErrorResponse> handleShardDirectoryStale(ShardDirectoryStaleException ex,
+            HttpServletRequest request) {
+        // This node could not re-read the bucket placement lately and may route to a shard the files have left
+        return buildResponse(HttpStatus.SERVICE_UNAVAILABLE, ex, request);
+    }
+
+    @ExceptionHandler(InvalidShardMoveException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidShardMove(InvalidShardMoveException ex,
+            HttpServletRequest request) {
+        return buildResponse(HttpStatus.BAD_REQUEST, ex, request);
+    }
+
+    @ExceptionHandler(InvalidChunkException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidChunk(InvalidChunkException ex, HttpServletRequest request) {
+        return buildResponse(HttpStatus.BAD_REQUEST, ex, request);
+    }
+
+    @ExceptionHandler(InvalidSearchQueryException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidSearchQuery(InvalidSearchQueryException ex,
+            HttpServletRequest request) {
+        return buildResponse(HttpStatus.BAD_REQUEST, ex, request);
+    }
+
+    @ExceptionHandler(InvalidFolderOperationException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidFolderOperation(InvalidFolderOperationException ex,
+            HttpServletRequest request) {
+        return buildResponse(HttpStatus.BAD_REQUEST, ex, request);
+    }
+
+    @ExceptionHandler(QuotaExceededException.class)
+    public ResponseEntity<ErrorResponse> handleQuotaExceeded(QuotaExceededException ex, HttpServletRequest request) {
+        return buildResponse(HttpStatus.INSUFFICIENT_STORAGE, ex, request);
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorResponse> handleOptimisticLock(OptimisticLockingFailureException ex,
+            HttpServletRequest request) {
+        // Still conflicting after the service's retries: the client may simply try again
+        ErrorResponse error = ErrorResponse.builder()
+                .timestamp(LocalDateTime.now())
+                .status(HttpStatus.CONFLICT.value())
+                .errorCode("CONCURRENT_MODIFICATION")
+                .message("The file was modified concurrently, retry the request")
+                .path(request.getRequestURI())
+                .build();
+        return new ResponseEntity<>(error, HttpStatus.CONFLICT);
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ErrorResponse> handleValidation(MethodArgumentNotValidException ex,
             HttpServletRequest request) {
@@ -0,0 +1,7 @@
+package com.cloud.metadata.exception;
+
+public class InlineContentTooLargeException extends MetadataException {
+    public InlineContentTooLargeException(String message) {
+        super(message, "INLINE_CONTENT_TOO_LARGE");
+    }
+}
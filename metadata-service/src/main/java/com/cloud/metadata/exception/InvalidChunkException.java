@@ -0,0 +1,7 @@
+package com.cloud.metadata.exception;
+
+public class InvalidChunkException extends MetadataException {
+    public InvalidChunkException(String message) {
+        super(message, "INVALID_CHUNK");
+    }
+}
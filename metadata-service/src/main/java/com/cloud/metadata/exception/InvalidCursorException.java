@@ -0,0 +1,7 @@
+package com.cloud.metadata.exception;
+
+public class InvalidCursorException extends MetadataException {
+    public InvalidCursorException(String message) {
+        super(message, "INVALID_CURSOR");
+    }
+}
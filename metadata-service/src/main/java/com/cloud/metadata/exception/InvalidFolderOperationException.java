@@ -0,0 +1,7 @@
+package com.cloud.metadata.exception;
+
+public class InvalidFolderOperationException extends MetadataException {
+    public InvalidFolderOperationException(String message) {
+        super(message, "INVALID_FOLDER_OPERATION");
+    }
+}
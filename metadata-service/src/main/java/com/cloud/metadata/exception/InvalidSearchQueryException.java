@@ -0,0 +1,7 @@
+package com.cloud.metadata.exception;
+
+public class InvalidSearchQueryException extends MetadataException {
+    public InvalidSearchQueryException(String message) {
+        super(message, "INVALID_SEARCH_QUERY");
+    }
+}
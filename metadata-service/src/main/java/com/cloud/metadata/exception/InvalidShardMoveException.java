@@ -0,0 +1,7 @@
+package com.cloud.metadata.exception;
+
+public class InvalidShardMoveException extends MetadataException {
+    public InvalidShardMoveException(String message) {
+        super(message, "INVALID_SHARD_MOVE");
+    }
+}
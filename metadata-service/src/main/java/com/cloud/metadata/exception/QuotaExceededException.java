@@ -0,0 +1,7 @@
+package com.cloud.metadata.exception;
+
+public class QuotaExceededException extends MetadataException {
+    public QuotaExceededException(String message) {
+        super(message, "QUOTA_EXCEEDED");
+    }
+}
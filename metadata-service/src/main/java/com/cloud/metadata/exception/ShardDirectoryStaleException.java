@@ -0,0 +1,7 @@
+package com.cloud.metadata.exception;
+
+public class ShardDirectoryStaleException extends MetadataException {
+    public ShardDirectoryStaleException(String message) {
+        super(message, "SHARD_DIRECTORY_STALE");
+    }
+}
@@ -0,0 +1,7 @@
+package com.cloud.metadata.exception;
+
+public class ShardMovingException extends MetadataException {
+    public ShardMovingException(String message) {
+        super(message, "SHARD_MOVING");
+    }
+}
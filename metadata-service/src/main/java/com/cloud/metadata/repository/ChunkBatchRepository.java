@@ -0,0 +1,43 @@
+package com.cloud.metadata.repository;
+
+import com.cloud.metadata.dto.AddChunkRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Plain JDBC batch insert of chunk rows. Hibernate cannot batch inserts of IDENTITY ids,
+ * so bulk chunk recording bypasses the entity layer and sends one JDBC batch.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ChunkBatchRepository {
+
+    private static final String INSERT_IF_ABSENT = "INSERT INTO chunk_metadata "
+            + "(file_id, chunk_number, etag, size, checksum, created_at) "
+            + "SELECT f.id, ?, ?, ?, ?, ? FROM file_metadata f WHERE f.id = ? AND f.status IN ('PENDING', 'ACTIVE') "
+            + "ON CONFLICT DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Insert the chunks in one batch; the returned row count per chunk is 0 for a duplicate, or
+     * for every chunk when the file is missing or no longer receiving. Chunks must already be
+     * validated: every column but the checksum is required.
+     */
+    public int[] insertIfAbsent(Long fileId, List<AddChunkRequest> chunks, LocalDateTime createdAt) {
+        Timestamp timestamp = Timestamp.valueOf(createdAt);
+        return jdbcTemplate.batchUpdate(INSERT_IF_ABSENT, chunks, chunks.size(), (statement, chunk) -> {
+            statement.setInt(1, chunk.getChunkNumber());
+            statement.setString(2, chunk.getEtag());
+            statement.setLong(3, chunk.getSize());
+            statement.setString(4, chunk.getChecksum());
+            statement.setTimestamp(5, timestamp);
+            statement.setLong(6, fileId);
+        })[0];
+    }
+}
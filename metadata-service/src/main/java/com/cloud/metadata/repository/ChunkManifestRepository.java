@@ -0,0 +1,14 @@
+package com.cloud.metadata.repository;
+
+import com.cloud.metadata.entity.ChunkManifest;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface ChunkManifestRepository extends JpaRepository<ChunkManifest, Long> {
+
+    @Query("select m.data from ChunkManifest m where m.fileId = :fileId")
+    Optional<byte[]> findDataById(@Param("fileId") Long fileId);
+}
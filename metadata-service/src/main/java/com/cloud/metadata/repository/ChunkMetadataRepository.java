@@ -1,11 +1,82 @@
 package com.cloud.metadata.repository;
 
+import com.cloud.metadata.dto.ChunkMetadataResponse;
+import com.cloud.metadata.dto.ChunkPart;
 import com.cloud.metadata.entity.ChunkMetadata;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface ChunkMetadataRepository extends JpaRepository<ChunkMetadata, Long> {
     List<ChunkMetadata> findByFileMetadataIdOrderByChunkNumberAsc(Long fileId);
 
+    /**
+     * Single-statement chunk insert into a session that accepts chunks; a retried chunk hits the
+     * (file_id, chunk_number) unique constraint and is skipped. Returns 0 for a duplicate or when
+     * the file is missing or no longer receiving.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO chunk_metadata (file_id, chunk_number, etag, size, checksum, created_at) "
+            + "SELECT f.id, :chunkNumber, :etag, :size, :checksum, :createdAt FROM file_metadata f "
+            + "WHERE f.id = :fileId AND f.status IN ('PENDING', 'ACTIVE') "
+            + "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("fileId") Long fileId, @Param("chunkNumber") Integer chunkNumber,
+            @Param("etag") String etag, @Param("size") Long size, @Param("checksum") String checksum,
+            @Param("createdAt") LocalDateTime createdAt);
+
+    boolean existsByFileMetadataIdAndChunkNumber(Long fileId, Integer chunkNumber);
+
+    /**
+     * Chunk rows of a file that has no manifest yet. Rows of a compacted file may be half
+     * deleted, so none are returned once its manifest exists.
+     */
+    @Query("select new com.cloud.metadata.dto.ChunkMetadataResponse(c.id, c.chunkNumber, c.etag, c.size, "
+            + "c.checksum, c.createdAt) from ChunkMetadata c where c.fileMetadata.id = :fileId "
+            + "and not exists (select m.fileId from ChunkManifest m where m.fileId = :fileId) "
+            + "order by c.chunkNumber")
+    List<ChunkMetadataResponse> findResponsesByFileId(@Param("fileId") Long fileId);
+
+    @Query("select new com.cloud.metadata.dto.ChunkPart(c.chunkNumber, c.etag) from ChunkMetadata c "
+            + "where c.fileMetadata.id = :fileId "
+            + "and not exists (select m.fileId from ChunkManifest m where m.fileId = :fileId) "
+            + "order by c.chunkNumber")
+    List<ChunkPart> findPartsByFileId(@Param("fileId") Long fileId);
+
+    /**
+     * Which of the given content hashes this owner has already stored
+     */
+    @Query("select distinct c.checksum from ChunkMetadata c "
+            + "where c.fileMetadata.owner = :owner and c.checksum in :checksums")
+    List<String> findKnownChecksums(@Param("owner") String owner, @Param("checksums") Collection<String> checksums);
+
+    /**
+     * Which of the given content hashes any file still references
+     */
+    @Query("select distinct c.checksum from ChunkMetadata c where c.checksum in :checksums")
+    List<String> findReferencedChecksums(@Param("checksums") Collection<String> checksums);
+
     void deleteByFileMetadataId(Long fileId);
+
+    /**
+     * Keyset page of completed fixed-size files that still have chunk rows. Content-defined
+     * files keep theirs: their checksums are the reference index of shared chunk objects.
+     */
+    @Query("select distinct c.fileMetadata.id from ChunkMetadata c where c.fileMetadata.id > :afterId "
+            + "and c.fileMetadata.status = com.cloud.metadata.enums.UploadStatus.COMPLETED "
+            + "and c.fileMetadata.chunkingScheme is null order by c.fileMetadata.id")
+    List<Long> findCompactableFileIds(@Param("afterId") Long afterId, Pageable page);
+
+    /**
+     * Delete up to {@code limit} of a file's chunk rows, lowest chunk numbers first
+     */
+    @Modifying
+    @Query(value = "DELETE FROM chunk_metadata WHERE id IN (SELECT id FROM chunk_metadata WHERE file_id = :fileId "
+            + "ORDER BY chunk_number LIMIT :limit)", nativeQuery = true)
+    int deleteBatch(@Param("fileId") Long fileId, @Param("limit") int limit);
 }
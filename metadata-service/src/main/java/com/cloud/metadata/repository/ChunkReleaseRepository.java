@@ -0,0 +1,60 @@
+package com.cloud.metadata.repository;
+
+import com.cloud.metadata.entity.ChunkRelease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface ChunkReleaseRepository extends JpaRepository<ChunkRelease, String> {
+
+    @Modifying
+    @Query(value = "INSERT INTO chunk_release (checksum, released_at) VALUES (:checksum, :now) "
+            + "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("checksum") String checksum, @Param("now") LocalDateTime now);
+
+    /**
+     * Restart the grace period of chunks released again; claimed ones are left to their sweeper
+     */
+    @Modifying
+    @Query("update ChunkRelease r set r.releasedAt = :now "
+            + "where r.checksum in :checksums and r.sweepLeaseUntil is null")
+    int restartGrace(@Param("checksums") Collection<String> checksums, @Param("now") LocalDateTime now);
+
+    /**
+     * Drop the tombstones of chunks referenced again, unless a sweeper holds them.
+     * Waits for a sweeper claiming the same rows, then re-checks their lease.
+     */
+    @Modifying
+    @Query("delete from ChunkRelease r where r.checksum in :checksums "
+            + "and (r.sweepLeaseUntil is null or r.sweepLeaseUntil < :now)")
+    int deleteUnclaimed(@Param("checksums") Collection<String> checksums, @Param("now") LocalDateTime now);
+
+    @Query("select count(r) from ChunkRelease r where r.checksum in :checksums and r.sweepLeaseUntil >= :now")
+    long countClaimed(@Param("checksums") Collection<String> checksums, @Param("now") LocalDateTime now);
+
+    /**
+     * Tombstones past the grace period that no other sweeper holds, oldest first
+     */
+    @Query(value = "SELECT checksum FROM chunk_release WHERE released_at < :cutoff "
+            + "AND (sweep_lease_until IS NULL OR sweep_lease_until < :now) "
+            + "ORDER BY released_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<String> lockSweepable(@Param("cutoff") LocalDateTime cutoff, @Param("now") LocalDateTime now,
+            @Param("limit") int limit);
+
+    @Modifying
+    @Query("update ChunkRelease r set r.sweepLeaseUntil = :leaseUntil where r.checksum in :checksums")
+    int leaseForSweep(@Param("checksums") Collection<String> checksums,
+            @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * Forget chunks whose objects a sweeper has deleted
+     */
+    @Modifying
+    @Query("delete from ChunkRelease r where r.checksum in :checksums and r.sweepLeaseUntil is not null")
+    int deleteSwept(@Param("checksums") Collection<String> checksums);
+}
@@ -0,0 +1,82 @@
+package com.cloud.metadata.repository;
+
+import com.cloud.metadata.entity.FileChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface FileChangeRepository extends JpaRepository<FileChange, Long> {
+
+    @Modifying
+    @Query(value = "INSERT INTO change_head (owner, changed_at) VALUES (:owner, :now) ON CONFLICT DO NOTHING",
+            nativeQuery = true)
+    int insertHeadIfAbsent(@Param("owner") String owner, @Param("now") LocalDateTime now);
+
+    /**
+     * Lock the owner's head row until the transaction ends, serialising the owner's appends.
+     * Returns 0 when the owner has no head row yet.
+     */
+    @Modifying
+    @Query(value = "UPDATE change_head SET changed_at = :now WHERE owner = :owner", nativeQuery = true)
+    int touchHead(@Param("owner") String owner, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query(value = "INSERT INTO file_change (owner, file_id, change_type, created_at) "
+            + "SELECT :owner, id, :type, :now FROM file_metadata "
+            + "WHERE (id = :logicalFileId OR logical_file_id = :logicalFileId) AND status = 'COMPLETED' ORDER BY id",
+            nativeQuery = true)
+    int insertForVersionChain(@Param("owner") String owner, @Param("type") String type,
+            @Param("logicalFileId") Long logicalFileId, @Param("now") LocalDateTime now);
+
+    /**
+     * One entry per completed file whose folder path matches, on idx_file_metadata_owner_folder_path
+     */
+    @Modifying
+    @Query(value = "INSERT INTO file_change (owner, file_id, change_type, created_at) "
+            + "SELECT :owner, id, :type, :now FROM file_metadata "
+            + "WHERE owner = :owner AND folder_path LIKE :pattern AND status = 'COMPLETED' ORDER BY id",
+            nativeQuery = true)
+    int insertForFolderPaths(@Param("owner") String owner, @Param("type") String type,
+            @Param("pattern") String pattern, @Param("now") LocalDateTime now);
+
+    /**
+     * Keyset page of an owner's changes after a position, on idx_file_change_owner_id
+     */
+    @Query("select c from FileChange c where c.owner = :owner and c.id > :afterId order by c.id")
+    List<FileChange> findPage(@Param("owner") String owner, @Param("afterId") long afterId, Pageable pageable);
+
+    /**
+     * Position of the owner's latest change, or of the latest pruned one once all are pruned
+     */
+    @Query(value = "SELECT GREATEST(COALESCE((SELECT MAX(id) FROM file_change WHERE owner = :owner), 0), "
+            + "COALESCE((SELECT pruned_id FROM change_head WHERE owner = :owner), 0))", nativeQuery = true)
+    long findHead(@Param("owner") String owner);
+
+    @Query(value = "SELECT COALESCE(MAX(pruned_id), 0) FROM change_head WHERE owner = :owner", nativeQuery = true)
+    long findPrunedId(@Param("owner") String owner);
+
+    @Query("select distinct c.owner from FileChange c where c.owner in :owners and c.id > :afterId")
+    List<String> findOwnersChangedAfter(@Param("owners") Collection<String> owners, @Param("afterId") long afterId);
+
+    /**
+     * Lock a batch of changes older than the cutoff, skipping those another pruner holds
+     */
+    @Query(value = "SELECT id FROM file_change WHERE created_at < :cutoff ORDER BY id LIMIT :limit "
+            + "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockOlderThan(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+
+    /**
+     * Raise the pruned mark of every owner with a change among the given ones
+     */
+    @Modifying
+    @Query(value = "UPDATE change_head SET pruned_id = GREATEST(pruned_id, "
+            + "(SELECT MAX(c.id) FROM file_change c WHERE c.owner = change_head.owner AND c.id IN :ids)) "
+            + "WHERE owner IN (SELECT c.owner FROM file_change c WHERE c.id IN :ids)", nativeQuery = true)
+    int markPruned(@Param("ids") Collection<Long> ids);
+}
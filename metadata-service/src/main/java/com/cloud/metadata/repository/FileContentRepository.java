@@ -0,0 +1,14 @@
+package com.cloud.metadata.repository;
+
+import com.cloud.metadata.entity.FileContent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface FileContentRepository extends JpaRepository<FileContent, Long> {
+
+    @Query("select c.data from FileContent c where c.fileId = :fileId")
+    Optional<byte[]> findDataById(@Param("fileId") Long fileId);
+}
@@ -1,9 +1,282 @@
 package com.cloud.metadata.repository;
 
+import com.cloud.metadata.dto.FileMetadataResponse;
+import com.cloud.metadata.dto.FileNameEntry;
+import com.cloud.metadata.dto.OwnerBytes;
+import com.cloud.metadata.dto.SessionState;
+import com.cloud.metadata.dto.StaleSession;
+import com.cloud.metadata.dto.SubtreeUsage;
+import com.cloud.metadata.dto.UploadProgress;
 import com.cloud.metadata.entity.FileMetadata;
+import com.cloud.metadata.enums.UploadStatus;
+import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface FileMetadataRepository extends JpaRepository<FileMetadata, Long> {
+
+    /**
+     * Select clause for read paths: builds the response from columns, so no entity is hydrated,
+     * dirty-checked or able to pull in its chunks
+     */
+    String RESPONSE = "select new com.cloud.metadata.dto.FileMetadataResponse(f.id, f.fileName, f.size, "
+            + "f.fileType, f.s3Key, f.owner, f.updatedAt, f.status, f.uploadId, f.totalChunks, f.contentEncoding, "
+            + "f.chunkingScheme, f.storedInline, f.logicalFileId, coalesce(f.versionNumber, 1), f.folderId) ";
+
     List<FileMetadata> findByOwner(String owner);
+
+    @Query(RESPONSE + "from FileMetadata f where f.id = :id")
+    Optional<FileMetadataResponse> findResponseById(@Param("id") Long id);
+
+    @Query("select f.owner from FileMetadata f where f.id = :id")
+    Optional<String> findOwnerById(@Param("id") Long id);
+
+    /*
+     * Keyset pages of an owner's files in (updated_at, id) order. Each variant matches one
+     * composite index (V2__owner_listing_indexes), so a page costs the same at any depth: the
+     * plain updated_at bound starts the index range at the cursor, the id test only breaks ties.
+     */
+
+    @Query(RESPONSE + "from FileMetadata f where f.owner = :owner "
+            + "and f.updatedAt >= :updatedAt and (f.updatedAt > :updatedAt or f.id > :id) "
+            + "order by f.updatedAt asc, f.id asc")
+    List<FileMetadataResponse> findOwnerPageAscending(@Param("owner") String owner,
+            @Param("updatedAt") LocalDateTime updatedAt, @Param("id") Long id, Pageable pageable);
+
+    @Query(RESPONSE + "from FileMetadata f where f.owner = :owner "
+            + "and f.updatedAt <= :updatedAt and (f.updatedAt < :updatedAt or f.id < :id) "
+            + "order by f.updatedAt desc, f.id desc")
+    List<FileMetadataResponse> findOwnerPageDescending(@Param("owner") String owner,
+            @Param("updatedAt") LocalDateTime updatedAt, @Param("id") Long id, Pageable pageable);
+
+    @Query(RESPONSE + "from FileMetadata f where f.owner = :owner and f.status = :status "
+            + "and f.updatedAt >= :updatedAt and (f.updatedAt > :updatedAt or f.id > :id) "
+            + "order by f.updatedAt asc, f.id asc")
+    List<FileMetadataResponse> findOwnerPageAscending(@Param("owner") String owner, @Param("status") UploadStatus status,
+            @Param("updatedAt") LocalDateTime updatedAt, @Param("id") Long id, Pageable pageable);
+
+    @Query(RESPONSE + "from FileMetadata f where f.owner = :owner and f.status = :status "
+            + "and f.updatedAt <= :updatedAt and (f.updatedAt < :updatedAt or f.id < :id) "
+            + "order by f.updatedAt desc, f.id desc")
+    List<FileMetadataResponse> findOwnerPageDescending(@Param("owner") String owner, @Param("status") UploadStatus status,
+            @Param("updatedAt") LocalDateTime updatedAt, @Param("id") Long id, Pageable pageable);
+
+    /**
+     * Keyset page of an owner's completed files whose lowercased name matches a LIKE pattern, in
+     * (lower(file_name), id) order. On PostgreSQL the trigram index (V3__filename_search_indexes)
+     * serves both substring ('%abc%') and prefix ('ab%') patterns.
+     */
+    @Query(RESPONSE + "from FileMetadata f where f.owner = :owner "
+            + "and f.status = com.cloud.metadata.enums.UploadStatus.COMPLETED "
+            + "and lower(f.fileName) like :pattern escape '\\' "
+            + "and lower(f.fileName) >= :afterName and (lower(f.fileName) > :afterName or f.id > :afterId) "
+            + "order by lower(f.fileName), f.id")
+    List<FileMetadataResponse> searchByName(@Param("owner") String owner, @Param("pattern") String pattern,
+            @Param("afterName") String afterName, @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("select new com.cloud.metadata.dto.FileNameEntry(f.id, f.fileName) from FileMetadata f "
+            + "where f.owner = :owner and f.status = com.cloud.metadata.enums.UploadStatus.COMPLETED")
+    List<FileNameEntry> findCompletedNames(@Param("owner") String owner);
+
+    @Query(RESPONSE + "from FileMetadata f where f.id in :ids "
+            + "and f.status = com.cloud.metadata.enums.UploadStatus.COMPLETED")
+    List<FileMetadataResponse> findCompletedResponses(@Param("ids") Collection<Long> ids);
+
+    /*
+     * Keyset pages of the files directly in a folder, in id order, on idx_file_metadata_owner_folder
+     */
+
+    @Query(RESPONSE + "from FileMetadata f where f.owner = :owner and f.folderId = :folderId and f.id > :afterId "
+            + "order by f.id")
+    List<FileMetadataResponse> findFolderPage(@Param("owner") String owner, @Param("folderId") Long folderId,
+            @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query(RESPONSE + "from FileMetadata f where f.owner = :owner and f.folderId is null and f.id > :afterId "
+            + "order by f.id")
+    List<FileMetadataResponse> findTopLevelPage(@Param("owner") String owner, @Param("afterId") Long afterId,
+            Pageable pageable);
+
+    @Query("select new com.cloud.metadata.dto.SubtreeUsage(count(f), coalesce(sum(f.size), 0L)) "
+            + "from FileMetadata f where f.owner = :owner and f.folderPath like :pattern "
+            + "and f.status = com.cloud.metadata.enums.UploadStatus.COMPLETED")
+    SubtreeUsage findSubtreeUsage(@Param("owner") String owner, @Param("pattern") String pattern);
+
+    /**
+     * Replace the folder path prefix of every file under it, see {@code FolderRepository.rewritePaths}
+     */
+    @Modifying
+    @Query("update FileMetadata f set f.rowVersion = f.rowVersion + 1, "
+            + "f.folderPath = concat(:newPrefix, substring(f.folderPath, :cut)) "
+            + "where f.owner = :owner and f.folderPath like :pattern")
+    int rewriteFolderPaths(@Param("owner") String owner, @Param("pattern") String pattern,
+            @Param("newPrefix") String newPrefix, @Param("cut") int cut);
+
+    @Query("select f.id from FileMetadata f where f.id = :logicalFileId or f.logicalFileId = :logicalFileId")
+    List<Long> findVersionChainIds(@Param("logicalFileId") Long logicalFileId);
+
+    /**
+     * Move every version of a logical file, so older versions stay next to the current one
+     */
+    @Modifying
+    @Query("update FileMetadata f set f.rowVersion = f.rowVersion + 1, f.folderId = :folderId, "
+            + "f.folderPath = :folderPath "
+            + "where f.id = :logicalFileId or f.logicalFileId = :logicalFileId")
+    int moveVersionChain(@Param("logicalFileId") Long logicalFileId, @Param("folderId") Long folderId,
+            @Param("folderPath") String folderPath);
+
+    /**
+     * Row locks on every version of a logical file, serialising version number assignment.
+     * The first version may have been pruned, so the chain is matched by id or logical id.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select f from FileMetadata f where f.id = :logicalFileId or f.logicalFileId = :logicalFileId")
+    List<FileMetadata> lockVersionChain(@Param("logicalFileId") Long logicalFileId);
+
+    @Query("select f.folderPath from FileMetadata f where f.id = :id")
+    Optional<String> findFolderPath(@Param("id") Long id);
+
+    @Query("select coalesce(max(f.versionNumber), 0) from FileMetadata f where f.logicalFileId = :logicalFileId")
+    int findMaxVersionNumber(@Param("logicalFileId") Long logicalFileId);
+
+    List<FileMetadata> findByLogicalFileIdAndStatusOrderByVersionNumberDesc(Long logicalFileId, UploadStatus status);
+
+    /**
+     * Completed versions of the logical file the given file belongs to, newest first.
+     * A file outside any version chain is matched on its own id.
+     */
+    @Query(RESPONSE + "from FileMetadata f where f.status = com.cloud.metadata.enums.UploadStatus.COMPLETED "
+            + "and ((f.id = :id and f.logicalFileId is null) "
+            + "or f.logicalFileId = (select g.logicalFileId from FileMetadata g where g.id = :id)) "
+            + "order by f.versionNumber desc")
+    List<FileMetadataResponse> findCompletedVersionResponses(@Param("id") Long id);
+
+    boolean existsByS3Key(String s3Key);
+
+    /**
+     * Row lock on a completed fixed-size file, held while its chunk rows are compacted; empty
+     * once the file is gone. Restores and deletes lock the same row before reading chunks.
+     */
+    @Query(value = "SELECT id FROM file_metadata WHERE id = :id AND status = 'COMPLETED' "
+            + "AND chunking_scheme IS NULL FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockCompactable(@Param("id") Long id);
+
+    /**
+     * Keyset page of sessions in one of the given states, last touched between notBefore and the
+     * cutoff, that no other sweeper or reconciler holds. SKIP LOCKED lets concurrent nodes claim
+     * disjoint pages without blocking.
+     */
+    @Query(value = "SELECT id FROM file_metadata "
+            + "WHERE status IN (:statuses) AND updated_at < :cutoff AND updated_at >= :notBefore AND id > :afterId "
+            + "AND (sweep_lease_until IS NULL OR sweep_lease_until < :now) "
+            + "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockStaleSessionIds(@Param("statuses") Collection<String> statuses,
+            @Param("cutoff") LocalDateTime cutoff, @Param("notBefore") LocalDateTime notBefore,
+            @Param("afterId") Long afterId, @Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("update FileMetadata f set f.rowVersion = f.rowVersion + 1, f.sweepLeaseUntil = :leaseUntil "
+            + "where f.id in :ids")
+    int leaseForSweep(@Param("ids") Collection<Long> ids, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Modifying
+    @Query("update FileMetadata f set f.rowVersion = f.rowVersion + 1, f.sweepLeaseUntil = null where f.id in :ids")
+    int releaseSweepLease(@Param("ids") Collection<Long> ids);
+
+    @Query("select new com.cloud.metadata.dto.StaleSession(f.id, f.uploadId, f.s3Key, f.contentEncoding, "
+            + "f.totalChunks) from FileMetadata f where f.id in :ids order by f.id")
+    List<StaleSession> findStaleSessions(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Keyset page of inline files larger than the given size, for promotion to S3
+     */
+    @Query(RESPONSE + "from FileMetadata f where f.storedInline = true and f.size > :maxSize and f.id > :afterId "
+            + "order by f.id")
+    List<FileMetadataResponse> findInlineFilesLargerThan(@Param("maxSize") long maxSize, @Param("afterId") Long afterId,
+            Pageable pageable);
+
+    /**
+     * Count chunks whose rows were just inserted and mark the session as receiving
+     * (PENDING -> ACTIVE), without loading it. Returns 0 when the file does not exist or is no
+     * longer accepting chunks.
+     */
+    @Modifying
+    @Query("update FileMetadata f set f.rowVersion = f.rowVersion + 1, "
+            + "f.status = com.cloud.metadata.enums.UploadStatus.ACTIVE, f.updatedAt = :now, "
+            + "f.receivedChunks = f.receivedChunks + :chunks, f.receivedBytes = f.receivedBytes + :bytes "
+            + "where f.id = :id and f.status in (com.cloud.metadata.enums.UploadStatus.PENDING, "
+            + "com.cloud.metadata.enums.UploadStatus.ACTIVE)")
+    int recordChunks(@Param("id") Long id, @Param("chunks") int chunks, @Param("bytes") long bytes,
+            @Param("now") LocalDateTime now);
+
+    @Query("select new com.cloud.metadata.dto.UploadProgress(f.id, f.status, f.totalChunks, f.receivedChunks, "
+            + "f.size, f.receivedBytes) from FileMetadata f where f.id = :id")
+    Optional<UploadProgress> findProgressById(@Param("id") Long id);
+
+    @Query("select f.status from FileMetadata f where f.id = :id")
+    Optional<UploadStatus> findStatusById(@Param("id") Long id);
+
+    @Query("select new com.cloud.metadata.dto.SessionState(f.id, f.owner, f.status, f.size, f.reservedBytes, "
+            + "f.receivedChunks, f.receivedBytes, f.totalChunks) from FileMetadata f where f.id = :id")
+    Optional<SessionState> findSessionState(@Param("id") Long id);
+
+    /**
+     * ACTIVE -> COMPLETED once every chunk has been received and they add up to the declared size,
+     * handing back the reservation. Returns 0 when the file is missing, in another state, still
+     * missing chunks or holding a different number of bytes.
+     */
+    @Modifying
+    @Query("update FileMetadata f set f.rowVersion = f.rowVersion + 1, "
+            + "f.status = com.cloud.metadata.enums.UploadStatus.COMPLETED, f.updatedAt = :now, "
+            + "f.reservedBytes = 0, f.sweepLeaseUntil = null "
+            + "where f.id = :id and f.status = com.cloud.metadata.enums.UploadStatus.ACTIVE "
+            + "and f.receivedChunks = f.totalChunks and f.receivedBytes = f.size")
+    int completeIfAllChunksReceived(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /**
+     * End an upload (FAILED, ABORTED) if it is still in one of the given states, handing back the
+     * reservation. Returns 0 when it is missing or has moved on.
+     */
+    @Modifying
+    @Query("update FileMetadata f set f.rowVersion = f.rowVersion + 1, f.status = :target, f.updatedAt = :now, "
+            + "f.reservedBytes = 0, f.sweepLeaseUntil = null where f.id = :id and f.status in :from")
+    int endUpload(@Param("id") Long id, @Param("from") Collection<UploadStatus> from,
+            @Param("target") UploadStatus target, @Param("now") LocalDateTime now);
+
+    /**
+     * Those of the given sessions still PENDING or ACTIVE, locked so they cannot complete before
+     * this transaction ends them
+     */
+    @Query(value = "SELECT id FROM file_metadata WHERE id IN (:ids) AND status IN ('PENDING', 'ACTIVE') "
+            + "ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockUnfinishedIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("update FileMetadata f set f.rowVersion = f.rowVersion + 1, f.status = :target, f.updatedAt = :now, "
+            + "f.sweepLeaseUntil = null "
+            + "where f.id in :ids and f.status in :from")
+    int transitionAll(@Param("ids") Collection<Long> ids, @Param("from") Collection<UploadStatus> from,
+            @Param("target") UploadStatus target, @Param("now") LocalDateTime now);
+
+    /**
+     * Bytes still reserved by the given files in a final state, per owner. Files hand their
+     * reservation back in the transaction that ends them, so these are the ones just ended.
+     */
+    @Query("select new com.cloud.metadata.dto.OwnerBytes(f.owner, sum(f.reservedBytes)) from FileMetadata f "
+            + "where f.id in :ids and f.status in :ended and f.reservedBytes > 0 group by f.owner")
+    List<OwnerBytes> findHeldReservations(@Param("ids") Collection<Long> ids,
+            @Param("ended") Collection<UploadStatus> ended);
+
+    @Modifying
+    @Query("update FileMetadata f set f.rowVersion = f.rowVersion + 1, f.reservedBytes = 0 "
+            + "where f.id in :ids and f.status in :ended and f.reservedBytes > 0")
+    int clearReservations(@Param("ids") Collection<Long> ids, @Param("ended") Collection<UploadStatus> ended);
 }
@@ -0,0 +1,59 @@
+package com.cloud.metadata.repository;
+
+import com.cloud.metadata.dto.FolderResponse;
+import com.cloud.metadata.entity.Folder;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Subtree queries match a path prefix ({@code path like '/12/40/%'}), served by the path
+ * indexes (V5__folder_path_indexes), so their cost does not depend on the depth of the tree.
+ */
+public interface FolderRepository extends JpaRepository<Folder, Long> {
+
+    String RESPONSE = "select new com.cloud.metadata.dto.FolderResponse(f.id, f.name, f.parentId, f.createdAt, "
+            + "f.updatedAt) ";
+
+    @Query(RESPONSE + "from Folder f where f.id = :id and f.owner = :owner")
+    Optional<FolderResponse> findResponse(@Param("owner") String owner, @Param("id") Long id);
+
+    @Query(RESPONSE + "from Folder f where f.owner = :owner and f.parentId = :parentId order by f.name, f.id")
+    List<FolderResponse> findChildren(@Param("owner") String owner, @Param("parentId") Long parentId);
+
+    @Query(RESPONSE + "from Folder f where f.owner = :owner and f.parentId is null order by f.name, f.id")
+    List<FolderResponse> findTopLevel(@Param("owner") String owner);
+
+    @Query("select f.path from Folder f where f.id = :id and f.owner = :owner")
+    Optional<String> findPath(@Param("owner") String owner, @Param("id") Long id);
+
+    /**
+     * Row locks on the given folders, taken in id order so concurrent callers cannot deadlock
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select f from Folder f where f.owner = :owner and f.id in :ids order by f.id")
+    List<Folder> lockAll(@Param("owner") String owner, @Param("ids") Collection<Long> ids);
+
+    @Query("select count(f) from Folder f where f.owner = :owner and f.path like :pattern")
+    long countByPathLike(@Param("owner") String owner, @Param("pattern") String pattern);
+
+    @Query("select coalesce(max(length(f.path)), 0) from Folder f where f.owner = :owner and f.path like :pattern")
+    int findMaxPathLength(@Param("owner") String owner, @Param("pattern") String pattern);
+
+    /**
+     * Replace the path prefix of every folder under it: the first {@code cut - 1} characters
+     * become {@code newPrefix}
+     */
+    @Modifying
+    @Query("update Folder f set f.path = concat(:newPrefix, substring(f.path, :cut)) "
+            + "where f.owner = :owner and f.path like :pattern")
+    int rewritePaths(@Param("owner") String owner, @Param("pattern") String pattern,
+            @Param("newPrefix") String newPrefix, @Param("cut") int cut);
+}
@@ -0,0 +1,48 @@
+package com.cloud.metadata.repository;
+
+import com.cloud.metadata.dto.FileEvent;
+import com.cloud.metadata.entity.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * One event per given file, copied from the file rows in a single statement
+     */
+    @Modifying
+    @Query(value = "INSERT INTO outbox_event (event_type, file_id, owner, file_name, size, created_at) "
+            + "SELECT :type, id, owner, file_name, size, :now FROM file_metadata WHERE id IN (:ids)",
+            nativeQuery = true)
+    int insertForFiles(@Param("type") String type, @Param("ids") Collection<Long> ids,
+            @Param("now") LocalDateTime now);
+
+    /**
+     * One event per given file that a bulk transition stamped with {@code now}; files the
+     * transition skipped keep their older updated_at and get none
+     */
+    @Modifying
+    @Query(value = "INSERT INTO outbox_event (event_type, file_id, owner, file_name, size, created_at) "
+            + "SELECT :type, id, owner, file_name, size, :now FROM file_metadata "
+            + "WHERE id IN (:ids) AND status = :status AND updated_at = :now", nativeQuery = true)
+    int insertForTransitioned(@Param("type") String type, @Param("ids") Collection<Long> ids,
+            @Param("status") String status, @Param("now") LocalDateTime now);
+
+    /**
+     * Oldest pending events that no other relay holds. SKIP LOCKED lets relays on several
+     * nodes drain disjoint batches.
+     */
+    @Query(value = "SELECT id FROM outbox_event ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<Long> lockBatch(@Param("limit") int limit);
+
+    @Query("select new com.cloud.metadata.dto.FileEvent(e.id, e.eventType, e.fileId, e.owner, e.fileName, "
+            + "e.size, e.createdAt) from OutboxEvent e where e.id in :ids order by e.id")
+    List<FileEvent> findEvents(@Param("ids") Collection<Long> ids);
+}
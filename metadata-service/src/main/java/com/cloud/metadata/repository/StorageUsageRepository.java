@@ -0,0 +1,94 @@
+package com.cloud.metadata.repository;
+
+import com.cloud.metadata.entity.StorageUsage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Storage ledger updates. Every change is a single conditional UPDATE on the owner's row, so
+ * concurrent uploads of one owner never read-modify-write the ledger and need no lock beyond
+ * the one the UPDATE itself takes.
+ */
+public interface StorageUsageRepository extends JpaRepository<StorageUsage, String> {
+
+    @Modifying
+    @Query(value = "INSERT INTO storage_usage (owner, used_bytes, reserved_bytes, updated_at) "
+            + "VALUES (:owner, 0, 0, :now) ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("owner") String owner, @Param("now") LocalDateTime now);
+
+    /**
+     * Reserve bytes for an upload. Returns 0, changing nothing, when they would not fit the quota.
+     */
+    @Modifying
+    @Query("update StorageUsage u set u.reservedBytes = u.reservedBytes + :bytes, u.updatedAt = :now "
+            + "where u.owner = :owner "
+            + "and u.usedBytes + u.reservedBytes + :bytes <= coalesce(u.quotaBytes, :defaultQuota)")
+    int reserve(@Param("owner") String owner, @Param("bytes") long bytes, @Param("defaultQuota") long defaultQuota,
+            @Param("now") LocalDateTime now);
+
+    /**
+     * Count bytes as used straight away, for files created already complete. Returns 0, changing
+     * nothing, when they would not fit the quota.
+     */
+    @Modifying
+    @Query("update StorageUsage u set u.usedBytes = u.usedBytes + :bytes, u.updatedAt = :now "
+            + "where u.owner = :owner "
+            + "and u.usedBytes + u.reservedBytes + :bytes <= coalesce(u.quotaBytes, :defaultQuota)")
+    int charge(@Param("owner") String owner, @Param("bytes") long bytes, @Param("defaultQuota") long defaultQuota,
+            @Param("now") LocalDateTime now);
+
+    /**
+     * Unconditional adjustment: commit ({@code reserved} negative, {@code used} positive) or release
+     */
+    @Modifying
+    @Query("update StorageUsage u set u.reservedBytes = u.reservedBytes + :reserved, "
+            + "u.usedBytes = u.usedBytes + :used, u.updatedAt = :now where u.owner = :owner")
+    int adjust(@Param("owner") String owner, @Param("reserved") long reserved, @Param("used") long used,
+            @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("update StorageUsage u set u.quotaBytes = :quotaBytes, u.updatedAt = :now where u.owner = :owner")
+    int setQuota(@Param("owner") String owner, @Param("quotaBytes") Long quotaBytes, @Param("now") LocalDateTime now);
+
+    /**
+     * Lock one keyset page of ledgers, in owner order. A writer holding one of them commits first,
+     * so a statement started after this sees its file change together with its ledger change.
+     */
+    @Query(value = "SELECT owner FROM storage_usage WHERE owner > :afterOwner "
+            + "ORDER BY owner LIMIT :limit FOR UPDATE", nativeQuery = true)
+    List<String> lockOwnersAfter(@Param("afterOwner") String afterOwner, @Param("limit") int limit);
+
+    /**
+     * Create ledger rows for owners that have files but none yet
+     */
+    @Modifying
+    @Query(value = "INSERT INTO storage_usage (owner, used_bytes, reserved_bytes, updated_at) "
+            + "SELECT DISTINCT f.owner, 0, 0, :now FROM file_metadata f "
+            + "WHERE NOT EXISTS (SELECT 1 FROM storage_usage u WHERE u.owner = f.owner)", nativeQuery = true)
+    int insertMissingOwners(@Param("now") LocalDateTime now);
+
+    /**
+     * Recompute the given ledgers from file_metadata in one statement, touching only rows that drifted.
+     * The rows must already be locked ({@link #lockOwnersAfter}): an UPDATE that waits for a row lock
+     * itself keeps the sums of the snapshot it started with. Returns the number of ledgers corrected.
+     */
+    @Modifying
+    @Query(value = "UPDATE storage_usage u SET "
+            + "used_bytes = (SELECT COALESCE(SUM(f.size), 0) FROM file_metadata f "
+            + "WHERE f.owner = u.owner AND f.status = 'COMPLETED'), "
+            + "reserved_bytes = (SELECT COALESCE(SUM(f.reserved_bytes), 0) FROM file_metadata f "
+            + "WHERE f.owner = u.owner AND f.status IN ('PENDING', 'ACTIVE')), "
+            + "updated_at = :now "
+            + "WHERE u.owner IN (:owners) AND ("
+            + "u.used_bytes <> (SELECT COALESCE(SUM(f.size), 0) FROM file_metadata f "
+            + "WHERE f.owner = u.owner AND f.status = 'COMPLETED') "
+            + "OR u.reserved_bytes <> (SELECT COALESCE(SUM(f.reserved_bytes), 0) FROM file_metadata f "
+            + "WHERE f.owner = u.owner AND f.status IN ('PENDING', 'ACTIVE')))", nativeQuery = true)
+    int reconcile(@Param("owners") Collection<String> owners, @Param("now") LocalDateTime now);
+}
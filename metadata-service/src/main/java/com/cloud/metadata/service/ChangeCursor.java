@@ -0,0 +1,34 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque position in an owner's change feed: the last change seen, when the cursor was handed
+ * out, and the placement epoch of the owner's bucket, since positions do not carry over to
+ * another shard. Whether the feed was pruned past the position is checked against the owner's
+ * pruned mark, not the age of the cursor.
+ */
+record ChangeCursor(long position, LocalDateTime issuedAt, int epoch) {
+
+    String encode() {
+        String value = position + "|" + issuedAt + "|" + epoch;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static ChangeCursor decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = value.split("\\|");
+            // Cursors handed out before sharding have no epoch: their owners were never moved
+            return new ChangeCursor(Long.parseLong(parts[0]), LocalDateTime.parse(parts[1]),
+                    parts.length > 2 ? Integer.parseInt(parts[2]) : 0);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new InvalidCursorException("Invalid cursor: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.config.ShardContext;
+import com.cloud.metadata.dto.FileChangesResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Long-polling reads of the change feed. A read that finds nothing parks its request instead of
+ * holding a thread or polling the database; it is answered when a commit on this node appends
+ * to the owner's feed, when the periodic check sees changes committed by another node, or
+ * empty when the wait is over.
+ */
+@Component
+@Slf4j
+public class ChangeFeedNotifier implements DisposableBean {
+
+    /** Owners per check query */
+    private static final int CHECK_BATCH_SIZE = 500;
+
+    private final ChangeFeedService feedService;
+    private final ShardRouter shardRouter;
+    private final Duration maxWait;
+    private final Map<String, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+    private final Set<String> queuedWakeUps = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor;
+
+    public ChangeFeedNotifier(ChangeFeedService feedService, ShardRouter shardRouter,
+            @Value("${metadata.changes.long-poll.max-wait:60s}") Duration maxWait,
+            @Value("${metadata.changes.long-poll.threads:4}") int threads) {
+        this.feedService = feedService;
+        this.shardRouter = shardRouter;
+        this.maxWait = maxWait;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads,
+                runnable -> new Thread(runnable, "change-feed-" + count.incrementAndGet()));
+    }
+
+    private record Waiter(String owner, String cursor, long position, int limit,
+            DeferredResult<FileChangesResponse> result) {
+    }
+
+    /**
+     * Changes after the cursor, waiting up to {@code wait} for the first one when there are none yet
+     */
+    public DeferredResult<FileChangesResponse> await(String owner, String cursor, int limit, Duration wait) {
+        Duration timeout = wait.compareTo(maxWait) > 0 ? maxWait : wait;
+        if (cursor == null || timeout.isNegative() || timeout.isZero()) {
+            DeferredResult<FileChangesResponse> result = new DeferredResult<>();
+            result.setResult(feedService.getChanges(owner, cursor, limit));
+            return result;
+        }
+
+        // A final read on timeout also catches changes the periodic check has not seen yet
+        DeferredResult<FileChangesResponse> result = new DeferredResult<>(timeout.toMillis(),
+                () -> read(owner, cursor, limit));
+        Waiter waiter = new Waiter(owner, cursor, ChangeCursor.decode(cursor).position(), limit, result);
+        // Registered before the first read, so no commit can fall between the read and the wait
+        waiters.computeIfAbsent(owner, key -> ConcurrentHashMap.newKeySet()).add(waiter);
+        result.onCompletion(() -> remove(waiter));
+        try {
+            answerIfChanged(waiter);
+        } catch (RuntimeException e) {
+            remove(waiter);
+            throw e;
+        }
+        return result;
+    }
+
+    @TransactionalEventListener
+    public void onRecorded(ChangeLog.Recorded recorded) {
+        String owner = recorded.owner();
+        // Commits arriving while a wake-up of the owner is queued are covered by it
+        if (waiters.containsKey(owner) && queuedWakeUps.add(owner)) {
+            executor.execute(() -> {
+                queuedWakeUps.remove(owner);
+                wake(owner);
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${metadata.changes.long-poll.check-interval-ms:1000}",
+            initialDelayString = "${metadata.changes.long-poll.check-interval-ms:1000}")
+    public void scheduledCheck() {
+        try {
+            check();
+        } catch (Exception e) {
+            log.error("Change feed check failed", e);
+        }
+    }
+
+    /**
+     * Wake the waiters of every owner with changes after the oldest cursor waiting for it; costs
+     * nothing while no request waits
+     *
+     * @return number of owners woken
+     */
+    public int check() {
+        Map<Integer, List<String>> ownersByShard = waiters.keySet().stream()
+                .collect(Collectors.groupingBy(shardRouter::shardOfOwner));
+        int woken = 0;
+        for (Map.Entry<Integer, List<String>> shard : ownersByShard.entrySet()) {
+            List<String> owners = shard.getValue();
+            for (int from = 0; from < owners.size(); from += CHECK_BATCH_SIZE) {
+                List<String> batch = owners.subList(from, Math.min(from + CHECK_BATCH_SIZE, owners.size()));
+                long oldest = batch.stream()
+                        .flatMap(owner -> waiters.getOrDefault(owner, Set.of()).stream())
+                        .mapToLong(Waiter::position)
+                        .min()
+                        .orElse(Long.MAX_VALUE);
+                List<String> changed;
+                try (ShardContext.Scope ignored = shardRouter.forShard(shard.getKey())) {
+                    changed = feedService.findOwnersChangedAfter(batch, oldest);
+                }
+                for (String owner : changed) {
+                    wake(owner);
+                    woken++;
+                }
+            }
+        }
+        return woken;
+    }
+
+    private void wake(String owner) {
+        for (Waiter waiter : List.copyOf(waiters.getOrDefault(owner, Set.of()))) {
+            try {
+                answerIfChanged(waiter);
+            } catch (Exception e) {
+                waiter.result().setErrorResult(e);
+                remove(waiter);
+            }
+        }
+    }
+
+    private void answerIfChanged(Waiter waiter) {
+        FileChangesResponse changes = read(waiter.owner(), waiter.cursor(), waiter.limit());
+        if (!changes.getChanges().isEmpty()) {
+            waiter.result().setResult(changes);
+            remove(waiter);
+        }
+    }
+
+    /**
+     * Waiting requests are answered off the request thread, outside its shard scope
+     */
+    private FileChangesResponse read(String owner, String cursor, int limit) {
+        try (ShardContext.Scope ignored = shardRouter.forOwner(owner)) {
+            return feedService.getChanges(owner, cursor, limit);
+        }
+    }
+
+    private void remove(Waiter waiter) {
+        waiters.computeIfPresent(waiter.owner(), (owner, waiting) -> {
+            waiting.remove(waiter);
+            return waiting.isEmpty() ? null : waiting;
+        });
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,101 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.dto.FileChangeEntry;
+import com.cloud.metadata.dto.FileChangesResponse;
+import com.cloud.metadata.dto.FileMetadataResponse;
+import com.cloud.metadata.entity.FileChange;
+import com.cloud.metadata.enums.FileChangeType;
+import com.cloud.metadata.exception.ChangeCursorExpiredException;
+import com.cloud.metadata.repository.FileChangeRepository;
+import com.cloud.metadata.repository.FileMetadataRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Reads of owners' change feeds. A call costs one indexed range read of the changes after the
+ * cursor and one lookup of the files they name, however many files the owner has.
+ */
+@Service
+public class ChangeFeedService {
+
+    private final FileChangeRepository changeRepository;
+    private final FileMetadataRepository fileRepository;
+    private final ShardRouter shardRouter;
+    private final int maxPageSize;
+
+    public ChangeFeedService(FileChangeRepository changeRepository, FileMetadataRepository fileRepository,
+            ShardRouter shardRouter,
+            @Value("${metadata.listing.max-page-size:500}") int maxPageSize) {
+        this.changeRepository = changeRepository;
+        this.fileRepository = fileRepository;
+        this.shardRouter = shardRouter;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Changes after the cursor, oldest first. Without a cursor, no changes and a cursor at the
+     * current end of the feed: take it before listing the owner's files, then follow the feed.
+     */
+    @Transactional(readOnly = true)
+    public FileChangesResponse getChanges(String owner, String cursor, int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        int epoch = shardRouter.placementEpoch(owner);
+        if (cursor == null) {
+            return new FileChangesResponse(List.of(),
+                    new ChangeCursor(changeRepository.findHead(owner), now, epoch).encode(), false);
+        }
+        ChangeCursor after = ChangeCursor.decode(cursor);
+        if (after.epoch() != epoch) {
+            throw new ChangeCursorExpiredException("The files moved to another shard since the cursor was handed "
+                    + "out; list the files again");
+        }
+
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        // One extra row tells whether more changes follow
+        List<FileChange> changes = changeRepository.findPage(owner, after.position(), PageRequest.of(0, pageSize + 1));
+        // Read after the page: a prune that committed before the page was read shows in the mark
+        if (after.position() < changeRepository.findPrunedId(owner)) {
+            throw new ChangeCursorExpiredException("Changes after the cursor have been pruned from the change feed; "
+                    + "list the files again");
+        }
+        boolean hasMore = changes.size() > pageSize;
+        if (hasMore) {
+            changes = changes.subList(0, pageSize);
+        }
+        if (changes.isEmpty()) {
+            return new FileChangesResponse(List.of(), new ChangeCursor(after.position(), now, epoch).encode(), false);
+        }
+
+        Set<Long> fileIds = changes.stream()
+                .filter(change -> change.getChangeType() != FileChangeType.DELETED)
+                .map(FileChange::getFileId)
+                .collect(Collectors.toSet());
+        Map<Long, FileMetadataResponse> files = fileIds.isEmpty() ? Map.of()
+                : fileRepository.findCompletedResponses(fileIds).stream()
+                        .collect(Collectors.toMap(FileMetadataResponse::getId, Function.identity()));
+        List<FileChangeEntry> entries = changes.stream()
+                .map(change -> new FileChangeEntry(change.getChangeType(), change.getFileId(),
+                        files.get(change.getFileId())))
+                .toList();
+        long position = changes.get(changes.size() - 1).getId();
+        return new FileChangesResponse(entries, new ChangeCursor(position, now, epoch).encode(), hasMore);
+    }
+
+    /**
+     * Which of the given owners have changes after a position
+     */
+    @Transactional(readOnly = true)
+    public List<String> findOwnersChangedAfter(Collection<String> owners, long afterId) {
+        return changeRepository.findOwnersChangedAfter(owners, afterId);
+    }
+}
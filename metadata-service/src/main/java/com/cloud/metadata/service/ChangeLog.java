@@ -0,0 +1,103 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.entity.FileChange;
+import com.cloud.metadata.enums.FileChangeType;
+import com.cloud.metadata.repository.FileChangeRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Appends to owners' change feeds in the transaction of the change. Every append first locks
+ * the owner's head row, so appends of one owner commit in id order. Record changes after the
+ * transaction's other writes: the head lock is taken last everywhere, which keeps writers of
+ * one owner from deadlocking on it.
+ */
+@Service
+@RequiredArgsConstructor
+public class ChangeLog {
+
+    private final FileChangeRepository changeRepository;
+    private final ApplicationEventPublisher publisher;
+
+    /**
+     * Raised inside a transaction that appended to an owner's feed; waiting readers of the feed
+     * are woken once it commits
+     */
+    public record Recorded(String owner) {
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(String owner, FileChangeType type, Collection<Long> fileIds) {
+        if (fileIds.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = lockHead(owner);
+        // Entries of deleted files are recorded after the delete, so they cannot be copied from the rows
+        changeRepository.saveAll(fileIds.stream()
+                .map(fileId -> FileChange.builder()
+                        .owner(owner)
+                        .fileId(fileId)
+                        .changeType(type)
+                        .createdAt(now)
+                        .build())
+                .toList());
+        publisher.publishEvent(new Recorded(owner));
+    }
+
+    /**
+     * Record a change of every completed version of a logical file
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordVersionChain(String owner, FileChangeType type, Long logicalFileId) {
+        LocalDateTime now = lockHead(owner);
+        if (changeRepository.insertForVersionChain(owner, type.name(), logicalFileId, now) > 0) {
+            publisher.publishEvent(new Recorded(owner));
+        }
+    }
+
+    /**
+     * Record a change of every completed file at or below a folder path
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordFolder(String owner, FileChangeType type, String folderPath) {
+        LocalDateTime now = lockHead(owner);
+        if (changeRepository.insertForFolderPaths(owner, type.name(), folderPath + "%", now) > 0) {
+            publisher.publishEvent(new Recorded(owner));
+        }
+    }
+
+    /**
+     * Delete one batch of changes older than the cutoff, raising their owners' pruned marks in
+     * the same transaction
+     *
+     * @return number of changes deleted
+     */
+    @Transactional
+    public int pruneBatch(LocalDateTime cutoff, int limit) {
+        List<Long> ids = changeRepository.lockOlderThan(cutoff, limit);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        changeRepository.markPruned(ids);
+        changeRepository.deleteAllByIdInBatch(ids);
+        return ids.size();
+    }
+
+    private LocalDateTime lockHead(String owner) {
+        // Pending entity writes take their row locks now, before the head lock rather than at commit
+        changeRepository.flush();
+        LocalDateTime now = LocalDateTime.now();
+        if (changeRepository.touchHead(owner, now) == 0) {
+            changeRepository.insertHeadIfAbsent(owner, now);
+            changeRepository.touchHead(owner, now);
+        }
+        return now;
+    }
+}
@@ -0,0 +1,68 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.config.ShardContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Scheduled deletion of change feed entries past the retention. Each owner's pruned mark is
+ * raised with the deletion, and cursors behind it are refused, so no accepted cursor skips a
+ * pruned entry.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(prefix = "metadata.changes.pruning", name = "enabled", havingValue = "true",
+        matchIfMissing = true)
+public class ChangeLogPruner {
+
+    private final ChangeLog changeLog;
+    private final ShardRouter shardRouter;
+    private final Duration retention;
+    private final int batchSize;
+
+    public ChangeLogPruner(ChangeLog changeLog, ShardRouter shardRouter,
+            @Value("${metadata.changes.retention:30d}") Duration retention,
+            @Value("${metadata.changes.pruning.batch-size:10000}") int batchSize) {
+        this.changeLog = changeLog;
+        this.shardRouter = shardRouter;
+        this.retention = retention;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${metadata.changes.pruning.interval-ms:3600000}",
+            initialDelayString = "${metadata.changes.pruning.interval-ms:3600000}")
+    public void scheduledPrune() {
+        try {
+            prune();
+        } catch (Exception e) {
+            log.error("Change feed pruning failed", e);
+        }
+    }
+
+    /**
+     * Delete every expired entry, shard by shard and batch by batch
+     *
+     * @return number of entries deleted
+     */
+    public long prune() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        long pruned = 0;
+        for (int shard : shardRouter.shards()) {
+            try (ShardContext.Scope ignored = shardRouter.forShard(shard)) {
+                int batch;
+                do {
+                    batch = changeLog.pruneBatch(cutoff, batchSize);
+                    pruned += batch;
+                } while (batch == batchSize);
+            }
+        }
+        log.info("Pruned {} change feed entries older than {}", pruned, cutoff);
+        return pruned;
+    }
+}
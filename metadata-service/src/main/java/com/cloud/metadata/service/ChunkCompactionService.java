@@ -0,0 +1,76 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.dto.ChunkMetadataResponse;
+import com.cloud.metadata.entity.ChunkManifest;
+import com.cloud.metadata.repository.ChunkManifestRepository;
+import com.cloud.metadata.repository.ChunkMetadataRepository;
+import com.cloud.metadata.repository.FileMetadataRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Folds the chunk rows of completed uploads into a {@link ChunkManifest}. The manifest is
+ * written first and the rows are deleted afterwards in short batches; readers prefer the
+ * manifest as soon as it exists, so they never see a half-deleted chunk list.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChunkCompactionService {
+
+    private final FileMetadataRepository fileRepository;
+    private final ChunkMetadataRepository chunkRepository;
+    private final ChunkManifestRepository manifestRepository;
+
+    @Transactional(readOnly = true)
+    public List<Long> findCompactableFileIds(Long afterId, int limit) {
+        return chunkRepository.findCompactableFileIds(afterId, PageRequest.ofSize(limit));
+    }
+
+    /**
+     * Write the manifest of a file, unless an earlier run already did
+     *
+     * @return whether the file's chunk rows may now be deleted
+     */
+    @Transactional
+    public boolean writeManifest(Long fileId) {
+        if (fileRepository.lockCompactable(fileId).isEmpty()) {
+            return false; // Deleted since it was listed
+        }
+        if (manifestRepository.existsById(fileId)) {
+            return true; // Interrupted after the manifest was written; only row deletion is left
+        }
+        List<ChunkMetadataResponse> chunks = chunkRepository.findResponsesByFileId(fileId);
+        if (chunks.isEmpty()) {
+            return false;
+        }
+        byte[] data = ChunkManifestCodec.encode(chunks);
+        manifestRepository.save(ChunkManifest.builder()
+                .fileId(fileId)
+                .partCount(chunks.size())
+                .data(data)
+                .createdAt(LocalDateTime.now())
+                .build());
+        log.debug("Compacted {} chunks of file {} into {} bytes", chunks.size(), fileId, data.length);
+        return true;
+    }
+
+    /**
+     * Delete one batch of a compacted file's chunk rows
+     *
+     * @return rows deleted; fewer than {@code batchSize} once none are left
+     */
+    @Transactional
+    public int deleteRowBatch(Long fileId, int batchSize) {
+        if (fileRepository.lockCompactable(fileId).isEmpty()) {
+            return 0;
+        }
+        return chunkRepository.deleteBatch(fileId, batchSize);
+    }
+}
@@ -0,0 +1,83 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.config.ShardContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Scheduled compaction of completed uploads' chunk rows into manifests, so chunk_metadata and
+ * its (file_id, chunk_number) index only hold in-flight uploads and content-defined files
+ * instead of growing with every part ever uploaded.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(prefix = "metadata.chunks.compaction", name = "enabled", havingValue = "true",
+        matchIfMissing = true)
+public class ChunkCompactor {
+
+    private final ChunkCompactionService compactionService;
+    private final ShardRouter shardRouter;
+
+    @Value("${metadata.chunks.compaction.batch-size:100}")
+    private int batchSize;
+
+    @Value("${metadata.chunks.compaction.delete-batch-size:1000}")
+    private int deleteBatchSize;
+
+    @Scheduled(fixedDelayString = "${metadata.chunks.compaction.interval-ms:600000}",
+            initialDelayString = "${metadata.chunks.compaction.interval-ms:600000}")
+    public void scheduledCompact() {
+        try {
+            compact();
+        } catch (Exception e) {
+            log.error("Chunk compaction failed", e);
+        }
+    }
+
+    /**
+     * Compact every eligible file, shard by shard and page by page
+     *
+     * @return number of files compacted
+     */
+    public int compact() {
+        int compacted = 0;
+        long deleted = 0;
+        for (int shard : shardRouter.shards()) {
+            try (ShardContext.Scope ignored = shardRouter.forShard(shard)) {
+                long afterId = 0L;
+                while (true) {
+                    List<Long> fileIds = compactionService.findCompactableFileIds(afterId, batchSize);
+                    for (Long fileId : fileIds) {
+                        if (compactionService.writeManifest(fileId)) {
+                            deleted += deleteRows(fileId);
+                            compacted++;
+                        }
+                    }
+                    if (fileIds.size() < batchSize) {
+                        break;
+                    }
+                    afterId = fileIds.get(fileIds.size() - 1);
+                }
+            }
+        }
+        log.info("Compacted the chunk rows of {} files ({} rows deleted)", compacted, deleted);
+        return compacted;
+    }
+
+    private long deleteRows(Long fileId) {
+        long deleted = 0;
+        int rows;
+        do {
+            rows = compactionService.deleteRowBatch(fileId, deleteBatchSize);
+            deleted += rows;
+        } while (rows == deleteBatchSize);
+        return deleted;
+    }
+}
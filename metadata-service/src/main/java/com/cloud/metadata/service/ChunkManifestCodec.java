@@ -0,0 +1,99 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.dto.ChunkMetadataResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Binary form of a completed file's chunk list: a format version, the chunk count, then per
+ * chunk its number and creation time as deltas from the previous chunk, size, etag and optional
+ * checksum, all deflated. Etags of one upload share their shape and chunk sizes repeat, so a
+ * 10,000-part file takes a few hundred kilobytes instead of 10,000 rows and index entries.
+ */
+final class ChunkManifestCodec {
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final int HAS_CHECKSUM = 1;
+    private static final int HAS_CREATED_AT = 2;
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private ChunkManifestCodec() {
+    }
+
+    /**
+     * Encode chunks given in chunk number order
+     */
+    static byte[] encode(List<ChunkMetadataResponse> chunks) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(chunks.size());
+            int previousNumber = 0;
+            long previousMicros = 0;
+            for (ChunkMetadataResponse chunk : chunks) {
+                int flags = (chunk.getChecksum() != null ? HAS_CHECKSUM : 0)
+                        | (chunk.getCreatedAt() != null ? HAS_CREATED_AT : 0);
+                out.writeByte(flags);
+                out.writeInt(chunk.getChunkNumber() - previousNumber);
+                previousNumber = chunk.getChunkNumber();
+                out.writeLong(chunk.getSize() != null ? chunk.getSize() : 0L);
+                out.writeUTF(chunk.getEtag());
+                if (chunk.getChecksum() != null) {
+                    out.writeUTF(chunk.getChecksum());
+                }
+                if (chunk.getCreatedAt() != null) {
+                    long micros = ChronoUnit.MICROS.between(EPOCH, chunk.getCreatedAt());
+                    out.writeLong(micros - previousMicros);
+                    previousMicros = micros;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode chunk manifest", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decode a manifest back into chunk responses. Compacted chunks no longer have row ids,
+     * so {@code id} is null.
+     */
+    static List<ChunkMetadataResponse> decode(byte[] manifest) {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(manifest)))) {
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalStateException("Unsupported chunk manifest format: " + version);
+            }
+            int count = in.readInt();
+            List<ChunkMetadataResponse> chunks = new ArrayList<>(count);
+            int chunkNumber = 0;
+            long micros = 0;
+            for (int i = 0; i < count; i++) {
+                int flags = in.readByte();
+                chunkNumber += in.readInt();
+                long size = in.readLong();
+                String etag = in.readUTF();
+                String checksum = (flags & HAS_CHECKSUM) != 0 ? in.readUTF() : null;
+                LocalDateTime createdAt = null;
+                if ((flags & HAS_CREATED_AT) != 0) {
+                    micros += in.readLong();
+                    createdAt = EPOCH.plus(micros, ChronoUnit.MICROS);
+                }
+                chunks.add(new ChunkMetadataResponse(null, chunkNumber, etag, size, checksum, createdAt));
+            }
+            return chunks;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt chunk manifest", e);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.config.ShardContext;
+import com.cloud.metadata.exception.ChunkReclaimingException;
+import com.cloud.metadata.repository.ChunkMetadataRepository;
+import com.cloud.metadata.repository.ChunkReleaseRepository;
+import com.cloud.metadata.repository.FileMetadataRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * References to shared storage objects and the tombstones of released chunks. A content-addressed
+ * chunk is shared by every file with the same content, whoever owns it and whichever shard holds
+ * it, so references are looked up on every shard and tombstones are kept on shard 0 alone.
+ * <p>
+ * The caller's shard is read in the caller's transaction, so rows it has just deleted no longer
+ * count. Other shards are read, and shard 0's tombstones written, in short transactions of their
+ * own: a tombstone written for a caller that then rolls back is dropped again by the sweep's
+ * reference check. With sharding disabled everything runs in the caller's transaction.
+ */
+@Component
+public class ChunkReferences {
+
+    private static final int TOMBSTONE_SHARD = 0;
+
+    private final ShardRouter router;
+    private final FileMetadataRepository fileRepository;
+    private final ChunkMetadataRepository chunkRepository;
+    private final ChunkReleaseRepository releaseRepository;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate writeTransaction;
+
+    public ChunkReferences(ShardRouter router, FileMetadataRepository fileRepository,
+            ChunkMetadataRepository chunkRepository, ChunkReleaseRepository releaseRepository,
+            PlatformTransactionManager transactionManager) {
+        this.router = router;
+        this.fileRepository = fileRepository;
+        this.chunkRepository = chunkRepository;
+        this.releaseRepository = releaseRepository;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Which of the given content hashes a file on any shard still references
+     */
+    public Set<String> findReferenced(Collection<String> checksums) {
+        Set<String> referenced = new HashSet<>();
+        for (int shard : router.shards()) {
+            List<String> unresolved = checksums.stream().filter(checksum -> !referenced.contains(checksum)).toList();
+            if (unresolved.isEmpty()) {
+                break;
+            }
+            referenced.addAll(onShard(shard, readTransaction,
+                    () -> chunkRepository.findReferencedChecksums(unresolved)));
+        }
+        return referenced;
+    }
+
+    /**
+     * Whether a file on any shard still stores its content under the key
+     */
+    public boolean isS3KeyReferenced(String s3Key) {
+        for (int shard : router.shards()) {
+            if (onShard(shard, readTransaction, () -> fileRepository.existsByS3Key(s3Key))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tombstone chunks no file references; one already released starts its grace period again
+     */
+    public void release(Set<String> checksums) {
+        if (checksums.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        onShard(TOMBSTONE_SHARD, writeTransaction, () -> {
+            releaseRepository.restartGrace(checksums, now);
+            checksums.forEach(checksum -> releaseRepository.insertIfAbsent(checksum, now));
+            return null;
+        });
+    }
+
+    /**
+     * A chunk about to be referenced again is no longer released. One a sweeper has claimed
+     * may already be gone from S3, so the caller has to store it again once the sweep is over.
+     * Call it before recording the reference: from then on no sweep can claim the chunk.
+     */
+    public void retain(List<String> checksums, LocalDateTime now) {
+        if (checksums.isEmpty()) {
+            return;
+        }
+        long claimed = onShard(TOMBSTONE_SHARD, writeTransaction, () -> {
+            releaseRepository.deleteUnclaimed(checksums, now);
+            return releaseRepository.countClaimed(checksums, now);
+        });
+        if (claimed > 0) {
+            throw new ChunkReclaimingException(
+                    "A chunk of this upload is being reclaimed; upload its data again shortly");
+        }
+    }
+
+    private <T> T onShard(int shard, TransactionTemplate transaction, Supplier<T> work) {
+        if (shard == ShardContext.current()) {
+            return work.get();
+        }
+        try (ShardContext.Scope ignored = router.forShard(shard)) {
+            return transaction.execute(status -> work.get());
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.config.ShardContext;
+import com.cloud.metadata.dto.FileMetadataResponse;
+import com.cloud.metadata.dto.IdleSessionClaimRequest;
+import com.cloud.metadata.dto.ReleasedChunkClaimRequest;
+import com.cloud.metadata.dto.StaleSession;
+import com.cloud.metadata.dto.StaleSessionClaimRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * The sweeps file-service runs over all files rather than one owner's, run shard by shard, each
+ * in its own transaction. Every shard is asked for a full keyset page; the pages are merged in id
+ * order and cut to the limit, so the last id returned is a valid cursor on every shard. Ids are
+ * unique across shards. With a single shard each call is exactly the {@link MetadataService} one.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CrossShardService {
+
+    private final MetadataService metadataService;
+    private final ShardRouter router;
+
+    /**
+     * Claim up to the limit; the claims' leases keep the next sweeper from taking the same sessions
+     */
+    public List<StaleSession> claimStaleSessions(StaleSessionClaimRequest request) {
+        return claimByShard(request.getLimit(), () -> metadataService.claimStaleSessions(request));
+    }
+
+    public List<StaleSession> claimIdleSessions(IdleSessionClaimRequest request) {
+        return claimByShard(request.getLimit(), () -> metadataService.claimIdleSessions(request));
+    }
+
+    /**
+     * Released chunks are tombstoned on shard 0 whichever shard released them, since chunk
+     * objects are shared across owners; the claim checks references on every shard
+     */
+    public List<String> claimReleasedChunks(ReleasedChunkClaimRequest request) {
+        try (ShardContext.Scope ignored = router.forShard(0)) {
+            return metadataService.claimReleasedChunks(request);
+        }
+    }
+
+    public int confirmSweptChunks(List<String> checksums) {
+        try (ShardContext.Scope ignored = router.forShard(0)) {
+            return metadataService.confirmSweptChunks(checksums);
+        }
+    }
+
+    /**
+     * Abort each shard's sessions in one batch. Sessions whose bucket is being moved are left
+     * for a later sweep, which claims them again on their new shard.
+     *
+     * @return ids of the sessions moved to ABORTED
+     */
+    public List<Long> abortSessions(List<Long> fileIds) {
+        if (fileIds == null || fileIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, List<Long>> byShard = new LinkedHashMap<>();
+        for (Long fileId : fileIds) {
+            if (router.isMoving(fileId)) {
+                log.debug("Not aborting session {} while its bucket is moved", fileId);
+                continue;
+            }
+            byShard.computeIfAbsent(router.shardOfFile(fileId), shard -> new ArrayList<>()).add(fileId);
+        }
+        List<Long> aborted = new ArrayList<>();
+        for (Map.Entry<Integer, List<Long>> shard : byShard.entrySet()) {
+            try (ShardContext.Scope ignored = router.forShard(shard.getKey())) {
+                aborted.addAll(metadataService.abortSessions(shard.getValue()));
+            }
+        }
+        return aborted;
+    }
+
+    public List<FileMetadataResponse> getInlineFilesLargerThan(long maxSize, Long afterId, int limit) {
+        return mergePages(() -> metadataService.getInlineFilesLargerThan(maxSize, afterId, limit),
+                FileMetadataResponse::getId, limit);
+    }
+
+    /**
+     * Like {@link #mergePages}; the claims cut off past the limit are handed back on their shard,
+     * since the caller's cursor moves past them
+     */
+    private List<StaleSession> claimByShard(int limit, Supplier<List<StaleSession>> claim) {
+        if (!router.isSharded()) {
+            return claim.get();
+        }
+        Map<Integer, List<StaleSession>> byShard = new LinkedHashMap<>();
+        List<StaleSession> merged = new ArrayList<>();
+        for (int shard : router.shards()) {
+            try (ShardContext.Scope ignored = router.forShard(shard)) {
+                List<StaleSession> claimed = claim.get();
+                byShard.put(shard, claimed);
+                merged.addAll(claimed);
+            }
+        }
+        merged.sort(Comparator.comparingLong(StaleSession::getId));
+        if (merged.size() <= limit) {
+            return merged;
+        }
+
+        long lastId = merged.get(limit - 1).getId();
+        for (Map.Entry<Integer, List<StaleSession>> shard : byShard.entrySet()) {
+            List<Long> cutOff = shard.getValue().stream()
+                    .map(StaleSession::getId)
+                    .filter(id -> id > lastId)
+                    .toList();
+            if (!cutOff.isEmpty()) {
+                try (ShardContext.Scope ignored = router.forShard(shard.getKey())) {
+                    metadataService.releaseSessionClaims(cutOff);
+                }
+            }
+        }
+        return new ArrayList<>(merged.subList(0, limit));
+    }
+
+    /**
+     * The first {@code limit} of every shard's page, so the last id is a valid cursor for all shards
+     */
+    private <T> List<T> mergePages(Supplier<List<T>> page, ToLongFunction<T> id, int limit) {
+        if (!router.isSharded()) {
+            return page.get();
+        }
+        List<T> merged = new ArrayList<>();
+        for (int shard : router.shards()) {
+            try (ShardContext.Scope ignored = router.forShard(shard)) {
+                merged.addAll(page.get());
+            }
+        }
+        merged.sort(Comparator.comparingLong(id));
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+}
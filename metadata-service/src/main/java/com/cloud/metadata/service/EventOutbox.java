@@ -0,0 +1,87 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.dto.FileEvent;
+import com.cloud.metadata.enums.FileEventType;
+import com.cloud.metadata.enums.UploadStatus;
+import com.cloud.metadata.event.EventBroker;
+import com.cloud.metadata.repository.OutboxEventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Transactional outbox of file lifecycle events. Events are inserted by the transaction that
+ * changes the file, so they exist exactly when the change committed, and the request pays one
+ * local insert instead of a call to the broker; {@link OutboxRelay} publishes them afterwards.
+ * Without a configured broker nothing is recorded: no one would ever drain the outbox.
+ */
+@Service
+@RequiredArgsConstructor
+public class EventOutbox {
+
+    private final OutboxEventRepository outboxRepository;
+    private final Optional<EventBroker> broker;
+    private final ApplicationEventPublisher publisher;
+
+    /**
+     * Raised inside a transaction that recorded events; the relay wakes up once it commits
+     */
+    public record Recorded() {
+    }
+
+    /**
+     * Record an event for each of the given files, as they are now
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(FileEventType type, Collection<Long> fileIds) {
+        if (broker.isPresent() && !fileIds.isEmpty() && outboxRepository.insertForFiles(type.name(), fileIds, LocalDateTime.now()) > 0) {
+            publisher.publishEvent(new Recorded());
+        }
+    }
+
+    /**
+     * Record an event for each of the given files that a bulk transition to {@code status},
+     * stamped with {@code now}, actually moved
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransitioned(FileEventType type, Collection<Long> fileIds, UploadStatus status,
+            LocalDateTime now) {
+        if (broker.isPresent() && outboxRepository.insertForTransitioned(type.name(), fileIds, status.name(), now) > 0) {
+            publisher.publishEvent(new Recorded());
+        }
+    }
+
+    /**
+     * Whether events can be published; without a broker they are not recorded either
+     */
+    public boolean hasBroker() {
+        return broker.isPresent();
+    }
+
+    /**
+     * Publish and remove one batch of the oldest events. Nothing is removed without a broker.
+     *
+     * @return number of events relayed
+     */
+    @Transactional
+    public int relayBatch(int limit) {
+        if (broker.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = outboxRepository.lockBatch(limit);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<FileEvent> events = outboxRepository.findEvents(ids);
+        broker.get().publish(events);
+        outboxRepository.deleteAllByIdInBatch(ids);
+        return ids.size();
+    }
+}
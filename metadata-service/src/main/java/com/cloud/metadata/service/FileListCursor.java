@@ -0,0 +1,37 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque keyset position in an (updated_at, id) ordered listing
+ */
+record FileListCursor(LocalDateTime updatedAt, long id) {
+
+    /** Sorts before every row, for the first page of an ascending listing */
+    static final FileListCursor FIRST_ASCENDING = new FileListCursor(LocalDateTime.of(1970, 1, 1, 0, 0), 0L);
+
+    /** Sorts after every row, for the first page of a descending listing */
+    static final FileListCursor FIRST_DESCENDING = new FileListCursor(LocalDateTime.of(9999, 12, 31, 0, 0),
+            Long.MAX_VALUE);
+
+    String encode() {
+        String position = updatedAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static FileListCursor decode(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.lastIndexOf('|');
+            return new FileListCursor(LocalDateTime.parse(position.substring(0, separator)),
+                    Long.parseLong(position.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new InvalidCursorException("Invalid cursor: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.dto.FileMetadataResponse;
+import com.cloud.metadata.enums.UploadStatus;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of file lookups by id. file-service reads the session row for every
+ * chunk it receives, so a burst of chunks should cost one database read, not one per chunk.
+ * Entries are evicted by every state transition; eviction is repeated after commit so a
+ * read racing the writing transaction cannot leave the old state behind.
+ * <p>
+ * Other metadata-service instances do not see those evictions, so the expiry is kept to a
+ * few seconds: it is the longest another instance can report a status that has changed.
+ * Writes never trust a cached status; their conditional updates check the row itself.
+ */
+@Component
+public class FileMetadataCache {
+
+    private static final String METRIC_NAME = "metadata.file.cache";
+
+    private final Cache<Long, FileMetadataResponse> cache;
+
+    public FileMetadataCache(MeterRegistry meterRegistry,
+            @Value("${metadata.cache.max-size:100000}") long maxSize,
+            @Value("${metadata.cache.ttl:5s}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, METRIC_NAME);
+    }
+
+    /**
+     * Return the cached file, loading it on a miss. Concurrent misses share a single load.
+     */
+    public FileMetadataResponse get(Long fileId, Function<Long, FileMetadataResponse> loader) {
+        return cache.get(fileId, loader);
+    }
+
+    public void evict(Long fileId) {
+        evictAll(List.of(fileId));
+    }
+
+    public void evictAll(Collection<Long> fileIds) {
+        cache.invalidateAll(fileIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<Long> ids = List.copyOf(fileIds);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidateAll(ids);
+                }
+            });
+        }
+    }
+
+    /**
+     * Evict unless the cached entry already shows the given status. Chunk uploads only move a
+     * session to ACTIVE once, so later chunks keep the entry.
+     */
+    public void evictUnlessStatus(Long fileId, UploadStatus status) {
+        FileMetadataResponse cached = cache.policy().getIfPresentQuietly(fileId); // Not a lookup: keep it out of the stats
+        if (cached == null || !status.name().equals(cached.getStatus())) {
+            evict(fileId);
+        }
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
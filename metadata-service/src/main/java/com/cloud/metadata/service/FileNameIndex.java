@@ -0,0 +1,228 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.dto.FileNameEntry;
+import com.cloud.metadata.repository.FileMetadataRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-memory trigram index over the names of each owner's completed files, for databases without
+ * a trigram index (H2 in dev). An owner's index is built from a two-column projection on their
+ * first search and dropped whenever one of their files completes, is restored or is pruned; the
+ * next search rebuilds it. On PostgreSQL the database index is used and this stays disabled.
+ */
+@Component
+@Slf4j
+public class FileNameIndex {
+
+    /** Gram length; shorter queries are answered as prefix matches */
+    public static final int GRAM = 3;
+
+    private static final String METRIC_NAME = "metadata.search.index";
+
+    private final FileMetadataRepository fileRepository;
+    private final boolean enabled;
+    private final Cache<String, OwnerIndex> indexes;
+
+    public FileNameIndex(FileMetadataRepository fileRepository, DataSource dataSource, MeterRegistry meterRegistry,
+            @Value("${metadata.search.engine:auto}") String engine,
+            @Value("${metadata.search.max-indexed-names:2000000}") long maxIndexedNames) {
+        this.fileRepository = fileRepository;
+        this.enabled = switch (engine) {
+            case "memory" -> true;
+            case "database" -> false;
+            case "auto" -> !isPostgres(dataSource);
+            default -> throw new IllegalArgumentException("Unknown metadata.search.engine: " + engine);
+        };
+        this.indexes = Caffeine.newBuilder()
+                .maximumWeight(maxIndexedNames)
+                .weigher((String owner, OwnerIndex index) -> Math.max(1, index.size()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, indexes, METRIC_NAME);
+        log.info("Filename search uses the {} index", enabled ? "in-memory n-gram" : "database trigram");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The owner's matching files after the cursor, in (lowercased name, id) order. Entries carry
+     * the lowercased name, ready for the next cursor.
+     *
+     * @param query lowercased; matched as a prefix when {@code prefix}, as a substring otherwise
+     */
+    public List<FileNameEntry> search(String owner, String query, boolean prefix, FileSearchCursor after,
+            int limit) {
+        return indexes.get(owner, this::build).search(query, prefix, after, limit);
+    }
+
+    /**
+     * Drop the owner's index, again after the current transaction so a concurrent rebuild
+     * cannot keep the old file set
+     */
+    public void invalidate(String owner) {
+        if (!enabled) {
+            return;
+        }
+        indexes.invalidate(owner);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    indexes.invalidate(owner);
+                }
+            });
+        }
+    }
+
+    private OwnerIndex build(String owner) {
+        long started = System.nanoTime();
+        OwnerIndex index = new OwnerIndex(fileRepository.findCompletedNames(owner));
+        log.debug("Indexed {} file names of {} in {} ms", index.size(), owner,
+                (System.nanoTime() - started) / 1_000_000);
+        return index;
+    }
+
+    private static boolean isPostgres(DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            return "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName());
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot determine the database product", e);
+        }
+    }
+
+    /**
+     * Lowercased names sorted with their ids, plus for every trigram the ascending ordinals of
+     * the names containing it. A substring query scans the postings of its rarest trigram.
+     */
+    private static final class OwnerIndex {
+
+        private final String[] names;
+        private final long[] ids;
+        private final Map<String, int[]> postings;
+
+        OwnerIndex(List<FileNameEntry> entries) {
+            List<FileNameEntry> sorted = entries.stream()
+                    .map(entry -> new FileNameEntry(entry.getId(), entry.getFileName().toLowerCase(Locale.ROOT)))
+                    .sorted(Comparator.comparing(FileNameEntry::getFileName).thenComparing(FileNameEntry::getId))
+                    .toList();
+            names = new String[sorted.size()];
+            ids = new long[sorted.size()];
+            Map<String, Postings> building = new HashMap<>();
+            for (int ordinal = 0; ordinal < names.length; ordinal++) {
+                names[ordinal] = sorted.get(ordinal).getFileName();
+                ids[ordinal] = sorted.get(ordinal).getId();
+                for (int i = 0; i + GRAM <= names[ordinal].length(); i++) {
+                    building.computeIfAbsent(names[ordinal].substring(i, i + GRAM), gram -> new Postings())
+                            .add(ordinal);
+                }
+            }
+            postings = new HashMap<>(building.size() * 4 / 3 + 1);
+            building.forEach((gram, list) -> postings.put(gram, list.toArray()));
+        }
+
+        int size() {
+            return names.length;
+        }
+
+        List<FileNameEntry> search(String query, boolean prefix, FileSearchCursor after, int limit) {
+            int from = firstAfter(after);
+            List<FileNameEntry> matches = new ArrayList<>();
+            if (prefix) {
+                for (int i = Math.max(from, firstAtLeast(query));
+                        i < names.length && names[i].startsWith(query) && matches.size() < limit; i++) {
+                    matches.add(new FileNameEntry(ids[i], names[i]));
+                }
+                return matches;
+            }
+
+            int[] candidates = rarestPostings(query);
+            int start = Arrays.binarySearch(candidates, from);
+            for (int i = start >= 0 ? start : -start - 1; i < candidates.length && matches.size() < limit; i++) {
+                int ordinal = candidates[i];
+                if (names[ordinal].contains(query)) {
+                    matches.add(new FileNameEntry(ids[ordinal], names[ordinal]));
+                }
+            }
+            return matches;
+        }
+
+        private int[] rarestPostings(String query) {
+            int[] rarest = null;
+            for (int i = 0; i + GRAM <= query.length(); i++) {
+                int[] list = postings.get(query.substring(i, i + GRAM));
+                if (list == null) {
+                    return new int[0];
+                }
+                if (rarest == null || list.length < rarest.length) {
+                    rarest = list;
+                }
+            }
+            return rarest;
+        }
+
+        /** First ordinal whose name sorts at or after the given name */
+        private int firstAtLeast(String name) {
+            int low = 0;
+            int high = names.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (names[mid].compareTo(name) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /** First ordinal strictly after the cursor position */
+        private int firstAfter(FileSearchCursor after) {
+            int low = firstAtLeast(after.name());
+            while (low < names.length && names[low].equals(after.name()) && ids[low] <= after.id()) {
+                low++;
+            }
+            return low;
+        }
+    }
+
+    private static final class Postings {
+
+        private int[] ordinals = new int[4];
+        private int size;
+
+        void add(int ordinal) {
+            if (size > 0 && ordinals[size - 1] == ordinal) {
+                return; // Gram repeats within the same name
+            }
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            ordinals[size++] = ordinal;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ordinals, size);
+        }
+    }
+}
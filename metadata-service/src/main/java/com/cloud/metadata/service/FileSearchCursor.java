@@ -0,0 +1,31 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset position in a (lowercased file name, id) ordered search
+ */
+record FileSearchCursor(String name, long id) {
+
+    /** Sorts before every row */
+    static final FileSearchCursor FIRST = new FileSearchCursor("", 0L);
+
+    String encode() {
+        String position = name + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static FileSearchCursor decode(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.lastIndexOf('|'); // Names may contain '|', ids never do
+            return new FileSearchCursor(position.substring(0, separator),
+                    Long.parseLong(position.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidCursorException("Invalid cursor: " + cursor);
+        }
+    }
+}
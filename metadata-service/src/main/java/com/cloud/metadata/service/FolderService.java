@@ -0,0 +1,232 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.dto.FileMetadataResponse;
+import com.cloud.metadata.dto.FolderListing;
+import com.cloud.metadata.dto.FolderRequest;
+import com.cloud.metadata.dto.FolderResponse;
+import com.cloud.metadata.dto.FolderStats;
+import com.cloud.metadata.dto.SubtreeUsage;
+import com.cloud.metadata.entity.Folder;
+import com.cloud.metadata.enums.FileChangeType;
+import com.cloud.metadata.exception.IllegalStateTransitionException;
+import com.cloud.metadata.exception.InvalidFolderOperationException;
+import com.cloud.metadata.exception.ResourceNotFoundException;
+import com.cloud.metadata.repository.FileMetadataRepository;
+import com.cloud.metadata.repository.FolderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Folder tree over materialized paths. A path is built from ids, so renaming never touches
+ * descendants, and a subtree is a path prefix: listing, sizing and moving a folder each run a
+ * fixed number of indexed statements however deep or wide the tree is. Structural changes lock
+ * the ancestor chains they depend on, which serialises moves that could otherwise interleave
+ * into a cycle or miss each other's rows.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FolderService {
+
+    private static final int MAX_NAME_LENGTH = 255;
+    private static final int MAX_PATH_LENGTH = 2048;
+
+    private final FolderRepository folderRepository;
+    private final FileMetadataRepository fileRepository;
+    private final FileMetadataCache fileCache;
+    private final ChangeLog changeLog;
+
+    @Value("${metadata.listing.max-page-size:500}")
+    private int maxPageSize;
+
+    /**
+     * Create a folder under the given parent, or at the top level
+     */
+    @Transactional
+    public FolderResponse createFolder(String owner, FolderRequest request) {
+        String name = request.getName() != null ? request.getName().strip() : "";
+        if (name.isEmpty() || name.length() > MAX_NAME_LENGTH || name.contains("/")) {
+            throw new InvalidFolderOperationException("Folder name must be 1-" + MAX_NAME_LENGTH
+                    + " characters without '/'");
+        }
+        String parentPath = lockedPath(owner, request.getParentId());
+        if (parentPath.length() + String.valueOf(Long.MAX_VALUE).length() + 1 > MAX_PATH_LENGTH) {
+            throw new InvalidFolderOperationException("Folder tree is too deep");
+        }
+
+        // The path ends with the folder's own id, known only once the row exists
+        Folder folder = folderRepository.save(Folder.builder()
+                .owner(owner)
+                .name(name)
+                .parentId(request.getParentId())
+                .path(parentPath)
+                .build());
+        folder.setPath(parentPath + folder.getId() + "/");
+        return toResponse(folder);
+    }
+
+    /**
+     * Subfolders and a page of the files directly in a folder ({@code folderId} null for the top level)
+     */
+    @Transactional(readOnly = true)
+    public FolderListing listFolder(String owner, Long folderId, Long afterId, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        PageRequest page = PageRequest.ofSize(pageSize + 1); // One extra row tells whether a next page exists
+        long after = afterId != null ? afterId : 0L;
+
+        FolderResponse folder = null;
+        List<FolderResponse> folders;
+        List<FileMetadataResponse> files;
+        if (folderId == null) {
+            folders = folderRepository.findTopLevel(owner);
+            files = fileRepository.findTopLevelPage(owner, after, page);
+        } else {
+            folder = folderRepository.findResponse(owner, folderId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Folder not found: " + folderId));
+            folders = folderRepository.findChildren(owner, folderId);
+            files = fileRepository.findFolderPage(owner, folderId, after, page);
+        }
+
+        Long nextAfterId = null;
+        if (files.size() > pageSize) {
+            files = files.subList(0, pageSize);
+            nextAfterId = files.get(pageSize - 1).getId();
+        }
+        return new FolderListing(folder, folders, files, nextAfterId);
+    }
+
+    /**
+     * Descendant folders, completed files and their bytes under a folder, at any depth
+     */
+    @Transactional(readOnly = true)
+    public FolderStats getStats(String owner, Long folderId) {
+        String path = folderRepository.findPath(owner, folderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Folder not found: " + folderId));
+        String subtree = path + "%";
+        long folderCount = folderRepository.countByPathLike(owner, subtree) - 1; // Not the folder itself
+        SubtreeUsage usage = fileRepository.findSubtreeUsage(owner, subtree);
+        return new FolderStats(folderId, folderCount, usage.getFileCount(), usage.getTotalBytes());
+    }
+
+    /**
+     * Move a folder and everything below it under another folder, or to the top level.
+     * Descendants are re-pathed by two set-based prefix updates, one for folders and one
+     * for files, instead of row by row.
+     */
+    @Transactional
+    public FolderResponse moveFolder(String owner, Long folderId, Long targetFolderId) {
+        String sourcePath = folderRepository.findPath(owner, folderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Folder not found: " + folderId));
+        String targetPath = targetFolderId == null ? Folder.ROOT_PATH : folderRepository.findPath(owner, targetFolderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Folder not found: " + targetFolderId));
+        if (targetPath.startsWith(sourcePath)) {
+            throw new InvalidFolderOperationException("Cannot move folder " + folderId
+                    + " into itself or one of its subfolders");
+        }
+
+        Map<Long, Folder> locked = lockChains(owner, sourcePath, targetPath);
+        Folder folder = locked.get(folderId);
+        String newPath = targetPath + folderId + "/";
+        if (newPath.equals(sourcePath)) {
+            return toResponse(folder); // Already there
+        }
+
+        String subtree = sourcePath + "%";
+        int deepest = folderRepository.findMaxPathLength(owner, subtree);
+        if (deepest - sourcePath.length() + newPath.length() > MAX_PATH_LENGTH) {
+            throw new InvalidFolderOperationException("Folder tree would be too deep after the move");
+        }
+
+        int cut = sourcePath.length() + 1; // substring() is 1-based
+        int folders = folderRepository.rewritePaths(owner, subtree, newPath, cut);
+        int files = fileRepository.rewriteFolderPaths(owner, subtree, newPath, cut);
+        folder.setParentId(targetFolderId);
+        folder.setPath(newPath);
+        changeLog.recordFolder(owner, FileChangeType.UPDATED, newPath);
+        log.info("Moved folder {} of {} ({} folders, {} files) to {}", folderId, owner, folders, files, newPath);
+        return toResponse(folder);
+    }
+
+    /**
+     * Move a file, with all of its versions, into a folder or to the top level
+     */
+    @Transactional
+    public FileMetadataResponse moveFile(String owner, Long fileId, Long targetFolderId) {
+        FileMetadataResponse file = fileRepository.findResponseById(fileId)
+                .filter(found -> found.getOwner().equals(owner))
+                .orElseThrow(() -> new ResourceNotFoundException("File not found: " + fileId));
+        String targetPath = lockedPath(owner, targetFolderId);
+
+        Long logicalFileId = file.getLogicalFileId() != null ? file.getLogicalFileId() : fileId;
+        fileRepository.moveVersionChain(logicalFileId, targetFolderId, targetPath);
+        changeLog.recordVersionChain(owner, FileChangeType.UPDATED, logicalFileId);
+        fileCache.evictAll(fileRepository.findVersionChainIds(logicalFileId));
+
+        file.setFolderId(targetFolderId);
+        return file;
+    }
+
+    /**
+     * Path of a folder with its ancestor chain locked, so it cannot move until this
+     * transaction ends; the root path when {@code folderId} is null. Callers that also lock
+     * file rows take this lock first, as moves do.
+     */
+    String lockedPath(String owner, Long folderId) {
+        if (folderId == null) {
+            return Folder.ROOT_PATH;
+        }
+        String path = folderRepository.findPath(owner, folderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Folder not found: " + folderId));
+        lockChains(owner, path);
+        return path;
+    }
+
+    /**
+     * Lock every folder on the given paths in one statement, then check that none of the paths
+     * changed between reading them and taking the locks
+     */
+    private Map<Long, Folder> lockChains(String owner, String... paths) {
+        Set<Long> ids = new TreeSet<>();
+        for (String path : paths) {
+            ids.addAll(idsOf(path));
+        }
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<Long, Folder> locked = folderRepository.lockAll(owner, ids).stream()
+                .collect(Collectors.toMap(Folder::getId, Function.identity()));
+        for (String path : paths) {
+            List<Long> chain = idsOf(path);
+            if (!chain.isEmpty()) {
+                Folder folder = locked.get(chain.get(chain.size() - 1));
+                if (folder == null || !folder.getPath().equals(path)) {
+                    throw new IllegalStateTransitionException("Folder tree changed concurrently, retry the operation");
+                }
+            }
+        }
+        return locked;
+    }
+
+    private static List<Long> idsOf(String path) {
+        return path.length() <= 1 ? List.of()
+                : Arrays.stream(path.substring(1, path.length() - 1).split("/")).map(Long::valueOf).toList();
+    }
+
+    private static FolderResponse toResponse(Folder folder) {
+        return new FolderResponse(folder.getId(), folder.getName(), folder.getParentId(), folder.getCreatedAt(),
+                folder.getUpdatedAt());
+    }
+}
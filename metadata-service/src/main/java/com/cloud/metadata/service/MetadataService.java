@@ -1,22 +1,65 @@
 package com.cloud.metadata.service;
 
+import com.cloud.metadata.dto.AddChunkRequest;
+import com.cloud.metadata.dto.ChunkBatchResponse;
+import com.cloud.metadata.dto.ChunkMetadataResponse;
+import com.cloud.metadata.dto.ChunkPart;
+import com.cloud.metadata.dto.ChunkPartsResponse;
 import com.cloud.metadata.dto.FileMetadataRequest;
 import com.cloud.metadata.dto.FileMetadataResponse;
+import com.cloud.metadata.dto.FileNameEntry;
+import com.cloud.metadata.dto.FilePageResponse;
+import com.cloud.metadata.dto.FileSearchHit;
+import com.cloud.metadata.dto.FileSearchResponse;
+import com.cloud.metadata.dto.IdleSessionClaimRequest;
+import com.cloud.metadata.dto.InitiateSessionRequest;
+import com.cloud.metadata.dto.InlineFileRequest;
+import com.cloud.metadata.dto.OwnerBytes;
+import com.cloud.metadata.dto.ReleasedChunkClaimRequest;
+import com.cloud.metadata.dto.ReleasedStorage;
+import com.cloud.metadata.dto.SessionState;
+import com.cloud.metadata.dto.StaleSession;
+import com.cloud.metadata.dto.StaleSessionClaimRequest;
+import com.cloud.metadata.dto.UploadProgress;
+import com.cloud.metadata.entity.ChunkManifest;
 import com.cloud.metadata.entity.ChunkMetadata;
+import com.cloud.metadata.entity.FileContent;
 import com.cloud.metadata.entity.FileMetadata;
+import com.cloud.metadata.enums.FileChangeType;
+import com.cloud.metadata.enums.FileEventType;
 import com.cloud.metadata.enums.UploadStatus;
 import com.cloud.metadata.exception.ChunkAlreadyExistsException;
 import com.cloud.metadata.exception.IllegalStateTransitionException;
+import com.cloud.metadata.exception.InlineContentTooLargeException;
+import com.cloud.metadata.exception.InvalidChunkException;
+import com.cloud.metadata.exception.InvalidSearchQueryException;
 import com.cloud.metadata.exception.ResourceNotFoundException;
+import com.cloud.metadata.repository.ChunkBatchRepository;
+import com.cloud.metadata.repository.ChunkManifestRepository;
 import com.cloud.metadata.repository.ChunkMetadataRepository;
+import com.cloud.metadata.repository.ChunkReleaseRepository;
+import com.cloud.metadata.repository.FileContentRepository;
 import com.cloud.metadata.repository.FileMetadataRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -24,8 +67,34 @@ import java.util.stream.Collectors;
 @Slf4j
 public class MetadataService {
 
+        private static final int MAX_SEARCH_QUERY_LENGTH = 255;
+
+        /** Lower bound of a claim that takes sessions however long they have been idle */
+        private static final LocalDateTime ANY_TIME = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+        /** Final states of an unfinished upload, which hand its storage reservation back */
+        private static final Set<UploadStatus> ENDED = EnumSet.of(UploadStatus.FAILED, UploadStatus.ABORTED);
+
         private final FileMetadataRepository fileRepository;
         private final ChunkMetadataRepository chunkRepository;
+        private final FileContentRepository contentRepository;
+        private final ChunkBatchRepository chunkBatchRepository;
+        private final ChunkManifestRepository manifestRepository;
+        private final ChunkReleaseRepository releaseRepository;
+        private final ChunkReferences chunkReferences;
+        private final FileMetadataCache fileCache;
+        private final FolderService folderService;
+        private final FileNameIndex nameIndex;
+        private final StorageQuotaService quotaService;
+        private final OptimisticRetry retry;
+        private final EventOutbox eventOutbox;
+        private final ChangeLog changeLog;
+
+        @Value("${metadata.inline.max-size:65536}") // Default 64KB
+        private int maxInlineSize;
+
+        @Value("${metadata.listing.max-page-size:500}")
+        private int maxPageSize;
 
         /**
          * Initiate a new upload session
@@ -33,17 +102,52 @@ public class MetadataService {
         @Transactional
         public Long initiateSession(String fileName, String userId, String uploadId, Integer totalChunks, Long size,
                         String contentType) {
-                FileMetadata metadata = FileMetadata.builder()
+                return initiateSession(InitiateSessionRequest.builder()
                                 .fileName(fileName)
-                                .owner(userId)
+                                .userId(userId)
                                 .uploadId(uploadId)
                                 .totalChunks(totalChunks)
                                 .size(size)
-                                .fileType(contentType)
+                                .contentType(contentType)
+                                .build());
+        }
+
+        /**
+         * Initiate a new upload session, recording the S3 key and chunk encoding
+         * chosen by file-service. Retried if it races another writer of the previous version.
+         */
+        public Long initiateSession(InitiateSessionRequest request) {
+                return retry.inTransaction(() -> createSession(request));
+        }
+
+        private Long createSession(InitiateSessionRequest request) {
+                long reserved = request.getSize() != null ? request.getSize() : 0L;
+                FileMetadata metadata = FileMetadata.builder()
+                                .fileName(request.getFileName())
+                                .owner(request.getUserId())
+                                .uploadId(request.getUploadId())
+                                .s3Key(request.getS3Key())
+                                .totalChunks(request.getTotalChunks())
+                                .size(request.getSize())
+                                .fileType(request.getContentType())
+                                .contentEncoding(request.getContentEncoding())
+                                .chunkingScheme(request.getChunkingScheme())
+                                .reservedBytes(reserved)
                                 .status(UploadStatus.PENDING)
                                 .build();
 
-                return fileRepository.save(metadata).getId();
+                if (request.getPreviousVersionId() != null) {
+                        FileMetadata previous = fileRepository.findById(request.getPreviousVersionId())
+                                        .filter(file -> file.getOwner().equals(request.getUserId()))
+                                        .orElseThrow(() -> new ResourceNotFoundException(
+                                                        "File not found: " + request.getPreviousVersionId()));
+                        assignNextVersion(previous, metadata);
+                }
+
+                quotaService.reserve(request.getUserId(), reserved);
+                Long fileId = fileRepository.save(metadata).getId();
+                eventOutbox.record(FileEventType.INITIATED, List.of(fileId));
+                return fileId;
         }
 
         /**
@@ -51,72 +155,356 @@ public class MetadataService {
          */
         @Transactional
         public void addChunk(Long fileId, Integer chunkNumber, String etag, Long size) {
-                FileMetadata file = fileRepository.findById(fileId)
-                                .orElseThrow(() -> new ResourceNotFoundException("File not found: " + fileId));
+                addChunk(fileId, chunkNumber, etag, size, null);
+        }
 
-                // Idempotency Check: prevent duplicate chunks
-                boolean chunkExists = file.getChunks().stream()
-                                .anyMatch(c -> c.getChunkNumber().equals(chunkNumber));
+        /**
+         * Add a chunk with its content hash (content-defined chunking).
+         * At most two statements regardless of how many chunks the file already has: an insert that
+         * skips duplicates via the unique constraint and sessions no longer receiving, then, only
+         * for a new row, a conditional update of the status and received counters. The update locks
+         * the file row and undoes the insert when a completion or abort got there first.
+         */
+        @Transactional
+        public void addChunk(Long fileId, Integer chunkNumber, String etag, Long size, String checksum) {
+                validateChunk(chunkNumber, etag, size);
+                LocalDateTime now = LocalDateTime.now();
+                if (checksum != null) {
+                        chunkReferences.retain(List.of(checksum), now);
+                }
 
-                if (chunkExists) {
-                        log.info("Chunk {} already exists for file {}. Skipping.", chunkNumber, fileId);
-                        // Optionally verify ETag matches if strict?
+                if (chunkRepository.insertIfAbsent(fileId, chunkNumber, etag, size, checksum, now) == 0) {
+                        UploadStatus status = fileRepository.findStatusById(fileId)
+                                        .orElseThrow(() -> new ResourceNotFoundException("File not found: " + fileId));
+                        // Idempotency Check: a retried chunk, also of a finished upload, is still a success
+                        if (hasChunk(fileId, chunkNumber)) {
+                                log.info("Chunk {} already exists for file {}. Skipping.", chunkNumber, fileId);
+                                return;
+                        }
+                        validateStateTransition(status, UploadStatus.ACTIVE);
                         return;
                 }
 
-                validateStateTransition(file.getStatus(), UploadStatus.ACTIVE);
+                // PENDING -> ACTIVE on the first chunk
+                recordChunks(fileId, 1, size != null ? size : 0L, now);
+        }
 
-                // If this is the first chunk, update status to ACTIVE
-                if (file.getStatus() == UploadStatus.PENDING) {
-                        file.setStatus(UploadStatus.ACTIVE);
-                        fileRepository.save(file);
+        /**
+         * Record many chunks in one transaction: one JDBC batch insert, then one counter update for
+         * the chunks that were not recorded yet
+         */
+        @Transactional
+        public ChunkBatchResponse addChunks(Long fileId, List<AddChunkRequest> chunks) {
+                if (chunks == null || chunks.isEmpty()) {
+                        return new ChunkBatchResponse(0, List.of());
+                }
+                for (AddChunkRequest chunk : chunks) {
+                        if (chunk == null) {
+                                throw new InvalidChunkException("Chunk batch contains an empty entry");
+                        }
+                        validateChunk(chunk.getChunkNumber(), chunk.getEtag(), chunk.getSize());
                 }
+                LocalDateTime now = LocalDateTime.now();
+                chunkReferences.retain(chunks.stream()
+                                .map(AddChunkRequest::getChecksum)
+                                .filter(Objects::nonNull)
+                                .distinct()
+                                .toList(), now);
 
-                ChunkMetadata chunk = ChunkMetadata.builder()
-                                .fileMetadata(file) // Link to parent
-                                .chunkNumber(chunkNumber)
-                                .etag(etag)
-                                .size(size)
-                                .build();
+                int[] rows = chunkBatchRepository.insertIfAbsent(fileId, chunks, now);
+                List<Integer> duplicates = new ArrayList<>();
+                long bytes = 0;
+                for (int i = 0; i < rows.length; i++) {
+                        AddChunkRequest chunk = chunks.get(i);
+                        if (rows[i] == 0) {
+                                duplicates.add(chunk.getChunkNumber());
+                        } else {
+                                bytes += chunk.getSize();
+                        }
+                }
 
-                file.getChunks().add(chunk);
-                fileRepository.save(file);
+                int recorded = chunks.size() - duplicates.size();
+                if (recorded == 0) {
+                        UploadStatus status = fileRepository.findStatusById(fileId)
+                                        .orElseThrow(() -> new ResourceNotFoundException("File not found: " + fileId));
+                        validateStateTransition(status, UploadStatus.ACTIVE);
+                } else {
+                        recordChunks(fileId, recorded, bytes, now);
+                }
+                if (!duplicates.isEmpty()) {
+                        log.info("Skipped {} already recorded chunks for file {}", duplicates.size(), fileId);
+                }
+
+                return new ChunkBatchResponse(recorded, duplicates);
+        }
+
+        /**
+         * Count chunks just inserted on the file row. A session that stopped receiving since the
+         * insert fails the transaction, taking the inserted rows with it.
+         */
+        private void recordChunks(Long fileId, int chunks, long bytes, LocalDateTime now) {
+                if (fileRepository.recordChunks(fileId, chunks, bytes, now) == 0) {
+                        UploadStatus status = fileRepository.findStatusById(fileId)
+                                        .orElseThrow(() -> new ResourceNotFoundException("File not found: " + fileId));
+                        validateStateTransition(status, UploadStatus.ACTIVE);
+                }
+                fileCache.evictUnlessStatus(fileId, UploadStatus.ACTIVE);
         }
 
         /**
-         * Get all uploaded chunks for a file
+         * Chunks and bytes received so far, read from the counters on the file row
          */
         @Transactional(readOnly = true)
-        public List<ChunkMetadata> getUploadedChunks(Long fileId) {
-                FileMetadata file = fileRepository.findById(fileId)
+        public UploadProgress getProgress(Long fileId) {
+                return fileRepository.findProgressById(fileId)
                                 .orElseThrow(() -> new ResourceNotFoundException("File not found: " + fileId));
-                return new ArrayList<>(file.getChunks());
         }
 
         /**
-         * Complete the upload session
+         * Subset of the given chunk hashes already stored for this owner; those chunks
+         * can be referenced by a new upload instead of being transferred again
+         */
+        @Transactional(readOnly = true)
+        public List<String> findKnownChecksums(String owner, List<String> checksums) {
+                if (checksums == null || checksums.isEmpty()) {
+                        return List.of();
+                }
+                return chunkRepository.findKnownChecksums(owner, checksums);
+        }
+
+        /**
+         * Get all uploaded chunks for a file, in chunk order; from the manifest once compacted
+         */
+        @Transactional(readOnly = true)
+        public List<ChunkMetadataResponse> getUploadedChunks(Long fileId) {
+                List<ChunkMetadataResponse> chunks = chunkRepository.findResponsesByFileId(fileId);
+                if (chunks.isEmpty()) {
+                        Optional<byte[]> manifest = manifestRepository.findDataById(fileId);
+                        if (manifest.isPresent()) {
+                                return ChunkManifestCodec.decode(manifest.get());
+                        }
+                        if (!fileRepository.existsById(fileId)) {
+                                throw new ResourceNotFoundException("File not found: " + fileId);
+                        }
+                }
+                return chunks;
+        }
+
+        /**
+         * Get (partNumber, etag) pairs for S3 completion, sorted by the database. Read-write on
+         * purpose: it runs on the primary, since a lagging replica could omit a recorded part
+         */
+        @Transactional
+        public ChunkPartsResponse getCompletedParts(Long fileId) {
+                List<ChunkPart> parts = chunkRepository.findPartsByFileId(fileId);
+                if (parts.isEmpty()) {
+                        parts = manifestRepository.findDataById(fileId)
+                                        .map(manifest -> ChunkManifestCodec.decode(manifest).stream()
+                                                        .map(chunk -> new ChunkPart(chunk.getChunkNumber(),
+                                                                        chunk.getEtag()))
+                                                        .toList())
+                                        .orElse(parts);
+                }
+                if (parts.isEmpty() && !fileRepository.existsById(fileId)) {
+                        throw new ResourceNotFoundException("File not found: " + fileId);
+                }
+
+                int[] partNumbers = new int[parts.size()];
+                String[] etags = new String[parts.size()];
+                for (int i = 0; i < parts.size(); i++) {
+                        partNumbers[i] = parts.get(i).getChunkNumber();
+                        etags[i] = parts.get(i).getEtag();
+                }
+                return new ChunkPartsResponse(partNumbers, etags);
+        }
+
+        /**
+         * Complete the upload session: one conditional update that only succeeds from ACTIVE with
+         * every chunk received and the declared size stored, so concurrent completions and aborts
+         * cannot both win
          */
         @Transactional
         public void completeSession(Long fileId) {
+                SessionState session = fileRepository.findSessionState(fileId)
+                                .orElseThrow(() -> new ResourceNotFoundException("File not found: " + fileId));
+
+                if (fileRepository.completeIfAllChunksReceived(fileId, LocalDateTime.now()) == 0) {
+                        SessionState current = fileRepository.findSessionState(fileId)
+                                        .orElseThrow(() -> new ResourceNotFoundException("File not found: " + fileId));
+                        // Idempotency Check
+                        if (current.getStatus() == UploadStatus.COMPLETED) {
+                                log.info("File {} is already completed. Returning success.", fileId);
+                                return;
+                        }
+                        validateStateTransition(current.getStatus(), UploadStatus.COMPLETED);
+                        if (current.getTotalChunks() == null || current.getReceivedChunks() != current.getTotalChunks()) {
+                                throw new IllegalStateException("Cannot complete session. Missing chunks. Expected: " +
+                                                current.getTotalChunks() + ", Found: " + current.getReceivedChunks());
+                        }
+                        throw new IllegalStateException("Cannot complete session. Size mismatch. Declared: " +
+                                        current.getSize() + " bytes, Received: " + current.getReceivedBytes());
+                }
+
+                // The update matched only if the received bytes equal the declared size, so the size
+                // charged is what was stored. The reservation cannot change while the upload is in
+                // flight, so the value read above holds.
+                quotaService.commit(session.getOwner(), session.getReservedBytes(), session.getSize());
+                eventOutbox.record(FileEventType.COMPLETED, List.of(fileId));
+                changeLog.record(session.getOwner(), FileChangeType.CREATED, List.of(fileId));
+                fileCache.evict(fileId);
+                nameIndex.invalidate(session.getOwner());
+        }
+
+        /**
+         * Completed versions of the logical file the given file belongs to, newest first.
+         * A file that was never re-uploaded is its own single version.
+         */
+        @Transactional(readOnly = true)
+        public List<FileMetadataResponse> getVersions(Long fileId) {
+                List<FileMetadataResponse> versions = fileRepository.findCompletedVersionResponses(fileId);
+                if (versions.isEmpty() && !fileRepository.existsById(fileId)) {
+                        throw new ResourceNotFoundException("File not found: " + fileId);
+                }
+                return versions;
+        }
+
+        /**
+         * Make an old version current again by appending a copy of its manifest as the newest version.
+         * Only metadata is written: the new version points at the same stored chunks.
+         */
+        public FileMetadataResponse restoreVersion(Long fileId, int versionNumber) {
+                return retry.inTransaction(() -> restore(fileId, versionNumber));
+        }
+
+        private FileMetadataResponse restore(Long fileId, int versionNumber) {
                 FileMetadata file = fileRepository.findById(fileId)
                                 .orElseThrow(() -> new ResourceNotFoundException("File not found: " + fileId));
+                FileMetadata target = completedVersions(file).stream()
+                                .filter(version -> versionOf(version) == versionNumber)
+                                .findFirst()
+                                .orElseThrow(() -> new ResourceNotFoundException(
+                                                "Version " + versionNumber + " not found for file: " + fileId));
 
-                // Idempotency Check
-                if (file.getStatus() == UploadStatus.COMPLETED) {
-                        log.info("File {} is already completed. Returning success.", fileId);
-                        return;
+                FileMetadata restored = FileMetadata.builder()
+                                .fileName(target.getFileName())
+                                .fileType(target.getFileType())
+                                .size(target.getSize())
+                                .s3Key(target.getS3Key())
+                                .owner(target.getOwner())
+                                .totalChunks(target.getTotalChunks())
+                                .contentEncoding(target.getContentEncoding())
+                                .chunkingScheme(target.getChunkingScheme())
+                                .storedInline(target.getStoredInline())
+                                .receivedChunks(target.getReceivedChunks())
+                                .receivedBytes(target.getReceivedBytes())
+                                .folderId(target.getFolderId())
+                                .folderPath(target.getFolderPath())
+                                .status(UploadStatus.COMPLETED)
+                                .build();
+                assignNextVersion(target, restored);
+                quotaService.charge(target.getOwner(), target.getSize());
+
+                // The chain lock taken above also keeps the compactor off the target's chunks
+                Optional<ChunkManifest> manifest = manifestRepository.findById(target.getId());
+                if (manifest.isEmpty()) {
+                        for (ChunkMetadata chunk : target.getChunks()) {
+                                restored.getChunks().add(ChunkMetadata.builder()
+                                                .fileMetadata(restored)
+                                                .chunkNumber(chunk.getChunkNumber())
+                                                .etag(chunk.getEtag())
+                                                .size(chunk.getSize())
+                                                .checksum(chunk.getChecksum())
+                                                .build());
+                        }
                 }
+                FileMetadata saved = fileRepository.save(restored);
+                manifest.ifPresent(compacted -> manifestRepository.save(ChunkManifest.builder()
+                                .fileId(saved.getId())
+                                .partCount(compacted.getPartCount())
+                                .data(compacted.getData())
+                                .createdAt(LocalDateTime.now())
+                                .build()));
+                eventOutbox.record(FileEventType.COMPLETED, List.of(saved.getId()));
+                nameIndex.invalidate(saved.getOwner());
+
+                if (Boolean.TRUE.equals(target.getStoredInline())) {
+                        contentRepository.save(new FileContent(saved.getId(), getInlineContent(target.getId())));
+                }
+                changeLog.record(saved.getOwner(), FileChangeType.CREATED, List.of(saved.getId()));
+
+                log.info("Restored version {} of file {} as version {}", versionNumber,
+                                saved.getLogicalFileId(), saved.getVersionNumber());
+                return mapToResponse(saved);
+        }
 
-                validateStateTransition(file.getStatus(), UploadStatus.COMPLETED);
+        /**
+         * Apply the retention policy to a logical file: keep the newest completed versions and
+         * delete the rest. Returns the storage no remaining file references, for the caller to delete.
+         */
+        public List<ReleasedStorage> pruneVersions(Long fileId, int keep) {
+                return retry.inTransaction(() -> prune(fileId, keep));
+        }
 
-                // Additional Validation: Check if all chunks are present
-                if (file.getChunks().size() != file.getTotalChunks()) {
-                        throw new IllegalStateException("Cannot complete session. Missing chunks. Expected: " +
-                                        file.getTotalChunks() + ", Found: " + file.getChunks().size());
+        private List<ReleasedStorage> prune(Long fileId, int keep) {
+                FileMetadata file = fileRepository.findById(fileId)
+                                .orElseThrow(() -> new ResourceNotFoundException("File not found: " + fileId));
+                List<FileMetadata> versions = completedVersions(file);
+                int retained = Math.max(1, keep); // The current version is never pruned
+                if (versions.size() <= retained) {
+                        return List.of();
                 }
 
-                file.setStatus(UploadStatus.COMPLETED);
-                fileRepository.save(file);
+                List<FileMetadata> pruned = versions.subList(retained, versions.size());
+                eventOutbox.record(FileEventType.DELETED, pruned.stream().map(FileMetadata::getId).toList());
+                List<ReleasedStorage> released = deleteVersions(pruned);
+                quotaService.release(file.getOwner(), 0, pruned.stream().mapToLong(FileMetadata::getSize).sum());
+                changeLog.record(file.getOwner(), FileChangeType.DELETED,
+                                pruned.stream().map(FileMetadata::getId).toList());
+                nameIndex.invalidate(file.getOwner());
+
+                log.info("Pruned {} versions of file {}", released.size(), fileId);
+                return released;
+        }
+
+        /**
+         * Delete a file with all of its versions, giving their bytes back to the owner's quota.
+         * Returns the storage no remaining file references, for the caller to delete.
+         */
+        public List<ReleasedStorage> deleteFile(Long fileId) {
+                return retry.inTransaction(() -> delete(fileId));
+        }
+
+        private List<ReleasedStorage> delete(Long fileId) {
+                FileMetadata file = fileRepository.findById(fileId)
+                                .orElseThrow(() -> new ResourceNotFoundException("File not found: " + fileId));
+                Long logicalFileId = file.getLogicalFileId() != null ? file.getLogicalFileId() : file.getId();
+                List<FileMetadata> versions = fileRepository.lockVersionChain(logicalFileId);
+                if (versions.stream().anyMatch(version -> version.getStatus() == UploadStatus.PENDING
+                                || version.getStatus() == UploadStatus.ACTIVE)) {
+                        throw new IllegalStateTransitionException("File " + fileId
+                                        + " has an upload in progress; abort it before deleting the file");
+                }
+
+                eventOutbox.record(FileEventType.DELETED, versions.stream().map(FileMetadata::getId).toList());
+
+                // Failed and aborted uploads hold no storage: the sweeper already released it
+                List<FileMetadata> completed = versions.stream()
+                                .filter(version -> version.getStatus() == UploadStatus.COMPLETED)
+                                .toList();
+                versions.stream()
+                                .filter(version -> version.getStatus() != UploadStatus.COMPLETED)
+                                .forEach(version -> {
+                                        fileRepository.delete(version);
+                                        fileCache.evict(version.getId());
+                                });
+                List<ReleasedStorage> released = deleteVersions(completed);
+                quotaService.release(file.getOwner(), 0, completed.stream().mapToLong(FileMetadata::getSize).sum());
+                changeLog.record(file.getOwner(), FileChangeType.DELETED,
+                                completed.stream().map(FileMetadata::getId).toList());
+                nameIndex.invalidate(file.getOwner());
+
+                log.info("Deleted file {} ({} versions)", logicalFileId, versions.size());
+                return released;
         }
 
         /**
@@ -135,36 +523,288 @@ public class MetadataService {
                 updateStatus(fileId, UploadStatus.ABORTED);
         }
 
+        /**
+         * Claim a keyset page of abandoned sessions for the caller to clean up.
+         * Claimed sessions are leased so other sweeper nodes skip them.
+         */
+        @Transactional
+        public List<StaleSession> claimStaleSessions(StaleSessionClaimRequest request) {
+                LocalDateTime now = LocalDateTime.now();
+                return claimSessions(EnumSet.of(UploadStatus.PENDING, UploadStatus.ACTIVE),
+                                now.minusHours(request.getIdleHours()), ANY_TIME, request.getAfterId(),
+                                request.getLimit(), now.plusSeconds(request.getLeaseSeconds()), now);
+        }
+
+        /**
+         * Claim a keyset page of sessions idle in the given state, used by the completion reconciler.
+         * The lease keeps other nodes, and this one on its next passes, from checking them again.
+         * Sessions idle beyond the maximum are left alone, so the lease never hides them from the
+         * abandoned-upload sweeper, which shares it.
+         */
+        @Transactional
+        public List<StaleSession> claimIdleSessions(IdleSessionClaimRequest request) {
+                LocalDateTime now = LocalDateTime.now();
+                LocalDateTime notBefore = request.getMaxIdleMinutes() != null
+                                ? now.minusMinutes(request.getMaxIdleMinutes())
+                                : ANY_TIME;
+                return claimSessions(EnumSet.of(request.getStatus()), now.minusMinutes(request.getIdleMinutes()),
+                                notBefore, request.getAfterId(), request.getLimit(),
+                                now.plusSeconds(request.getLeaseSeconds()), now);
+        }
+
+        private List<StaleSession> claimSessions(Set<UploadStatus> statuses, LocalDateTime cutoff,
+                        LocalDateTime notBefore, Long afterId, int limit, LocalDateTime leaseUntil, LocalDateTime now) {
+                List<Long> ids = fileRepository.lockStaleSessionIds(
+                                statuses.stream().map(UploadStatus::name).toList(),
+                                cutoff,
+                                notBefore,
+                                afterId != null ? afterId : 0L,
+                                now,
+                                limit);
+                if (ids.isEmpty()) {
+                        return List.of();
+                }
+
+                fileRepository.leaseForSweep(ids, leaseUntil);
+                return fileRepository.findStaleSessions(ids);
+        }
+
+        /**
+         * Hand back claimed sessions that will not be processed, so the next claim can take them
+         */
+        @Transactional
+        public void releaseSessionClaims(List<Long> fileIds) {
+                fileRepository.releaseSweepLease(fileIds);
+        }
+
+        /**
+         * Abort many sessions in one batched update; sessions that moved on meanwhile are left alone
+         *
+         * @return ids of the sessions this call moved to ABORTED, whose storage may now be released
+         */
+        @Transactional
+        public List<Long> abortSessions(List<Long> fileIds) {
+                if (fileIds == null || fileIds.isEmpty()) {
+                        return List.of();
+                }
+                // Microsecond precision, as stored, so the outbox can match the rows stamped with it
+                LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+                List<Long> aborted = fileRepository.lockUnfinishedIds(fileIds);
+                if (!aborted.isEmpty()) {
+                        fileRepository.transitionAll(aborted, EnumSet.of(UploadStatus.PENDING, UploadStatus.ACTIVE),
+                                        UploadStatus.ABORTED, now);
+                        eventOutbox.recordTransitioned(FileEventType.ABORTED, aborted, UploadStatus.ABORTED, now);
+                }
+                List<OwnerBytes> reservations = fileRepository.findHeldReservations(fileIds, ENDED);
+                fileRepository.clearReservations(fileIds, ENDED);
+                quotaService.releaseReservations(reservations);
+                fileCache.evictAll(fileIds);
+                log.info("Aborted {} of {} stale sessions", aborted.size(), fileIds.size());
+                return aborted;
+        }
+
+        /**
+         * Delete completed versions and describe the storage no remaining file references,
+         * for the caller to delete. Content-addressed chunks may be referenced again by an upload
+         * in flight, so they are only marked released and reclaimed after a grace period.
+         */
+        private List<ReleasedStorage> deleteVersions(List<FileMetadata> versions) {
+                List<ReleasedStorage> released = new ArrayList<>();
+                Set<String> checksums = new HashSet<>();
+                for (FileMetadata version : versions) {
+                        released.add(ReleasedStorage.builder()
+                                        .fileId(version.getId())
+                                        .versionNumber(version.getVersionNumber())
+                                        .s3Key(Boolean.TRUE.equals(version.getStoredInline())
+                                                        || version.getChunkingScheme() != null
+                                                        ? null : version.getS3Key())
+                                        .contentEncoding(version.getContentEncoding())
+                                        .totalChunks(version.getTotalChunks())
+                                        .build());
+                        version.getChunks().stream()
+                                        .map(ChunkMetadata::getChecksum)
+                                        .filter(Objects::nonNull)
+                                        .forEach(checksums::add);
+                        if (Boolean.TRUE.equals(version.getStoredInline())) {
+                                contentRepository.deleteById(version.getId());
+                        }
+                        fileRepository.delete(version);
+                        fileCache.evict(version.getId());
+                }
+                fileRepository.flush();
+
+                // Restored versions share storage with the version they were copied from
+                for (ReleasedStorage storage : released) {
+                        if (storage.getS3Key() != null && chunkReferences.isS3KeyReferenced(storage.getS3Key())) {
+                                storage.setS3Key(null);
+                        }
+                }
+                if (!checksums.isEmpty()) {
+                        checksums.removeAll(chunkReferences.findReferenced(checksums));
+                        chunkReferences.release(checksums);
+                }
+                return released;
+        }
+
+        /**
+         * Claim released chunks past the grace period for the caller to delete from S3, dropping
+         * the tombstones of chunks referenced again on any shard. The lease makes uploads of the
+         * claimed chunks wait until {@link #confirmSweptChunks}. Tombstones are kept on shard 0.
+         */
+        @Transactional
+        public List<String> claimReleasedChunks(ReleasedChunkClaimRequest request) {
+                LocalDateTime now = LocalDateTime.now();
+                List<String> candidates = releaseRepository.lockSweepable(
+                                now.minusSeconds(request.getMinAgeSeconds()), now, request.getLimit());
+                if (candidates.isEmpty()) {
+                        return List.of();
+                }
+
+                Set<String> referenced = chunkReferences.findReferenced(candidates);
+                if (!referenced.isEmpty()) {
+                        releaseRepository.deleteAllByIdInBatch(referenced);
+                }
+                List<String> sweepable = candidates.stream()
+                                .filter(checksum -> !referenced.contains(checksum))
+                                .toList();
+                if (!sweepable.isEmpty()) {
+                        releaseRepository.leaseForSweep(sweepable, now.plusSeconds(request.getLeaseSeconds()));
+                }
+                log.info("Claimed {} released chunks; {} were referenced again", sweepable.size(), referenced.size());
+                return sweepable;
+        }
+
+        /**
+         * Forget claimed chunks whose objects the sweeper has deleted
+         */
+        @Transactional
+        public int confirmSweptChunks(List<String> checksums) {
+                if (checksums == null || checksums.isEmpty()) {
+                        return 0;
+                }
+                return releaseRepository.deleteSwept(checksums);
+        }
+
+        /**
+         * Whether a chunk is already recorded, in the chunk rows or in the file's manifest
+         */
+        private boolean hasChunk(Long fileId, Integer chunkNumber) {
+                if (chunkRepository.existsByFileMetadataIdAndChunkNumber(fileId, chunkNumber)) {
+                        return true;
+                }
+                return manifestRepository.findDataById(fileId)
+                                .map(manifest -> ChunkManifestCodec.decode(manifest).stream()
+                                                .anyMatch(chunk -> chunk.getChunkNumber().equals(chunkNumber)))
+                                .orElse(false);
+        }
+
+        private List<FileMetadata> completedVersions(FileMetadata file) {
+                if (file.getLogicalFileId() == null) {
+                        return file.getStatus() == UploadStatus.COMPLETED ? List.of(file) : List.of();
+                }
+                return fileRepository.findByLogicalFileIdAndStatusOrderByVersionNumberDesc(file.getLogicalFileId(),
+                                UploadStatus.COMPLETED);
+        }
+
+        /**
+         * Append {@code next} to the version chain of {@code previous}, turning a single file into
+         * version 1 of a new chain when needed. The new version sits where the file already is;
+         * the folder chain is locked first, as moves do, so the path copied cannot be moved away.
+         */
+        private void assignNextVersion(FileMetadata previous, FileMetadata next) {
+                Long logicalFileId = previous.getLogicalFileId() != null ? previous.getLogicalFileId()
+                                : previous.getId();
+                String folderPath = folderService.lockedPath(previous.getOwner(), previous.getFolderId());
+                fileRepository.lockVersionChain(logicalFileId);
+                // previous was read before the locks; a file move committed since then shows up here
+                if (!fileRepository.findFolderPath(previous.getId()).orElseThrow().equals(folderPath)) {
+                        throw new IllegalStateTransitionException("File moved concurrently, retry the operation");
+                }
+                if (previous.getLogicalFileId() == null) {
+                        previous.setLogicalFileId(logicalFileId);
+                        previous.setVersionNumber(1);
+                        fileRepository.save(previous);
+                        fileCache.evict(previous.getId());
+                }
+                next.setLogicalFileId(logicalFileId);
+                next.setVersionNumber(fileRepository.findMaxVersionNumber(logicalFileId) + 1);
+                next.setFolderId(previous.getFolderId());
+                next.setFolderPath(folderPath);
+        }
+
+        private int versionOf(FileMetadata file) {
+                return file.getVersionNumber() != null ? file.getVersionNumber() : 1;
+        }
+
+        /**
+         * End an upload with one conditional update from the states that may reach {@code newStatus}
+         */
         private void updateStatus(Long fileId, UploadStatus newStatus) {
-                FileMetadata file = fileRepository.findById(fileId)
+                SessionState session = fileRepository.findSessionState(fileId)
                                 .orElseThrow(() -> new ResourceNotFoundException("File not found: " + fileId));
+                if (session.getStatus() == newStatus) {
+                        return; // Allow idempotent actions
+                }
 
-                validateStateTransition(file.getStatus(), newStatus);
+                Set<UploadStatus> from = EnumSet.noneOf(UploadStatus.class);
+                for (UploadStatus status : UploadStatus.values()) {
+                        if (status != newStatus && isAllowedTransition(status, newStatus)) {
+                                from.add(status);
+                        }
+                }
+                if (fileRepository.endUpload(fileId, from, newStatus, LocalDateTime.now()) == 0) {
+                        UploadStatus current = fileRepository.findStatusById(fileId)
+                                        .orElseThrow(() -> new ResourceNotFoundException("File not found: " + fileId));
+                        if (current == newStatus) {
+                                return; // A concurrent request got there first
+                        }
+                        throw new IllegalStateTransitionException("Invalid state transition from " + current
+                                        + " to " + newStatus);
+                }
 
-                file.setStatus(newStatus);
-                fileRepository.save(file);
+                quotaService.release(session.getOwner(), session.getReservedBytes(), 0);
+                eventOutbox.record(newStatus == UploadStatus.FAILED ? FileEventType.FAILED : FileEventType.ABORTED,
+                                List.of(fileId));
+                fileCache.evict(fileId);
+        }
+
+        /**
+         * A chunk row needs its part number, etag and size; reject one without before recording anything
+         */
+        private void validateChunk(Integer chunkNumber, String etag, Long size) {
+                if (chunkNumber == null || chunkNumber < 1) {
+                        throw new InvalidChunkException("Chunk number must be 1 or more, got " + chunkNumber);
+                }
+                if (etag == null || size == null || size < 0) {
+                        throw new InvalidChunkException(
+                                        "Chunk " + chunkNumber + " needs an etag and a size of 0 or more");
+                }
         }
 
         private void validateStateTransition(UploadStatus current, UploadStatus target) {
+                if (!isAllowedTransition(current, target)) {
+                        throw new IllegalStateTransitionException("Invalid state transition from " + current
+                                        + " to " + target);
+                }
+        }
+
+        private boolean isAllowedTransition(UploadStatus current, UploadStatus target) {
                 // Allow idempotent actions (ACTIVE -> ACTIVE)
                 if (current == target)
-                        return;
+                        return true;
 
                 // PENDING -> ACTIVE
                 if (current == UploadStatus.PENDING && target == UploadStatus.ACTIVE)
-                        return;
+                        return true;
 
                 // ACTIVE -> COMPLETED, FAILED, ABORTED
                 if (current == UploadStatus.ACTIVE && (target == UploadStatus.COMPLETED ||
                                 target == UploadStatus.FAILED ||
                                 target == UploadStatus.ABORTED))
-                        return;
+                        return true;
 
                 // PENDING -> ABORTED (Cancellation before start)
-                if (current == UploadStatus.PENDING && target == UploadStatus.ABORTED)
-                        return;
-
-                throw new IllegalStateTransitionException("Invalid state transition from " + current + " to " + target);
+                return current == UploadStatus.PENDING && target == UploadStatus.ABORTED;
         }
 
         // Legacy/Generic save method (kept for compatibility or basic metadata saving)
@@ -176,23 +816,202 @@ public class MetadataService {
                                 .size(request.getSize())
                                 .s3Key(request.getS3Key())
                                 .owner(request.getOwner())
+                                .totalChunks(request.getTotalChunks())
+                                .contentEncoding(request.getContentEncoding())
                                 .status(UploadStatus.COMPLETED) // Assume completed if direct save
                                 .build();
+                quotaService.charge(metadata.getOwner(), metadata.getSize());
 
                 FileMetadata saved = fileRepository.save(metadata);
+                eventOutbox.record(FileEventType.COMPLETED, List.of(saved.getId()));
+                changeLog.record(saved.getOwner(), FileChangeType.CREATED, List.of(saved.getId()));
+                nameIndex.invalidate(saved.getOwner());
                 return mapToResponse(saved);
         }
 
-        public FileMetadataResponse getFileById(Long fileId) {
+        /**
+         * Store a tiny file inline: one metadata row (already COMPLETED) plus its bytes
+         */
+        @Transactional
+        public FileMetadataResponse createInlineFile(InlineFileRequest request) {
+                byte[] data = request.getData() != null ? request.getData() : new byte[0];
+                if (data.length > maxInlineSize) {
+                        throw new InlineContentTooLargeException("Inline content is limited to " + maxInlineSize
+                                        + " bytes, got " + data.length);
+                }
+                quotaService.charge(request.getOwner(), data.length);
+
+                FileMetadata saved = fileRepository.save(FileMetadata.builder()
+                                .fileName(request.getFileName())
+                                .fileType(request.getFileType())
+                                .size(data.length)
+                                .owner(request.getOwner())
+                                .totalChunks(1)
+                                .storedInline(true)
+                                .status(UploadStatus.COMPLETED)
+                                .build());
+                contentRepository.save(new FileContent(saved.getId(), data));
+                eventOutbox.record(FileEventType.COMPLETED, List.of(saved.getId()));
+                changeLog.record(saved.getOwner(), FileChangeType.CREATED, List.of(saved.getId()));
+                nameIndex.invalidate(saved.getOwner());
+
+                log.info("Stored file {} inline ({} bytes)", saved.getId(), data.length);
+                return mapToResponse(saved);
+        }
+
+        @Transactional(readOnly = true)
+        public byte[] getInlineContent(Long fileId) {
+                return contentRepository.findDataById(fileId)
+                                .orElseThrow(() -> new ResourceNotFoundException("No inline content for file: " + fileId));
+        }
+
+        /**
+         * Keyset page of inline files that outgrew the inline tier
+         */
+        @Transactional(readOnly = true)
+        public List<FileMetadataResponse> getInlineFilesLargerThan(long maxSize, Long afterId, int limit) {
+                return fileRepository.findInlineFilesLargerThan(maxSize, afterId != null ? afterId : 0L,
+                                PageRequest.of(0, limit));
+        }
+
+        /**
+         * Point an inline file at its new S3 object and drop the inline bytes
+         */
+        public FileMetadataResponse promoteInlineFile(Long fileId, String s3Key) {
+                return retry.inTransaction(() -> promote(fileId, s3Key));
+        }
+
+        private FileMetadataResponse promote(Long fileId, String s3Key) {
                 FileMetadata file = fileRepository.findById(fileId)
                                 .orElseThrow(() -> new ResourceNotFoundException("File not found: " + fileId));
+                if (!Boolean.TRUE.equals(file.getStoredInline())) {
+                        log.info("File {} is not stored inline. Nothing to promote.", fileId);
+                        return mapToResponse(file);
+                }
+
+                file.setS3Key(s3Key);
+                file.setStoredInline(false);
+                fileRepository.save(file);
+                contentRepository.deleteById(fileId);
+                changeLog.record(file.getOwner(), FileChangeType.UPDATED, List.of(fileId));
+                fileCache.evict(fileId);
+                log.info("Promoted inline file {} to S3 key {}", fileId, s3Key);
                 return mapToResponse(file);
         }
 
-        public List<FileMetadataResponse> getFilesByOwner(String owner) {
-                return fileRepository.findByOwner(owner).stream()
-                                .map(this::mapToResponse)
-                                .collect(Collectors.toList());
+        /**
+         * Single file lookup, served from the cache after the first read. Read-write on purpose:
+         * the cache is shared by every request, so a miss is filled from the primary rather than
+         * from a replica that may not have seen the latest transition yet. Hits never fetch a
+         * connection.
+         */
+        @Transactional
+        public FileMetadataResponse getFileById(Long fileId) {
+                return fileCache.get(fileId, id -> fileRepository.findResponseById(id)
+                                .orElseThrow(() -> new ResourceNotFoundException("File not found: " + id)));
+        }
+
+        /**
+         * Keyset page of an owner's files ordered by (updatedAt, id), optionally filtered by status
+         */
+        @Transactional(readOnly = true)
+        public FilePageResponse getFilesByOwner(String owner, UploadStatus status, Sort.Direction direction,
+                        String cursor, int limit) {
+                boolean ascending = direction == Sort.Direction.ASC;
+                FileListCursor after = cursor != null ? FileListCursor.decode(cursor)
+                                : ascending ? FileListCursor.FIRST_ASCENDING : FileListCursor.FIRST_DESCENDING;
+                int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+                // One extra row tells whether another page follows
+                PageRequest page = PageRequest.of(0, pageSize + 1);
+
+                List<FileMetadataResponse> files;
+                if (status == null) {
+                        files = ascending
+                                        ? fileRepository.findOwnerPageAscending(owner, after.updatedAt(), after.id(), page)
+                                        : fileRepository.findOwnerPageDescending(owner, after.updatedAt(), after.id(), page);
+                } else {
+                        files = ascending
+                                        ? fileRepository.findOwnerPageAscending(owner, status, after.updatedAt(),
+                                                        after.id(), page)
+                                        : fileRepository.findOwnerPageDescending(owner, status, after.updatedAt(),
+                                                        after.id(), page);
+                }
+
+                String nextCursor = null;
+                if (files.size() > pageSize) {
+                        files = files.subList(0, pageSize);
+                        FileMetadataResponse last = files.get(pageSize - 1);
+                        nextCursor = new FileListCursor(last.getUploadedAt(), last.getId()).encode();
+                }
+                return new FilePageResponse(files, nextCursor);
+        }
+
+        /**
+         * Keyset page of an owner's completed files whose name contains the query, ignoring case, in
+         * file name order. Queries shorter than a trigram match name prefixes instead: substrings that
+         * short match nearly every file and no index can narrow them down.
+         */
+        @Transactional(readOnly = true)
+        public FileSearchResponse searchFiles(String owner, String query, String cursor, int limit) {
+                String needle = query != null ? query.strip().toLowerCase(Locale.ROOT) : "";
+                if (needle.isEmpty() || needle.length() > MAX_SEARCH_QUERY_LENGTH) {
+                        throw new InvalidSearchQueryException("Search query must have 1 to "
+                                        + MAX_SEARCH_QUERY_LENGTH + " characters");
+                }
+                boolean prefix = needle.length() < FileNameIndex.GRAM;
+                FileSearchCursor after = cursor != null ? FileSearchCursor.decode(cursor) : FileSearchCursor.FIRST;
+                int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+
+                List<FileMetadataResponse> files;
+                String nextCursor = null;
+                if (nameIndex.isEnabled()) {
+                        // One extra entry tells whether another page follows
+                        List<FileNameEntry> entries = nameIndex.search(owner, needle, prefix, after, pageSize + 1);
+                        if (entries.size() > pageSize) {
+                                entries = entries.subList(0, pageSize);
+                                FileNameEntry last = entries.get(pageSize - 1);
+                                nextCursor = new FileSearchCursor(last.getFileName(), last.getId()).encode();
+                        }
+                        files = loadInOrder(entries.stream().map(FileNameEntry::getId).collect(Collectors.toList()));
+                } else {
+                        String escaped = needle.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+                        files = fileRepository.searchByName(owner, prefix ? escaped + "%" : "%" + escaped + "%",
+                                        after.name(), after.id(), PageRequest.of(0, pageSize + 1));
+                        if (files.size() > pageSize) {
+                                files = files.subList(0, pageSize);
+                                FileMetadataResponse last = files.get(pageSize - 1);
+                                nextCursor = new FileSearchCursor(last.getFileName().toLowerCase(Locale.ROOT),
+                                                last.getId()).encode();
+                        }
+                }
+
+                return new FileSearchResponse(files.stream()
+                                .map(file -> toSearchHit(file, needle, prefix))
+                                .collect(Collectors.toList()), nextCursor);
+        }
+
+        /**
+         * Completed files by id in the given order; ids the in-memory index still held but that
+         * are gone or no longer completed are skipped
+         */
+        private List<FileMetadataResponse> loadInOrder(List<Long> ids) {
+                if (ids.isEmpty()) {
+                        return List.of();
+                }
+                Map<Long, FileMetadataResponse> byId = fileRepository.findCompletedResponses(ids).stream()
+                                .collect(Collectors.toMap(FileMetadataResponse::getId, Function.identity()));
+                return ids.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
+        }
+
+        private FileSearchHit toSearchHit(FileMetadataResponse file, String needle, boolean prefix) {
+                String name = file.getFileName().toLowerCase(Locale.ROOT);
+                List<FileSearchHit.Highlight> highlights = new ArrayList<>();
+                int start = name.indexOf(needle);
+                while (start >= 0) {
+                        highlights.add(new FileSearchHit.Highlight(start, start + needle.length()));
+                        start = prefix ? -1 : name.indexOf(needle, start + needle.length());
+                }
+                return new FileSearchHit(file, highlights);
         }
 
         private FileMetadataResponse mapToResponse(FileMetadata file) {
@@ -206,6 +1025,13 @@ public class MetadataService {
                                 .uploadedAt(file.getUpdatedAt())
                                 .status(file.getStatus() != null ? file.getStatus().name() : null)
                                 .uploadId(file.getUploadId())
+                                .totalChunks(file.getTotalChunks())
+                                .contentEncoding(file.getContentEncoding())
+                                .chunkingScheme(file.getChunkingScheme())
+                                .storedInline(Boolean.TRUE.equals(file.getStoredInline()))
+                                .logicalFileId(file.getLogicalFileId())
+                                .versionNumber(versionOf(file))
+                                .folderId(file.getFolderId())
                                 .build();
         }
 }
@@ -0,0 +1,94 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.config.ShardContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves outbox events to the broker in batches, off the request path. A commit that recorded
+ * events wakes the relay on its own thread right away; the periodic poll picks up events left
+ * by a failed publish, a crash or another node.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(prefix = "metadata.events.relay", name = "enabled", havingValue = "true",
+        matchIfMissing = true)
+public class OutboxRelay implements DisposableBean {
+
+    private final EventOutbox outbox;
+    private final ShardRouter shardRouter;
+    private final int batchSize;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "outbox-relay"));
+    private final AtomicBoolean wakeUpQueued = new AtomicBoolean();
+
+    public OutboxRelay(EventOutbox outbox, ShardRouter shardRouter,
+            @Value("${metadata.events.relay.batch-size:500}") int batchSize) {
+        this.outbox = outbox;
+        this.shardRouter = shardRouter;
+        this.batchSize = batchSize;
+        if (!outbox.hasBroker()) {
+            log.warn("No event broker configured (metadata.events.broker); file events are not recorded");
+        }
+    }
+
+    @TransactionalEventListener
+    public void onRecorded(EventOutbox.Recorded recorded) {
+        // Commits arriving while a relay is queued are covered by it
+        if (wakeUpQueued.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                wakeUpQueued.set(false);
+                scheduledRelay();
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${metadata.events.relay.interval-ms:30000}",
+            initialDelayString = "${metadata.events.relay.interval-ms:30000}")
+    public void scheduledRelay() {
+        try {
+            relay();
+        } catch (Exception e) {
+            log.error("Outbox relay failed; events stay in the outbox until the next attempt", e);
+        }
+    }
+
+    /**
+     * Relay batches until every shard's outbox is empty; a no-op without a broker
+     *
+     * @return number of events relayed
+     */
+    public int relay() {
+        if (!outbox.hasBroker()) {
+            return 0;
+        }
+        int relayed = 0;
+        for (int shard : shardRouter.shards()) {
+            try (ShardContext.Scope ignored = shardRouter.forShard(shard)) {
+                int batch;
+                do {
+                    batch = outbox.relayBatch(batchSize);
+                    relayed += batch;
+                } while (batch == batchSize);
+            }
+        }
+        if (relayed > 0) {
+            log.debug("Relayed {} outbox events", relayed);
+        }
+        return relayed;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,169 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.config.ShardKeys;
+import com.cloud.metadata.config.ShardRoutingDataSource;
+import com.cloud.metadata.config.ShardingProperties;
+import com.cloud.metadata.exception.ShardDirectoryStaleException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Placement of owner buckets on shards, kept in shard 0's shard_bucket table and held in memory
+ * by every node. Each node re-reads it periodically, so a move made through any node is seen by
+ * all of them within a refresh. A bucket's epoch counts its moves; change feed cursors carry it,
+ * since feed positions do not survive a move.
+ * <p>
+ * A node whose placement is older than the fence wait refuses to route: a move deletes the
+ * source rows one fence wait after placing the buckets elsewhere, so routing by an older
+ * placement could read from a shard the files have left.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(prefix = "metadata.sharding", name = "enabled", havingValue = "true")
+public class ShardDirectory implements SmartInitializingSingleton {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int shardCount;
+    private final Duration fenceWait;
+    private volatile Placement placement;
+
+    public ShardDirectory(ShardRoutingDataSource dataSource, ShardingProperties properties) {
+        if (properties.getFenceWait().toMillis() <= properties.getDirectoryRefreshMs()) {
+            throw new IllegalStateException("metadata.sharding.fence-wait must be longer than "
+                    + "metadata.sharding.directory-refresh-ms, or nodes refuse to route between refreshes");
+        }
+        this.jdbcTemplate = new JdbcTemplate(dataSource.getShard(0));
+        this.shardCount = dataSource.getShardCount();
+        this.fenceWait = properties.getFenceWait();
+    }
+
+    /**
+     * @param readAt {@link System#nanoTime} when the read started
+     */
+    private record Placement(int[] shards, int[] epochs, boolean[] moving, long readAt) {
+    }
+
+    /**
+     * Seed and load the placement once Flyway has created the table, before requests arrive
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        Integer placed = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM shard_bucket", Integer.class);
+        if (placed == null || placed < ShardKeys.BUCKETS) {
+            seed();
+        }
+        refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${metadata.sharding.directory-refresh-ms:5000}",
+            initialDelayString = "${metadata.sharding.directory-refresh-ms:5000}")
+    public void scheduledRefresh() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.error("Shard directory refresh failed; requests are refused once the last placement read is "
+                    + "older than {}", fenceWait, e);
+        }
+    }
+
+    public void refresh() {
+        long readAt = System.nanoTime();
+        int[] shards = new int[ShardKeys.BUCKETS];
+        int[] epochs = new int[ShardKeys.BUCKETS];
+        boolean[] moving = new boolean[ShardKeys.BUCKETS];
+        jdbcTemplate.query("SELECT bucket, shard, epoch, moving FROM shard_bucket", rs -> {
+            int bucket = rs.getInt("bucket");
+            shards[bucket] = rs.getInt("shard");
+            epochs[bucket] = rs.getInt("epoch");
+            moving[bucket] = rs.getBoolean("moving");
+            if (shards[bucket] >= shardCount) {
+                throw new IllegalStateException("Bucket " + bucket + " is placed on shard " + shards[bucket]
+                        + " but only " + shardCount + " shards are configured");
+            }
+        });
+        placement = new Placement(shards, epochs, moving, readAt);
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public int shardOf(int bucket) {
+        return current().shards()[bucket];
+    }
+
+    public int epochOf(int bucket) {
+        return current().epochs()[bucket];
+    }
+
+    public boolean isMoving(int bucket) {
+        return current().moving()[bucket];
+    }
+
+    /**
+     * Buckets placed on each shard, by shard
+     */
+    public List<List<Integer>> bucketsByShard() {
+        List<List<Integer>> buckets = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            buckets.add(new ArrayList<>());
+        }
+        int[] shards = current().shards();
+        for (int bucket = 0; bucket < shards.length; bucket++) {
+            buckets.get(shards[bucket]).add(bucket);
+        }
+        return buckets;
+    }
+
+    /**
+     * Fence buckets: writes to their owners are refused until {@link #completeMove}
+     */
+    void markMoving(Collection<Integer> buckets) {
+        jdbcTemplate.batchUpdate("UPDATE shard_bucket SET moving = TRUE WHERE bucket = ?",
+                buckets.stream().map(bucket -> new Object[] { bucket }).toList());
+        refresh();
+    }
+
+    void completeMove(Collection<Integer> buckets, int target) {
+        jdbcTemplate.batchUpdate("UPDATE shard_bucket SET shard = ?, epoch = epoch + 1, moving = FALSE "
+                + "WHERE bucket = ?", buckets.stream().map(bucket -> new Object[] { target, bucket }).toList());
+        refresh();
+    }
+
+    private Placement current() {
+        Placement current = placement;
+        if (System.nanoTime() - current.readAt() > fenceWait.toNanos()) {
+            throw new ShardDirectoryStaleException("The shard directory was last read over " + fenceWait
+                    + " ago; retry shortly");
+        }
+        return current;
+    }
+
+    /**
+     * A new deployment spreads the buckets over all shards. One that already has files keeps
+     * them all on shard 0, where those files are, until buckets are moved.
+     */
+    private void seed() {
+        Integer files = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM (SELECT 1 FROM file_metadata LIMIT 1) existing", Integer.class);
+        boolean spread = files == null || files == 0;
+        List<Object[]> rows = new ArrayList<>();
+        for (int bucket = 0; bucket < ShardKeys.BUCKETS; bucket++) {
+            rows.add(new Object[] { bucket, spread ? bucket % shardCount : 0 });
+        }
+        // Nodes starting together may race to seed; the first one wins
+        jdbcTemplate.batchUpdate("INSERT INTO shard_bucket (bucket, shard) VALUES (?, ?) ON CONFLICT DO NOTHING",
+                rows);
+        log.info("Seeded the shard directory: {} buckets {}", ShardKeys.BUCKETS,
+                spread ? "spread over " + shardCount + " shards" : "on shard 0, which already holds files");
+    }
+}
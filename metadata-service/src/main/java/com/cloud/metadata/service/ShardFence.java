@@ -0,0 +1,74 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.config.ShardKeys;
+import com.cloud.metadata.config.ShardRoutingDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Per-shard write fences of owner buckets, in each shard's bucket_fence table. Write
+ * transactions hold a shared lock on their bucket's row (see ShardFencingTransactionManager),
+ * so {@link #fence} returns only once the writes already running on the shard have ended, and
+ * every later one is refused.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(prefix = "metadata.sharding", name = "enabled", havingValue = "true")
+public class ShardFence implements SmartInitializingSingleton {
+
+    private final ShardRoutingDataSource dataSource;
+
+    public ShardFence(ShardRoutingDataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Seed every shard's fences, unfenced, once Flyway has created the table
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (int shard = 0; shard < dataSource.getShardCount(); shard++) {
+            JdbcTemplate jdbcTemplate = jdbcTemplate(shard);
+            Integer seeded = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM bucket_fence", Integer.class);
+            if (seeded != null && seeded >= ShardKeys.BUCKETS) {
+                continue;
+            }
+            List<Object[]> rows = new ArrayList<>();
+            for (int bucket = 0; bucket < ShardKeys.BUCKETS; bucket++) {
+                rows.add(new Object[] { bucket });
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO bucket_fence (bucket) VALUES (?) ON CONFLICT DO NOTHING", rows);
+            log.info("Seeded the bucket fences of shard {}", shard);
+        }
+    }
+
+    /**
+     * Refuse writes to the buckets on the shard, waiting for the writes already running
+     */
+    void fence(int shard, Collection<Integer> buckets) {
+        update(shard, buckets, true);
+    }
+
+    /**
+     * Accept writes to the buckets on the shard again
+     */
+    void lift(int shard, Collection<Integer> buckets) {
+        update(shard, buckets, false);
+    }
+
+    private void update(int shard, Collection<Integer> buckets, boolean fenced) {
+        jdbcTemplate(shard).batchUpdate("UPDATE bucket_fence SET fenced = ? WHERE bucket = ?",
+                buckets.stream().map(bucket -> new Object[] { fenced, bucket }).toList());
+    }
+
+    private JdbcTemplate jdbcTemplate(int shard) {
+        return new JdbcTemplate(dataSource.getShard(shard));
+    }
+}
@@ -0,0 +1,234 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.config.ShardKeys;
+import com.cloud.metadata.config.ShardRoutingDataSource;
+import com.cloud.metadata.config.ShardingProperties;
+import com.cloud.metadata.dto.ShardMove;
+import com.cloud.metadata.dto.ShardPlacement;
+import com.cloud.metadata.exception.InvalidShardMoveException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Moves owner buckets between shards, e.g. onto a shard just added. A move:
+ * <ol>
+ *   <li>fences the buckets on the source: once the write transactions already running there
+ *       have ended, every later one is refused, whatever placement its node routes by;</li>
+ *   <li>copies each owner's folders, files, chunk rows, manifests, inline content and ledger to
+ *       the target in one transaction per owner, ids unchanged, replacing what an interrupted
+ *       move left there;</li>
+ *   <li>lifts the target's fence and places the buckets on the target, bumping their epoch,
+ *       which expires the owners' change feed cursors: feed positions are per shard;</li>
+ *   <li>waits the fence wait, after which every node has read the new placement or refuses to
+ *       route, then deletes the owners' rows, change feed included, from the source, which
+ *       stays fenced.</li>
+ * </ol>
+ * An interrupted move leaves its buckets fenced on the source; moving them again completes it.
+ * Outbox events stay behind and are relayed from the source.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(prefix = "metadata.sharding", name = "enabled", havingValue = "true")
+public class ShardRebalancer {
+
+    private static final int OWNER_PAGE_SIZE = 500;
+    /** Files copied per statement batch; their chunk rows come along, so kept small */
+    private static final int FILE_PAGE_SIZE = 100;
+    private static final List<String> FILE_TABLES = List.of("chunk_metadata", "chunk_manifest", "file_content");
+
+    private final ShardDirectory directory;
+    private final ShardFence fence;
+    private final ShardRoutingDataSource dataSource;
+    private final Duration fenceWait;
+
+    public ShardRebalancer(ShardDirectory directory, ShardFence fence, ShardRoutingDataSource dataSource,
+            ShardingProperties properties) {
+        this.directory = directory;
+        this.fence = fence;
+        this.dataSource = dataSource;
+        this.fenceWait = properties.getFenceWait();
+    }
+
+    public List<ShardPlacement> getPlacement() {
+        List<List<Integer>> buckets = directory.bucketsByShard();
+        List<ShardPlacement> placement = new ArrayList<>();
+        for (int shard = 0; shard < buckets.size(); shard++) {
+            int moving = (int) buckets.get(shard).stream().filter(directory::isMoving).count();
+            placement.add(new ShardPlacement(shard, buckets.get(shard).size(), moving));
+        }
+        return placement;
+    }
+
+    public ShardMove moveBucket(int bucket, int target) {
+        if (bucket < 0 || bucket >= ShardKeys.BUCKETS) {
+            throw new InvalidShardMoveException("Buckets are numbered 0 to " + (ShardKeys.BUCKETS - 1));
+        }
+        if (target < 0 || target >= directory.getShardCount()) {
+            throw new InvalidShardMoveException("Shards are numbered 0 to " + (directory.getShardCount() - 1));
+        }
+        int source = directory.shardOf(bucket);
+        if (source == target) {
+            throw new InvalidShardMoveException("Bucket " + bucket + " is already on shard " + target);
+        }
+        return move(source, List.of(bucket), target);
+    }
+
+    /**
+     * Even out the buckets per shard, moving as few as possible; one move per pair of shards
+     */
+    public List<ShardMove> rebalance() {
+        List<List<Integer>> buckets = directory.bucketsByShard();
+        int shards = buckets.size();
+        List<Integer> surplus = new ArrayList<>();
+        List<Integer> sources = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            List<Integer> held = buckets.get(shard);
+            for (int i = fairShare(shard, shards); i < held.size(); i++) {
+                surplus.add(held.get(i));
+                sources.add(shard);
+            }
+        }
+
+        Map<List<Integer>, List<Integer>> moves = new LinkedHashMap<>(); // (source, target) -> buckets
+        int next = 0;
+        for (int shard = 0; shard < shards; shard++) {
+            for (int missing = fairShare(shard, shards) - buckets.get(shard).size(); missing > 0; missing--) {
+                moves.computeIfAbsent(List.of(sources.get(next), shard), pair -> new ArrayList<>())
+                        .add(surplus.get(next));
+                next++;
+            }
+        }
+
+        List<ShardMove> done = new ArrayList<>();
+        for (Map.Entry<List<Integer>, List<Integer>> move : moves.entrySet()) {
+            done.add(move(move.getKey().get(0), move.getValue(), move.getKey().get(1)));
+        }
+        return done;
+    }
+
+    private static int fairShare(int shard, int shards) {
+        return ShardKeys.BUCKETS / shards + (shard < ShardKeys.BUCKETS % shards ? 1 : 0);
+    }
+
+    private ShardMove move(int source, List<Integer> buckets, int target) {
+        JdbcTemplate from = new JdbcTemplate(dataSource.getShard(source));
+        JdbcTemplate to = new JdbcTemplate(dataSource.getShard(target));
+        TransactionTemplate fromTransaction = transactionTemplate(source);
+        TransactionTemplate toTransaction = transactionTemplate(target);
+
+        directory.markMoving(buckets); // Nodes refuse the owners' writes up front once they have refreshed
+        fence.fence(source, buckets);
+        log.info("Fenced buckets {} on shard {}, copying them to shard {}", buckets, source, target);
+
+        List<String> owners = findOwners(from, new HashSet<>(buckets));
+        long files = 0;
+        for (String owner : owners) {
+            files += toTransaction.execute(status -> {
+                deleteOwner(to, owner);
+                return copyOwner(from, to, owner);
+            });
+        }
+        fence.lift(target, buckets); // Fenced if the buckets left the target before
+        directory.completeMove(buckets, target);
+        log.info("Placed buckets {} on shard {}: {} owners, {} files", buckets, target, owners.size(), files);
+
+        // Nodes that have not refreshed yet still read from the source, until their placement is too old to route by
+        pause();
+        for (String owner : owners) {
+            fromTransaction.executeWithoutResult(status -> deleteOwner(from, owner));
+        }
+        return new ShardMove(buckets, source, target, owners.size(), files);
+    }
+
+    /**
+     * Owners with rows on the shard whose bucket is one of the given, in owner order
+     */
+    private List<String> findOwners(JdbcTemplate shard, Set<Integer> buckets) {
+        List<String> owners = new ArrayList<>();
+        String after = "";
+        while (true) {
+            List<String> page = shard.queryForList("SELECT owner FROM (SELECT owner FROM file_metadata "
+                    + "UNION SELECT owner FROM folder UNION SELECT owner FROM storage_usage) owners "
+                    + "WHERE owner > ? ORDER BY owner LIMIT ?", String.class, after, OWNER_PAGE_SIZE);
+            page.stream().filter(owner -> buckets.contains(ShardKeys.bucketOf(owner))).forEach(owners::add);
+            if (page.size() < OWNER_PAGE_SIZE) {
+                return owners;
+            }
+            after = page.get(page.size() - 1);
+        }
+    }
+
+    private long copyOwner(JdbcTemplate from, JdbcTemplate to, String owner) {
+        // Parents before children: a folder's path extends its parent's
+        copyRows(from, to, "folder", "SELECT * FROM folder WHERE owner = ? ORDER BY LENGTH(path)", owner);
+        long copied = 0;
+        long afterId = 0L;
+        while (true) {
+            List<Long> ids = from.queryForList("SELECT id FROM file_metadata WHERE owner = ? AND id > ? "
+                    + "ORDER BY id LIMIT ?", Long.class, owner, afterId, FILE_PAGE_SIZE);
+            if (ids.isEmpty()) {
+                break;
+            }
+            String in = String.join(", ", Collections.nCopies(ids.size(), "?"));
+            Object[] args = ids.toArray();
+            copyRows(from, to, "file_metadata", "SELECT * FROM file_metadata WHERE id IN (" + in + ")", args);
+            for (String table : FILE_TABLES) {
+                copyRows(from, to, table, "SELECT * FROM " + table + " WHERE file_id IN (" + in + ")", args);
+            }
+            copied += ids.size();
+            afterId = ids.get(ids.size() - 1);
+        }
+        copyRows(from, to, "storage_usage", "SELECT * FROM storage_usage WHERE owner = ?", owner);
+        return copied;
+    }
+
+    private static void copyRows(JdbcTemplate from, JdbcTemplate to, String table, String query, Object... args) {
+        List<Map<String, Object>> rows = from.queryForList(query, args);
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<String> columns = new ArrayList<>(rows.get(0).keySet());
+        String insert = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+        to.batchUpdate(insert, rows.stream().map(row -> columns.stream().map(row::get).toArray()).toList());
+    }
+
+    private static void deleteOwner(JdbcTemplate shard, String owner) {
+        String files = "(SELECT id FROM file_metadata WHERE owner = ?)";
+        for (String table : FILE_TABLES) {
+            shard.update("DELETE FROM " + table + " WHERE file_id IN " + files, owner);
+        }
+        shard.update("DELETE FROM file_metadata WHERE owner = ?", owner);
+        shard.update("UPDATE folder SET parent_id = NULL WHERE owner = ?", owner);
+        shard.update("DELETE FROM folder WHERE owner = ?", owner);
+        shard.update("DELETE FROM storage_usage WHERE owner = ?", owner);
+        shard.update("DELETE FROM file_change WHERE owner = ?", owner);
+        shard.update("DELETE FROM change_head WHERE owner = ?", owner);
+    }
+
+    private TransactionTemplate transactionTemplate(int shard) {
+        return new TransactionTemplate(new DataSourceTransactionManager(dataSource.getShard(shard)));
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(fenceWait.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while moving buckets; move them again to complete", e);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.config.ShardContext;
+import com.cloud.metadata.config.ShardKeys;
+import com.cloud.metadata.exception.ShardMovingException;
+import com.cloud.metadata.repository.FileMetadataRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+/**
+ * Decides which shard an owner or file lives on and enters that shard's scope. While sharding is
+ * disabled there is a single shard and every scope is shard 0, so callers need no special case.
+ */
+@Component
+public class ShardRouter {
+
+    private static final int MAX_LEGACY_OWNERS = 100_000;
+
+    private final ShardDirectory directory;
+    private final FileMetadataRepository fileRepository;
+    private final Cache<Long, String> legacyOwners = Caffeine.newBuilder()
+            .maximumSize(MAX_LEGACY_OWNERS)
+            .build();
+
+    public ShardRouter(ObjectProvider<ShardDirectory> directory, FileMetadataRepository fileRepository) {
+        this.directory = directory.getIfAvailable();
+        this.fileRepository = fileRepository;
+    }
+
+    public boolean isSharded() {
+        return directory != null;
+    }
+
+    public List<Integer> shards() {
+        return IntStream.range(0, directory != null ? directory.getShardCount() : 1).boxed().toList();
+    }
+
+    public int shardOfOwner(String owner) {
+        return directory != null ? directory.shardOf(ShardKeys.bucketOf(owner)) : 0;
+    }
+
+    /**
+     * Routed by the bucket in the id; ids from before buckets were encoded are looked up once
+     */
+    public int shardOfFile(long fileId) {
+        int bucket = bucketOfFile(fileId);
+        return directory != null && bucket >= 0 ? directory.shardOf(bucket) : 0;
+    }
+
+    /**
+     * Counts moves of the owner's bucket; what was read from the old shard does not carry over
+     */
+    public int placementEpoch(String owner) {
+        return directory != null ? directory.epochOf(ShardKeys.bucketOf(owner)) : 0;
+    }
+
+    /**
+     * Whether writes to the file are refused for now, its bucket being moved
+     */
+    public boolean isMoving(long fileId) {
+        int bucket = bucketOfFile(fileId);
+        return directory != null && bucket >= 0 && directory.isMoving(bucket);
+    }
+
+    public ShardContext.Scope forShard(int shard) {
+        return ShardContext.enter(shard);
+    }
+
+    public ShardContext.Scope forOwner(String owner) {
+        return ShardContext.enter(shardOfOwner(owner));
+    }
+
+    /**
+     * Like {@link #forOwner}, refusing while the owner's bucket is being moved. The scope's
+     * write transactions check the bucket's fence on the shard as well, which also catches a
+     * move this node has not seen yet.
+     */
+    public ShardContext.Scope forOwnerUpdate(String owner) {
+        if (directory == null) {
+            return forOwner(owner);
+        }
+        int bucket = ShardKeys.bucketOf(owner);
+        if (directory.isMoving(bucket)) {
+            throw new ShardMovingException("The files of " + owner + " are being moved between shards, retry shortly");
+        }
+        return ShardContext.enterForWrites(directory.shardOf(bucket), bucket);
+    }
+
+    public ShardContext.Scope forFile(long fileId) {
+        return ShardContext.enter(shardOfFile(fileId));
+    }
+
+    /**
+     * Like {@link #forFile}, refusing while the file's bucket is being moved, with the fence
+     * check of {@link #forOwnerUpdate}
+     */
+    public ShardContext.Scope forFileUpdate(long fileId) {
+        int bucket = bucketOfFile(fileId);
+        if (directory == null || bucket < 0) {
+            return forFile(fileId);
+        }
+        if (directory.isMoving(bucket)) {
+            throw new ShardMovingException("File " + fileId + " is being moved between shards, retry shortly");
+        }
+        return ShardContext.enterForWrites(directory.shardOf(bucket), bucket);
+    }
+
+    /**
+     * The bucket of a file's owner, or -1 for an unknown legacy id
+     */
+    private int bucketOfFile(long fileId) {
+        int bucket = ShardKeys.bucketOfFileId(fileId);
+        if (bucket >= 0 || directory == null) {
+            return bucket;
+        }
+        // A file's owner never changes, so the lookup over the shards is remembered
+        String owner = legacyOwners.get(fileId, this::findLegacyOwner);
+        return owner != null ? ShardKeys.bucketOf(owner) : -1;
+    }
+
+    private String findLegacyOwner(Long fileId) {
+        for (int shard : shards()) {
+            try (ShardContext.Scope ignored = forShard(shard)) {
+                Optional<String> owner = fileRepository.findOwnerById(fileId);
+                if (owner.isPresent()) {
+                    return owner.get();
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,139 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.dto.OwnerBytes;
+import com.cloud.metadata.dto.StorageUsageResponse;
+import com.cloud.metadata.entity.StorageUsage;
+import com.cloud.metadata.exception.QuotaExceededException;
+import com.cloud.metadata.repository.StorageUsageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Per-owner storage accounting. Uploads reserve their announced size at initiation, completion
+ * turns the reservation into used bytes, and abort, failure, pruning and deletion give bytes
+ * back. The quota check is part of the reserving UPDATE, so it costs one row whatever the number
+ * of files, and two concurrent uploads can never both squeeze into the last free bytes.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StorageQuotaService {
+
+    private final StorageUsageRepository usageRepository;
+
+    @Value("${metadata.quota.default-bytes:16106127360}") // Default 15GB
+    private long defaultQuota;
+
+    /**
+     * Reserve bytes for an upload, failing when the owner's quota cannot hold them
+     */
+    @Transactional
+    public void reserve(String owner, long bytes) {
+        LocalDateTime now = LocalDateTime.now();
+        usageRepository.insertIfAbsent(owner, now);
+        if (usageRepository.reserve(owner, bytes, defaultQuota, now) == 0) {
+            throw new QuotaExceededException("Storage quota of " + owner + " cannot hold another " + bytes
+                    + " bytes");
+        }
+    }
+
+    /**
+     * Count bytes of a file created already complete, failing when the quota cannot hold them
+     */
+    @Transactional
+    public void charge(String owner, long bytes) {
+        LocalDateTime now = LocalDateTime.now();
+        usageRepository.insertIfAbsent(owner, now);
+        if (usageRepository.charge(owner, bytes, defaultQuota, now) == 0) {
+            throw new QuotaExceededException("Storage quota of " + owner + " cannot hold another " + bytes
+                    + " bytes");
+        }
+    }
+
+    /**
+     * Turn an upload's reservation into used bytes
+     */
+    @Transactional
+    public void commit(String owner, long reservedBytes, long size) {
+        usageRepository.adjust(owner, -reservedBytes, size, LocalDateTime.now());
+    }
+
+    /**
+     * Give back an upload's reservation and/or the used bytes of removed files
+     */
+    @Transactional
+    public void release(String owner, long reservedBytes, long usedBytes) {
+        if (reservedBytes != 0 || usedBytes != 0) {
+            usageRepository.adjust(owner, -reservedBytes, -usedBytes, LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Give back the reservations of uploads of several owners, one statement per owner
+     */
+    @Transactional
+    public void releaseReservations(Collection<OwnerBytes> reservations) {
+        LocalDateTime now = LocalDateTime.now();
+        for (OwnerBytes reservation : reservations) {
+            usageRepository.adjust(reservation.getOwner(), -reservation.getBytes(), 0, now);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public StorageUsageResponse getUsage(String owner) {
+        StorageUsage usage = usageRepository.findById(owner)
+                .orElseGet(() -> StorageUsage.builder().owner(owner).build());
+        long quota = usage.getQuotaBytes() != null ? usage.getQuotaBytes() : defaultQuota;
+        return StorageUsageResponse.builder()
+                .owner(owner)
+                .usedBytes(usage.getUsedBytes())
+                .reservedBytes(usage.getReservedBytes())
+                .quotaBytes(quota)
+                .availableBytes(Math.max(0, quota - usage.getUsedBytes() - usage.getReservedBytes()))
+                .build();
+    }
+
+    /**
+     * Override the owner's quota; null goes back to the default. Usage already above the new
+     * quota is kept, only new uploads are refused.
+     */
+    @Transactional
+    public StorageUsageResponse setQuota(String owner, Long quotaBytes) {
+        LocalDateTime now = LocalDateTime.now();
+        usageRepository.insertIfAbsent(owner, now);
+        usageRepository.setQuota(owner, quotaBytes, now);
+        return getUsage(owner);
+    }
+
+    /**
+     * Recompute one keyset page of ledgers from file_metadata
+     *
+     * @return owners of the page, in order; empty when there are no more
+     */
+    @Transactional
+    public List<String> reconcilePage(String afterOwner, int batchSize) {
+        LocalDateTime now = LocalDateTime.now();
+        if (afterOwner.isEmpty()) {
+            int created = usageRepository.insertMissingOwners(now);
+            if (created > 0) {
+                log.info("Created {} missing storage ledgers", created);
+            }
+        }
+        // Lock first, then sum in a new statement: every writer that held a ledger has committed by then
+        List<String> owners = usageRepository.lockOwnersAfter(afterOwner, batchSize);
+        if (!owners.isEmpty()) {
+            int corrected = usageRepository.reconcile(owners, now);
+            if (corrected > 0) {
+                log.warn("Corrected drift in {} of {} storage ledgers", corrected, owners.size());
+            }
+        }
+        return owners;
+    }
+}
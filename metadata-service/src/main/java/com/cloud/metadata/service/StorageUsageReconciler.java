@@ -0,0 +1,65 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.config.ShardContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Scheduled recomputation of the storage ledgers from file_metadata, correcting drift left by
+ * crashes between a file change and its ledger update, manual data fixes and the like.
+ * Each page is its own short transaction, locking its ledger rows before summing the files,
+ * so the job holds at most one page of ledgers at a time.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(prefix = "metadata.quota.reconcile", name = "enabled", havingValue = "true",
+        matchIfMissing = true)
+public class StorageUsageReconciler {
+
+    private final StorageQuotaService quotaService;
+    private final ShardRouter shardRouter;
+
+    @Value("${metadata.quota.reconcile.batch-size:500}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${metadata.quota.reconcile.interval-ms:3600000}",
+            initialDelayString = "${metadata.quota.reconcile.interval-ms:3600000}")
+    public void scheduledReconcile() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            log.error("Storage ledger reconciliation failed", e);
+        }
+    }
+
+    /**
+     * Reconcile every ledger, shard by shard and page by page
+     *
+     * @return number of ledgers checked
+     */
+    public int reconcile() {
+        int checked = 0;
+        for (int shard : shardRouter.shards()) {
+            try (ShardContext.Scope ignored = shardRouter.forShard(shard)) {
+                String afterOwner = "";
+                while (true) {
+                    List<String> owners = quotaService.reconcilePage(afterOwner, batchSize);
+                    checked += owners.size();
+                    if (owners.size() < batchSize) {
+                        break;
+                    }
+                    afterOwner = owners.get(owners.size() - 1);
+                }
+            }
+        }
+        log.info("Reconciled {} storage ledgers", checked);
+        return checked;
+    }
+}
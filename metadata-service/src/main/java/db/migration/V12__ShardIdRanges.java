@@ -0,0 +1,38 @@
+package db.migration;
+
+import com.cloud.metadata.config.ShardKeys;
+import com.cloud.metadata.config.ShardingConfig;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Gives each shard its own range of ids, so rows keep their ids when their owner's bucket moves
+ * to another shard and event ids stay unique across shards. File ids come from a sequence whose
+ * value goes below the owner's bucket (see ShardKeys); the identities of the tables whose rows
+ * move with their owner, or whose ids leave the service, restart at the shard's range. Shard 0,
+ * which holds the existing rows, keeps its identities.
+ */
+public class V12__ShardIdRanges extends BaseJavaMigration {
+
+    private static final List<String> RANGED_IDENTITIES = List.of("file_metadata", "chunk_metadata", "folder",
+            "outbox_event");
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        String placeholder = context.getConfiguration().getPlaceholders().get(ShardingConfig.SHARD_PLACEHOLDER);
+        int shard = placeholder != null ? Integer.parseInt(placeholder) : 0;
+        long start = ShardKeys.sequenceStart(shard);
+        try (Statement statement = context.getConnection().createStatement()) {
+            statement.execute("CREATE SEQUENCE file_id_seq START WITH " + start + " INCREMENT BY "
+                    + ShardKeys.SEQUENCE_BLOCK);
+            if (shard > 0) {
+                for (String table : RANGED_IDENTITIES) {
+                    statement.execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + start);
+                }
+            }
+        }
+    }
+}
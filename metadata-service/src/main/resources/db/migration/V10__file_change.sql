@@ -0,0 +1,19 @@
+-- Change feed for sync clients: one row per change to an owner's completed files, read from a
+-- cursor by GET /metadata/user/{owner}/changes. Writers of one owner take the owner's
+-- change_head row lock before appending, so within an owner ids grow in commit order and a
+-- cursor never skips a row that commits later. The identity must stay uncached for the same reason.
+CREATE TABLE change_head (
+    owner      VARCHAR(255) PRIMARY KEY,
+    changed_at TIMESTAMP(6) NOT NULL
+);
+
+CREATE TABLE file_change (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    owner       VARCHAR(255) NOT NULL,
+    file_id     BIGINT       NOT NULL,
+    change_type VARCHAR(16)  NOT NULL,
+    created_at  TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX idx_file_change_owner_id ON file_change (owner, id);
+CREATE INDEX idx_file_change_created_at ON file_change (created_at);
@@ -0,0 +1,9 @@
+-- Placement of owner buckets on shards (see ShardKeys). Only shard 0's copy is used; it is seeded
+-- when sharding is first enabled. epoch counts a bucket's moves, moving fences its writes while
+-- it is copied to another shard.
+CREATE TABLE shard_bucket (
+    bucket INTEGER PRIMARY KEY,
+    shard  INTEGER NOT NULL,
+    epoch  INTEGER DEFAULT 0 NOT NULL,
+    moving BOOLEAN DEFAULT FALSE NOT NULL
+);
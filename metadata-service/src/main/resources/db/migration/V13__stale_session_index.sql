@@ -0,0 +1,3 @@
+-- The abandoned-upload sweep and the completion reconciler look for unfinished uploads untouched
+-- since a cutoff; without this they scan every file, finished ones included.
+CREATE INDEX idx_file_metadata_status_updated ON file_metadata (status, updated_at);
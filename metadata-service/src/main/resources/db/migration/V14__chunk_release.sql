@@ -0,0 +1,10 @@
+-- Mark and sweep of content-addressed chunk objects: releasing a version records the chunks
+-- nothing references any more, and file-service deletes their objects only after a grace
+-- period, re-checking references first. Uploads that record a chunk again drop its tombstone.
+CREATE TABLE chunk_release (
+    checksum          VARCHAR(255) PRIMARY KEY,
+    released_at       TIMESTAMP(6) NOT NULL,
+    sweep_lease_until TIMESTAMP(6)
+);
+
+CREATE INDEX idx_chunk_release_released_at ON chunk_release (released_at);
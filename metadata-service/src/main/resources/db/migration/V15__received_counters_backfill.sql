@@ -0,0 +1,7 @@
+-- received_chunks and received_bytes started at 0 for uploads already in flight when the counters
+-- were introduced, so completing them would report missing chunks. Count what those uploads have
+-- recorded so far; every later chunk moves the counters together with its insert.
+UPDATE file_metadata
+SET received_chunks = (SELECT COUNT(*) FROM chunk_metadata c WHERE c.file_id = file_metadata.id),
+    received_bytes  = (SELECT COALESCE(SUM(c.size), 0) FROM chunk_metadata c WHERE c.file_id = file_metadata.id)
+WHERE status IN ('PENDING', 'ACTIVE');
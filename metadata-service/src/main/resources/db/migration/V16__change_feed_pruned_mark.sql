@@ -0,0 +1,3 @@
+-- Highest change id pruned from each owner's feed. A cursor behind it may have missed pruned
+-- changes and is refused; cursors that keep up are accepted however old their first page was.
+ALTER TABLE change_head ADD COLUMN pruned_id BIGINT DEFAULT 0 NOT NULL;
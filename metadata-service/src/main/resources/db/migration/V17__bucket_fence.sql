@@ -0,0 +1,8 @@
+-- Write fence of owner buckets (see ShardKeys), kept on every shard for the buckets' writes on
+-- that shard. Write transactions of a bucket's owners hold a shared lock on its row and are
+-- refused while it is fenced, so fencing a bucket for a move waits for the writes in flight.
+-- Rows are seeded when sharding is enabled.
+CREATE TABLE bucket_fence (
+    bucket INTEGER PRIMARY KEY,
+    fenced BOOLEAN DEFAULT FALSE NOT NULL
+);
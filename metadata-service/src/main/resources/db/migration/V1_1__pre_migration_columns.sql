@@ -0,0 +1,19 @@
+-- Columns and tables added while Hibernate still managed the schema. A database baselined at V1 may
+-- have none of them, or some if it ran a build that added them through ddl-auto, hence IF NOT EXISTS.
+-- received_chunks and received_bytes of uploads in flight are backfilled by V15.
+ALTER TABLE file_metadata ADD COLUMN IF NOT EXISTS received_chunks INTEGER DEFAULT 0 NOT NULL;
+ALTER TABLE file_metadata ADD COLUMN IF NOT EXISTS received_bytes BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE file_metadata ADD COLUMN IF NOT EXISTS content_encoding VARCHAR(255);
+ALTER TABLE file_metadata ADD COLUMN IF NOT EXISTS chunking_scheme VARCHAR(255);
+ALTER TABLE file_metadata ADD COLUMN IF NOT EXISTS stored_inline BOOLEAN;
+ALTER TABLE file_metadata ADD COLUMN IF NOT EXISTS logical_file_id BIGINT;
+ALTER TABLE file_metadata ADD COLUMN IF NOT EXISTS version_number INTEGER;
+ALTER TABLE file_metadata ADD COLUMN IF NOT EXISTS sweep_lease_until TIMESTAMP(6);
+
+-- Version numbers are unique within a chain; files with a single version have both columns null
+CREATE UNIQUE INDEX IF NOT EXISTS uk_file_metadata_version ON file_metadata (logical_file_id, version_number);
+
+CREATE TABLE IF NOT EXISTS file_content (
+    file_id BIGINT PRIMARY KEY,
+    data    BYTEA NOT NULL
+);
@@ -0,0 +1,30 @@
+-- Baseline of the schema Hibernate created (ddl-auto) before schema changes moved to migrations.
+-- Databases that already have these tables are baselined at version 1 and skip this script, so it
+-- must stay exactly that schema; everything added later goes into a newer migration.
+
+CREATE TABLE file_metadata (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    file_name    VARCHAR(255) NOT NULL,
+    file_type    VARCHAR(255),
+    size         BIGINT       NOT NULL,
+    s3key        VARCHAR(255),
+    owner        VARCHAR(255) NOT NULL,
+    upload_id    VARCHAR(255),
+    total_chunks INTEGER,
+    status       VARCHAR(255) NOT NULL
+        CHECK (status IN ('PENDING', 'ACTIVE', 'COMPLETED', 'FAILED', 'ABORTED')),
+    created_at   TIMESTAMP(6),
+    updated_at   TIMESTAMP(6)
+);
+
+CREATE TABLE chunk_metadata (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    file_id      BIGINT       NOT NULL,
+    chunk_number INTEGER      NOT NULL,
+    etag         VARCHAR(255) NOT NULL,
+    size         BIGINT       NOT NULL,
+    checksum     VARCHAR(255),
+    created_at   TIMESTAMP(6),
+    CONSTRAINT uk_chunk_metadata_part UNIQUE (file_id, chunk_number),
+    CONSTRAINT fk_chunk_metadata_file FOREIGN KEY (file_id) REFERENCES file_metadata (id)
+);
@@ -0,0 +1,3 @@
+-- Keyset listing of an owner's files ordered by (updated_at, id), with and without a status filter
+CREATE INDEX idx_file_metadata_owner_updated ON file_metadata (owner, updated_at, id);
+CREATE INDEX idx_file_metadata_owner_status_updated ON file_metadata (owner, status, updated_at, id);
@@ -0,0 +1,21 @@
+-- Folder tree as materialized paths: a folder's path lists the ids from the top level down to the
+-- folder itself ('/12/40/'), and a file carries the path of the folder it sits in ('/' at the top).
+-- A subtree is a path prefix, so listing, sizing and moving it take a fixed number of statements.
+CREATE TABLE folder (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    owner      VARCHAR(255)  NOT NULL,
+    name       VARCHAR(255)  NOT NULL,
+    parent_id  BIGINT,
+    path       VARCHAR(2048) NOT NULL,
+    created_at TIMESTAMP(6),
+    updated_at TIMESTAMP(6),
+    CONSTRAINT fk_folder_parent FOREIGN KEY (parent_id) REFERENCES folder (id)
+);
+
+CREATE INDEX idx_folder_owner_parent ON folder (owner, parent_id, name);
+
+ALTER TABLE file_metadata ADD COLUMN folder_id BIGINT;
+ALTER TABLE file_metadata ADD COLUMN folder_path VARCHAR(2048) DEFAULT '/' NOT NULL;
+ALTER TABLE file_metadata ADD CONSTRAINT fk_file_metadata_folder FOREIGN KEY (folder_id) REFERENCES folder (id);
+
+CREATE INDEX idx_file_metadata_owner_folder ON file_metadata (owner, folder_id, id);
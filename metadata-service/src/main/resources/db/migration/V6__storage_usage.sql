@@ -0,0 +1,22 @@
+-- Per-owner storage ledger. used_bytes is the size of the owner's completed files, reserved_bytes
+-- the sizes announced by uploads still in progress; each file row remembers what it reserved.
+-- Both are moved by conditional updates and periodically reconciled against file_metadata.
+CREATE TABLE storage_usage (
+    owner          VARCHAR(255) PRIMARY KEY,
+    used_bytes     BIGINT DEFAULT 0 NOT NULL,
+    reserved_bytes BIGINT DEFAULT 0 NOT NULL,
+    quota_bytes    BIGINT,
+    updated_at     TIMESTAMP(6)
+);
+
+ALTER TABLE file_metadata ADD COLUMN reserved_bytes BIGINT DEFAULT 0 NOT NULL;
+
+UPDATE file_metadata SET reserved_bytes = size WHERE status IN ('PENDING', 'ACTIVE');
+
+INSERT INTO storage_usage (owner, used_bytes, reserved_bytes, updated_at)
+SELECT owner,
+       SUM(CASE WHEN status = 'COMPLETED' THEN size ELSE 0 END),
+       SUM(reserved_bytes),
+       CURRENT_TIMESTAMP
+FROM file_metadata
+GROUP BY owner;
@@ -0,0 +1,3 @@
+-- Optimistic lock for the writes that still go through a loaded FileMetadata entity.
+-- Every bulk UPDATE of file_metadata bumps it as well, so such an entity can never overwrite them.
+ALTER TABLE file_metadata ADD COLUMN row_version BIGINT DEFAULT 0 NOT NULL;
@@ -0,0 +1,9 @@
+-- Completed uploads fold their chunk_metadata rows into one encoded manifest per file
+-- (ChunkManifestCodec), keeping chunk_metadata and its unique index sized to in-flight uploads
+CREATE TABLE chunk_manifest (
+    file_id    BIGINT PRIMARY KEY,
+    part_count INTEGER NOT NULL,
+    data       BYTEA   NOT NULL,
+    created_at TIMESTAMP(6),
+    CONSTRAINT fk_chunk_manifest_file FOREIGN KEY (file_id) REFERENCES file_metadata (id) ON DELETE CASCADE
+);
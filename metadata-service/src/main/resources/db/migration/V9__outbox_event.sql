@@ -0,0 +1,11 @@
+-- Transactional outbox: file lifecycle events are inserted in the transaction that changes the
+-- file, then relayed to the event broker and deleted (OutboxRelay)
+CREATE TABLE outbox_event (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    event_type VARCHAR(32)  NOT NULL,
+    file_id    BIGINT       NOT NULL,
+    owner      VARCHAR(255) NOT NULL,
+    file_name  VARCHAR(255),
+    size       BIGINT,
+    created_at TIMESTAMP(6) NOT NULL
+);
@@ -0,0 +1,107 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.TestcontainersConfiguration;
+import com.cloud.metadata.repository.ChunkMetadataRepository;
+import com.cloud.metadata.repository.FileMetadataRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Benchmark for the chunk insert hot path: the work per addChunk must not grow with the
+ * number of chunks the file already has.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=INFO",
+        "metadata.quota.default-bytes=109951162777600" // The 50GB test file exceeds the default quota
+})
+@Import(TestcontainersConfiguration.class)
+@ActiveProfiles("test")
+class AddChunkScalingTest {
+
+    private static final int TOTAL_PARTS = 10_000;
+    private static final int MEASURED_PARTS = 500;
+
+    @Autowired
+    private MetadataService metadataService;
+
+    @Autowired
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Autowired
+    private ChunkMetadataRepository chunkMetadataRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @AfterEach
+    void tearDown() {
+        chunkMetadataRepository.deleteAllInBatch();
+        fileMetadataRepository.deleteAllInBatch();
+        jdbcTemplate.update("DELETE FROM storage_usage"); // The ledger still holds the 50GB reservation
+    }
+
+    @Test
+    @DisplayName("Per-chunk cost should stay constant up to 10,000 parts")
+    void shouldKeepPerChunkCostConstant() {
+        // Given
+        Long fileId = metadataService.initiateSession("large.bin", "testuser", "upload-id", TOTAL_PARTS,
+                5L * 1024 * 1024 * TOTAL_PARTS, "application/octet-stream");
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // When: the first parts, then the last parts after pre-filling the ones in between
+        Measurement early = addChunks(statistics, fileId, 1);
+        prefill(fileId, MEASURED_PARTS + 1, TOTAL_PARTS - MEASURED_PARTS);
+        Measurement late = addChunks(statistics, fileId, TOTAL_PARTS - MEASURED_PARTS + 1);
+
+        // Then: two statements per chunk (insert, counter update), and no chunk rows or collections
+        // are ever loaded
+        assertThat(early.statementsPerChunk()).isEqualTo(2.0);
+        assertThat(late.statementsPerChunk()).isEqualTo(early.statementsPerChunk());
+        assertThat(late.entitiesLoaded()).isZero();
+        assertThat(late.collectionsFetched()).isZero();
+        assertThat(chunkMetadataRepository.count()).isEqualTo(TOTAL_PARTS);
+    }
+
+    private Measurement addChunks(Statistics statistics, Long fileId, int firstPart) {
+        statistics.clear();
+        for (int part = firstPart; part < firstPart + MEASURED_PARTS; part++) {
+            metadataService.addChunk(fileId, part, "etag-" + part, 5L * 1024 * 1024);
+        }
+        return new Measurement((double) statistics.getPrepareStatementCount() / MEASURED_PARTS,
+                statistics.getEntityLoadCount(), statistics.getCollectionFetchCount());
+    }
+
+    private void prefill(Long fileId, int firstPart, int lastPart) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>();
+        for (int part = firstPart; part <= lastPart; part++) {
+            rows.add(new Object[] { fileId, part, "etag-" + part, 5L * 1024 * 1024, now });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO chunk_metadata (file_id, chunk_number, etag, size, created_at) "
+                + "VALUES (?, ?, ?, ?, ?)", rows);
+    }
+
+    private record Measurement(double statementsPerChunk, long entitiesLoaded, long collectionsFetched) {
+    }
+}
@@ -0,0 +1,246 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.TestcontainersConfiguration;
+import com.cloud.metadata.dto.FileChangeEntry;
+import com.cloud.metadata.dto.FileChangesResponse;
+import com.cloud.metadata.dto.FileMetadataRequest;
+import com.cloud.metadata.dto.FolderRequest;
+import com.cloud.metadata.dto.InlineFileRequest;
+import com.cloud.metadata.enums.FileChangeType;
+import com.cloud.metadata.exception.ChangeCursorExpiredException;
+import com.cloud.metadata.repository.ChunkMetadataRepository;
+import com.cloud.metadata.repository.FileChangeRepository;
+import com.cloud.metadata.repository.FileContentRepository;
+import com.cloud.metadata.repository.FileMetadataRepository;
+import com.cloud.metadata.repository.FolderRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(TestcontainersConfiguration.class)
+@ActiveProfiles("test")
+class ChangeFeedTest {
+
+    private static final String OWNER = "syncer";
+
+    @Autowired
+    private MetadataService metadataService;
+
+    @Autowired
+    private FolderService folderService;
+
+    @Autowired
+    private ChangeFeedService feedService;
+
+    @Autowired
+    private ChangeFeedNotifier notifier;
+
+    @Autowired
+    private ChangeLogPruner pruner;
+
+    @Autowired
+    private FileChangeRepository fileChangeRepository;
+
+    @Autowired
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Autowired
+    private ChunkMetadataRepository chunkMetadataRepository;
+
+    @Autowired
+    private FileContentRepository fileContentRepository;
+
+    @Autowired
+    private FolderRepository folderRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @AfterEach
+    void tearDown() {
+        fileChangeRepository.deleteAllInBatch();
+        jdbcTemplate.update("DELETE FROM change_head");
+        chunkMetadataRepository.deleteAllInBatch();
+        fileContentRepository.deleteAllInBatch();
+        fileMetadataRepository.deleteAllInBatch();
+        folderRepository.deleteAllInBatch();
+        jdbcTemplate.update("DELETE FROM storage_usage");
+    }
+
+    @Test
+    @DisplayName("The feed should return the creations, updates and deletions after a cursor, in order")
+    void shouldReturnChangesAfterCursor() {
+        // Given: a cursor taken before any change
+        String start = feedService.getChanges(OWNER, null, 10).getCursor();
+        Long report = store("report.pdf");
+        Long note = metadataService.createInlineFile(
+                new InlineFileRequest("note.txt", "text/plain", OWNER, "hi".getBytes())).getId();
+        Long folder = folderService.createFolder(OWNER, new FolderRequest("Docs", null)).getId();
+        folderService.moveFile(OWNER, report, folder);
+        metadataService.deleteFile(note);
+        Long draft = metadataService.initiateSession("draft.pdf", OWNER, "upload-id", 1, 100L, "application/pdf");
+
+        // When
+        FileChangesResponse changes = feedService.getChanges(OWNER, start, 10);
+
+        // Then: uploads in progress are not part of the feed
+        assertThat(changes.getChanges()).extracting(FileChangeEntry::getType, FileChangeEntry::getFileId)
+                .containsExactly(tuple(FileChangeType.CREATED, report), tuple(FileChangeType.CREATED, note),
+                        tuple(FileChangeType.UPDATED, report), tuple(FileChangeType.DELETED, note));
+        assertThat(changes.getChanges().get(0).getFile().getFolderId()).isEqualTo(folder);
+        assertThat(changes.getChanges().get(1).getFile()).isNull();
+        assertThat(changes.isHasMore()).isFalse();
+        assertThat(feedService.getChanges(OWNER, changes.getCursor(), 10).getChanges()).isEmpty();
+        assertThat(feedService.getChanges("someone-else", start, 10).getChanges()).isEmpty();
+
+        // When / Then: the next change follows the returned cursor
+        metadataService.addChunk(draft, 1, "etag-1", 100L);
+        metadataService.completeSession(draft);
+        assertThat(feedService.getChanges(OWNER, changes.getCursor(), 10).getChanges())
+                .extracting(FileChangeEntry::getType, FileChangeEntry::getFileId)
+                .containsExactly(tuple(FileChangeType.CREATED, draft));
+    }
+
+    @Test
+    @DisplayName("Reading the feed should cost the same for a large account as for a small one")
+    void shouldReadInFixedStatements() {
+        // Given: 50k files, then 3 changes
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            rows.add(new Object[] { "file-" + i, 10L, OWNER, "COMPLETED", now, now });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO file_metadata (file_name, size, owner, status, created_at, "
+                + "updated_at) VALUES (?, ?, ?, ?, ?, ?)", rows);
+        String cursor = feedService.getChanges(OWNER, null, 10).getCursor();
+        store("a.txt");
+        store("b.txt");
+        metadataService.deleteFile(store("c.txt"));
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // When
+        FileChangesResponse changes = feedService.getChanges(OWNER, cursor, 10);
+
+        // Then: the changes page, the owner's pruned mark and one lookup of the files it names
+        assertThat(changes.getChanges()).hasSize(4);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Pages should chain through their cursors until no more changes follow")
+    void shouldPageThroughChanges() {
+        // Given
+        String cursor = feedService.getChanges(OWNER, null, 10).getCursor();
+        List<Long> stored = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            stored.add(store("file-" + i));
+        }
+
+        // When
+        List<Long> seen = new ArrayList<>();
+        FileChangesResponse page;
+        do {
+            page = feedService.getChanges(OWNER, cursor, 2);
+            page.getChanges().forEach(change -> seen.add(change.getFileId()));
+            cursor = page.getCursor();
+        } while (page.isHasMore());
+
+        // Then
+        assertThat(seen).containsExactlyElementsOf(stored);
+    }
+
+    @Test
+    @DisplayName("A waiting request should be answered by the next commit, or by a check for other nodes' commits")
+    void shouldAnswerWaitingRequests() throws Exception {
+        // Given: a request waiting on an owner without changes
+        String cursor = feedService.getChanges(OWNER, null, 10).getCursor();
+        DeferredResult<FileChangesResponse> waiting = notifier.await(OWNER, cursor, 10, Duration.ofSeconds(30));
+        assertThat(waiting.hasResult()).isFalse();
+
+        // When: this node commits a change
+        Long fileId = store("report.pdf");
+
+        // Then
+        FileChangesResponse woken = awaitResult(waiting);
+        assertThat(woken.getChanges()).extracting(FileChangeEntry::getFileId).containsExactly(fileId);
+
+        // Given: a request waiting after that change
+        DeferredResult<FileChangesResponse> next = notifier.await(OWNER, woken.getCursor(), 10,
+                Duration.ofSeconds(30));
+
+        // When: another node commits a change, seen by the periodic check
+        jdbcTemplate.update("INSERT INTO file_change (owner, file_id, change_type, created_at) VALUES (?, ?, ?, ?)",
+                OWNER, fileId, "UPDATED", Timestamp.valueOf(LocalDateTime.now()));
+        assertThat(next.hasResult()).isFalse();
+        assertThat(notifier.check()).isEqualTo(1);
+
+        // Then
+        assertThat(awaitResult(next).getChanges()).extracting(FileChangeEntry::getType)
+                .containsExactly(FileChangeType.UPDATED);
+        assertThat(notifier.check()).isZero();
+    }
+
+    @Test
+    @DisplayName("A cursor behind pruned changes should be refused, however recently its page was read")
+    void shouldRefuseCursorBehindPrunedChanges() {
+        // Given: a cursor read today that still points before two changes, one past the retention
+        String behind = feedService.getChanges(OWNER, null, 10).getCursor();
+        Long aged = store("old.txt");
+        jdbcTemplate.update("UPDATE file_change SET created_at = ? WHERE file_id = ?",
+                LocalDateTime.now().minusDays(31), aged);
+        store("new.txt");
+        String current = feedService.getChanges(OWNER, behind, 10).getCursor();
+        String issuedLongAgo = new ChangeCursor(ChangeCursor.decode(current).position(),
+                LocalDateTime.now().minusDays(31), 0).encode();
+
+        // When
+        long pruned = pruner.prune();
+
+        // Then: only the cursor that missed the pruned change is refused
+        assertThat(pruned).isEqualTo(1);
+        assertThatThrownBy(() -> feedService.getChanges(OWNER, behind, 10))
+                .isInstanceOf(ChangeCursorExpiredException.class);
+        assertThatThrownBy(() -> notifier.await(OWNER, behind, 10, Duration.ofSeconds(30)))
+                .isInstanceOf(ChangeCursorExpiredException.class);
+        assertThat(notifier.check()).isZero();
+        assertThat(feedService.getChanges(OWNER, issuedLongAgo, 10).getChanges()).isEmpty();
+        assertThat(feedService.getChanges(OWNER, current, 10).getChanges()).isEmpty();
+    }
+
+    private Long store(String fileName) {
+        return metadataService.saveMetadata(new FileMetadataRequest(fileName, "application/octet-stream", 10L,
+                "uploads/" + fileName, OWNER, 1, null)).getId();
+    }
+
+    private FileChangesResponse awaitResult(DeferredResult<FileChangesResponse> result) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!result.hasResult() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(result.hasResult()).isTrue();
+        return (FileChangesResponse) result.getResult();
+    }
+}
@@ -0,0 +1,136 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.TestcontainersConfiguration;
+import com.cloud.metadata.dto.AddChunkRequest;
+import com.cloud.metadata.dto.ChunkBatchResponse;
+import com.cloud.metadata.repository.ChunkMetadataRepository;
+import com.cloud.metadata.repository.FileMetadataRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Batched chunk recording: one JDBC batch per request whatever its size, and entries the chunk
+ * table cannot hold are rejected up front
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "metadata.quota.default-bytes=109951162777600"
+})
+@Import(TestcontainersConfiguration.class)
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ChunkBatchTest {
+
+    private static final long CHUNK_SIZE = 5L * 1024 * 1024;
+
+    @Autowired
+    private MetadataService metadataService;
+
+    @Autowired
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Autowired
+    private ChunkMetadataRepository chunkMetadataRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @SpyBean
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        chunkMetadataRepository.deleteAllInBatch();
+        fileMetadataRepository.deleteAllInBatch();
+        jdbcTemplate.update("DELETE FROM storage_usage");
+    }
+
+    @Test
+    @DisplayName("A batch should cost one JDBC batch and the same statements whatever its size")
+    void shouldKeepStatementsPerBatchConstant() {
+        // Given
+        Long small = metadataService.initiateSession("small.bin", "batch-user", "upload-small", 10,
+                10 * CHUNK_SIZE, "application/octet-stream");
+        Long large = metadataService.initiateSession("large.bin", "batch-user", "upload-large", 500,
+                500 * CHUNK_SIZE, "application/octet-stream");
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // When
+        long smallStatements = statementsFor(statistics, small, 10);
+        long largeStatements = statementsFor(statistics, large, 500);
+
+        // Then: the inserts go out as one batch per request, the rest does not grow with it
+        verify(jdbcTemplate).batchUpdate(anyString(), argThat(chunks -> chunks.size() == 10), eq(10),
+                any(ParameterizedPreparedStatementSetter.class));
+        verify(jdbcTemplate).batchUpdate(anyString(), argThat(chunks -> chunks.size() == 500), eq(500),
+                any(ParameterizedPreparedStatementSetter.class));
+        assertThat(largeStatements).isEqualTo(smallStatements);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(metadataService.getProgress(large).getReceivedChunks()).isEqualTo(500);
+    }
+
+    @Test
+    @DisplayName("A batch with an entry missing its chunk number should be rejected with 400, recording nothing")
+    void shouldRejectChunkWithoutNumber() throws Exception {
+        // Given
+        Long fileId = metadataService.initiateSession("report.pdf", "batch-user", "upload-id", 2, 2 * CHUNK_SIZE,
+                "application/pdf");
+        Map<String, Object> unnumbered = new HashMap<>();
+        unnumbered.put("etag", "etag-2");
+        unnumbered.put("size", CHUNK_SIZE);
+        List<Object> chunks = List.of(Map.of("chunkNumber", 1, "etag", "etag-1", "size", CHUNK_SIZE), unnumbered);
+
+        // When / Then
+        mockMvc.perform(post("/metadata/{fileId}/chunks:batch", fileId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("chunks", chunks))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorCode").value("INVALID_CHUNK"));
+        assertThat(chunkMetadataRepository.count()).isZero();
+        assertThat(metadataService.getProgress(fileId).getReceivedChunks()).isZero();
+    }
+
+    private long statementsFor(Statistics statistics, Long fileId, int parts) {
+        List<AddChunkRequest> chunks = new ArrayList<>();
+        IntStream.rangeClosed(1, parts).forEach(part -> chunks.add(AddChunkRequest.builder()
+                .chunkNumber(part).etag("etag-" + part).size(CHUNK_SIZE).build()));
+        statistics.clear();
+        ChunkBatchResponse response = metadataService.addChunks(fileId, chunks);
+        assertThat(response.getInserted()).isEqualTo(parts);
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,147 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.TestcontainersConfiguration;
+import com.cloud.metadata.dto.AddChunkRequest;
+import com.cloud.metadata.dto.ChunkMetadataResponse;
+import com.cloud.metadata.dto.ChunkPartsResponse;
+import com.cloud.metadata.dto.InitiateSessionRequest;
+import com.cloud.metadata.repository.ChunkManifestRepository;
+import com.cloud.metadata.repository.ChunkMetadataRepository;
+import com.cloud.metadata.repository.FileContentRepository;
+import com.cloud.metadata.repository.FileMetadataRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest(properties = "metadata.chunks.compaction.delete-batch-size=700")
+@Import(TestcontainersConfiguration.class)
+@ActiveProfiles("test")
+class ChunkCompactionTest {
+
+    private static final String OWNER = "compactor";
+    private static final int PARTS = 10_000;
+
+    @Autowired
+    private MetadataService metadataService;
+
+    @Autowired
+    private ChunkCompactor compactor;
+
+    @Autowired
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Autowired
+    private ChunkMetadataRepository chunkMetadataRepository;
+
+    @Autowired
+    private ChunkManifestRepository chunkManifestRepository;
+
+    @Autowired
+    private FileContentRepository fileContentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        chunkMetadataRepository.deleteAllInBatch();
+        fileContentRepository.deleteAllInBatch();
+        fileMetadataRepository.deleteAllInBatch();
+        jdbcTemplate.update("DELETE FROM storage_usage");
+    }
+
+    @Test
+    @DisplayName("A completed 10,000-part upload should fold into one manifest read back transparently")
+    void shouldCompactLargeUpload() {
+        // Given
+        Long fileId = upload(session("big.bin", PARTS, null), PARTS);
+        List<ChunkMetadataResponse> before = metadataService.getUploadedChunks(fileId);
+        ChunkPartsResponse partsBefore = metadataService.getCompletedParts(fileId);
+
+        // When
+        int compacted = compactor.compact();
+
+        // Then
+        assertThat(compacted).isEqualTo(1);
+        assertThat(chunkMetadataRepository.count()).isZero();
+        assertThat(metadataService.getUploadedChunks(fileId))
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("id")
+                .containsExactlyElementsOf(before);
+        assertThat(metadataService.getCompletedParts(fileId)).isEqualTo(partsBefore);
+        assertThat(chunkManifestRepository.findDataById(fileId)).isPresent();
+    }
+
+    @Test
+    @DisplayName("In-flight uploads and content-defined files should keep their chunk rows")
+    void shouldSkipIneligibleFiles() {
+        // Given
+        Long inFlight = metadataService.initiateSession(session("partial.bin", 3, null));
+        metadataService.addChunk(inFlight, 1, "etag-1", 100L);
+        upload(session("cdc.bin", 3, "fastcdc"), 3);
+
+        // When
+        int compacted = compactor.compact();
+
+        // Then
+        assertThat(compacted).isZero();
+        assertThat(chunkMetadataRepository.count()).isEqualTo(4);
+        assertThat(chunkManifestRepository.count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Compacted files should accept chunk retries, restore and delete as before")
+    void shouldKeepFileOperationsWorking() {
+        // Given: two versions, both compacted
+        Long first = upload(session("report.pdf", 3, null), 3);
+        InitiateSessionRequest next = session("report.pdf", 2, null);
+        next.setPreviousVersionId(first);
+        Long second = upload(next, 2);
+        compactor.compact();
+
+        // When / Then: a late retry of a recorded chunk still succeeds
+        assertThatCode(() -> metadataService.addChunk(first, 2, "etag-2", 100L)).doesNotThrowAnyException();
+
+        // When / Then: restoring the first version carries its manifest over
+        Long restored = metadataService.restoreVersion(second, 1).getId();
+        assertThat(metadataService.getUploadedChunks(restored)).extracting(ChunkMetadataResponse::getChunkNumber)
+                .containsExactly(1, 2, 3);
+
+        // When / Then: deleting the file takes its manifests along
+        metadataService.deleteFile(restored);
+        assertThat(chunkManifestRepository.count()).isZero();
+        assertThat(chunkMetadataRepository.count()).isZero();
+    }
+
+    private InitiateSessionRequest session(String fileName, int parts, String chunkingScheme) {
+        return InitiateSessionRequest.builder()
+                .fileName(fileName)
+                .userId(OWNER)
+                .uploadId("upload-" + fileName)
+                .totalChunks(parts)
+                .size(100L * parts)
+                .chunkingScheme(chunkingScheme)
+                .build();
+    }
+
+    private Long upload(InitiateSessionRequest request, int parts) {
+        Long fileId = metadataService.initiateSession(request);
+        List<AddChunkRequest> chunks = new ArrayList<>();
+        for (int part = 1; part <= parts; part++) {
+            chunks.add(new AddChunkRequest(part, "\"" + Integer.toHexString(part * 7919) + "-etag\"", 100L,
+                    request.getChunkingScheme() != null ? "sha256-" + part : null));
+        }
+        metadataService.addChunks(fileId, chunks);
+        metadataService.completeSession(fileId);
+        return fileId;
+    }
+}
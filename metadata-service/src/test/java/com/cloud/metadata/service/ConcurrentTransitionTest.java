@@ -0,0 +1,217 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.TestcontainersConfiguration;
+import com.cloud.metadata.dto.InlineFileRequest;
+import com.cloud.metadata.dto.UploadProgress;
+import com.cloud.metadata.entity.FileMetadata;
+import com.cloud.metadata.exception.IllegalStateTransitionException;
+import com.cloud.metadata.repository.ChunkMetadataRepository;
+import com.cloud.metadata.repository.FileContentRepository;
+import com.cloud.metadata.repository.FileMetadataRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Transitions are conditional updates: parallel writers of one file must neither lose
+ * counter updates nor both win a transition.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=INFO",
+        "spring.datasource.hikari.maximum-pool-size=64"
+})
+@Import(TestcontainersConfiguration.class)
+@ActiveProfiles("test")
+class ConcurrentTransitionTest {
+
+    private static final int WRITERS = 64;
+    private static final int CHUNKS_PER_WRITER = 20;
+    private static final long CHUNK_SIZE = 1024L;
+
+    @Autowired
+    private MetadataService metadataService;
+
+    @Autowired
+    private StorageQuotaService quotaService;
+
+    @Autowired
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Autowired
+    private ChunkMetadataRepository chunkMetadataRepository;
+
+    @Autowired
+    private FileContentRepository fileContentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @AfterEach
+    void tearDown() {
+        chunkMetadataRepository.deleteAllInBatch();
+        fileContentRepository.deleteAllInBatch();
+        fileMetadataRepository.deleteAllInBatch();
+        jdbcTemplate.update("DELETE FROM storage_usage");
+    }
+
+    @Test
+    @DisplayName("64 parallel chunk writers per file should lose no counter updates")
+    void shouldNotLoseChunkUpdates() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        List<Double> statementsPerChunk = new ArrayList<>();
+        for (int writers : new int[] { 1, 8, WRITERS }) {
+            // Given
+            int totalChunks = writers * CHUNKS_PER_WRITER;
+            Long fileId = metadataService.initiateSession("parallel.bin", "writer", "upload-" + writers,
+                    totalChunks, CHUNK_SIZE * totalChunks, "application/octet-stream");
+
+            statistics.clear();
+
+            // When: each writer sends its own slice of the parts, all at once
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int writer = 0; writer < writers; writer++) {
+                int first = writer * CHUNKS_PER_WRITER + 1;
+                tasks.add(() -> {
+                    for (int part = first; part < first + CHUNKS_PER_WRITER; part++) {
+                        metadataService.addChunk(fileId, part, "etag-" + part, CHUNK_SIZE);
+                    }
+                    return null;
+                });
+            }
+            runConcurrently(tasks);
+            statementsPerChunk.add((double) statistics.getPrepareStatementCount() / totalChunks);
+
+            // Then
+            UploadProgress progress = metadataService.getProgress(fileId);
+            assertThat(progress.getReceivedChunks()).isEqualTo(totalChunks);
+            assertThat(progress.getReceivedBytes()).isEqualTo(CHUNK_SIZE * totalChunks);
+            assertThat(metadataService.getUploadedChunks(fileId)).hasSize(totalChunks);
+        }
+        // Writers only add work of their own: no retries or extra lock statements as they multiply
+        assertThat(statementsPerChunk).containsOnly(statementsPerChunk.get(0));
+    }
+
+    @Test
+    @DisplayName("Racing completions and aborts should produce exactly one outcome")
+    void shouldLetOneTransitionWin() throws Exception {
+        // Given
+        Long fileId = metadataService.initiateSession("race.bin", "racer", "upload-id", 1, CHUNK_SIZE,
+                "application/octet-stream");
+        metadataService.addChunk(fileId, 1, "etag-1", CHUNK_SIZE);
+
+        // When: half of the callers complete, half abort
+        List<Callable<Void>> tasks = new ArrayList<>();
+        List<String> outcomes = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < WRITERS; i++) {
+            boolean complete = i % 2 == 0;
+            tasks.add(() -> {
+                try {
+                    if (complete) {
+                        metadataService.completeSession(fileId);
+                    } else {
+                        metadataService.abortSession(fileId);
+                    }
+                    outcomes.add("ok");
+                } catch (IllegalStateTransitionException e) {
+                    outcomes.add("rejected");
+                }
+                return null;
+            });
+        }
+        runConcurrently(tasks);
+
+        // Then: whichever won, the losing side was rejected and the ledger counted it once
+        String status = metadataService.getFileById(fileId).getStatus();
+        assertThat(status).isIn("COMPLETED", "ABORTED");
+        assertThat(outcomes).hasSize(WRITERS).contains("ok", "rejected");
+        assertThat(quotaService.getUsage("racer").getReservedBytes()).isZero();
+        assertThat(quotaService.getUsage("racer").getUsedBytes())
+                .isEqualTo("COMPLETED".equals(status) ? CHUNK_SIZE : 0);
+    }
+
+    @Test
+    @DisplayName("An entity write should not overwrite a conditional update made after it was read")
+    void shouldRejectStaleEntityWrites() {
+        // Given: an entity read before a chunk is recorded by a conditional update
+        Long fileId = metadataService.initiateSession("stale.bin", "writer", "upload-id", 2, 2 * CHUNK_SIZE,
+                "application/octet-stream");
+        FileMetadata stale = fileMetadataRepository.findById(fileId).orElseThrow();
+        metadataService.addChunk(fileId, 1, "etag-1", CHUNK_SIZE);
+
+        // When / Then
+        stale.setFileName("renamed.bin");
+        assertThatThrownBy(() -> fileMetadataRepository.save(stale))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        assertThat(metadataService.getProgress(fileId).getReceivedChunks()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Entity writes should be retried after losing an optimistic lock race")
+    void shouldRetryEntityWrites() throws Exception {
+        // Given: many promotions of the same inline file racing each other
+        Long fileId = metadataService.createInlineFile(
+                new InlineFileRequest("note.txt", "text/plain", "writer", "hello".getBytes())).getId();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String s3Key = "uploads/note-" + i + ".txt";
+            tasks.add(() -> {
+                metadataService.promoteInlineFile(fileId, s3Key);
+                return null;
+            });
+        }
+
+        // When
+        runConcurrently(tasks);
+
+        // Then: every caller succeeded and exactly one promotion took effect
+        FileMetadata promoted = fileMetadataRepository.findById(fileId).orElseThrow();
+        assertThat(promoted.getStoredInline()).isFalse();
+        assertThat(promoted.getS3Key()).startsWith("uploads/note-");
+        assertThat(fileContentRepository.existsById(fileId)).isFalse();
+    }
+
+    private void runConcurrently(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(); // Rethrows anything a task threw
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.TestcontainersConfiguration;
+import com.cloud.metadata.dto.InitiateSessionRequest;
+import com.cloud.metadata.repository.ChunkMetadataRepository;
+import com.cloud.metadata.repository.FileContentRepository;
+import com.cloud.metadata.repository.FileMetadataRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(TestcontainersConfiguration.class)
+@ActiveProfiles("test")
+class FileMetadataCacheTest {
+
+    private static final int TOTAL_CHUNKS = 50;
+
+    @Autowired
+    private MetadataService metadataService;
+
+    @Autowired
+    private FileMetadataCache fileCache;
+
+    @Autowired
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Autowired
+    private ChunkMetadataRepository chunkMetadataRepository;
+
+    @Autowired
+    private FileContentRepository fileContentRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @AfterEach
+    void tearDown() {
+        chunkMetadataRepository.deleteAll();
+        fileContentRepository.deleteAll();
+        fileMetadataRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Upload session should be read from the database once per state")
+    void shouldReadSessionOncePerState() {
+        // Given
+        Long fileId = metadataService.initiateSession("cached.bin", "user123", "upload-id", TOTAL_CHUNKS,
+                1024L * TOTAL_CHUNKS, "application/octet-stream");
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        long hitsBefore = fileCache.stats().hitCount();
+        long missesBefore = fileCache.stats().missCount();
+
+        // When: file-service looks the session up before every chunk, then completes it
+        assertThat(metadataService.getFileById(fileId).getStatus()).isEqualTo("PENDING");
+        for (int part = 1; part <= TOTAL_CHUNKS; part++) {
+            metadataService.addChunk(fileId, part, "etag-" + part, 1024L);
+            assertThat(metadataService.getFileById(fileId).getStatus()).isEqualTo("ACTIVE");
+        }
+        metadataService.completeSession(fileId);
+
+        // Then: lookups miss once per state (PENDING, ACTIVE, COMPLETED); no transition loads the entity
+        assertThat(metadataService.getFileById(fileId).getStatus()).isEqualTo("COMPLETED");
+        assertThat(fileCache.stats().missCount() - missesBefore).isEqualTo(3);
+        assertThat(fileCache.stats().hitCount() - hitsBefore).isEqualTo(TOTAL_CHUNKS - 1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Every transition should evict the cached file")
+    void shouldEvictOnTransitions() {
+        // Given
+        Long aborted = metadataService.initiateSession("a.bin", "user123", "upload-a", 1, 1024L, "text/plain");
+        Long swept = metadataService.initiateSession("b.bin", "user123", "upload-b", 1, 1024L, "text/plain");
+        Long previous = metadataService.initiateSession("c.bin", "user123", "upload-c", 1, 1024L, "text/plain");
+        metadataService.addChunk(previous, 1, "etag-1", 1024L);
+        metadataService.completeSession(previous);
+        List.of(aborted, swept, previous).forEach(metadataService::getFileById);
+
+        // When
+        metadataService.abortSession(aborted);
+        metadataService.abortSessions(List.of(swept));
+        metadataService.initiateSession(InitiateSessionRequest.builder()
+                .fileName("c.bin").userId("user123").uploadId("upload-c2").totalChunks(1).size(1024L)
+                .previousVersionId(previous).build());
+
+        // Then
+        assertThat(metadataService.getFileById(aborted).getStatus()).isEqualTo("ABORTED");
+        assertThat(metadataService.getFileById(swept).getStatus()).isEqualTo("ABORTED");
+        assertThat(metadataService.getFileById(previous).getLogicalFileId()).isEqualTo(previous);
+    }
+}
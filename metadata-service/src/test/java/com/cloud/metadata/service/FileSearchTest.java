@@ -0,0 +1,197 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.TestcontainersConfiguration;
+import com.cloud.metadata.dto.FileMetadataRequest;
+import com.cloud.metadata.dto.FileSearchHit;
+import com.cloud.metadata.dto.FileSearchResponse;
+import com.cloud.metadata.exception.InvalidSearchQueryException;
+import com.cloud.metadata.repository.ChunkMetadataRepository;
+import com.cloud.metadata.repository.FileContentRepository;
+import com.cloud.metadata.repository.FileMetadataRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * The same search scenarios against both engines: the in-memory n-gram index and the
+ * database query (trigram-indexed on PostgreSQL).
+ */
+@SpringBootTest
+@Import(TestcontainersConfiguration.class)
+@ActiveProfiles("test")
+class FileSearchTest {
+
+    private static final int ACCOUNT_SIZE = 500_000;
+
+    @Nested
+    @TestPropertySource(properties = "metadata.search.engine=memory")
+    @DisplayName("In-memory n-gram index")
+    class InMemoryIndex extends SearchScenarios {
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        @Test
+        @DisplayName("Search over a 500k-file account should not scan the account")
+        void shouldSearchLargeAccount() {
+            // Given
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            List<Object[]> rows = new ArrayList<>();
+            for (int i = 0; i < ACCOUNT_SIZE; i++) {
+                rows.add(new Object[] { "IMG_" + i + ".jpg", "image/jpeg", 1024L, "big", "COMPLETED", now, now });
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO file_metadata (file_name, file_type, size, owner, status, "
+                    + "created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?)", rows);
+            metadataService.searchFiles("big", "img_1.", null, 1); // Builds the owner's index
+
+            // When
+            FileSearchResponse response = metadataService.searchFiles("big", "_4242", null, 20);
+
+            // Then: IMG_4242.jpg sorts before IMG_42420.jpg ... IMG_424299.jpg, so it leads the first page
+            assertThat(response.getHits()).hasSize(20);
+            assertThat(response.getHits().get(0).getFile().getFileName()).isEqualTo("IMG_4242.jpg");
+            assertThat(response.getNextCursor()).isNotNull();
+        }
+    }
+
+    @Nested
+    @TestPropertySource(properties = "metadata.search.engine=database")
+    @DisplayName("Database query")
+    class DatabaseQuery extends SearchScenarios {
+    }
+
+    abstract class SearchScenarios {
+
+        @Autowired
+        protected MetadataService metadataService;
+
+        @Autowired
+        private FileMetadataRepository fileMetadataRepository;
+
+        @Autowired
+        private ChunkMetadataRepository chunkMetadataRepository;
+
+        @Autowired
+        private FileContentRepository fileContentRepository;
+
+        @AfterEach
+        void tearDown() {
+            chunkMetadataRepository.deleteAllInBatch();
+            fileContentRepository.deleteAllInBatch();
+            fileMetadataRepository.deleteAllInBatch();
+        }
+
+        @Test
+        @DisplayName("Should match substrings ignoring case and highlight every occurrence")
+        void shouldMatchSubstrings() {
+            // Given
+            store("alice", "Quarterly Report.pdf");
+            store("alice", "report-report.txt");
+            store("alice", "holiday.jpg");
+            store("bob", "report.pdf");
+            metadataService.initiateSession("report-draft.pdf", "alice", "upload-id", 1, 1L, "text/plain");
+
+            // When
+            FileSearchResponse response = metadataService.searchFiles("alice", "REPORT", null, 10);
+
+            // Then: only alice's completed files, in name order
+            assertThat(response.getHits()).extracting(hit -> hit.getFile().getFileName())
+                    .containsExactly("Quarterly Report.pdf", "report-report.txt");
+            assertThat(response.getHits().get(0).getHighlights())
+                    .containsExactly(new FileSearchHit.Highlight(10, 16));
+            assertThat(response.getHits().get(1).getHighlights())
+                    .containsExactly(new FileSearchHit.Highlight(0, 6), new FileSearchHit.Highlight(7, 13));
+            assertThat(response.getNextCursor()).isNull();
+        }
+
+        @Test
+        @DisplayName("Queries shorter than a trigram should match name prefixes")
+        void shouldMatchShortQueriesAsPrefix() {
+            // Given
+            store("alice", "notes.md");
+            store("alice", "minutes.md");
+
+            // When
+            FileSearchResponse response = metadataService.searchFiles("alice", "no", null, 10);
+
+            // Then
+            assertThat(response.getHits()).extracting(hit -> hit.getFile().getFileName())
+                    .containsExactly("notes.md");
+            assertThat(response.getHits().get(0).getHighlights())
+                    .containsExactly(new FileSearchHit.Highlight(0, 2));
+        }
+
+        @Test
+        @DisplayName("Should page through hits with the cursor")
+        void shouldPageByCursor() {
+            // Given
+            for (int i = 1; i <= 5; i++) {
+                store("alice", "photo-" + i + ".jpg");
+            }
+
+            // When
+            FileSearchResponse first = metadataService.searchFiles("alice", "photo", null, 2);
+            FileSearchResponse second = metadataService.searchFiles("alice", "photo", first.getNextCursor(), 2);
+            FileSearchResponse last = metadataService.searchFiles("alice", "photo", second.getNextCursor(), 2);
+
+            // Then
+            assertThat(first.getHits()).extracting(hit -> hit.getFile().getFileName())
+                    .containsExactly("photo-1.jpg", "photo-2.jpg");
+            assertThat(second.getHits()).extracting(hit -> hit.getFile().getFileName())
+                    .containsExactly("photo-3.jpg", "photo-4.jpg");
+            assertThat(last.getHits()).extracting(hit -> hit.getFile().getFileName())
+                    .containsExactly("photo-5.jpg");
+            assertThat(last.getNextCursor()).isNull();
+        }
+
+        @Test
+        @DisplayName("Wildcards in the query should match literally")
+        void shouldEscapeWildcards() {
+            // Given
+            store("alice", "100%_done.txt");
+            store("alice", "1000 done.txt");
+
+            // When
+            FileSearchResponse response = metadataService.searchFiles("alice", "0%_", null, 10);
+
+            // Then
+            assertThat(response.getHits()).extracting(hit -> hit.getFile().getFileName())
+                    .containsExactly("100%_done.txt");
+        }
+
+        @Test
+        @DisplayName("New files should be found right away and blank queries rejected")
+        void shouldFindNewFiles() {
+            // Given
+            store("alice", "budget.xlsx");
+            assertThat(metadataService.searchFiles("alice", "budget", null, 10).getHits()).hasSize(1);
+
+            // When
+            store("alice", "budget-2025.xlsx");
+
+            // Then
+            assertThat(metadataService.searchFiles("alice", "budget", null, 10).getHits()).hasSize(2);
+            assertThatThrownBy(() -> metadataService.searchFiles("alice", "  ", null, 10))
+                    .isInstanceOf(InvalidSearchQueryException.class);
+        }
+
+        private void store(String owner, String fileName) {
+            metadataService.saveMetadata(new FileMetadataRequest(fileName, "application/octet-stream", 1024L,
+                    "uploads/" + fileName, owner, 1, null));
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.TestcontainersConfiguration;
+import com.cloud.metadata.dto.FileMetadataRequest;
+import com.cloud.metadata.dto.FolderListing;
+import com.cloud.metadata.dto.FolderRequest;
+import com.cloud.metadata.dto.FolderResponse;
+import com.cloud.metadata.dto.FolderStats;
+import com.cloud.metadata.dto.InitiateSessionRequest;
+import com.cloud.metadata.exception.InvalidFolderOperationException;
+import com.cloud.metadata.exception.ResourceNotFoundException;
+import com.cloud.metadata.repository.ChunkMetadataRepository;
+import com.cloud.metadata.repository.FileContentRepository;
+import com.cloud.metadata.repository.FileMetadataRepository;
+import com.cloud.metadata.repository.FolderRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(TestcontainersConfiguration.class)
+@ActiveProfiles("test")
+class FolderServiceTest {
+
+    private static final String OWNER = "alice";
+    private static final int SUBFOLDERS = 100;
+    private static final int DESCENDANT_FILES = 100_000;
+
+    @Autowired
+    private FolderService folderService;
+
+    @Autowired
+    private MetadataService metadataService;
+
+    @Autowired
+    private FolderRepository folderRepository;
+
+    @Autowired
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Autowired
+    private ChunkMetadataRepository chunkMetadataRepository;
+
+    @Autowired
+    private FileContentRepository fileContentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @AfterEach
+    void tearDown() {
+        chunkMetadataRepository.deleteAllInBatch();
+        fileContentRepository.deleteAllInBatch();
+        fileMetadataRepository.deleteAllInBatch();
+        jdbcTemplate.update("UPDATE folder SET parent_id = NULL");
+        folderRepository.deleteAllInBatch();
+    }
+
+    @Test
+    @DisplayName("Should list a folder's subfolders and page through its files")
+    void shouldListFolder() {
+        // Given
+        Long docs = create("Docs", null);
+        create("Work", docs);
+        create("Archive", docs);
+        List<Long> files = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            Long fileId = store("doc-" + i + ".txt", 100);
+            folderService.moveFile(OWNER, fileId, docs);
+            files.add(fileId);
+        }
+        store("top.txt", 100);
+
+        // When
+        FolderListing first = folderService.listFolder(OWNER, docs, 0L, 2);
+        FolderListing second = folderService.listFolder(OWNER, docs, first.getNextAfterId(), 2);
+        FolderListing top = folderService.listFolder(OWNER, null, 0L, 50);
+
+        // Then
+        assertThat(first.getFolder().getName()).isEqualTo("Docs");
+        assertThat(first.getFolders()).extracting(FolderResponse::getName).containsExactly("Archive", "Work");
+        assertThat(first.getFiles()).extracting(file -> file.getId()).containsExactly(files.get(0), files.get(1));
+        assertThat(second.getFiles()).extracting(file -> file.getId()).containsExactly(files.get(2));
+        assertThat(second.getNextAfterId()).isNull();
+        assertThat(top.getFolders()).extracting(FolderResponse::getName).containsExactly("Docs");
+        assertThat(top.getFiles()).extracting(file -> file.getFileName()).containsExactly("top.txt");
+    }
+
+    @Test
+    @DisplayName("Moving a folder should carry its whole subtree along")
+    void shouldMoveSubtree() {
+        // Given: /Projects/2024/Q1 holding two files, and an empty /Archive
+        Long projects = create("Projects", null);
+        Long year = create("2024", projects);
+        Long quarter = create("Q1", year);
+        Long archive = create("Archive", null);
+        folderService.moveFile(OWNER, store("plan.pdf", 300), year);
+        folderService.moveFile(OWNER, store("budget.xlsx", 700), quarter);
+
+        // When
+        FolderResponse moved = folderService.moveFolder(OWNER, year, archive);
+
+        // Then
+        assertThat(moved.getParentId()).isEqualTo(archive);
+        assertThat(folderService.getStats(OWNER, archive)).isEqualTo(new FolderStats(archive, 2, 2, 1000));
+        assertThat(folderService.getStats(OWNER, projects)).isEqualTo(new FolderStats(projects, 0, 0, 0));
+        assertThat(folderService.getStats(OWNER, quarter)).isEqualTo(new FolderStats(quarter, 0, 1, 700));
+        assertThat(folderService.listFolder(OWNER, archive, 0L, 50).getFolders())
+                .extracting(FolderResponse::getId).containsExactly(year);
+    }
+
+    @Test
+    @DisplayName("Should reject moving a folder into its own subtree or another owner's folder")
+    void shouldRejectInvalidMoves() {
+        // Given
+        Long parent = create("Parent", null);
+        Long child = create("Child", parent);
+        Long foreign = folderService.createFolder("bob", new FolderRequest("Bob's", null)).getId();
+
+        // When / Then
+        assertThatThrownBy(() -> folderService.moveFolder(OWNER, parent, child))
+                .isInstanceOf(InvalidFolderOperationException.class);
+        assertThatThrownBy(() -> folderService.moveFolder(OWNER, parent, parent))
+                .isInstanceOf(InvalidFolderOperationException.class);
+        assertThatThrownBy(() -> folderService.moveFolder(OWNER, parent, foreign))
+                .isInstanceOf(ResourceNotFoundException.class);
+        assertThatThrownBy(() -> folderService.createFolder(OWNER, new FolderRequest("a/b", null)))
+                .isInstanceOf(InvalidFolderOperationException.class);
+    }
+
+    @Test
+    @DisplayName("A file should move with all its versions, and new versions should stay in its folder")
+    void shouldMoveVersionChain() {
+        // Given
+        Long folder = create("Reports", null);
+        Long first = store("report.pdf", 100);
+        Long second = metadataService.initiateSession(InitiateSessionRequest.builder()
+                .fileName("report.pdf").userId(OWNER).uploadId("upload-2").totalChunks(1).size(100L)
+                .previousVersionId(first).build());
+
+        // When
+        folderService.moveFile(OWNER, second, folder);
+        Long third = metadataService.initiateSession(InitiateSessionRequest.builder()
+                .fileName("report.pdf").userId(OWNER).uploadId("upload-3").totalChunks(1).size(100L)
+                .previousVersionId(second).build());
+
+        // Then
+        assertThat(List.of(first, second, third)).allSatisfy(id ->
+                assertThat(metadataService.getFileById(id).getFolderId()).isEqualTo(folder));
+    }
+
+    @Test
+    @DisplayName("Moving a folder with 100k descendants should take a fixed number of statements")
+    void shouldMoveLargeSubtreeInFixedStatements() {
+        // Given: a folder with 100 subfolders holding 100k files between them
+        Long big = create("Big", null);
+        Long target = create("Target", null);
+        List<Long> subfolders = new ArrayList<>();
+        for (int i = 0; i < SUBFOLDERS; i++) {
+            subfolders.add(create("sub-" + i, big));
+        }
+        String bigPath = folderRepository.findPath(OWNER, big).orElseThrow();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < DESCENDANT_FILES; i++) {
+            Long folderId = subfolders.get(i % SUBFOLDERS);
+            rows.add(new Object[] { "file-" + i, "text/plain", 10L, OWNER, "COMPLETED", now, now, folderId,
+                    bigPath + folderId + "/" });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO file_metadata (file_name, file_type, size, owner, status, "
+                + "created_at, updated_at, folder_id, folder_path) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+        jdbcTemplate.update("INSERT INTO change_head (owner, changed_at) VALUES (?, ?) ON CONFLICT DO NOTHING",
+                OWNER, now);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // When
+        folderService.moveFolder(OWNER, big, target);
+
+        // Then: 2 path reads, the lock, the depth check, 2 prefix updates, the folder row update,
+        // then the change feed's head lock and one append for all moved files
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(9);
+        assertThat(folderService.getStats(OWNER, target))
+                .isEqualTo(new FolderStats(target, SUBFOLDERS + 1, DESCENDANT_FILES, 10L * DESCENDANT_FILES));
+        assertThat(folderService.getStats(OWNER, subfolders.get(7)).getFileCount())
+                .isEqualTo(DESCENDANT_FILES / SUBFOLDERS);
+    }
+
+    private Long create(String name, Long parentId) {
+        return folderService.createFolder(OWNER, new FolderRequest(name, parentId)).getId();
+    }
+
+    private Long store(String fileName, long size) {
+        return metadataService.saveMetadata(new FileMetadataRequest(fileName, "application/octet-stream", size,
+                "uploads/" + fileName, OWNER, 1, null)).getId();
+    }
+}
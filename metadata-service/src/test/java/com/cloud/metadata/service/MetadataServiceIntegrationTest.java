@@ -1,13 +1,31 @@
 package com.cloud.metadata.service;
 
 import com.cloud.metadata.TestcontainersConfiguration;
+import com.cloud.metadata.dto.AddChunkRequest;
+import com.cloud.metadata.dto.ChunkBatchResponse;
+import com.cloud.metadata.dto.ChunkMetadataResponse;
+import com.cloud.metadata.dto.ChunkPartsResponse;
 import com.cloud.metadata.dto.FileMetadataResponse;
+import com.cloud.metadata.dto.FilePageResponse;
+import com.cloud.metadata.dto.IdleSessionClaimRequest;
+import com.cloud.metadata.dto.InitiateSessionRequest;
+import com.cloud.metadata.dto.InlineFileRequest;
+import com.cloud.metadata.dto.ReleasedChunkClaimRequest;
+import com.cloud.metadata.dto.ReleasedStorage;
+import com.cloud.metadata.dto.StaleSession;
+import com.cloud.metadata.dto.StaleSessionClaimRequest;
+import com.cloud.metadata.dto.UploadProgress;
 import com.cloud.metadata.entity.ChunkMetadata;
 import com.cloud.metadata.entity.FileMetadata;
 import com.cloud.metadata.enums.UploadStatus;
+import com.cloud.metadata.exception.ChunkReclaimingException;
 import com.cloud.metadata.exception.IllegalStateTransitionException;
+import com.cloud.metadata.exception.InlineContentTooLargeException;
+import com.cloud.metadata.exception.InvalidCursorException;
 import com.cloud.metadata.exception.ResourceNotFoundException;
 import com.cloud.metadata.repository.ChunkMetadataRepository;
+import com.cloud.metadata.repository.ChunkReleaseRepository;
+import com.cloud.metadata.repository.FileContentRepository;
 import com.cloud.metadata.repository.FileMetadataRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -16,8 +34,13 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.*;
@@ -36,15 +59,28 @@ class MetadataServiceIntegrationTest {
     @Autowired
     private ChunkMetadataRepository chunkMetadataRepository;
 
+    @Autowired
+    private FileContentRepository fileContentRepository;
+
+    @Autowired
+    private ChunkReleaseRepository chunkReleaseRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @BeforeEach
     void setUp() {
+        chunkReleaseRepository.deleteAll();
         chunkMetadataRepository.deleteAll();
+        fileContentRepository.deleteAll();
         fileMetadataRepository.deleteAll();
     }
 
     @AfterEach
     void tearDown() {
+        chunkReleaseRepository.deleteAll();
         chunkMetadataRepository.deleteAll();
+        fileContentRepository.deleteAll();
         fileMetadataRepository.deleteAll();
     }
 
@@ -121,19 +157,30 @@ class MetadataServiceIntegrationTest {
         metadataService.addChunk(fileId, 2, "etag-2", 512L);
 
         // When
-        List<ChunkMetadata> chunks = metadataService.getUploadedChunks(fileId);
+        List<ChunkMetadataResponse> chunks = metadataService.getUploadedChunks(fileId);
 
         // Then
         assertThat(chunks).hasSize(3);
-        // Note: Implementation of getUploadedChunks returns file.getChunks() which
-        // relies on JPA Lists order unless sorted.
-        // But the repository test confirmed
-        // 'findByFileMetadataIdOrderByChunkNumberAsc'.
-        // MetadataService.getUploadedChunks calls file.getChunks().
-        // If the fetch strategy doesn't enforce order, this might fail.
-        // However, for list implementation often insertion order or ID order.
-        // Let's rely on AssertJ which can check content.
-        assertThat(chunks).extracting("chunkNumber").containsExactlyInAnyOrder(1, 2, 3);
+        assertThat(chunks).extracting("chunkNumber").containsExactly(1, 2, 3);
+    }
+
+    @Test
+    @DisplayName("Should return compact part list sorted by part number")
+    void shouldGetCompletedPartsSorted() {
+        // Given
+        Long fileId = createActiveSession("test-file-parts.txt", 3);
+        metadataService.addChunk(fileId, 3, "etag-3", 512L);
+        metadataService.addChunk(fileId, 1, "etag-1", 512L);
+        metadataService.addChunk(fileId, 2, "etag-2", 512L);
+
+        // When
+        ChunkPartsResponse parts = metadataService.getCompletedParts(fileId);
+
+        // Then
+        assertThat(parts.getPartNumbers()).containsExactly(1, 2, 3);
+        assertThat(parts.getEtags()).containsExactly("etag-1", "etag-2", "etag-3");
+        assertThatThrownBy(() -> metadataService.getCompletedParts(999L))
+                .isInstanceOf(ResourceNotFoundException.class);
     }
 
     @Test
@@ -141,8 +188,8 @@ class MetadataServiceIntegrationTest {
     void shouldCompleteSessionSuccessfully() {
         // Given
         Long fileId = createActiveSession("test-file-comp.txt", 2);
-        metadataService.addChunk(fileId, 1, "etag-1", 512L);
-        metadataService.addChunk(fileId, 2, "etag-2", 512L);
+        metadataService.addChunk(fileId, 1, "etag-1", 1024L);
+        metadataService.addChunk(fileId, 2, "etag-2", 1024L);
 
         // When
         metadataService.completeSession(fileId);
@@ -165,12 +212,28 @@ class MetadataServiceIntegrationTest {
                 .hasMessageContaining("Missing chunks");
     }
 
+    @Test
+    @DisplayName("Should fail to complete session whose chunks do not add up to the declared size")
+    void shouldFailToCompleteSessionWithSizeMismatch() {
+        // Given: 2048 bytes declared, 1536 received
+        Long fileId = createActiveSession("test-file-short.txt", 2);
+        metadataService.addChunk(fileId, 1, "etag-1", 1024L);
+        metadataService.addChunk(fileId, 2, "etag-2", 512L);
+
+        // When/Then
+        assertThatThrownBy(() -> metadataService.completeSession(fileId))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Size mismatch");
+        assertThat(fileMetadataRepository.findById(fileId).orElseThrow().getStatus())
+                .isEqualTo(UploadStatus.ACTIVE);
+    }
+
     @Test
     @DisplayName("Should prevent invalid state transition from COMPLETED to ACTIVE")
     void shouldPreventInvalidStateTransition() {
         // Given
         Long fileId = createActiveSession("test-file-state.txt", 1);
-        metadataService.addChunk(fileId, 1, "etag-1", 512L);
+        metadataService.addChunk(fileId, 1, "etag-1", 1024L);
         metadataService.completeSession(fileId);
 
         // When/Then
@@ -179,6 +242,279 @@ class MetadataServiceIntegrationTest {
                 .hasMessageContaining("Invalid state transition");
     }
 
+    @Test
+    @DisplayName("Should claim stale sessions once and abort them in a batch")
+    void shouldClaimAndAbortStaleSessions() {
+        // Given
+        Long pendingId = createActiveSession("stale-pending.txt", 2);
+        Long activeId = createActiveSession("stale-active.txt", 2);
+        metadataService.addChunk(activeId, 1, "etag-1", 1024L);
+        Long completedId = createActiveSession("done.txt", 1);
+        metadataService.addChunk(completedId, 1, "etag-1", 1024L);
+        metadataService.completeSession(completedId);
+
+        StaleSessionClaimRequest claim = StaleSessionClaimRequest.builder()
+                .idleHours(0).afterId(0L).limit(10).leaseSeconds(600).build();
+
+        // When
+        List<StaleSession> claimed = metadataService.claimStaleSessions(claim);
+        List<StaleSession> claimedAgain = metadataService.claimStaleSessions(claim);
+        List<Long> aborted = metadataService.abortSessions(List.of(pendingId, activeId, completedId));
+
+        // Then
+        assertThat(claimed).extracting(StaleSession::getId).containsExactly(pendingId, activeId);
+        assertThat(claimedAgain).isEmpty(); // Leased by the first claim
+        assertThat(aborted).containsExactly(pendingId, activeId);
+        assertThat(fileMetadataRepository.findById(pendingId).orElseThrow().getStatus())
+                .isEqualTo(UploadStatus.ABORTED);
+        assertThat(fileMetadataRepository.findById(completedId).orElseThrow().getStatus())
+                .isEqualTo(UploadStatus.COMPLETED);
+    }
+
+    @Test
+    @DisplayName("Should claim idle ACTIVE sessions by id, leasing them to one reconciler")
+    void shouldClaimIdleActiveSessions() {
+        // Given
+        Long firstId = createActiveSession("idle-1.txt", 2);
+        metadataService.addChunk(firstId, 1, "etag-1", 512L);
+        Long secondId = createActiveSession("idle-2.txt", 2);
+        metadataService.addChunk(secondId, 1, "etag-1", 512L);
+        createActiveSession("still-pending.txt", 2);
+        IdleSessionClaimRequest claim = IdleSessionClaimRequest.builder()
+                .status(UploadStatus.ACTIVE).idleMinutes(0).afterId(0L).limit(1).leaseSeconds(600).build();
+
+        // When
+        List<StaleSession> firstPage = metadataService.claimIdleSessions(claim);
+        claim.setAfterId(firstPage.get(0).getId());
+        List<StaleSession> secondPage = metadataService.claimIdleSessions(claim);
+        claim.setAfterId(0L);
+        claim.setLimit(10);
+        List<StaleSession> claimedAgain = metadataService.claimIdleSessions(claim);
+        claim.setIdleMinutes(10);
+        List<StaleSession> recent = metadataService.claimIdleSessions(claim);
+        Long abandonedId = createActiveSession("abandoned.txt", 2);
+        metadataService.addChunk(abandonedId, 1, "etag-1", 512L);
+        jdbcTemplate.update("UPDATE file_metadata SET updated_at = ? WHERE id = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusHours(23)), abandonedId);
+        List<StaleSession> beyondSweeper = metadataService.claimIdleSessions(IdleSessionClaimRequest.builder()
+                .status(UploadStatus.ACTIVE).idleMinutes(0).maxIdleMinutes(22 * 60).afterId(0L).limit(10)
+                .leaseSeconds(600).build());
+
+        // Then
+        assertThat(firstPage).extracting(StaleSession::getId).containsExactly(firstId);
+        assertThat(secondPage).extracting(StaleSession::getId).containsExactly(secondId);
+        assertThat(claimedAgain).isEmpty(); // Leased by the first claims
+        assertThat(recent).isEmpty();
+        assertThat(beyondSweeper).isEmpty(); // Left unleased for the abandoned-upload sweeper
+    }
+
+    @Test
+    @DisplayName("Should store tiny files inline and promote them to S3")
+    void shouldStoreAndPromoteInlineFile() {
+        // Given
+        byte[] data = "theme=dark\n".getBytes();
+        InlineFileRequest request = InlineFileRequest.builder()
+                .fileName("settings.conf").fileType("text/plain").owner("testuser").data(data).build();
+
+        // When
+        FileMetadataResponse created = metadataService.createInlineFile(request);
+
+        // Then
+        assertThat(created.getStatus()).isEqualTo("COMPLETED");
+        assertThat(created.isStoredInline()).isTrue();
+        assertThat(created.getS3Key()).isNull();
+        assertThat(metadataService.getInlineContent(created.getId())).isEqualTo(data);
+        assertThat(metadataService.getInlineFilesLargerThan(4, 0L, 10))
+                .extracting(FileMetadataResponse::getId).containsExactly(created.getId());
+
+        // When
+        FileMetadataResponse promoted = metadataService.promoteInlineFile(created.getId(), "uploads/x/settings.conf");
+
+        // Then
+        assertThat(promoted.isStoredInline()).isFalse();
+        assertThat(promoted.getS3Key()).isEqualTo("uploads/x/settings.conf");
+        assertThat(fileContentRepository.findById(created.getId())).isEmpty();
+        assertThat(metadataService.getInlineFilesLargerThan(4, 0L, 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should reject inline content above the inline limit")
+    void shouldRejectOversizedInlineContent() {
+        // Given
+        InlineFileRequest request = InlineFileRequest.builder()
+                .fileName("big.bin").owner("testuser").data(new byte[65537]).build();
+
+        // When/Then
+        assertThatThrownBy(() -> metadataService.createInlineFile(request))
+                .isInstanceOf(InlineContentTooLargeException.class);
+        assertThat(fileMetadataRepository.count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should report only chunk hashes the same owner already stored")
+    void shouldFindKnownChecksumsForOwner() {
+        // Given
+        Long fileId = createActiveSession("v1.bin", 2);
+        metadataService.addChunk(fileId, 1, "hash-a", 1024L, "hash-a");
+        metadataService.addChunk(fileId, 2, "hash-b", 1024L, "hash-b");
+        Long otherOwnersFile = metadataService.initiateSession(InitiateSessionRequest.builder()
+                .fileName("theirs.bin").userId("someone-else").totalChunks(1).size(1024L).build());
+        metadataService.addChunk(otherOwnersFile, 1, "hash-c", 1024L, "hash-c");
+
+        // When
+        List<String> known = metadataService.findKnownChecksums("testuser", List.of("hash-a", "hash-c", "hash-d"));
+
+        // Then
+        assertThat(known).containsExactly("hash-a");
+    }
+
+    @Test
+    @DisplayName("Should count received chunks and bytes once, even for retried chunks")
+    void shouldTrackUploadProgress() {
+        // Given
+        Long fileId = createActiveSession("progress.bin", 3);
+
+        // When
+        metadataService.addChunk(fileId, 1, "etag-1", 1024L);
+        metadataService.addChunk(fileId, 2, "etag-2", 512L);
+        metadataService.addChunk(fileId, 2, "etag-2", 512L); // retry
+        UploadProgress progress = metadataService.getProgress(fileId);
+
+        // Then
+        assertThat(progress.getStatus()).isEqualTo(UploadStatus.ACTIVE);
+        assertThat(progress.getReceivedChunks()).isEqualTo(2);
+        assertThat(progress.getReceivedBytes()).isEqualTo(1536L);
+        assertThat(progress.getTotalChunks()).isEqualTo(3);
+        assertThatThrownBy(() -> metadataService.completeSession(fileId))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("Should record a batch of chunks in one call and report duplicates")
+    void shouldAddChunkBatch() {
+        // Given
+        Long fileId = createActiveSession("batch.bin", 100);
+        metadataService.addChunk(fileId, 7, "etag-7", 1024L);
+        List<AddChunkRequest> batch = new ArrayList<>();
+        for (int part = 1; part <= 100; part++) {
+            batch.add(AddChunkRequest.builder().chunkNumber(part).etag("etag-" + part).size(1024L).build());
+        }
+        batch.add(AddChunkRequest.builder().chunkNumber(42).etag("etag-42").size(1024L).build()); // repeated
+
+        // When
+        ChunkBatchResponse response = metadataService.addChunks(fileId, batch);
+
+        // Then
+        assertThat(response.getInserted()).isEqualTo(99);
+        assertThat(response.getDuplicates()).containsExactly(7, 42);
+        assertThat(chunkMetadataRepository.findPartsByFileId(fileId)).hasSize(100);
+        assertThat(metadataService.getProgress(fileId).getReceivedChunks()).isEqualTo(100);
+        assertThat(metadataService.getProgress(fileId).getReceivedBytes()).isEqualTo(100 * 1024L);
+        metadataService.completeSession(fileId);
+    }
+
+    @Test
+    @DisplayName("Should chain versions, restore an old one and prune beyond the retention limit")
+    void shouldVersionRestoreAndPrune() {
+        // Given: version 1 and version 2 sharing chunk hash-a
+        Long v1 = uploadVersion(null, "hash-a", "hash-b");
+        Long v2 = uploadVersion(v1, "hash-a", "hash-c");
+
+        // When
+        FileMetadataResponse restored = metadataService.restoreVersion(v2, 1);
+        List<FileMetadataResponse> versions = metadataService.getVersions(v1);
+
+        // Then
+        assertThat(restored.getVersionNumber()).isEqualTo(3);
+        assertThat(restored.getLogicalFileId()).isEqualTo(v1);
+        assertThat(versions).extracting(FileMetadataResponse::getVersionNumber).containsExactly(3, 2, 1);
+        assertThat(metadataService.getCompletedParts(restored.getId()).getEtags())
+                .containsExactly("hash-a", "hash-b");
+
+        // When: keep two versions, so version 1 goes; its chunks live on in the restored copy
+        List<ReleasedStorage> released = metadataService.pruneVersions(v1, 2);
+
+        // Then
+        assertThat(released).extracting(ReleasedStorage::getFileId).containsExactly(v1);
+        assertThat(chunkReleaseRepository.count()).isZero();
+        assertThat(fileMetadataRepository.existsById(v1)).isFalse();
+
+        // When: keep one version, so version 2 goes and hash-c is no longer referenced
+        released = metadataService.pruneVersions(restored.getId(), 1);
+
+        // Then
+        assertThat(released).extracting(ReleasedStorage::getFileId).containsExactly(v2);
+        assertThat(chunkReleaseRepository.findAll()).extracting(release -> release.getChecksum())
+                .containsExactly("hash-c");
+        assertThat(metadataService.getVersions(restored.getId())).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Released chunks should only be swept after the grace period and while unreferenced")
+    void shouldSweepReleasedChunksAfterGracePeriod() {
+        // Given: hash-b and hash-c released by deleting their only file
+        Long v1 = uploadVersion(null, "hash-b", "hash-c");
+        metadataService.deleteFile(v1);
+
+        // When: still within the grace period
+        List<String> early = metadataService.claimReleasedChunks(new ReleasedChunkClaimRequest(3600, 10, 60));
+
+        // Then
+        assertThat(early).isEmpty();
+
+        // When: an upload references hash-b again, then the grace period is over
+        Long v2 = uploadVersion(null, "hash-b");
+        List<String> claimed = metadataService.claimReleasedChunks(new ReleasedChunkClaimRequest(0, 10, 60));
+
+        // Then: only hash-c is swept, and it cannot be referenced until the sweep is confirmed
+        assertThat(claimed).containsExactly("hash-c");
+        assertThat(chunkReleaseRepository.existsById("hash-b")).isFalse();
+        Long v3 = metadataService.initiateSession(InitiateSessionRequest.builder()
+                .fileName("copy.txt").userId("testuser").s3Key("uploads/copy.txt").totalChunks(1)
+                .size(1024L).chunkingScheme("fastcdc").build());
+        assertThatThrownBy(() -> metadataService.addChunk(v3, 1, "hash-c", 1024L, "hash-c"))
+                .isInstanceOf(ChunkReclaimingException.class);
+
+        assertThat(metadataService.confirmSweptChunks(claimed)).isEqualTo(1);
+        metadataService.addChunk(v3, 1, "hash-c", 1024L, "hash-c");
+        assertThat(chunkReleaseRepository.count()).isZero();
+        assertThat(fileMetadataRepository.existsById(v2)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should page an owner's files by cursor with status filter")
+    void shouldPageOwnerFilesByCursor() {
+        // Given
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(createActiveSession("page-" + i + ".txt", 1));
+        }
+        metadataService.addChunk(ids.get(1), 1, "etag", 1024L);
+        metadataService.initiateSession("other.txt", "someone-else", "upload-x", 1, 1024L, "text/plain");
+
+        // When: walk all pages, newest first
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            FilePageResponse page = metadataService.getFilesByOwner("testuser", null, Sort.Direction.DESC, cursor, 2);
+            page.getFiles().forEach(file -> seen.add(file.getId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+        FilePageResponse active = metadataService.getFilesByOwner("testuser", UploadStatus.ACTIVE,
+                Sort.Direction.ASC, null, 10);
+
+        // Then
+        assertThat(pages).isEqualTo(3);
+        assertThat(seen).containsExactlyInAnyOrderElementsOf(ids).doesNotHaveDuplicates();
+        assertThat(seen.get(0)).isEqualTo(ids.get(1)); // touched last by its chunk
+        assertThat(active.getFiles()).extracting(FileMetadataResponse::getId).containsExactly(ids.get(1));
+        assertThat(active.getNextCursor()).isNull();
+        assertThatThrownBy(() -> metadataService.getFilesByOwner("testuser", null, Sort.Direction.DESC,
+                "not-a-cursor", 2)).isInstanceOf(InvalidCursorException.class);
+    }
+
     @Test
     @DisplayName("Should throw exception when file not found")
     void shouldThrowExceptionWhenFileNotFound() {
@@ -204,6 +540,18 @@ class MetadataServiceIntegrationTest {
 
     // Helper methods
 
+    private Long uploadVersion(Long previousVersionId, String... checksums) {
+        Long fileId = metadataService.initiateSession(InitiateSessionRequest.builder()
+                .fileName("notes.txt").userId("testuser").s3Key("uploads/notes.txt").totalChunks(checksums.length)
+                .size(1024L * checksums.length).chunkingScheme("fastcdc").previousVersionId(previousVersionId)
+                .build());
+        for (int i = 0; i < checksums.length; i++) {
+            metadataService.addChunk(fileId, i + 1, checksums[i], 1024L, checksums[i]);
+        }
+        metadataService.completeSession(fileId);
+        return fileId;
+    }
+
     private Long createActiveSession(String fileName, int totalChunks) {
         return metadataService.initiateSession(
                 fileName,
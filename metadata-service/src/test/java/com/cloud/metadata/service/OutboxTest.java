@@ -0,0 +1,201 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.TestcontainersConfiguration;
+import com.cloud.metadata.dto.FileEvent;
+import com.cloud.metadata.enums.FileEventType;
+import com.cloud.metadata.exception.IllegalStateTransitionException;
+import com.cloud.metadata.repository.ChunkMetadataRepository;
+import com.cloud.metadata.repository.FileContentRepository;
+import com.cloud.metadata.repository.FileMetadataRepository;
+import com.cloud.metadata.repository.OutboxEventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Lifecycle events are written with the change that causes them and reach the broker after
+ * commit, on the relay's thread. The periodic poll is pushed out of the way so only the
+ * after-commit wake-ups deliver.
+ */
+@SpringBootTest(properties = {
+        "metadata.events.relay.enabled=true",
+        "metadata.events.relay.interval-ms=3600000",
+        "metadata.events.relay.batch-size=2"
+})
+@Import({ TestcontainersConfiguration.class, OutboxTest.ListenerConfig.class })
+@ActiveProfiles("test")
+class OutboxTest {
+
+    private static final String OWNER = "events-user";
+
+    @Autowired
+    private MetadataService metadataService;
+
+    @Autowired
+    private OutboxRelay relay;
+
+    @Autowired
+    private RecordingListener listener;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Autowired
+    private ChunkMetadataRepository chunkMetadataRepository;
+
+    @Autowired
+    private FileContentRepository fileContentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        // Other test classes leave the events of their files behind, with no relay running
+        outboxEventRepository.deleteAllInBatch();
+    }
+
+    @AfterEach
+    void tearDown() {
+        listener.release();
+        relay.relay();
+        listener.reset();
+        outboxEventRepository.deleteAllInBatch();
+        chunkMetadataRepository.deleteAllInBatch();
+        fileContentRepository.deleteAllInBatch();
+        fileMetadataRepository.deleteAllInBatch();
+        jdbcTemplate.update("DELETE FROM storage_usage");
+    }
+
+    @Test
+    @DisplayName("Each lifecycle transition should be delivered once, in order, after it commits")
+    void shouldDeliverLifecycleInOrder() throws Exception {
+        // Given
+        Long completed = initiate("report.pdf");
+        metadataService.addChunk(completed, 1, "etag-1", 100L);
+        metadataService.completeSession(completed);
+        Long aborted = initiate("draft.pdf");
+        metadataService.abortSession(aborted);
+
+        // When
+        metadataService.deleteFile(completed);
+
+        // Then
+        List<FileEvent> events = listener.awaitEvents(5);
+        assertThat(events).extracting(FileEvent::getType).containsExactly(FileEventType.INITIATED,
+                FileEventType.COMPLETED, FileEventType.INITIATED, FileEventType.ABORTED, FileEventType.DELETED);
+        assertThat(events).extracting(FileEvent::getFileId).containsExactly(completed, completed, aborted,
+                aborted, completed);
+        assertThat(events.get(1).getFileName()).isEqualTo("report.pdf");
+        assertThat(events.get(1).getOwner()).isEqualTo(OWNER);
+        assertThat(events).extracting(FileEvent::getId).isSorted().doesNotHaveDuplicates();
+        assertThat(outboxEventRepository.count()).isZero();
+    }
+
+    @Test
+    @DisplayName("A transition that rolls back should leave no event behind")
+    void shouldNotRecordRolledBackTransitions() throws Exception {
+        // Given: a session missing its only chunk
+        Long fileId = initiate("report.pdf");
+
+        // When
+        assertThatThrownBy(() -> metadataService.completeSession(fileId))
+                .isInstanceOf(IllegalStateTransitionException.class);
+        metadataService.abortSessions(List.of(fileId, fileId));
+        metadataService.abortSessions(List.of(fileId));
+
+        // Then: one abort, however often the sweeper saw the file
+        assertThat(listener.awaitEvents(2)).extracting(FileEvent::getType)
+                .containsExactly(FileEventType.INITIATED, FileEventType.ABORTED);
+    }
+
+    @Test
+    @DisplayName("Completing an upload should not wait for the broker")
+    void shouldNotWaitForBroker() throws Exception {
+        // Given: a broker that blocks until released
+        listener.block();
+        Long fileId = initiate("report.pdf");
+        metadataService.addChunk(fileId, 1, "etag-1", 100L);
+
+        // When
+        long started = System.nanoTime();
+        metadataService.completeSession(fileId);
+        long elapsed = System.nanoTime() - started;
+
+        // Then: completion returned while delivery is still held up, which then catches up
+        assertThat(listener.events()).isEmpty();
+        listener.release();
+        assertThat(listener.awaitEvents(2)).extracting(FileEvent::getType)
+                .containsExactly(FileEventType.INITIATED, FileEventType.COMPLETED);
+        assertThat(elapsed).isLessThan(TimeUnit.SECONDS.toNanos(2));
+    }
+
+    private Long initiate(String fileName) {
+        return metadataService.initiateSession(fileName, OWNER, "upload-id", 1, 100L, "application/pdf");
+    }
+
+    @TestConfiguration
+    static class ListenerConfig {
+
+        @Bean
+        RecordingListener recordingListener() {
+            return new RecordingListener();
+        }
+    }
+
+    static class RecordingListener {
+
+        private final List<FileEvent> events = new CopyOnWriteArrayList<>();
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+
+        @EventListener
+        public void onFileEvent(FileEvent event) throws InterruptedException {
+            gate.await();
+            events.add(event);
+        }
+
+        void block() {
+            gate = new CountDownLatch(1);
+        }
+
+        void release() {
+            gate.countDown();
+        }
+
+        void reset() {
+            events.clear();
+        }
+
+        List<FileEvent> events() {
+            return List.copyOf(events);
+        }
+
+        List<FileEvent> awaitEvents(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (events.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(50); // Let any unexpected extra event show up
+            return events();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.TestcontainersConfiguration;
+import com.cloud.metadata.repository.ChunkMetadataRepository;
+import com.cloud.metadata.repository.FileContentRepository;
+import com.cloud.metadata.repository.FileMetadataRepository;
+import com.cloud.metadata.repository.OutboxEventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * With no broker configured nothing would ever drain the outbox, so no events are recorded
+ */
+@SpringBootTest(properties = {
+        "metadata.events.broker=",
+        "metadata.events.relay.enabled=true",
+        "metadata.events.relay.interval-ms=3600000"
+})
+@Import(TestcontainersConfiguration.class)
+@ActiveProfiles("test")
+class OutboxWithoutBrokerTest {
+
+    @Autowired
+    private MetadataService metadataService;
+
+    @Autowired
+    private OutboxRelay relay;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Autowired
+    private ChunkMetadataRepository chunkMetadataRepository;
+
+    @Autowired
+    private FileContentRepository fileContentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        outboxEventRepository.deleteAllInBatch();
+    }
+
+    @AfterEach
+    void tearDown() {
+        outboxEventRepository.deleteAllInBatch();
+        chunkMetadataRepository.deleteAllInBatch();
+        fileContentRepository.deleteAllInBatch();
+        fileMetadataRepository.deleteAllInBatch();
+        jdbcTemplate.update("DELETE FROM storage_usage");
+    }
+
+    @Test
+    @DisplayName("Events should not be recorded while no broker is configured")
+    void shouldNotRecordEventsWithoutBroker() {
+        // Given
+        Long fileId = metadataService.initiateSession("report.pdf", "events-user", "upload-id", 1, 100L,
+                "application/pdf");
+        metadataService.abortSession(fileId);
+
+        // When
+        int relayed = relay.relay();
+
+        // Then
+        assertThat(relayed).isZero();
+        assertThat(outboxEventRepository.count()).isZero();
+    }
+}
@@ -0,0 +1,99 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.TestcontainersConfiguration;
+import com.cloud.metadata.dto.InitiateSessionRequest;
+import com.cloud.metadata.dto.InlineFileRequest;
+import com.cloud.metadata.repository.ChunkMetadataRepository;
+import com.cloud.metadata.repository.FileContentRepository;
+import com.cloud.metadata.repository.FileMetadataRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Read endpoints must be served by projections: one statement each, no entity or
+ * collection ever hydrated.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(TestcontainersConfiguration.class)
+@ActiveProfiles("test")
+class ReadQueryStatisticsTest {
+
+    private static final int CHUNKS = 20;
+
+    @Autowired
+    private MetadataService metadataService;
+
+    @Autowired
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Autowired
+    private ChunkMetadataRepository chunkMetadataRepository;
+
+    @Autowired
+    private FileContentRepository fileContentRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long fileId;
+    private Long inlineId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        fileId = metadataService.initiateSession("report.pdf", "reader", "upload-id", CHUNKS, 512L * CHUNKS,
+                "application/pdf");
+        for (int part = 1; part <= CHUNKS; part++) {
+            metadataService.addChunk(fileId, part, "etag-" + part, 512L);
+        }
+        metadataService.completeSession(fileId);
+        metadataService.initiateSession(InitiateSessionRequest.builder()
+                .fileName("report.pdf").userId("reader").uploadId("upload-id-2").totalChunks(CHUNKS)
+                .size(512L * CHUNKS).previousVersionId(fileId).build());
+        inlineId = metadataService.createInlineFile(
+                new InlineFileRequest("note.txt", "text/plain", "reader", "hello".getBytes())).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        chunkMetadataRepository.deleteAll();
+        fileContentRepository.deleteAll();
+        fileMetadataRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Each read endpoint should issue one statement and load no entities")
+    void shouldServeReadsFromProjections() {
+        assertSingleStatement("GET /metadata/{id}", () -> metadataService.getFileById(fileId));
+        assertSingleStatement("GET /metadata/{id}/chunks", () -> metadataService.getUploadedChunks(fileId));
+        assertSingleStatement("GET /metadata/{id}/parts", () -> metadataService.getCompletedParts(fileId));
+        assertSingleStatement("GET /metadata/{id}/progress", () -> metadataService.getProgress(fileId));
+        assertSingleStatement("GET /metadata/{id}/versions", () -> metadataService.getVersions(fileId));
+        assertSingleStatement("GET /metadata/user/{owner}",
+                () -> metadataService.getFilesByOwner("reader", null, Sort.Direction.DESC, null, 50));
+        assertSingleStatement("GET /metadata/inline/oversized",
+                () -> metadataService.getInlineFilesLargerThan(1L, 0L, 100));
+        assertSingleStatement("GET /metadata/{id}/content", () -> metadataService.getInlineContent(inlineId));
+    }
+
+    private void assertSingleStatement(String endpoint, Runnable read) {
+        statistics.clear();
+        read.run();
+        assertThat(statistics.getPrepareStatementCount()).as(endpoint + " statements").isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).as(endpoint + " entities loaded").isZero();
+        assertThat(statistics.getCollectionFetchCount()).as(endpoint + " collections fetched").isZero();
+    }
+}
@@ -0,0 +1,150 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.TestcontainersConfiguration;
+import com.cloud.metadata.config.ReadYourWritesGuard;
+import com.cloud.metadata.repository.ChunkMetadataRepository;
+import com.cloud.metadata.repository.FileContentRepository;
+import com.cloud.metadata.repository.FileMetadataRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Read-only transactions run on the replica pool unless the session wrote within the
+ * read-your-writes window. The replica here is a second pool against the test database.
+ */
+@SpringBootTest(properties = {
+        "metadata.datasource.read-routing.enabled=true",
+        "metadata.datasource.read-routing.read-your-writes-window=500ms",
+        "metadata.datasource.read-routing.replicas[0].maximum-pool-size=4"
+})
+@Import(TestcontainersConfiguration.class)
+@ActiveProfiles("test")
+class ReadRoutingTest {
+
+    private static final String REPLICA_POOL = "metadata-replica-1";
+
+    @Autowired
+    private MetadataService metadataService;
+
+    @Autowired
+    private ReadYourWritesGuard guard;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Autowired
+    private ChunkMetadataRepository chunkMetadataRepository;
+
+    @Autowired
+    private FileContentRepository fileContentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        chunkMetadataRepository.deleteAllInBatch();
+        fileContentRepository.deleteAllInBatch();
+        fileMetadataRepository.deleteAllInBatch();
+        jdbcTemplate.update("DELETE FROM storage_usage");
+    }
+
+    @Test
+    @DisplayName("Read-only transactions should run on the replica pool and writes on the primary")
+    void shouldRouteReadsToReplica() {
+        // Given
+        double before = replicaAcquisitions();
+        Long fileId = metadataService.initiateSession("report.pdf", "alice", "upload-id", 2, 200L, "application/pdf");
+        metadataService.addChunk(fileId, 1, "etag-1", 100L);
+        assertThat(replicaAcquisitions()).isEqualTo(before);
+
+        // When
+        int chunks = metadataService.getUploadedChunks(fileId).size();
+        metadataService.getFilesByOwner("alice", null, null, null, 10);
+
+        // Then
+        assertThat(chunks).isEqualTo(1);
+        assertThat(replicaAcquisitions()).isEqualTo(before + 2);
+    }
+
+    @Test
+    @DisplayName("A session should read its own writes from the primary until the window has passed")
+    void shouldReadOwnWritesFromPrimary() throws Exception {
+        // Given: alice writes in one request
+        Long fileId;
+        try (ReadYourWritesGuard.Scope ignored = guard.enter("alice")) {
+            fileId = metadataService.initiateSession("report.pdf", "alice", "upload-id", 2, 200L, "application/pdf");
+            metadataService.addChunk(fileId, 1, "etag-1", 100L);
+        }
+        double before = replicaAcquisitions();
+
+        // When / Then: her next request stays on the primary, bob's does not
+        try (ReadYourWritesGuard.Scope ignored = guard.enter("alice")) {
+            assertThat(metadataService.getUploadedChunks(fileId)).hasSize(1);
+        }
+        assertThat(replicaAcquisitions()).isEqualTo(before);
+        try (ReadYourWritesGuard.Scope ignored = guard.enter("bob")) {
+            metadataService.getUploadedChunks(fileId);
+        }
+        assertThat(replicaAcquisitions()).isEqualTo(before + 1);
+
+        // When / Then: once the window has passed, alice reads from the replica again
+        Thread.sleep(700);
+        try (ReadYourWritesGuard.Scope ignored = guard.enter("alice")) {
+            metadataService.getUploadedChunks(fileId);
+        }
+        assertThat(replicaAcquisitions()).isEqualTo(before + 2);
+    }
+
+    @Test
+    @DisplayName("Reads after a write in the same request should stay on the primary")
+    void shouldPinRequestAfterWrite() {
+        // Given
+        Long fileId = metadataService.initiateSession("report.pdf", "alice", "upload-id", 1, 100L, "application/pdf");
+        double before = replicaAcquisitions();
+
+        // When: a request without a session writes, then reads
+        try (ReadYourWritesGuard.Scope ignored = guard.enter(null)) {
+            metadataService.getProgress(fileId);
+            metadataService.addChunk(fileId, 1, "etag-1", 100L);
+            metadataService.getProgress(fileId);
+        }
+
+        // Then: only the read before the write used the replica, and completion parts never do
+        assertThat(replicaAcquisitions()).isEqualTo(before + 1);
+        assertThat(metadataService.getCompletedParts(fileId).getEtags()).containsExactly("etag-1");
+        assertThat(replicaAcquisitions()).isEqualTo(before + 1);
+    }
+
+    @Test
+    @DisplayName("Cached file lookups should be filled from the primary, never from a replica")
+    void shouldFillFileCacheFromPrimary() {
+        // Given
+        Long fileId = metadataService.initiateSession("report.pdf", "alice", "upload-id", 1, 100L, "application/pdf");
+        metadataService.addChunk(fileId, 1, "etag-1", 100L);
+        double before = replicaAcquisitions();
+
+        // When
+        String status = metadataService.getFileById(fileId).getStatus();
+
+        // Then
+        assertThat(status).isEqualTo("ACTIVE");
+        assertThat(replicaAcquisitions()).isEqualTo(before);
+    }
+
+    private double replicaAcquisitions() {
+        return meterRegistry.get("hikaricp.connections.acquire").tag("pool", REPLICA_POOL).timer().count();
+    }
+}
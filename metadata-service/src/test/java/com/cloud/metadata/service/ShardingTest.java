@@ -0,0 +1,367 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.config.ShardKeys;
+import com.cloud.metadata.config.ShardRoutingDataSource;
+import com.cloud.metadata.dto.ShardMove;
+import com.cloud.metadata.dto.ShardPlacement;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Two shards, both in-memory H2 databases of their own, driven through the HTTP endpoints so
+ * requests are routed as in production. A fresh directory spreads the buckets, so an owner's
+ * shard is its bucket modulo 2.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:shard0;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "metadata.sharding.enabled=true",
+        "metadata.sharding.shards[0].url=jdbc:h2:mem:shard1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;"
+                + "DEFAULT_NULL_ORDERING=HIGH",
+        "metadata.sharding.directory-refresh-ms=100",
+        "metadata.sharding.fence-wait=1s"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ShardingTest {
+
+    private static final List<String> TABLES = List.of("chunk_metadata", "chunk_manifest", "file_content",
+            "file_metadata", "folder", "storage_usage", "file_change", "change_head", "outbox_event", "chunk_release");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ShardRouter router;
+
+    @Autowired
+    private ShardDirectory directory;
+
+    @Autowired
+    private ShardRebalancer rebalancer;
+
+    @Autowired
+    private ShardFence fence;
+
+    @Autowired
+    private ShardRoutingDataSource dataSource;
+
+    @AfterEach
+    void tearDown() {
+        for (int shard = 0; shard < dataSource.getShardCount(); shard++) {
+            JdbcTemplate jdbcTemplate = shard(shard);
+            jdbcTemplate.update("UPDATE folder SET parent_id = NULL");
+            TABLES.forEach(table -> jdbcTemplate.update("DELETE FROM " + table));
+        }
+    }
+
+    @Test
+    @DisplayName("Files should be written to their owner's shard and found by id alone")
+    void shouldRouteByOwnerAndFileId() throws Exception {
+        // Given
+        String alice = ownerOn(0);
+        String bob = ownerOn(1);
+
+        // When
+        long aliceFile = store(alice, "report.pdf");
+        long bobFile = store(bob, "photo.jpg");
+
+        // Then: each file is on one shard only, and its id names the owner's bucket
+        assertThat(countFiles(0, alice)).isEqualTo(1);
+        assertThat(countFiles(1, alice)).isZero();
+        assertThat(countFiles(1, bob)).isEqualTo(1);
+        assertThat(countFiles(0, bob)).isZero();
+        assertThat(ShardKeys.bucketOfFileId(bobFile)).isEqualTo(ShardKeys.bucketOf(bob));
+        mockMvc.perform(get("/metadata/{fileId}", aliceFile)).andExpect(status().isOk())
+                .andExpect(jsonPath("$.owner").value(alice));
+        mockMvc.perform(get("/metadata/{fileId}", bobFile)).andExpect(status().isOk())
+                .andExpect(jsonPath("$.owner").value(bob));
+        mockMvc.perform(get("/metadata/user/{owner}", bob)).andExpect(status().isOk())
+                .andExpect(jsonPath("$.files.length()").value(1));
+    }
+
+    @Test
+    @DisplayName("Sweeps over all files should cover every shard")
+    void shouldSweepEveryShard() throws Exception {
+        // Given: a stale session on each shard
+        long first = initiate(ownerOn(0));
+        long second = initiate(ownerOn(1));
+
+        // When
+        JsonNode idle = json(mockMvc.perform(post("/metadata/sessions/idle/claim")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("status", "PENDING", "idleMinutes", 0,
+                        "limit", 10, "leaseSeconds", 60)))));
+        JsonNode aborted = json(mockMvc.perform(post("/metadata/sessions/abort")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("fileIds", List.of(first, second))))));
+
+        // Then: one claim covering both shards, then one abort per shard
+        assertThat(idle.findValuesAsText("id")).containsExactlyInAnyOrder(String.valueOf(first),
+                String.valueOf(second));
+        assertThat(aborted).extracting(JsonNode::asLong).containsExactlyInAnyOrder(first, second);
+    }
+
+    @Test
+    @DisplayName("Claim pages merged across shards should hand out every session once, in id order")
+    void shouldPageClaimsAcrossShards() throws Exception {
+        // Given: a full page of stale sessions on shard 0, all with higher ids than the two on shard 1
+        String low = ownerOn(1);
+        String high = ownerOn(0, ShardKeys.bucketOf(low));
+        List<Long> sessions = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            sessions.add(initiate(high));
+        }
+        sessions.add(initiate(low));
+        sessions.add(initiate(low));
+
+        // When: the sweeper pages with the last id of each page as the cursor for every shard
+        List<Long> claimed = new ArrayList<>();
+        long afterId = 0L;
+        while (true) {
+            JsonNode page = json(mockMvc.perform(post("/metadata/sessions/idle/claim")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(Map.of("status", "PENDING", "idleMinutes", 0,
+                            "afterId", afterId, "limit", 3, "leaseSeconds", 60)))));
+            if (page.isEmpty()) {
+                break;
+            }
+            page.findValues("id").forEach(id -> claimed.add(id.asLong()));
+            afterId = claimed.get(claimed.size() - 1);
+        }
+
+        // Then: shard 1's sessions are not skipped, and the claims cut off the first page were
+        // handed back to the second
+        assertThat(claimed).isSorted().containsExactlyInAnyOrderElementsOf(sessions);
+    }
+
+    @Test
+    @DisplayName("Moving a bucket should carry its owners' files to the target, keeping their ids")
+    void shouldMoveBucket() throws Exception {
+        // Given: an owner on shard 0 with a folder and a file in it, and a change feed cursor
+        String owner = ownerOn(0);
+        long folderId = json(mockMvc.perform(post("/metadata/user/{owner}/folders", owner)
+                .contentType(MediaType.APPLICATION_JSON).content("{\"name\":\"Docs\"}"))).get("id").asLong();
+        long fileId = store(owner, "report.pdf");
+        mockMvc.perform(post("/metadata/user/{owner}/files/{fileId}/move", owner, fileId)
+                .contentType(MediaType.APPLICATION_JSON).content("{\"targetFolderId\":" + folderId + "}"))
+                .andExpect(status().isOk());
+        MvcResult feed = mockMvc.perform(get("/metadata/user/{owner}/changes", owner)).andReturn();
+        String cursor = json(mockMvc.perform(asyncDispatch(feed))).get("cursor").asText();
+        int bucket = ShardKeys.bucketOf(owner);
+
+        // When
+        ShardMove move = rebalancer.moveBucket(bucket, 1);
+
+        // Then: the rows moved, and reads by owner and by id follow them
+        assertThat(move.getOwners()).isEqualTo(1);
+        assertThat(move.getFiles()).isEqualTo(1);
+        assertThat(countFiles(0, owner)).isZero();
+        assertThat(countFiles(1, owner)).isEqualTo(1);
+        assertThat(router.shardOfFile(fileId)).isEqualTo(1);
+        mockMvc.perform(get("/metadata/{fileId}", fileId)).andExpect(status().isOk())
+                .andExpect(jsonPath("$.folderId").value(folderId));
+        mockMvc.perform(get("/metadata/user/{owner}/usage", owner)).andExpect(status().isOk())
+                .andExpect(jsonPath("$.usedBytes").value(10));
+
+        // Then: the feed positions stayed behind, so the old cursor is refused
+        mockMvc.perform(get("/metadata/user/{owner}/changes", owner).param("cursor", cursor))
+                .andExpect(status().isGone());
+
+        // When / Then: rebalancing moves one bucket back to even the shards out
+        List<ShardMove> moves = rebalancer.rebalance();
+        assertThat(moves).singleElement().satisfies(back -> {
+            assertThat(back.getFromShard()).isEqualTo(1);
+            assertThat(back.getToShard()).isEqualTo(0);
+            assertThat(back.getBuckets()).hasSize(1);
+        });
+        assertThat(rebalancer.getPlacement()).extracting(ShardPlacement::getBuckets)
+                .containsExactly(ShardKeys.BUCKETS / 2, ShardKeys.BUCKETS / 2);
+    }
+
+    @Test
+    @DisplayName("Writes to a bucket being moved should be refused while reads go on")
+    void shouldFenceMovingBucket() throws Exception {
+        // Given
+        String owner = ownerOn(1);
+        long fileId = store(owner, "report.pdf");
+        int bucket = ShardKeys.bucketOf(owner);
+        directory.markMoving(List.of(bucket));
+
+        try {
+            // When / Then
+            mockMvc.perform(post("/metadata").contentType(MediaType.APPLICATION_JSON)
+                    .content(fileRequest(owner, "other.pdf"))).andExpect(status().isServiceUnavailable())
+                    .andExpect(jsonPath("$.errorCode").value("SHARD_MOVING"));
+            mockMvc.perform(post("/metadata/{fileId}/abort", fileId)).andExpect(status().isServiceUnavailable());
+            mockMvc.perform(get("/metadata/{fileId}", fileId)).andExpect(status().isOk());
+        } finally {
+            directory.completeMove(List.of(bucket), 1);
+        }
+    }
+
+    @Test
+    @DisplayName("A fenced bucket should refuse writes on its shard even where the directory has not caught up")
+    void shouldFenceWritesOnShard() throws Exception {
+        // Given: the bucket fenced on its shard only, as a move does before any node has refreshed
+        String owner = ownerOn(1);
+        long fileId = store(owner, "report.pdf");
+        int bucket = ShardKeys.bucketOf(owner);
+        fence.fence(1, List.of(bucket));
+
+        try {
+            // When / Then: writes are refused in their transaction, reads go on
+            assertThat(directory.isMoving(bucket)).isFalse();
+            mockMvc.perform(post("/metadata").contentType(MediaType.APPLICATION_JSON)
+                    .content(fileRequest(owner, "other.pdf"))).andExpect(status().isServiceUnavailable())
+                    .andExpect(jsonPath("$.errorCode").value("SHARD_MOVING"));
+            mockMvc.perform(delete("/metadata/{fileId}", fileId)).andExpect(status().isServiceUnavailable());
+            mockMvc.perform(get("/metadata/{fileId}", fileId)).andExpect(status().isOk());
+            assertThat(countFiles(1, owner)).isEqualTo(1);
+        } finally {
+            fence.lift(1, List.of(bucket));
+        }
+
+        // Then: once lifted, writes go through again
+        store(owner, "other.pdf");
+        assertThat(countFiles(1, owner)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("A chunk shared across shards should be released and swept only once no shard references it")
+    void shouldReleaseSharedChunkOnlyWhenUnreferencedOnEveryShard() throws Exception {
+        // Given: the same chunk uploaded by an owner on each shard
+        long aliceFile = uploadChunked(ownerOn(0), "abcd");
+        long bobFile = uploadChunked(ownerOn(1), "abcd");
+
+        // When: the file on shard 0 is deleted
+        mockMvc.perform(delete("/metadata/{fileId}", aliceFile)).andExpect(status().isOk());
+
+        // Then: shard 1 still references the chunk, so it is not released
+        assertThat(countReleased(0) + countReleased(1)).isZero();
+
+        // When / Then: a tombstone that raced the upload on shard 1 is dropped by the sweep, not claimed
+        shard(0).update("INSERT INTO chunk_release (checksum, released_at) VALUES ('abcd', ?)",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(2)));
+        assertThat(claimReleased()).isEmpty();
+        assertThat(countReleased(0)).isZero();
+
+        // When: the last reference goes
+        mockMvc.perform(delete("/metadata/{fileId}", bobFile)).andExpect(status().isOk());
+
+        // Then: the tombstone is on shard 0, and an upload on shard 1 referencing the chunk again drops it
+        assertThat(countReleased(0)).isEqualTo(1);
+        assertThat(countReleased(1)).isZero();
+        long carolFile = uploadChunked(ownerOn(1), "abcd");
+        assertThat(countReleased(0)).isZero();
+
+        // When / Then: once that file is deleted too, the sweep claims the chunk
+        mockMvc.perform(delete("/metadata/{fileId}", carolFile)).andExpect(status().isOk());
+        assertThat(claimReleased()).containsExactly("abcd");
+    }
+
+    private String ownerOn(int shard) {
+        return ownerOn(shard, -1);
+    }
+
+    /**
+     * An owner on the shard whose bucket, and so whose file ids, lie above the given bucket's
+     */
+    private String ownerOn(int shard, int aboveBucket) {
+        for (int i = 0; ; i++) {
+            String owner = "user-" + i;
+            if (router.shardOfOwner(owner) == shard && ShardKeys.bucketOf(owner) > aboveBucket) {
+                return owner;
+            }
+        }
+    }
+
+    private long store(String owner, String fileName) throws Exception {
+        return json(mockMvc.perform(post("/metadata").contentType(MediaType.APPLICATION_JSON)
+                .content(fileRequest(owner, fileName)))).get("id").asLong();
+    }
+
+    private long initiate(String owner) throws Exception {
+        String request = objectMapper.writeValueAsString(Map.of("fileName", "draft.pdf", "userId", owner,
+                "uploadId", "upload-id", "totalChunks", 1, "size", 100));
+        return json(mockMvc.perform(post("/metadata/initiate").contentType(MediaType.APPLICATION_JSON)
+                .content(request))).asLong();
+    }
+
+    /**
+     * A content-defined upload of one chunk, completed
+     */
+    private long uploadChunked(String owner, String checksum) throws Exception {
+        String request = objectMapper.writeValueAsString(Map.of("fileName", "shared.bin", "userId", owner,
+                "uploadId", "upload-id", "totalChunks", 1, "size", 100, "chunkingScheme", "fastcdc"));
+        long fileId = json(mockMvc.perform(post("/metadata/initiate").contentType(MediaType.APPLICATION_JSON)
+                .content(request))).asLong();
+        mockMvc.perform(post("/metadata/{fileId}/chunk", fileId).contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("chunkNumber", 1, "etag", "etag-1", "size", 100,
+                        "checksum", checksum)))).andExpect(status().isOk());
+        mockMvc.perform(post("/metadata/{fileId}/complete", fileId)).andExpect(status().isOk());
+        return fileId;
+    }
+
+    private List<String> claimReleased() throws Exception {
+        JsonNode claimed = json(mockMvc.perform(post("/metadata/chunks/released/claim")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("minAgeSeconds", 0, "limit", 10,
+                        "leaseSeconds", 60)))));
+        return objectMapper.convertValue(claimed, objectMapper.getTypeFactory()
+                .constructCollectionType(List.class, String.class));
+    }
+
+    private int countReleased(int shard) {
+        return shard(shard).queryForObject("SELECT COUNT(*) FROM chunk_release", Integer.class);
+    }
+
+    private String fileRequest(String owner, String fileName) throws Exception {
+        return objectMapper.writeValueAsString(Map.of("fileName", fileName, "fileType", "application/pdf",
+                "size", 10, "s3Key", "uploads/" + fileName, "owner", owner));
+    }
+
+    private JsonNode json(ResultActions result) throws Exception {
+        return objectMapper.readTree(result.andExpect(status().isOk()).andReturn().getResponse().getContentAsString());
+    }
+
+    private int countFiles(int shard, String owner) {
+        return shard(shard).queryForObject("SELECT COUNT(*) FROM file_metadata WHERE owner = ?", Integer.class, owner);
+    }
+
+    private JdbcTemplate shard(int shard) {
+        return new JdbcTemplate(dataSource.getShard(shard));
+    }
+}
@@ -0,0 +1,197 @@
+package com.cloud.metadata.service;
+
+import com.cloud.metadata.TestcontainersConfiguration;
+import com.cloud.metadata.dto.InitiateSessionRequest;
+import com.cloud.metadata.dto.InlineFileRequest;
+import com.cloud.metadata.dto.StorageUsageResponse;
+import com.cloud.metadata.exception.QuotaExceededException;
+import com.cloud.metadata.repository.ChunkMetadataRepository;
+import com.cloud.metadata.repository.FileContentRepository;
+import com.cloud.metadata.repository.FileMetadataRepository;
+import com.cloud.metadata.repository.StorageUsageRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@Import(TestcontainersConfiguration.class)
+@ActiveProfiles("test")
+class StorageQuotaTest {
+
+    private static final String OWNER = "quota-user";
+
+    @Autowired
+    private MetadataService metadataService;
+
+    @Autowired
+    private StorageQuotaService quotaService;
+
+    @Autowired
+    private StorageUsageReconciler reconciler;
+
+    @Autowired
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Autowired
+    private ChunkMetadataRepository chunkMetadataRepository;
+
+    @Autowired
+    private FileContentRepository fileContentRepository;
+
+    @Autowired
+    private StorageUsageRepository storageUsageRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        chunkMetadataRepository.deleteAllInBatch();
+        fileContentRepository.deleteAllInBatch();
+        fileMetadataRepository.deleteAllInBatch();
+        storageUsageRepository.deleteAllInBatch();
+    }
+
+    @Test
+    @DisplayName("Uploads should reserve at initiation and turn the reservation into usage on completion")
+    void shouldReserveThenCommit() {
+        // Given
+        quotaService.setQuota(OWNER, 10_000L);
+
+        // When
+        Long fileId = initiate(4_000L);
+        StorageUsageResponse reserved = quotaService.getUsage(OWNER);
+        metadataService.addChunk(fileId, 1, "etag-1", 4_000L);
+        metadataService.completeSession(fileId);
+
+        // Then
+        assertThat(reserved.getReservedBytes()).isEqualTo(4_000L);
+        assertThat(reserved.getAvailableBytes()).isEqualTo(6_000L);
+        assertThat(quotaService.getUsage(OWNER)).isEqualTo(new StorageUsageResponse(OWNER, 4_000L, 0L, 10_000L,
+                6_000L));
+        assertThatThrownBy(() -> initiate(6_001L)).isInstanceOf(QuotaExceededException.class);
+        assertThat(quotaService.getUsage(OWNER).getReservedBytes()).isZero();
+    }
+
+    @Test
+    @DisplayName("Aborting, failing and sweeping uploads should give their reservation back")
+    void shouldReleaseEndedUploads() {
+        // Given
+        Long aborted = initiate(1_000L);
+        Long failed = initiate(2_000L);
+        Long swept = initiate(4_000L);
+        metadataService.addChunk(failed, 1, "etag-1", 100L);
+
+        // When
+        metadataService.abortSession(aborted);
+        metadataService.markFailed(failed);
+        metadataService.abortSessions(List.of(swept, aborted));
+
+        // Then: aborting an already aborted session releases nothing twice
+        StorageUsageResponse usage = quotaService.getUsage(OWNER);
+        assertThat(usage.getReservedBytes()).isZero();
+        assertThat(usage.getUsedBytes()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deleting and pruning files should give their bytes back")
+    void shouldReleaseDeletedFiles() {
+        // Given: a file with two versions and an inline file
+        Long first = complete(initiate(3_000L), 3_000L);
+        Long second = complete(metadataService.initiateSession(InitiateSessionRequest.builder()
+                .fileName("report.pdf").userId(OWNER).uploadId("upload-2").totalChunks(1).size(5_000L)
+                .previousVersionId(first).build()), 5_000L);
+        Long inline = metadataService.createInlineFile(
+                new InlineFileRequest("note.txt", "text/plain", OWNER, new byte[100])).getId();
+        assertThat(quotaService.getUsage(OWNER).getUsedBytes()).isEqualTo(8_100L);
+
+        // When / Then
+        metadataService.pruneVersions(second, 1);
+        assertThat(quotaService.getUsage(OWNER).getUsedBytes()).isEqualTo(5_100L);
+        metadataService.deleteFile(second);
+        assertThat(quotaService.getUsage(OWNER).getUsedBytes()).isEqualTo(100L);
+        metadataService.deleteFile(inline);
+        assertThat(quotaService.getUsage(OWNER).getUsedBytes()).isZero();
+        assertThat(fileMetadataRepository.count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Concurrent uploads should never reserve more than the quota")
+    void shouldNotOverbookQuota() throws Exception {
+        // Given: room for exactly 5 uploads of 1000 bytes, raced by 20
+        quotaService.setQuota(OWNER, 5_000L);
+        ExecutorService executor = Executors.newFixedThreadPool(20);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> attempts = new ArrayList<>();
+
+        // When
+        try {
+            for (int i = 0; i < 20; i++) {
+                attempts.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        initiate(1_000L);
+                        return true;
+                    } catch (QuotaExceededException e) {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+            int accepted = 0;
+            for (Future<Boolean> attempt : attempts) {
+                accepted += attempt.get() ? 1 : 0;
+            }
+
+            // Then
+            assertThat(accepted).isEqualTo(5);
+            assertThat(quotaService.getUsage(OWNER).getReservedBytes()).isEqualTo(5_000L);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Reconciliation should correct drifted ledgers and create missing ones")
+    void shouldReconcileDrift() {
+        // Given: a drifted ledger, and files of an owner that has no ledger at all
+        complete(initiate(2_000L), 2_000L);
+        initiate(500L);
+        jdbcTemplate.update("UPDATE storage_usage SET used_bytes = 99, reserved_bytes = 7 WHERE owner = ?", OWNER);
+        jdbcTemplate.update("INSERT INTO file_metadata (file_name, size, owner, status, created_at, updated_at) "
+                + "VALUES ('imported.bin', 123, 'imported-user', 'COMPLETED', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)");
+
+        // When
+        reconciler.reconcile();
+
+        // Then
+        StorageUsageResponse usage = quotaService.getUsage(OWNER);
+        assertThat(usage.getUsedBytes()).isEqualTo(2_000L);
+        assertThat(usage.getReservedBytes()).isEqualTo(500L);
+        assertThat(quotaService.getUsage("imported-user").getUsedBytes()).isEqualTo(123L);
+    }
+
+    private Long initiate(long size) {
+        return metadataService.initiateSession("report.pdf", OWNER, "upload-id", 1, size, "application/pdf");
+    }
+
+    private Long complete(Long fileId, long size) {
+        metadataService.addChunk(fileId, 1, "etag-1", size);
+        metadataService.completeSession(fileId);
+        return fileId;
+    }
+}
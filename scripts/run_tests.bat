@@ -23,6 +23,19 @@ if %errorlevel% neq 0 (
 )
 cd ..
 
+echo.
+echo [INFO] Installing Chunking Library (Logging to chunking_install_output.txt)...
+cd chunking-lib
+call mvn install > chunking_install_output.txt 2>&1
+if %errorlevel% neq 0 (
+    echo [ERROR] Chunking Library install failed! Check chunking_install_output.txt
+    cd ..
+    exit /b 1
+) else (
+    echo [SUCCESS] Chunking Library installed!
+)
+cd ..
+
 echo.
 echo [INFO] Testing File Service (Logging to file_test_output.txt)...
 cd file-service